@@ -5,6 +5,8 @@ import android.app.Application;
 import org.briarproject.bramble.api.lifecycle.LifecycleManager;
 import org.briarproject.bramble.api.system.AlarmListener;
 import org.briarproject.bramble.api.system.AndroidWakeLockManager;
+import org.briarproject.bramble.api.system.Clock;
+import org.briarproject.bramble.api.system.CoarseScheduler;
 import org.briarproject.bramble.api.system.TaskScheduler;
 
 import java.util.concurrent.ScheduledExecutorService;
@@ -46,4 +48,12 @@ public class AndroidTaskSchedulerModule {
 	TaskScheduler provideTaskScheduler(AndroidTaskScheduler scheduler) {
 		return scheduler;
 	}
+
+	@Provides
+	@Singleton
+	@CoarseScheduler
+	TaskScheduler provideCoarseScheduler(TaskScheduler scheduler,
+			Clock clock) {
+		return new TimerWheel(scheduler, clock);
+	}
 }
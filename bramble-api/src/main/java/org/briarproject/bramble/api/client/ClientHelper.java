@@ -55,6 +55,13 @@ public interface ClientHelper {
 	BdfDictionary getGroupMetadataAsDictionary(Transaction txn, GroupId g)
 			throws DbException, FormatException;
 
+	/**
+	 * Returns the metadata for the given group, restricted to the given keys.
+	 * Keys that are not present in the group's metadata are omitted.
+	 */
+	BdfDictionary getGroupMetadataAsDictionary(Transaction txn, GroupId g,
+			Collection<String> keys) throws DbException, FormatException;
+
 	Collection<MessageId> getMessageIds(Transaction txn, GroupId g,
 			BdfDictionary query) throws DbException, FormatException;
 
@@ -77,6 +84,10 @@ public interface ClientHelper {
 			Transaction txn, GroupId g, BdfDictionary query) throws DbException,
 			FormatException;
 
+	Map<MessageId, BdfDictionary> getMessageMetadataAsDictionary(
+			Transaction txn, GroupId g, long minTimestamp, long maxTimestamp)
+			throws DbException, FormatException;
+
 	void mergeGroupMetadata(GroupId g, BdfDictionary metadata)
 			throws DbException, FormatException;
 
@@ -0,0 +1,75 @@
+package org.briarproject.bramble.api.client;
+
+import org.briarproject.bramble.api.FormatException;
+import org.briarproject.bramble.api.UniqueId;
+import org.briarproject.bramble.api.data.BdfDictionary;
+import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.db.Transaction;
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+import org.briarproject.bramble.api.sync.GroupId;
+import org.briarproject.bramble.api.sync.MessageId;
+
+import javax.annotation.Nullable;
+
+/**
+ * Maps the session IDs of a client's protocol sessions to the IDs of the
+ * messages in which the sessions are stored. The mapping is kept in the
+ * metadata of the group that holds the sessions, under one key per
+ * session, so a session can be found without querying the metadata of
+ * every message in the group.
+ */
+@NotNullByDefault
+public interface SessionIndex {
+
+	/**
+	 * Prefix of the group metadata keys used by the index. Clients using
+	 * the index must not use group metadata keys with this prefix.
+	 */
+	String GROUP_KEY_SESSION_PREFIX = "session_";
+
+	/**
+	 * Returns the ID of the message that stores the session with the given
+	 * ID in the given group, or null if there is no such session.
+	 * <p/>
+	 * If the session is not in the index and the group hasn't been
+	 * {@link #indexGroup indexed}, the given metadata query is used to look
+	 * for a session that was stored before the index was used. If such a
+	 * session is found and the transaction is not read-only, the session is
+	 * added to the index.
+	 */
+	@Nullable
+	MessageId getSessionMessageId(Transaction txn, GroupId g,
+			UniqueId sessionId, BdfDictionary query)
+			throws DbException, FormatException;
+
+	/**
+	 * Adds any sessions that were stored in the given group before the index
+	 * was used to the index, unless this has already been done for the
+	 * group. Afterwards, sessions that aren't in the index are known not to
+	 * exist.
+	 * <p/>
+	 * Clients should call this for each group that holds sessions when the
+	 * database is opened, and for each new group before storing sessions in
+	 * it.
+	 *
+	 * @param query A metadata query that matches the messages in which the
+	 * group's sessions are stored
+	 * @param sessionIdKey The metadata key under which each of those
+	 * messages stores its session ID
+	 */
+	void indexGroup(Transaction txn, GroupId g, BdfDictionary query,
+			String sessionIdKey) throws DbException, FormatException;
+
+	/**
+	 * Adds a session stored in the given message to the index, replacing
+	 * any existing entry for the session.
+	 */
+	void addSession(Transaction txn, GroupId g, UniqueId sessionId,
+			MessageId m) throws DbException;
+
+	/**
+	 * Removes a session from the index.
+	 */
+	void removeSession(Transaction txn, GroupId g, UniqueId sessionId)
+			throws DbException;
+}
@@ -12,9 +12,14 @@ import org.briarproject.bramble.api.plugin.event.ContactDisconnectedEvent;
 import org.briarproject.bramble.api.rendezvous.event.RendezvousConnectionClosedEvent;
 import org.briarproject.bramble.api.rendezvous.event.RendezvousConnectionOpenedEvent;
 import org.briarproject.bramble.api.sync.Priority;
+import org.briarproject.bramble.api.sync.SyncSession;
+import org.briarproject.bramble.api.sync.SyncSessionStats;
+import org.briarproject.bramble.api.sync.event.SyncSessionStatsEvent;
 
 import java.util.Collection;
 
+import javax.annotation.Nullable;
+
 /**
  * Keeps track of which contacts are currently connected by which transports.
  */
@@ -127,4 +132,30 @@ public interface ConnectionRegistry {
 	 * {@link RendezvousConnectionClosedEvent}.
 	 */
 	void unregisterConnection(PendingContactId p, boolean success);
+
+	/**
+	 * Registers a sync session with the given contact over the given
+	 * transport, so its statistics can be queried while it's running.
+	 */
+	void registerSyncSession(ContactId c, TransportId t, SyncSession s);
+
+	/**
+	 * Unregisters a sync session that was previously registered via
+	 * {@link #registerSyncSession(ContactId, TransportId, SyncSession)}.
+	 */
+	void unregisterSyncSession(ContactId c, TransportId t, SyncSession s);
+
+	/**
+	 * Returns the combined statistics of the sync sessions that are running
+	 * with the given contact over the given transport, or null if no sync
+	 * sessions are running.
+	 */
+	@Nullable
+	SyncSessionStats getSyncSessionStats(ContactId c, TransportId t);
+
+	/**
+	 * Broadcasts a {@link SyncSessionStatsEvent} for each contact and
+	 * transport with sync sessions running.
+	 */
+	void broadcastSyncSessionStats();
 }
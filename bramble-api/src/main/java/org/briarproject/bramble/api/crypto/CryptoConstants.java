@@ -32,4 +32,10 @@ public interface CryptoConstants {
 	 */
 	int MAC_BYTES = SecretKey.LENGTH;
 
+	/**
+	 * The default target time in milliseconds for deriving a key from a
+	 * password.
+	 */
+	long DEFAULT_KDF_TARGET_TIME_MS = 1000;
+
 }
@@ -76,6 +76,23 @@ public interface DatabaseComponent extends TransactionManager {
 	 */
 	void close() throws DbException;
 
+	/**
+	 * Returns the time in milliseconds since the last transaction ended, or
+	 * zero if a transaction is in progress.
+	 */
+	long getIdleTime();
+
+	/**
+	 * Registers a message metadata key whose values match few messages in
+	 * each of the given client's groups, such as a session ID. Queries on
+	 * those groups that include the key are answered by looking up the
+	 * messages that match the key and then checking the query's other terms
+	 * for those messages only. Queries on other clients' groups are not
+	 * affected.
+	 */
+	void registerSelectiveMetadataKey(ClientId c, int majorVersion,
+			String key);
+
 	/**
 	 * Stores a contact associated with the given local and remote pseudonyms,
 	 * and returns an ID for the contact.
@@ -125,6 +142,16 @@ public interface DatabaseComponent extends TransactionManager {
 	KeySetId addTransportKeys(Transaction txn, PendingContactId p,
 			TransportKeys k) throws DbException;
 
+	/**
+	 * Reclaims some of the unused space in the database without closing it,
+	 * rewriting at most approximately the given number of bytes, and returns
+	 * true if any data was rewritten and there may be more space to reclaim.
+	 * Does nothing and returns false if the database can't reclaim space
+	 * without rewriting the whole file.
+	 */
+	boolean compactIncrementally(Transaction txn, int maxBytes)
+			throws DbException;
+
 	/**
 	 * Returns true if there are any acks to send to the given contact.
 	 * <p/>
@@ -297,6 +324,15 @@ public interface DatabaseComponent extends TransactionManager {
 	 */
 	Metadata getGroupMetadata(Transaction txn, GroupId g) throws DbException;
 
+	/**
+	 * Returns the metadata for the given group, restricted to the given keys.
+	 * Keys that are not present in the group's metadata are omitted.
+	 * <p/>
+	 * Read-only.
+	 */
+	Metadata getGroupMetadata(Transaction txn, GroupId g,
+			Collection<String> keys) throws DbException;
+
 	/**
 	 * Returns all groups belonging to the given client.
 	 * <p/>
@@ -355,6 +391,23 @@ public interface DatabaseComponent extends TransactionManager {
 	Collection<MessageId> getMessageIds(Transaction txn, GroupId g,
 			Metadata query) throws DbException;
 
+	/**
+	 * Returns the IDs of up to the given number of delivered messages in the
+	 * given group that have a value for the given metadata key, mapped to
+	 * their values. The messages with the smallest values greater than the
+	 * given value, or the smallest values overall if the given value is null,
+	 * are returned in order of their values.
+	 * <p/>
+	 * Values are compared byte by byte. Some databases treat bytes as signed,
+	 * so callers that rely on the order should only use values with bytes
+	 * less than 0x80.
+	 * <p/>
+	 * Read-only.
+	 */
+	Map<MessageId, byte[]> getMessageIdsInMetadataOrder(Transaction txn,
+			GroupId g, String key, @Nullable byte[] after, int limit)
+			throws DbException;
+
 	/**
 	 * Returns the IDs of all messages received from the given contact that
 	 * need to be acknowledged.
@@ -406,13 +459,21 @@ public interface DatabaseComponent extends TransactionManager {
 			throws DbException;
 
 	/**
-	 * Returns the IDs of any messages of any messages that are due for
-	 * deletion, along with their group IDs.
+	 * Returns the number of messages that are due for deletion.
 	 * <p/>
 	 * Read-only.
 	 */
-	Map<GroupId, Collection<MessageId>> getMessagesToDelete(Transaction txn)
-			throws DbException;
+	int countMessagesToDelete(Transaction txn) throws DbException;
+
+	/**
+	 * Returns the IDs of up to the given number of messages that are due for
+	 * deletion, along with their group IDs. The messages whose cleanup
+	 * deadlines passed first are returned first.
+	 * <p/>
+	 * Read-only.
+	 */
+	Map<GroupId, Collection<MessageId>> getMessagesToDelete(Transaction txn,
+			int maxMessages) throws DbException;
 
 	/**
 	 * Returns the metadata for all delivered messages in the given group.
@@ -432,6 +493,16 @@ public interface DatabaseComponent extends TransactionManager {
 	Map<MessageId, Metadata> getMessageMetadata(Transaction txn, GroupId g,
 			Metadata query) throws DbException;
 
+	/**
+	 * Returns the metadata for any delivered messages in the given group with
+	 * timestamps greater than or equal to minTimestamp and less than
+	 * maxTimestamp.
+	 * <p/>
+	 * Read-only.
+	 */
+	Map<MessageId, Metadata> getMessageMetadata(Transaction txn, GroupId g,
+			long minTimestamp, long maxTimestamp) throws DbException;
+
 	/**
 	 * Returns the metadata for the given delivered message.
 	 * <p/>
@@ -586,6 +657,13 @@ public interface DatabaseComponent extends TransactionManager {
 	 */
 	Settings getSettings(Transaction txn, String namespace) throws DbException;
 
+	/**
+	 * Returns the size in bytes of the database's storage.
+	 * <p/>
+	 * Read-only.
+	 */
+	long getStorageSize(Transaction txn) throws DbException;
+
 	/**
 	 * Returns the versions of the sync protocol supported by the given contact.
 	 * <p/>
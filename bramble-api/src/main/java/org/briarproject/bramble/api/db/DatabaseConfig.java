@@ -26,4 +26,12 @@ public interface DatabaseConfig {
 	 */
 	@Nullable
 	KeyStrengthener getKeyStrengthener();
+
+	/**
+	 * Returns the target time in milliseconds for deriving a key from the
+	 * password when encrypting the database key. Higher values make the
+	 * password harder to guess, but make creating an account and changing
+	 * the password slower.
+	 */
+	long getKdfTargetTime();
 }
@@ -20,6 +20,7 @@ public class Transaction {
 	private final boolean readOnly;
 
 	private List<CommitAction> actions = null;
+	private List<Runnable> endTasks = null;
 	private boolean committed = false;
 
 	public Transaction(Object txn, boolean readOnly) {
@@ -73,6 +74,24 @@ public class Transaction {
 		return actions == null ? emptyList() : actions;
 	}
 
+	/**
+	 * Attaches a task to be run when the transaction ends, whether or not it
+	 * has been committed. The task will be run on the thread that ends the
+	 * transaction, before the transaction releases its lock on the database,
+	 * so it should be short and must not access the database.
+	 */
+	public void attachEndTask(Runnable r) {
+		if (endTasks == null) endTasks = new ArrayList<>();
+		endTasks.add(r);
+	}
+
+	/**
+	 * Returns any tasks to be run when the transaction ends.
+	 */
+	public List<Runnable> getEndTasks() {
+		return endTasks == null ? emptyList() : endTasks;
+	}
+
 	/**
 	 * Returns true if the transaction has been committed.
 	 */
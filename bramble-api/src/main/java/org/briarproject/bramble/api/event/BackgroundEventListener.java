@@ -0,0 +1,17 @@
+package org.briarproject.bramble.api.event;
+
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+
+/**
+ * An {@link EventListener} that doesn't need to be called on the
+ * {@link EventExecutor}. The {@link EventBus} delivers events to the listener
+ * on a background thread, so a slow listener doesn't delay delivery to other
+ * listeners.
+ * <p>
+ * The listener receives events in the order they were broadcast, and is
+ * never called concurrently with itself, but it may be called concurrently
+ * with other listeners and with tasks running on the event executor.
+ */
+@NotNullByDefault
+public interface BackgroundEventListener extends EventListener {
+}
@@ -6,7 +6,9 @@ import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 public interface EventBus {
 
 	/**
-	 * Adds a listener to be notified when events occur.
+	 * Adds a listener to be notified when events occur. If the listener is a
+	 * {@link SelectiveEventListener}, it's only notified of events of the
+	 * types it declares.
 	 */
 	void addListener(EventListener l);
 
@@ -0,0 +1,15 @@
+package org.briarproject.bramble.api.event;
+
+/**
+ * Marker interface for events that only signal that some state has changed,
+ * so listeners react by reading the current state rather than the contents
+ * of the event.
+ * <p>
+ * If a repeatable event is broadcast while an {@link Object#equals(Object)
+ * equal} event is still waiting to be delivered to a listener, the
+ * {@link EventBus} may discard the new event for that listener. Repeatable
+ * events must therefore implement {@link Object#equals(Object)} and
+ * {@link Object#hashCode()}.
+ */
+public interface RepeatableEvent {
+}
@@ -0,0 +1,21 @@
+package org.briarproject.bramble.api.event;
+
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+
+import java.util.Collection;
+
+/**
+ * An {@link EventListener} that is only interested in certain types of
+ * event. The {@link EventBus} only delivers events to the listener if they
+ * are instances of one of the listener's event types.
+ */
+@NotNullByDefault
+public interface SelectiveEventListener extends EventListener {
+
+	/**
+	 * Returns the types of event the listener wants to receive. This method
+	 * is called when the listener is added to the {@link EventBus}, and the
+	 * result must not change afterwards.
+	 */
+	Collection<Class<? extends Event>> getEventTypes();
+}
@@ -108,6 +108,10 @@ public interface Plugin {
 	/**
 	 * Attempts to create connections using the given transport properties,
 	 * passing any created connections to the corresponding handlers.
+	 * <p/>
+	 * Attempts are started in the order of the given collection. The plugin
+	 * may limit the number of attempts in progress at once, so the most
+	 * promising properties should come first.
 	 */
 	@Wakeful
 	void poll(Collection<Pair<TransportProperties, ConnectionHandler>>
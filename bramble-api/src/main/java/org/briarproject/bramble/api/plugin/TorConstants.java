@@ -21,6 +21,7 @@ public interface TorConstants {
 	String PREF_TOR_PORT = "port";
 	String PREF_TOR_MOBILE = "useMobileData";
 	String PREF_TOR_ONLY_WHEN_CHARGING = "onlyWhenCharging";
+	String PREF_TOR_WARM_CONNECTIONS = "warmConnections";
 	String HS_PRIVATE_KEY_V3 = "onionPrivKey3";
 
 	// Values for PREF_TOR_NETWORK
@@ -35,6 +36,7 @@ public interface TorConstants {
 	int DEFAULT_PREF_TOR_NETWORK = PREF_TOR_NETWORK_AUTOMATIC;
 	boolean DEFAULT_PREF_TOR_MOBILE = true;
 	boolean DEFAULT_PREF_TOR_ONLY_WHEN_CHARGING = false;
+	boolean DEFAULT_PREF_TOR_WARM_CONNECTIONS = false;
 
 	/**
 	 * Reason flag returned by {@link Plugin#getReasonsDisabled()}.
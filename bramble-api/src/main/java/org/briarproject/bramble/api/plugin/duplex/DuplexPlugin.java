@@ -10,6 +10,8 @@ import org.briarproject.bramble.api.rendezvous.KeyMaterialSource;
 import org.briarproject.bramble.api.rendezvous.RendezvousEndpoint;
 import org.briarproject.bramble.api.system.Wakeful;
 
+import java.util.Collection;
+
 import javax.annotation.Nullable;
 
 /**
@@ -26,6 +28,17 @@ public interface DuplexPlugin extends Plugin {
 	@Nullable
 	DuplexTransportConnection createConnection(TransportProperties p);
 
+	/**
+	 * Attempts to create a connection using the given transport properties,
+	 * passing any created connection to the given handler. Unlike
+	 * {@link #poll(Collection)}, this doesn't affect the polling interval.
+	 * <p/>
+	 * The attempt is made in the same way as polling attempts, so it counts
+	 * towards the plugin's limit on concurrent connection attempts.
+	 */
+	@Wakeful
+	void connect(TransportProperties p, ConnectionHandler h);
+
 	/**
 	 * Returns true if the plugin supports short-range key agreement.
 	 */
@@ -27,12 +27,14 @@ public interface RemovableDriveTask extends Runnable {
 
 	class State {
 
-		private final long done, total;
+		private final long done, total, throughput;
 		private final boolean finished, success;
 
-		public State(long done, long total, boolean finished, boolean success) {
+		public State(long done, long total, long throughput, boolean finished,
+				boolean success) {
 			this.done = done;
 			this.total = total;
+			this.throughput = throughput;
 			this.finished = finished;
 			this.success = success;
 		}
@@ -54,6 +56,15 @@ public interface RemovableDriveTask extends Runnable {
 			return total;
 		}
 
+		/**
+		 * Returns the mean number of bytes of messages read or written per
+		 * second since the task started, or zero if no messages have been
+		 * read or written.
+		 */
+		public long getThroughput() {
+			return throughput;
+		}
+
 		public boolean isFinished() {
 			return finished;
 		}
@@ -35,5 +35,16 @@ public interface RecordReader {
 	Record readRecord(Predicate<Record> accept, Predicate<Record> ignore)
 			throws IOException;
 
+	/**
+	 * Tells the reader that the caller has finished with the given record,
+	 * which must have been returned by this reader, so the record's payload
+	 * buffer can be reused for a later record. Neither the record nor its
+	 * payload may be used after calling this method.
+	 * <p/>
+	 * Callers that keep a reference to the payload, or don't know whether
+	 * they do, shouldn't call this method.
+	 */
+	void releaseRecord(Record r);
+
 	void close() throws IOException;
 }
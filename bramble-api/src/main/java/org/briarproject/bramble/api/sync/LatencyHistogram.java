@@ -0,0 +1,128 @@
+package org.briarproject.bramble.api.sync;
+
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A histogram of durations in milliseconds, with buckets whose upper bounds
+ * increase by powers of ten.
+ */
+@Immutable
+@NotNullByDefault
+public class LatencyHistogram {
+
+	/**
+	 * The number of buckets. Durations up to 10 ms are counted in the first
+	 * bucket, up to 100 ms in the second, and so on. Durations longer than
+	 * the upper bound of the second-to-last bucket are counted in the last
+	 * bucket.
+	 */
+	public static final int BUCKETS = 6;
+
+	public static final LatencyHistogram EMPTY =
+			new LatencyHistogram(new long[BUCKETS], 0, 0);
+
+	private final long[] counts;
+	private final long total, max;
+
+	/**
+	 * @param counts The number of durations in each bucket
+	 * @param total The sum of all the durations
+	 * @param max The longest duration
+	 */
+	public LatencyHistogram(long[] counts, long total, long max) {
+		if (counts.length != BUCKETS) throw new IllegalArgumentException();
+		this.counts = counts.clone();
+		this.total = total;
+		this.max = max;
+	}
+
+	/**
+	 * Returns the inclusive upper bound of the given bucket in milliseconds,
+	 * or {@link Long#MAX_VALUE} for the last bucket.
+	 */
+	public static long getUpperBound(int bucket) {
+		if (bucket < 0 || bucket >= BUCKETS)
+			throw new IllegalArgumentException();
+		if (bucket == BUCKETS - 1) return Long.MAX_VALUE;
+		long bound = 10;
+		for (int i = 0; i < bucket; i++) bound *= 10;
+		return bound;
+	}
+
+	/**
+	 * Returns the index of the bucket that counts the given duration.
+	 */
+	public static int getBucket(long duration) {
+		for (int i = 0; i < BUCKETS - 1; i++) {
+			if (duration <= getUpperBound(i)) return i;
+		}
+		return BUCKETS - 1;
+	}
+
+	/**
+	 * Returns the number of durations in the given bucket.
+	 */
+	public long getCount(int bucket) {
+		return counts[bucket];
+	}
+
+	/**
+	 * Returns the number of durations in all buckets.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (long c : counts) count += c;
+		return count;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns the mean duration, or 0 if the histogram is empty.
+	 */
+	public long getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : total / count;
+	}
+
+	/**
+	 * Returns an upper bound on the given percentile of the durations: the
+	 * upper bound of the bucket that contains the percentile, or the longest
+	 * duration if that's smaller. Returns 0 if the histogram is empty.
+	 *
+	 * @param percentile A number between 0 and 100 inclusive
+	 */
+	public long getPercentile(int percentile) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException();
+		long count = getCount();
+		if (count == 0) return 0;
+		// The 1-based rank of the duration at the percentile, rounded up
+		long rank = Math.max(1, (count * percentile + 99) / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS - 1; i++) {
+			seen += counts[i];
+			if (seen >= rank) return Math.min(getUpperBound(i), max);
+		}
+		return max;
+	}
+
+	/**
+	 * Returns a histogram containing the durations in this histogram and the
+	 * given histogram.
+	 */
+	public LatencyHistogram add(LatencyHistogram h) {
+		long[] sum = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) sum[i] = counts[i] + h.counts[i];
+		return new LatencyHistogram(sum, total + h.total,
+				Math.max(max, h.max));
+	}
+}
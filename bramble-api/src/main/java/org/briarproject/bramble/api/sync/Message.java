@@ -2,6 +2,7 @@ package org.briarproject.bramble.api.sync;
 
 import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_BODY_LENGTH;
@@ -20,15 +21,30 @@ public class Message {
 	private final GroupId groupId;
 	private final long timestamp;
 	private final byte[] body;
+	@Nullable
+	private final byte[] raw;
 
 	public Message(MessageId id, GroupId groupId, long timestamp, byte[] body) {
+		this(id, groupId, timestamp, body, null);
+	}
+
+	/**
+	 * Creates a message that keeps a reference to its raw form, so the raw
+	 * message can be stored or sent without being reassembled. The caller
+	 * must not modify the raw message after passing it to this constructor.
+	 */
+	public Message(MessageId id, GroupId groupId, long timestamp, byte[] body,
+			@Nullable byte[] raw) {
 		if (body.length == 0) throw new IllegalArgumentException();
 		if (body.length > MAX_MESSAGE_BODY_LENGTH)
 			throw new IllegalArgumentException();
+		if (raw != null && raw.length != MESSAGE_HEADER_LENGTH + body.length)
+			throw new IllegalArgumentException();
 		this.id = id;
 		this.groupId = groupId;
 		this.timestamp = timestamp;
 		this.body = body;
+		this.raw = raw;
 	}
 
 	/**
@@ -66,6 +82,16 @@ public class Message {
 		return body;
 	}
 
+	/**
+	 * Returns the raw message if the message was created from its raw form,
+	 * or null otherwise. Use {@link MessageFactory#getRawMessage(Message)} to
+	 * get the raw message in either case.
+	 */
+	@Nullable
+	public byte[] getRaw() {
+		return raw;
+	}
+
 	@Override
 	public int hashCode() {
 		return id.hashCode();
@@ -7,7 +7,15 @@ public interface MessageFactory {
 
 	Message createMessage(GroupId g, long timestamp, byte[] body);
 
+	/**
+	 * Creates a message from its raw form. The returned message keeps a
+	 * reference to the raw message, which must not be modified afterwards.
+	 */
 	Message createMessage(byte[] raw);
 
+	/**
+	 * Returns the raw form of the given message. The returned array may be
+	 * shared with the message and must not be modified.
+	 */
 	byte[] getRawMessage(Message m);
 }
@@ -15,4 +15,10 @@ public interface SyncSession {
 	 * the next opportunity.
 	 */
 	void interrupt();
+
+	/**
+	 * Returns a snapshot of the session's statistics. This method may be
+	 * called from any thread while the session is running.
+	 */
+	SyncSessionStats getStats();
 }
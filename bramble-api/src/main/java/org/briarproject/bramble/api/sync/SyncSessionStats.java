@@ -0,0 +1,94 @@
+package org.briarproject.bramble.api.sync;
+
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A snapshot of the statistics of one or more {@link SyncSession sync
+ * sessions}.
+ */
+@Immutable
+@NotNullByDefault
+public class SyncSessionStats {
+
+	public static final SyncSessionStats EMPTY = new SyncSessionStats(0, 0,
+			0, 0, 0, LatencyHistogram.EMPTY, LatencyHistogram.EMPTY);
+
+	private final long messagesSent, bytesSent;
+	private final long messagesReceived, bytesReceived;
+	private final int writeQueueDepth;
+	private final LatencyHistogram dbTime, ackLatency;
+
+	public SyncSessionStats(long messagesSent, long bytesSent,
+			long messagesReceived, long bytesReceived, int writeQueueDepth,
+			LatencyHistogram dbTime, LatencyHistogram ackLatency) {
+		this.messagesSent = messagesSent;
+		this.bytesSent = bytesSent;
+		this.messagesReceived = messagesReceived;
+		this.bytesReceived = bytesReceived;
+		this.writeQueueDepth = writeQueueDepth;
+		this.dbTime = dbTime;
+		this.ackLatency = ackLatency;
+	}
+
+	public long getMessagesSent() {
+		return messagesSent;
+	}
+
+	/**
+	 * Returns the number of bytes of message records sent, including record
+	 * headers.
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	public long getMessagesReceived() {
+		return messagesReceived;
+	}
+
+	/**
+	 * Returns the number of bytes of message records received, including
+	 * record headers.
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	/**
+	 * Returns the number of records waiting to be written.
+	 */
+	public int getWriteQueueDepth() {
+		return writeQueueDepth;
+	}
+
+	/**
+	 * Returns the durations of the database transactions that loaded
+	 * messages to send or stored messages that were received.
+	 */
+	public LatencyHistogram getDbTime() {
+		return dbTime;
+	}
+
+	/**
+	 * Returns the durations between receiving messages and sending acks for
+	 * them.
+	 */
+	public LatencyHistogram getAckLatency() {
+		return ackLatency;
+	}
+
+	/**
+	 * Returns the combined statistics of this snapshot and the given
+	 * snapshot.
+	 */
+	public SyncSessionStats add(SyncSessionStats s) {
+		return new SyncSessionStats(messagesSent + s.messagesSent,
+				bytesSent + s.bytesSent,
+				messagesReceived + s.messagesReceived,
+				bytesReceived + s.bytesReceived,
+				writeQueueDepth + s.writeQueueDepth,
+				dbTime.add(s.dbTime), ackLatency.add(s.ackLatency));
+	}
+}
@@ -2,8 +2,10 @@ package org.briarproject.bramble.api.sync.event;
 
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.event.Event;
+import org.briarproject.bramble.api.event.RepeatableEvent;
 import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 /**
@@ -12,7 +14,7 @@ import javax.annotation.concurrent.Immutable;
  */
 @Immutable
 @NotNullByDefault
-public class MessageToAckEvent extends Event {
+public class MessageToAckEvent extends Event implements RepeatableEvent {
 
 	private final ContactId contactId;
 
@@ -23,4 +25,15 @@ public class MessageToAckEvent extends Event {
 	public ContactId getContactId() {
 		return contactId;
 	}
+
+	@Override
+	public boolean equals(@Nullable Object o) {
+		return o instanceof MessageToAckEvent &&
+				contactId.equals(((MessageToAckEvent) o).contactId);
+	}
+
+	@Override
+	public int hashCode() {
+		return contactId.hashCode();
+	}
 }
@@ -0,0 +1,42 @@
+package org.briarproject.bramble.api.sync.event;
+
+import org.briarproject.bramble.api.contact.ContactId;
+import org.briarproject.bramble.api.event.Event;
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+import org.briarproject.bramble.api.plugin.TransportId;
+import org.briarproject.bramble.api.sync.SyncSessionStats;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * An event that is broadcast periodically for each contact and transport
+ * with sync sessions running, containing the combined statistics of the
+ * sessions.
+ */
+@Immutable
+@NotNullByDefault
+public class SyncSessionStatsEvent extends Event {
+
+	private final ContactId contactId;
+	private final TransportId transportId;
+	private final SyncSessionStats stats;
+
+	public SyncSessionStatsEvent(ContactId contactId, TransportId transportId,
+			SyncSessionStats stats) {
+		this.contactId = contactId;
+		this.transportId = transportId;
+		this.stats = stats;
+	}
+
+	public ContactId getContactId() {
+		return contactId;
+	}
+
+	public TransportId getTransportId() {
+		return transportId;
+	}
+
+	public SyncSessionStats getStats() {
+		return stats;
+	}
+}
@@ -0,0 +1,25 @@
+package org.briarproject.bramble.api.system;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import javax.inject.Qualifier;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Annotation for injecting a {@link TaskScheduler} for large numbers of
+ * coarse-grained deadlines, such as message cleanup deadlines.
+ * <p>
+ * The contract of this scheduler is that scheduling and cancelling a task
+ * take constant time, and tasks may run up to a second later than their
+ * deadlines.
+ */
+@Qualifier
+@Target({FIELD, METHOD, PARAMETER})
+@Retention(RUNTIME)
+public @interface CoarseScheduler {
+}
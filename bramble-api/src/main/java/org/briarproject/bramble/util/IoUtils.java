@@ -118,6 +118,20 @@ public class IoUtils {
 		}
 	}
 
+	/**
+	 * Returns the total size in bytes of the given file, or of all files in
+	 * the given directory and its subdirectories.
+	 */
+	public static long getSizeOfFileOrDir(File f) {
+		if (f.isFile()) return f.length();
+		long size = 0;
+		File[] children = f.listFiles();
+		if (children != null) {
+			for (File child : children) size += getSizeOfFileOrDir(child);
+		}
+		return size;
+	}
+
 	public static boolean isNonEmptyDirectory(File f) {
 		if (!f.isDirectory()) return false;
 		File[] children = f.listFiles();
@@ -0,0 +1,129 @@
+package org.briarproject.bramble.api.sync;
+
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.Test;
+
+import static org.briarproject.bramble.api.sync.LatencyHistogram.BUCKETS;
+import static org.briarproject.bramble.api.sync.LatencyHistogram.EMPTY;
+import static org.briarproject.bramble.api.sync.LatencyHistogram.getBucket;
+import static org.briarproject.bramble.api.sync.LatencyHistogram.getUpperBound;
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest extends BrambleTestCase {
+
+	@Test
+	public void testBucketBoundaries() {
+		assertEquals(10, getUpperBound(0));
+		assertEquals(100, getUpperBound(1));
+		assertEquals(100_000, getUpperBound(BUCKETS - 2));
+		assertEquals(Long.MAX_VALUE, getUpperBound(BUCKETS - 1));
+
+		// Upper bounds are inclusive
+		assertEquals(0, getBucket(0));
+		assertEquals(0, getBucket(10));
+		assertEquals(1, getBucket(11));
+		assertEquals(1, getBucket(100));
+		assertEquals(2, getBucket(101));
+		assertEquals(BUCKETS - 2, getBucket(100_000));
+		// Longer durations are counted in the last bucket
+		assertEquals(BUCKETS - 1, getBucket(100_001));
+		assertEquals(BUCKETS - 1, getBucket(Long.MAX_VALUE));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeBucketIsRejected() {
+		getUpperBound(-1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBucketAfterLastIsRejected() {
+		getUpperBound(BUCKETS);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongNumberOfBucketsIsRejected() {
+		new LatencyHistogram(new long[BUCKETS + 1], 0, 0);
+	}
+
+	@Test
+	public void testEmptyHistogram() {
+		assertEquals(0, EMPTY.getCount());
+		for (int i = 0; i < BUCKETS; i++) assertEquals(0, EMPTY.getCount(i));
+		assertEquals(0, EMPTY.getTotal());
+		assertEquals(0, EMPTY.getMax());
+		assertEquals(0, EMPTY.getMean());
+		assertEquals(0, EMPTY.getPercentile(0));
+		assertEquals(0, EMPTY.getPercentile(50));
+		assertEquals(0, EMPTY.getPercentile(100));
+
+		// Adding the empty histogram makes no difference
+		LatencyHistogram h = createHistogram(5, 50, 500);
+		LatencyHistogram sum = h.add(EMPTY);
+		assertEquals(h.getCount(), sum.getCount());
+		assertEquals(h.getTotal(), sum.getTotal());
+		assertEquals(h.getMax(), sum.getMax());
+		for (int i = 0; i < BUCKETS; i++)
+			assertEquals(h.getCount(i), sum.getCount(i));
+	}
+
+	@Test
+	public void testPercentiles() {
+		// 90 short durations, 9 medium durations and one very long duration
+		long[] counts = new long[BUCKETS];
+		counts[getBucket(5)] = 90;
+		counts[getBucket(500)] = 9;
+		counts[getBucket(5_000_000)] = 1;
+		LatencyHistogram h = new LatencyHistogram(counts,
+				90 * 5 + 9 * 500 + 5_000_000, 5_000_000);
+		assertEquals(100, h.getCount());
+
+		// Percentiles are reported as the upper bound of their bucket
+		assertEquals(10, h.getPercentile(0));
+		assertEquals(10, h.getPercentile(50));
+		assertEquals(10, h.getPercentile(90));
+		assertEquals(1000, h.getPercentile(91));
+		assertEquals(1000, h.getPercentile(99));
+		// The last bucket has no upper bound, so the maximum is reported
+		assertEquals(5_000_000, h.getPercentile(100));
+	}
+
+	@Test
+	public void testPercentileDoesNotExceedMaximum() {
+		LatencyHistogram h = createHistogram(42);
+		// The bucket's upper bound is 100, but no duration is longer than 42
+		assertEquals(42, h.getPercentile(50));
+		assertEquals(42, h.getPercentile(100));
+	}
+
+	@Test
+	public void testPercentileIsRoundedUp() {
+		// With three durations the median is the second
+		LatencyHistogram h = createHistogram(1, 50, 5000);
+		assertEquals(10, h.getPercentile(33));
+		assertEquals(100, h.getPercentile(34));
+		assertEquals(100, h.getPercentile(50));
+		assertEquals(100, h.getPercentile(66));
+		assertEquals(5000, h.getPercentile(67));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativePercentileIsRejected() {
+		EMPTY.getPercentile(-1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPercentileAbove100IsRejected() {
+		EMPTY.getPercentile(101);
+	}
+
+	private LatencyHistogram createHistogram(long... durations) {
+		long[] counts = new long[BUCKETS];
+		long total = 0, max = 0;
+		for (long d : durations) {
+			counts[getBucket(d)]++;
+			total += d;
+			max = Math.max(max, d);
+		}
+		return new LatencyHistogram(counts, total, max);
+	}
+}
@@ -1,9 +1,11 @@
 package org.briarproject.bramble;
 
 import org.briarproject.bramble.cleanup.CleanupModule;
+import org.briarproject.bramble.connection.ConnectionModule;
 import org.briarproject.bramble.contact.ContactModule;
 import org.briarproject.bramble.crypto.CryptoExecutorModule;
 import org.briarproject.bramble.db.DatabaseExecutorModule;
+import org.briarproject.bramble.db.DatabaseModule;
 import org.briarproject.bramble.identity.IdentityModule;
 import org.briarproject.bramble.lifecycle.LifecycleModule;
 import org.briarproject.bramble.mailbox.MailboxModule;
@@ -19,12 +21,16 @@ public interface BrambleCoreEagerSingletons {
 
 	void inject(CleanupModule.EagerSingletons init);
 
+	void inject(ConnectionModule.EagerSingletons init);
+
 	void inject(ContactModule.EagerSingletons init);
 
 	void inject(CryptoExecutorModule.EagerSingletons init);
 
 	void inject(DatabaseExecutorModule.EagerSingletons init);
 
+	void inject(DatabaseModule.EagerSingletons init);
+
 	void inject(IdentityModule.EagerSingletons init);
 
 	void inject(LifecycleModule.EagerSingletons init);
@@ -49,9 +55,11 @@ public interface BrambleCoreEagerSingletons {
 
 		public static void injectEagerSingletons(BrambleCoreEagerSingletons c) {
 			c.inject(new CleanupModule.EagerSingletons());
+			c.inject(new ConnectionModule.EagerSingletons());
 			c.inject(new ContactModule.EagerSingletons());
 			c.inject(new CryptoExecutorModule.EagerSingletons());
 			c.inject(new DatabaseExecutorModule.EagerSingletons());
+			c.inject(new DatabaseModule.EagerSingletons());
 			c.inject(new IdentityModule.EagerSingletons());
 			c.inject(new LifecycleModule.EagerSingletons());
 			c.inject(new MailboxModule.EagerSingletons());
@@ -0,0 +1,64 @@
+package org.briarproject.bramble;
+
+import org.briarproject.bramble.api.db.Transaction;
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A cache of values calculated from committed database state.
+ * <p/>
+ * A read-write transaction that changes the state behind a key must
+ * {@link #invalidate(Transaction, Object) invalidate} the key before making
+ * the change. The value is then recalculated from the database for the rest
+ * of that transaction, and is only cached again by another transaction, so
+ * changes that are rolled back never reach the cache. Read-write
+ * transactions are exclusive, so a transaction that doesn't change the state
+ * behind a key always sees the committed state.
+ */
+@ThreadSafe
+@NotNullByDefault
+public class TransactionalCache<K, V> {
+
+	private final Map<K, V> values = new ConcurrentHashMap<>();
+	/**
+	 * The transaction, if any, that has invalidated each key and hasn't
+	 * ended yet.
+	 */
+	private final Map<K, Transaction> invalidatedBy =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the cached value for the given key, or null if no value is
+	 * cached.
+	 */
+	@Nullable
+	public V get(K key) {
+		return values.get(key);
+	}
+
+	/**
+	 * Caches the given value, which was calculated in the given transaction,
+	 * unless the transaction has invalidated the key.
+	 */
+	public void put(Transaction txn, K key, V value) {
+		if (invalidatedBy.get(key) == txn) return;
+		values.put(key, value);
+	}
+
+	/**
+	 * Removes the cached value for the given key, whose state is being
+	 * changed by the given read-write transaction. The value won't be cached
+	 * again until the transaction has ended.
+	 */
+	public void invalidate(Transaction txn, K key) {
+		if (invalidatedBy.put(key, txn) != txn) {
+			txn.attachEndTask(() -> invalidatedBy.remove(key, txn));
+		}
+		values.remove(key);
+	}
+}
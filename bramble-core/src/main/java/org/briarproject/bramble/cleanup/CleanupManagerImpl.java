@@ -1,5 +1,6 @@
 package org.briarproject.bramble.cleanup;
 
+import org.briarproject.bramble.api.Cancellable;
 import org.briarproject.bramble.api.cleanup.CleanupHook;
 import org.briarproject.bramble.api.cleanup.CleanupManager;
 import org.briarproject.bramble.api.cleanup.event.CleanupTimerStartedEvent;
@@ -8,7 +9,7 @@ import org.briarproject.bramble.api.db.DatabaseExecutor;
 import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.db.Transaction;
 import org.briarproject.bramble.api.event.Event;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.lifecycle.Service;
 import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 import org.briarproject.bramble.api.sync.ClientId;
@@ -16,37 +17,58 @@ import org.briarproject.bramble.api.sync.Group;
 import org.briarproject.bramble.api.sync.GroupId;
 import org.briarproject.bramble.api.sync.MessageId;
 import org.briarproject.bramble.api.system.Clock;
+import org.briarproject.bramble.api.system.CoarseScheduler;
 import org.briarproject.bramble.api.system.TaskScheduler;
 import org.briarproject.bramble.api.versioning.ClientMajorVersion;
 
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
 import static java.lang.Math.max;
+import static java.util.Collections.singletonList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.api.db.DatabaseComponent.NO_CLEANUP_DEADLINE;
+import static org.briarproject.bramble.util.LogUtils.logDuration;
 import static org.briarproject.bramble.util.LogUtils.logException;
+import static org.briarproject.bramble.util.LogUtils.now;
 
 @ThreadSafe
 @NotNullByDefault
-class CleanupManagerImpl implements CleanupManager, Service, EventListener {
+class CleanupManagerImpl
+		implements CleanupManager, Service, SelectiveEventListener {
 
 	private static final Logger LOG =
 			getLogger(CleanupManagerImpl.class.getName());
 
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			singletonList(CleanupTimerStartedEvent.class);
+
+	/**
+	 * The maximum number of messages to delete in each transaction.
+	 */
+	static final int MAX_MESSAGES_PER_TRANSACTION = 100;
+
+	/**
+	 * No more groups are cleaned up in a transaction once it has been running
+	 * for this long, so other tasks don't have to wait long for the lock.
+	 * At least one group is always cleaned up, so each transaction makes
+	 * progress even if finding the due messages takes longer than this.
+	 */
+	static final long MAX_TRANSACTION_TIME_MS = 200;
+
 	private final Executor dbExecutor;
 	private final DatabaseComponent db;
 	private final TaskScheduler taskScheduler;
@@ -55,12 +77,19 @@ class CleanupManagerImpl implements CleanupManager, Service, EventListener {
 			new ConcurrentHashMap<>();
 	private final Object lock = new Object();
 
+	/**
+	 * The task for the earliest cleanup deadline, or null if no task is
+	 * scheduled. Later deadlines are found by querying the database when
+	 * the task runs.
+	 */
 	@GuardedBy("lock")
-	private final Set<CleanupTask> pending = new HashSet<>();
+	@Nullable
+	private CleanupTask pending = null;
 
 	@Inject
 	CleanupManagerImpl(@DatabaseExecutor Executor dbExecutor,
-			DatabaseComponent db, TaskScheduler taskScheduler, Clock clock) {
+			DatabaseComponent db, @CoarseScheduler TaskScheduler taskScheduler,
+			Clock clock) {
 		this.dbExecutor = dbExecutor;
 		this.db = db;
 		this.taskScheduler = taskScheduler;
@@ -82,6 +111,11 @@ class CleanupManagerImpl implements CleanupManager, Service, EventListener {
 	public void stopService() {
 	}
 
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		if (e instanceof CleanupTimerStartedEvent) {
@@ -92,34 +126,60 @@ class CleanupManagerImpl implements CleanupManager, Service, EventListener {
 
 	private void maybeScheduleTask(long deadline) {
 		synchronized (lock) {
-			for (CleanupTask task : pending) {
-				if (task.deadline <= deadline) return;
+			if (pending != null) {
+				if (pending.deadline <= deadline) return;
+				// The pending task is no longer the earliest - replace it
+				Cancellable cancellable = pending.cancellable;
+				if (cancellable != null) cancellable.cancel();
 			}
-			CleanupTask task = new CleanupTask(deadline);
-			pending.add(task);
-			scheduleTask(task);
+			pending = scheduleTask(deadline);
 		}
 	}
 
-	private void scheduleTask(CleanupTask task) {
+	@GuardedBy("lock")
+	private CleanupTask scheduleTask(long deadline) {
 		long now = clock.currentTimeMillis();
-		long delay = max(0, task.deadline - now + BATCH_DELAY_MS);
+		long delay = max(0, deadline - now + BATCH_DELAY_MS);
 		if (LOG.isLoggable(INFO)) {
 			LOG.info("Scheduling cleanup task in " + delay + " ms");
 		}
-		taskScheduler.schedule(() -> deleteMessagesAndScheduleNextTask(task),
-				dbExecutor, delay, MILLISECONDS);
+		CleanupTask task = new CleanupTask(deadline);
+		task.cancellable = taskScheduler.schedule(
+				() -> deleteMessagesAndScheduleNextTask(task), dbExecutor,
+				delay, MILLISECONDS);
+		return task;
 	}
 
 	private void deleteMessagesAndScheduleNextTask(CleanupTask task) {
+		synchronized (lock) {
+			if (pending == task) pending = null;
+		}
+		deleteMessagesAndScheduleNextTask(new CleanupRun(now()));
+	}
+
+	private void deleteMessagesAndScheduleNextTask(CleanupRun run) {
 		try {
-			synchronized (lock) {
-				pending.remove(task);
-			}
 			long deadline = db.transactionWithResult(false, txn -> {
-				deleteMessages(txn);
+				if (run.transactions == 0 && LOG.isLoggable(INFO)) {
+					int backlog = db.countMessagesToDelete(txn);
+					LOG.info(backlog + " messages to delete");
+				}
+				deleteMessages(txn, run);
 				return db.getNextCleanupDeadline(txn);
 			});
+			if (!run.complete) {
+				// Release the lock and let any other queued tasks use the
+				// database before deleting the next chunk
+				dbExecutor.execute(() -> deleteMessagesAndScheduleNextTask(run));
+				return;
+			}
+			if (run.deleted > 0 && LOG.isLoggable(INFO)) {
+				long duration = max(1, now() - run.start);
+				LOG.info("Deleted " + run.deleted + " messages in "
+						+ run.transactions + " transactions, " + duration
+						+ " ms (" + run.deleted * 1000 / duration
+						+ " messages per second)");
+			}
 			if (deadline != NO_CLEANUP_DEADLINE) {
 				maybeScheduleTask(deadline);
 			}
@@ -128,14 +188,22 @@ class CleanupManagerImpl implements CleanupManager, Service, EventListener {
 		}
 	}
 
-	private void deleteMessages(Transaction txn) throws DbException {
-		Map<GroupId, Collection<MessageId>> ids = db.getMessagesToDelete(txn);
+	private void deleteMessages(Transaction txn, CleanupRun run)
+			throws DbException {
+		long start = now();
+		long stopTime = clock.currentTimeMillis() + MAX_TRANSACTION_TIME_MS;
+		Map<GroupId, Collection<MessageId>> ids =
+				db.getMessagesToDelete(txn, MAX_MESSAGES_PER_TRANSACTION);
+		int deleted = 0;
+		// If we hit either limit there may be more messages to delete
+		boolean complete = true;
 		for (Entry<GroupId, Collection<MessageId>> e : ids.entrySet()) {
+			if (deleted > 0 && clock.currentTimeMillis() >= stopTime) {
+				complete = false;
+				break;
+			}
 			GroupId groupId = e.getKey();
 			Collection<MessageId> messageIds = e.getValue();
-			if (LOG.isLoggable(INFO)) {
-				LOG.info(messageIds.size() + " messages to delete");
-			}
 			for (MessageId m : messageIds) db.stopCleanupTimer(txn, m);
 			Group group = db.getGroup(txn, groupId);
 			ClientMajorVersion cv = new ClientMajorVersion(group.getClientId(),
@@ -145,15 +213,42 @@ class CleanupManagerImpl implements CleanupManager, Service, EventListener {
 				throw new IllegalStateException("No cleanup hook for " + cv);
 			}
 			hook.deleteMessages(txn, groupId, messageIds);
+			deleted += messageIds.size();
 		}
+		if (deleted == MAX_MESSAGES_PER_TRANSACTION) complete = false;
+		run.deleted += deleted;
+		run.transactions++;
+		run.complete = complete;
+		logDuration(LOG, "Deleting " + deleted + " messages", start);
 	}
 
 	private static class CleanupTask {
 
 		private final long deadline;
 
+		@Nullable
+		private Cancellable cancellable = null;
+
 		private CleanupTask(long deadline) {
 			this.deadline = deadline;
 		}
 	}
+
+	/**
+	 * Keeps track of a series of transactions that delete the messages
+	 * that were due when a cleanup task ran. The transactions run one at a
+	 * time on the database executor.
+	 */
+	@NotThreadSafe
+	private static class CleanupRun {
+
+		private final long start;
+
+		private int deleted = 0, transactions = 0;
+		private boolean complete = false;
+
+		private CleanupRun(long start) {
+			this.start = start;
+		}
+	}
 }
@@ -52,6 +52,7 @@ import java.util.Map.Entry;
 import javax.annotation.concurrent.Immutable;
 import javax.inject.Inject;
 
+import static java.util.Collections.singletonList;
 import static java.util.Collections.sort;
 import static org.briarproject.bramble.api.client.ContactGroupConstants.GROUP_KEY_CONTACT_ID;
 import static org.briarproject.bramble.api.identity.Author.FORMAT_VERSION;
@@ -172,6 +173,14 @@ class ClientHelperImpl implements ClientHelper {
 		return metadataParser.parse(metadata);
 	}
 
+	@Override
+	public BdfDictionary getGroupMetadataAsDictionary(Transaction txn,
+			GroupId g, Collection<String> keys)
+			throws DbException, FormatException {
+		Metadata metadata = db.getGroupMetadata(txn, g, keys);
+		return metadataParser.parse(metadata);
+	}
+
 	@Override
 	public Collection<MessageId> getMessageIds(Transaction txn, GroupId g,
 			BdfDictionary query) throws DbException, FormatException {
@@ -229,6 +238,18 @@ class ClientHelperImpl implements ClientHelper {
 		return parsed;
 	}
 
+	@Override
+	public Map<MessageId, BdfDictionary> getMessageMetadataAsDictionary(
+			Transaction txn, GroupId g, long minTimestamp, long maxTimestamp)
+			throws DbException, FormatException {
+		Map<MessageId, Metadata> raw =
+				db.getMessageMetadata(txn, g, minTimestamp, maxTimestamp);
+		Map<MessageId, BdfDictionary> parsed = new HashMap<>(raw.size());
+		for (Entry<MessageId, Metadata> e : raw.entrySet())
+			parsed.put(e.getKey(), metadataParser.parse(e.getValue()));
+		return parsed;
+	}
+
 	@Override
 	public void mergeGroupMetadata(GroupId g, BdfDictionary metadata)
 			throws DbException, FormatException {
@@ -484,8 +505,8 @@ class ClientHelperImpl implements ClientHelper {
 	public ContactId getContactId(Transaction txn, GroupId contactGroupId)
 			throws DbException {
 		try {
-			BdfDictionary meta =
-					getGroupMetadataAsDictionary(txn, contactGroupId);
+			BdfDictionary meta = getGroupMetadataAsDictionary(txn,
+					contactGroupId, singletonList(GROUP_KEY_CONTACT_ID));
 			return new ContactId(meta.getLong(GROUP_KEY_CONTACT_ID).intValue());
 		} catch (FormatException e) {
 			throw new DbException(e); // Invalid group metadata
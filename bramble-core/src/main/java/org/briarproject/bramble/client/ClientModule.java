@@ -2,6 +2,7 @@ package org.briarproject.bramble.client;
 
 import org.briarproject.bramble.api.client.ClientHelper;
 import org.briarproject.bramble.api.client.ContactGroupFactory;
+import org.briarproject.bramble.api.client.SessionIndex;
 
 import dagger.Module;
 import dagger.Provides;
@@ -20,4 +21,9 @@ public class ClientModule {
 		return contactGroupFactory;
 	}
 
+	@Provides
+	SessionIndex provideSessionIndex(SessionIndexImpl sessionIndex) {
+		return sessionIndex;
+	}
+
 }
@@ -0,0 +1,120 @@
+package org.briarproject.bramble.client;
+
+import org.briarproject.bramble.api.FormatException;
+import org.briarproject.bramble.api.UniqueId;
+import org.briarproject.bramble.api.client.ClientHelper;
+import org.briarproject.bramble.api.client.SessionIndex;
+import org.briarproject.bramble.api.data.BdfDictionary;
+import org.briarproject.bramble.api.data.BdfEntry;
+import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.db.Transaction;
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+import org.briarproject.bramble.api.sync.GroupId;
+import org.briarproject.bramble.api.sync.MessageId;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.inject.Inject;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Logger.getLogger;
+import static org.briarproject.bramble.api.data.BdfDictionary.NULL_VALUE;
+import static org.briarproject.bramble.util.StringUtils.toHexString;
+
+@Immutable
+@NotNullByDefault
+class SessionIndexImpl implements SessionIndex {
+
+	private static final Logger LOG =
+			getLogger(SessionIndexImpl.class.getName());
+
+	/**
+	 * Set once the sessions stored in a group before the index was used
+	 * have been added to the index. The key can't clash with the key of a
+	 * session, which ends with a hex string.
+	 */
+	private static final String GROUP_KEY_INDEXED =
+			GROUP_KEY_SESSION_PREFIX + "indexed";
+
+	private final ClientHelper clientHelper;
+
+	@Inject
+	SessionIndexImpl(ClientHelper clientHelper) {
+		this.clientHelper = clientHelper;
+	}
+
+	@Nullable
+	@Override
+	public MessageId getSessionMessageId(Transaction txn, GroupId g,
+			UniqueId sessionId, BdfDictionary query)
+			throws DbException, FormatException {
+		String key = getKey(sessionId.getBytes());
+		BdfDictionary meta = clientHelper.getGroupMetadataAsDictionary(txn, g,
+				asList(key, GROUP_KEY_INDEXED));
+		byte[] raw = meta.getOptionalRaw(key);
+		if (raw != null) return new MessageId(raw);
+		if (meta.getBoolean(GROUP_KEY_INDEXED, false)) return null;
+		// The session may have been stored before the index was used
+		Collection<MessageId> results =
+				clientHelper.getMessageIds(txn, g, query);
+		if (results.size() > 1) throw new DbException();
+		if (results.isEmpty()) return null;
+		MessageId m = results.iterator().next();
+		if (!txn.isReadOnly()) addSession(txn, g, sessionId, m);
+		return m;
+	}
+
+	@Override
+	public void indexGroup(Transaction txn, GroupId g, BdfDictionary query,
+			String sessionIdKey) throws DbException, FormatException {
+		BdfDictionary meta = clientHelper.getGroupMetadataAsDictionary(txn, g,
+				singletonList(GROUP_KEY_INDEXED));
+		if (meta.getBoolean(GROUP_KEY_INDEXED, false)) return;
+		Map<MessageId, BdfDictionary> sessions =
+				clientHelper.getMessageMetadataAsDictionary(txn, g, query);
+		BdfDictionary merged = new BdfDictionary();
+		for (Entry<MessageId, BdfDictionary> e : sessions.entrySet()) {
+			// Skip storage messages that don't hold a session yet
+			byte[] sessionId = e.getValue().getOptionalRaw(sessionIdKey);
+			if (sessionId != null) merged.put(getKey(sessionId), e.getKey());
+		}
+		merged.put(GROUP_KEY_INDEXED, true);
+		clientHelper.mergeGroupMetadata(txn, g, merged);
+		if (!sessions.isEmpty() && LOG.isLoggable(INFO))
+			LOG.info("Indexed " + sessions.size() + " sessions");
+	}
+
+	@Override
+	public void addSession(Transaction txn, GroupId g, UniqueId sessionId,
+			MessageId m) throws DbException {
+		mergeGroupMetadata(txn, g, BdfDictionary.of(
+				new BdfEntry(getKey(sessionId.getBytes()), m)));
+	}
+
+	@Override
+	public void removeSession(Transaction txn, GroupId g, UniqueId sessionId)
+			throws DbException {
+		mergeGroupMetadata(txn, g, BdfDictionary.of(
+				new BdfEntry(getKey(sessionId.getBytes()), NULL_VALUE)));
+	}
+
+	private void mergeGroupMetadata(Transaction txn, GroupId g,
+			BdfDictionary meta) throws DbException {
+		try {
+			clientHelper.mergeGroupMetadata(txn, g, meta);
+		} catch (FormatException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private String getKey(byte[] sessionId) {
+		return GROUP_KEY_SESSION_PREFIX + toHexString(sessionId);
+	}
+}
@@ -2,7 +2,13 @@ package org.briarproject.bramble.connection;
 
 import org.briarproject.bramble.api.connection.ConnectionManager;
 import org.briarproject.bramble.api.connection.ConnectionRegistry;
+import org.briarproject.bramble.api.lifecycle.IoExecutor;
+import org.briarproject.bramble.api.lifecycle.LifecycleManager;
+import org.briarproject.bramble.api.system.TaskScheduler;
 
+import java.util.concurrent.Executor;
+
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import dagger.Module;
@@ -11,6 +17,11 @@ import dagger.Provides;
 @Module
 public class ConnectionModule {
 
+	public static class EagerSingletons {
+		@Inject
+		SyncSessionStatsReporter syncSessionStatsReporter;
+	}
+
 	@Provides
 	ConnectionManager provideConnectionManager(
 			ConnectionManagerImpl connectionManager) {
@@ -23,4 +34,18 @@ public class ConnectionModule {
 			ConnectionRegistryImpl connectionRegistry) {
 		return connectionRegistry;
 	}
+
+	@Provides
+	@Singleton
+	SyncSessionStatsReporter provideSyncSessionStatsReporter(
+			LifecycleManager lifecycleManager,
+			@IoExecutor Executor ioExecutor,
+			ConnectionRegistry connectionRegistry,
+			TaskScheduler taskScheduler) {
+		SyncSessionStatsReporter syncSessionStatsReporter =
+				new SyncSessionStatsReporter(ioExecutor, connectionRegistry,
+						taskScheduler);
+		lifecycleManager.registerService(syncSessionStatsReporter);
+		return syncSessionStatsReporter;
+	}
 }
@@ -16,11 +16,15 @@ import org.briarproject.bramble.api.plugin.event.ContactDisconnectedEvent;
 import org.briarproject.bramble.api.rendezvous.event.RendezvousConnectionClosedEvent;
 import org.briarproject.bramble.api.rendezvous.event.RendezvousConnectionOpenedEvent;
 import org.briarproject.bramble.api.sync.Priority;
+import org.briarproject.bramble.api.sync.SyncSession;
+import org.briarproject.bramble.api.sync.SyncSessionStats;
+import org.briarproject.bramble.api.sync.event.SyncSessionStatsEvent;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -51,6 +55,8 @@ class ConnectionRegistryImpl implements ConnectionRegistry {
 	private final Map<ContactId, List<ConnectionRecord>> contactConnections;
 	@GuardedBy("lock")
 	private final Set<PendingContactId> connectedPendingContacts;
+	@GuardedBy("lock")
+	private final List<SyncSessionRecord> syncSessions;
 
 	@Inject
 	ConnectionRegistryImpl(EventBus eventBus, PluginConfig pluginConfig) {
@@ -58,6 +64,7 @@ class ConnectionRegistryImpl implements ConnectionRegistry {
 		transportPrefs = pluginConfig.getTransportPreferences();
 		contactConnections = new HashMap<>();
 		connectedPendingContacts = new HashSet<>();
+		syncSessions = new ArrayList<>();
 	}
 
 	@Override
@@ -250,6 +257,71 @@ class ConnectionRegistryImpl implements ConnectionRegistry {
 		eventBus.broadcast(new RendezvousConnectionClosedEvent(p, success));
 	}
 
+	@Override
+	public void registerSyncSession(ContactId c, TransportId t,
+			SyncSession s) {
+		synchronized (lock) {
+			syncSessions.add(new SyncSessionRecord(c, t, s));
+		}
+	}
+
+	@Override
+	public void unregisterSyncSession(ContactId c, TransportId t,
+			SyncSession s) {
+		synchronized (lock) {
+			if (!syncSessions.remove(new SyncSessionRecord(c, t, s)))
+				throw new IllegalArgumentException();
+		}
+	}
+
+	@Nullable
+	@Override
+	public SyncSessionStats getSyncSessionStats(ContactId c, TransportId t) {
+		SyncSessionStats stats = null;
+		for (SyncSessionRecord rec : getSyncSessions()) {
+			if (rec.contactId.equals(c) && rec.transportId.equals(t)) {
+				SyncSessionStats s = rec.session.getStats();
+				stats = stats == null ? s : stats.add(s);
+			}
+		}
+		return stats;
+	}
+
+	@Override
+	public void broadcastSyncSessionStats() {
+		Map<ContactId, Map<TransportId, SyncSessionStats>> stats =
+				new LinkedHashMap<>();
+		for (SyncSessionRecord rec : getSyncSessions()) {
+			Map<TransportId, SyncSessionStats> transportStats =
+					stats.get(rec.contactId);
+			if (transportStats == null) {
+				transportStats = new LinkedHashMap<>();
+				stats.put(rec.contactId, transportStats);
+			}
+			SyncSessionStats s = rec.session.getStats();
+			SyncSessionStats old = transportStats.get(rec.transportId);
+			transportStats.put(rec.transportId, old == null ? s : old.add(s));
+		}
+		for (Entry<ContactId, Map<TransportId, SyncSessionStats>> e :
+				stats.entrySet()) {
+			for (Entry<TransportId, SyncSessionStats> e1 :
+					e.getValue().entrySet()) {
+				eventBus.broadcast(new SyncSessionStatsEvent(e.getKey(),
+						e1.getKey(), e1.getValue()));
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of the sync session records, so the sessions' stats can
+	 * be taken without holding the lock.
+	 */
+	private List<SyncSessionRecord> getSyncSessions() {
+		synchronized (lock) {
+			return new ArrayList<>(syncSessions);
+		}
+	}
+
 	private static class ConnectionRecord {
 
 		private final TransportId transportId;
@@ -280,4 +352,35 @@ class ConnectionRegistryImpl implements ConnectionRegistry {
 			return conn.hashCode();
 		}
 	}
+
+	private static class SyncSessionRecord {
+
+		private final ContactId contactId;
+		private final TransportId transportId;
+		private final SyncSession session;
+
+		private SyncSessionRecord(ContactId contactId, TransportId transportId,
+				SyncSession session) {
+			this.contactId = contactId;
+			this.transportId = transportId;
+			this.session = session;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o instanceof SyncSessionRecord) {
+				SyncSessionRecord rec = (SyncSessionRecord) o;
+				return session == rec.session
+						&& contactId.equals(rec.contactId)
+						&& transportId.equals(rec.transportId);
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return session.hashCode();
+		}
+	}
 }
@@ -71,7 +71,8 @@ class IncomingDuplexSyncConnection extends DuplexSyncConnection
 			PriorityHandler handler = p -> connectionRegistry.setPriority(
 					contactId, transportId, this, p);
 			// Create and run the incoming session
-			createIncomingSession(ctx, reader, handler).run();
+			runSession(contactId, transportId,
+					createIncomingSession(ctx, reader, handler));
 			reader.dispose(false, true);
 			interruptOutgoingSession();
 			connectionRegistry.unregisterConnection(contactId, transportId,
@@ -96,7 +97,7 @@ class IncomingDuplexSyncConnection extends DuplexSyncConnection
 			// Create and run the outgoing session
 			SyncSession out = createDuplexOutgoingSession(ctx, writer, null);
 			setOutgoingSession(out);
-			out.run();
+			runSession(contactId, transportId, out);
 			writer.dispose(false);
 		} catch (IOException e) {
 			logException(LOG, WARNING, e);
@@ -87,7 +87,8 @@ class IncomingSimplexSyncConnection extends SyncConnection implements Runnable {
 			PriorityHandler handler = p ->
 					LOG.info("Ignoring priority for simplex connection");
 			// Create and run the incoming session
-			createIncomingSession(ctx, reader, handler).run();
+			runSession(contactId, transportId,
+					createIncomingSession(ctx, reader, handler));
 			// Success
 			markTagAsRecognisedIfRequired(false, tag);
 			reader.dispose(false, true);
@@ -69,7 +69,7 @@ class OutgoingDuplexSyncConnection extends DuplexSyncConnection
 			SyncSession out =
 					createDuplexOutgoingSession(ctx, writer, priority);
 			setOutgoingSession(out);
-			out.run();
+			runSession(contactId, transportId, out);
 			writer.dispose(false);
 		} catch (IOException e) {
 			logException(LOG, WARNING, e);
@@ -114,7 +114,8 @@ class OutgoingDuplexSyncConnection extends DuplexSyncConnection
 			PriorityHandler handler = p ->
 					LOG.info("Ignoring priority for outgoing connection");
 			// Create and run the incoming session
-			createIncomingSession(ctx, reader, handler).run();
+			runSession(contactId, transportId,
+					createIncomingSession(ctx, reader, handler));
 			reader.dispose(false, true);
 			interruptOutgoingSession();
 			connectionRegistry.unregisterConnection(contactId, transportId,
@@ -61,7 +61,8 @@ class OutgoingSimplexSyncConnection extends SyncConnection implements Runnable {
 		}
 		try {
 			// Create and run the outgoing session
-			createSimplexOutgoingSession(ctx, writer).run();
+			runSession(contactId, transportId,
+					createSimplexOutgoingSession(ctx, writer));
 			writer.dispose(false);
 		} catch (IOException e) {
 			logException(LOG, WARNING, e);
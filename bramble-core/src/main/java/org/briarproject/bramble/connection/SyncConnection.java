@@ -61,4 +61,20 @@ class SyncConnection extends Connection {
 		return syncSessionFactory
 				.createIncomingSession(c, streamReader, handler);
 	}
+
+	/**
+	 * Runs the given session, registering it with the connection registry
+	 * while it's running so its statistics can be queried.
+	 */
+	void runSession(ContactId contactId, TransportId transportId,
+			SyncSession session) throws IOException {
+		connectionRegistry.registerSyncSession(contactId, transportId,
+				session);
+		try {
+			session.run();
+		} finally {
+			connectionRegistry.unregisterSyncSession(contactId, transportId,
+					session);
+		}
+	}
 }
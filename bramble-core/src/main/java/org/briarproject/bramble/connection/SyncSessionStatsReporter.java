@@ -0,0 +1,56 @@
+package org.briarproject.bramble.connection;
+
+import org.briarproject.bramble.api.Cancellable;
+import org.briarproject.bramble.api.connection.ConnectionRegistry;
+import org.briarproject.bramble.api.lifecycle.IoExecutor;
+import org.briarproject.bramble.api.lifecycle.Service;
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+import org.briarproject.bramble.api.sync.event.SyncSessionStatsEvent;
+import org.briarproject.bramble.api.system.TaskScheduler;
+
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Periodically broadcasts a {@link SyncSessionStatsEvent} for each contact
+ * and transport with sync sessions running.
+ */
+@ThreadSafe
+@NotNullByDefault
+class SyncSessionStatsReporter implements Service {
+
+	static final long REPORT_INTERVAL_MS = MINUTES.toMillis(1);
+
+	private final Executor ioExecutor;
+	private final ConnectionRegistry connectionRegistry;
+	private final TaskScheduler taskScheduler;
+
+	@Nullable
+	private volatile Cancellable reportTask = null;
+
+	SyncSessionStatsReporter(@IoExecutor Executor ioExecutor,
+			ConnectionRegistry connectionRegistry,
+			TaskScheduler taskScheduler) {
+		this.ioExecutor = ioExecutor;
+		this.connectionRegistry = connectionRegistry;
+		this.taskScheduler = taskScheduler;
+	}
+
+	@Override
+	public void startService() {
+		reportTask = taskScheduler.scheduleWithFixedDelay(
+				connectionRegistry::broadcastSyncSessionStats, ioExecutor,
+				REPORT_INTERVAL_MS, REPORT_INTERVAL_MS, MILLISECONDS);
+	}
+
+	@Override
+	public void stopService() {
+		Cancellable reportTask = this.reportTask;
+		if (reportTask != null) reportTask.cancel();
+	}
+}
@@ -17,7 +17,7 @@ import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.db.NoSuchContactException;
 import org.briarproject.bramble.api.db.Transaction;
 import org.briarproject.bramble.api.event.Event;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.identity.Author;
 import org.briarproject.bramble.api.identity.AuthorId;
 import org.briarproject.bramble.api.identity.IdentityManager;
@@ -36,13 +36,17 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
+import static java.util.Collections.singletonList;
 import static org.briarproject.bramble.api.contact.PendingContactState.WAITING_FOR_CONNECTION;
 import static org.briarproject.bramble.api.identity.AuthorConstants.MAX_AUTHOR_NAME_LENGTH;
 import static org.briarproject.bramble.util.StringUtils.toUtf8;
 
 @ThreadSafe
 @NotNullByDefault
-class ContactManagerImpl implements ContactManager, EventListener {
+class ContactManagerImpl implements ContactManager, SelectiveEventListener {
+
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			singletonList(PendingContactStateChangedEvent.class);
 
 	private final DatabaseComponent db;
 	private final KeyManager keyManager;
@@ -279,6 +283,11 @@ class ContactManagerImpl implements ContactManager, EventListener {
 		db.removeContact(txn, c);
 	}
 
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		if (e instanceof PendingContactStateChangedEvent) {
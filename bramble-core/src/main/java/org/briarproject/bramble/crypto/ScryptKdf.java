@@ -2,19 +2,36 @@ package org.briarproject.bramble.crypto;
 
 import org.bouncycastle.crypto.generators.SCrypt;
 import org.briarproject.bramble.api.crypto.SecretKey;
+import org.briarproject.bramble.api.db.DatabaseConfig;
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 import org.briarproject.bramble.api.system.Clock;
 import org.briarproject.bramble.util.StringUtils;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
 import static java.lang.Math.min;
 import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
+import static org.briarproject.bramble.util.IoUtils.tryToClose;
 import static org.briarproject.bramble.util.LogUtils.logDuration;
+import static org.briarproject.bramble.util.LogUtils.logException;
 import static org.briarproject.bramble.util.LogUtils.now;
 
+@ThreadSafe
+@NotNullByDefault
 class ScryptKdf implements PasswordBasedKdf {
 
 	private static final Logger LOG =
@@ -24,17 +41,65 @@ class ScryptKdf implements PasswordBasedKdf {
 	private static final int MAX_COST = 1024 * 1024; // Max parameter N
 	private static final int BLOCK_SIZE = 8; // Parameter r
 	private static final int PARALLELIZATION = 1; // Parameter p
-	private static final int TARGET_MS = 1000;
+
+	/**
+	 * The file in the database key directory where the result of calibration
+	 * is stored, so calibration doesn't need to be repeated after restarting.
+	 */
+	private static final String CALIBRATION_FILENAME = "kdf.calibration";
 
 	private final Clock clock;
+	private final long targetMs;
+	@Nullable
+	private final File calibrationFile;
+	private final Object lock = new Object();
+
+	/**
+	 * The cost parameter chosen by calibration, or 0 if calibration hasn't
+	 * been done yet. The result depends only on the device and the target
+	 * duration, so calibration is done at most once unless the target
+	 * changes.
+	 */
+	@GuardedBy("lock")
+	private int calibratedCost = 0;
 
 	@Inject
-	ScryptKdf(Clock clock) {
+	ScryptKdf(Clock clock, DatabaseConfig databaseConfig) {
+		this(clock, databaseConfig.getKdfTargetTime(),
+				new File(databaseConfig.getDatabaseKeyDirectory(),
+						CALIBRATION_FILENAME));
+	}
+
+	/**
+	 * @param targetMs the target duration for deriving a key, in
+	 * milliseconds. Calibration chooses the highest cost parameter that
+	 * takes no longer than this on the current device
+	 * @param calibrationFile the file where the result of calibration is
+	 * stored, or null if it shouldn't be stored
+	 */
+	ScryptKdf(Clock clock, long targetMs, @Nullable File calibrationFile) {
 		this.clock = clock;
+		this.targetMs = targetMs;
+		this.calibrationFile = calibrationFile;
 	}
 
 	@Override
 	public int chooseCostParameter() {
+		synchronized (lock) {
+			if (calibratedCost == 0) calibratedCost = loadCalibration();
+			if (calibratedCost == 0) {
+				long start = now();
+				calibratedCost = calibrate();
+				logDuration(LOG, "Calibrating KDF", start);
+				storeCalibration();
+			} else if (LOG.isLoggable(INFO)) {
+				LOG.info("Using cached KDF cost parameter " + calibratedCost);
+			}
+			return calibratedCost;
+		}
+	}
+
+	private long getMaxCost() {
 		// Scrypt uses at least 128 * N * r bytes of memory. Don't use more
 		// than half of the JVM's max heap size or we may run out of memory.
 		// https://blog.filippo.io/the-scrypt-parameters/
@@ -44,9 +109,70 @@ class ScryptKdf implements PasswordBasedKdf {
 			LOG.info("Max cost capped at " + maxCost
 					+ " due to max heap size " + maxMemory);
 		}
+		return maxCost;
+	}
+
+	/**
+	 * Returns the cost parameter stored by a previous calibration with the
+	 * same target duration, or 0 if there's no usable stored result.
+	 */
+	@GuardedBy("lock")
+	private int loadCalibration() {
+		if (calibrationFile == null || !calibrationFile.exists()) return 0;
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(
+					new FileInputStream(calibrationFile),
+					Charset.forName("UTF-8")));
+			String line = reader.readLine();
+			// Target duration and cost parameter, separated by a space
+			String[] fields = line == null ? new String[0] : line.split(" ");
+			if (fields.length != 2) {
+				LOG.warning("Invalid KDF calibration file");
+				return 0;
+			}
+			if (Long.parseLong(fields[0]) != targetMs) {
+				LOG.info("KDF target has changed, calibrating again");
+				return 0;
+			}
+			int cost = Integer.parseInt(fields[1]);
+			if (cost < MIN_COST || cost > getMaxCost()) {
+				LOG.info("Stored KDF cost parameter out of range");
+				return 0;
+			}
+			return cost;
+		} catch (IOException | NumberFormatException e) {
+			logException(LOG, WARNING, e);
+			return 0;
+		} finally {
+			tryToClose(reader, LOG, WARNING);
+		}
+	}
+
+	@GuardedBy("lock")
+	private void storeCalibration() {
+		if (calibrationFile == null) return;
+		File dir = calibrationFile.getParentFile();
+		if (dir != null && dir.mkdirs()) LOG.info("Created key directory");
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(calibrationFile);
+			String line = targetMs + " " + calibratedCost;
+			out.write(line.getBytes(Charset.forName("UTF-8")));
+			out.flush();
+		} catch (IOException e) {
+			logException(LOG, WARNING, e);
+		} finally {
+			tryToClose(out, LOG, WARNING);
+		}
+	}
+
+	@GuardedBy("lock")
+	private int calibrate() {
+		long maxCost = getMaxCost();
 		// Increase the cost from min to max while measuring performance
 		int cost = MIN_COST;
-		while (cost * 2 <= maxCost && measureDuration(cost) * 2 <= TARGET_MS) {
+		while (cost * 2 <= maxCost && measureDuration(cost) * 2 <= targetMs) {
 			cost *= 2;
 		}
 		if (LOG.isLoggable(INFO))
@@ -75,6 +75,15 @@ interface Database<T> {
 	 */
 	boolean wasDirtyOnInitialisation();
 
+	/**
+	 * Registers a message metadata key whose values match few messages in
+	 * each of the given client's groups, so that queries on those groups
+	 * that include the key can be answered by looking up the messages that
+	 * match the key first.
+	 */
+	void registerSelectiveMetadataKey(ClientId c, int majorVersion,
+			String key);
+
 	/**
 	 * Starts a new transaction and returns an object representing it.
 	 */
@@ -162,6 +171,15 @@ interface Database<T> {
 	KeySetId addTransportKeys(T txn, PendingContactId p, TransportKeys k)
 			throws DbException;
 
+	/**
+	 * Reclaims some of the unused space in the database without closing it,
+	 * rewriting at most approximately the given number of bytes, and returns
+	 * true if any data was rewritten and there may be more space to reclaim.
+	 * Does nothing and returns false if the database can't reclaim space
+	 * without rewriting the whole file.
+	 */
+	boolean compactIncrementally(T txn, int maxBytes) throws DbException;
+
 	/**
 	 * Returns true if there are any acks to send to the given contact.
 	 * <p/>
@@ -334,6 +352,15 @@ interface Database<T> {
 	 */
 	Metadata getGroupMetadata(T txn, GroupId g) throws DbException;
 
+	/**
+	 * Returns the metadata for the given group, restricted to the given keys.
+	 * Keys that are not present in the group's metadata are omitted.
+	 * <p/>
+	 * Read-only.
+	 */
+	Metadata getGroupMetadata(T txn, GroupId g, Collection<String> keys)
+			throws DbException;
+
 	/**
 	 * Returns all groups belonging to the given client.
 	 * <p/>
@@ -423,6 +450,18 @@ interface Database<T> {
 	Collection<MessageId> getMessageIds(T txn, GroupId g, Metadata query)
 			throws DbException;
 
+	/**
+	 * Returns the IDs of up to the given number of delivered messages in the
+	 * given group that have a value for the given metadata key, mapped to
+	 * their values. The messages with the smallest values greater than the
+	 * given value, or the smallest values overall if the given value is null,
+	 * are returned in order of their values.
+	 * <p/>
+	 * Read-only.
+	 */
+	Map<MessageId, byte[]> getMessageIdsInMetadataOrder(T txn, GroupId g,
+			String key, @Nullable byte[] after, int limit) throws DbException;
+
 	/**
 	 * Returns the length of the given message in bytes, including the
 	 * message header.
@@ -447,6 +486,16 @@ interface Database<T> {
 	Map<MessageId, Metadata> getMessageMetadata(T txn, GroupId g,
 			Metadata query) throws DbException;
 
+	/**
+	 * Returns the metadata for any delivered messages in the given group with
+	 * timestamps greater than or equal to minTimestamp and less than
+	 * maxTimestamp.
+	 * <p/>
+	 * Read-only.
+	 */
+	Map<MessageId, Metadata> getMessageMetadata(T txn, GroupId g,
+			long minTimestamp, long maxTimestamp) throws DbException;
+
 	/**
 	 * Returns the metadata for the given delivered or pending message.
 	 * This is only meant to be used by the ValidationManager.
@@ -577,13 +626,21 @@ interface Database<T> {
 	Collection<MessageId> getMessagesToShare(T txn) throws DbException;
 
 	/**
-	 * Returns the IDs of any messages of any messages that are due for
-	 * deletion, along with their group IDs.
+	 * Returns the number of messages that are due for deletion.
 	 * <p/>
 	 * Read-only.
 	 */
-	Map<GroupId, Collection<MessageId>> getMessagesToDelete(T txn)
-			throws DbException;
+	int countMessagesToDelete(T txn) throws DbException;
+
+	/**
+	 * Returns the IDs of up to the given number of messages that are due for
+	 * deletion, along with their group IDs. The messages whose cleanup
+	 * deadlines passed first are returned first.
+	 * <p/>
+	 * Read-only.
+	 */
+	Map<GroupId, Collection<MessageId>> getMessagesToDelete(T txn,
+			int maxMessages) throws DbException;
 
 	/**
 	 * Returns the next time (in milliseconds since the Unix epoch) when a
@@ -641,6 +698,13 @@ interface Database<T> {
 	 */
 	Settings getSettings(T txn, String namespace) throws DbException;
 
+	/**
+	 * Returns the size in bytes of the database's storage.
+	 * <p/>
+	 * Read-only.
+	 */
+	long getStorageSize(T txn) throws DbException;
+
 	/**
 	 * Returns the versions of the sync protocol supported by the given contact.
 	 * <p/>
@@ -0,0 +1,177 @@
+package org.briarproject.bramble.db;
+
+import org.briarproject.bramble.api.Cancellable;
+import org.briarproject.bramble.api.db.DatabaseComponent;
+import org.briarproject.bramble.api.db.DatabaseExecutor;
+import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.lifecycle.Service;
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+import org.briarproject.bramble.api.system.TaskScheduler;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+import static java.util.logging.Logger.getLogger;
+import static org.briarproject.bramble.util.LogUtils.logException;
+import static org.briarproject.bramble.util.LogUtils.now;
+
+/**
+ * Reclaims unused space in the database while the app is running, so the
+ * database file doesn't stay bloated after large numbers of messages are
+ * deleted until it's compacted on shutdown.
+ * <p/>
+ * Compaction only runs when no transactions have run for a while. Each run
+ * holds the database lock while it compacts the database in slices, and
+ * doesn't start a new slice once its time limit has been reached. Each slice
+ * rewrites a bounded number of bytes, so a run can't overshoot its time limit
+ * by more than one slice. Runs that don't rewrite any data cause subsequent
+ * runs to be skipped with exponential backoff.
+ */
+@ThreadSafe
+@NotNullByDefault
+class DatabaseCompactor implements Service {
+
+	private static final Logger LOG =
+			getLogger(DatabaseCompactor.class.getName());
+
+	/**
+	 * How often to check whether the database is idle.
+	 */
+	static final long CHECK_INTERVAL_MS = MINUTES.toMillis(5);
+
+	/**
+	 * How long the database must have been idle before compaction runs.
+	 */
+	static final long MIN_IDLE_TIME_MS = MINUTES.toMillis(1);
+
+	/**
+	 * The approximate maximum number of bytes to rewrite in each slice.
+	 */
+	static final int MAX_BYTES_PER_SLICE = 1024 * 1024;
+
+	/**
+	 * The time after which a run stops starting new slices and releases the
+	 * database lock.
+	 */
+	static final long MAX_TIME_PER_RUN_MS = 100;
+
+	/**
+	 * The maximum number of checks to skip after a run that doesn't rewrite
+	 * any data. The number of checks to skip doubles after each such run.
+	 */
+	static final int MAX_CHECKS_TO_SKIP = 64;
+
+	private final Executor dbExecutor;
+	private final DatabaseComponent db;
+	private final TaskScheduler taskScheduler;
+
+	private final AtomicLong bytesReclaimed = new AtomicLong();
+	private final AtomicLong timeSpent = new AtomicLong();
+
+	@Nullable
+	private volatile Cancellable checkTask = null;
+
+	// Only accessed by compactIfIdle(), which runs on the DB executor
+	private int checksToSkip = 0, backoff = 0;
+
+	DatabaseCompactor(@DatabaseExecutor Executor dbExecutor,
+			DatabaseComponent db, TaskScheduler taskScheduler) {
+		this.dbExecutor = dbExecutor;
+		this.db = db;
+		this.taskScheduler = taskScheduler;
+	}
+
+	@Override
+	public void startService() {
+		checkTask = taskScheduler.scheduleWithFixedDelay(this::compactIfIdle,
+				dbExecutor, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, MILLISECONDS);
+	}
+
+	@Override
+	public void stopService() {
+		Cancellable checkTask = this.checkTask;
+		if (checkTask != null) checkTask.cancel();
+	}
+
+	@DatabaseExecutor
+	void compactIfIdle() {
+		if (checksToSkip > 0) {
+			checksToSkip--;
+			return;
+		}
+		long idle = db.getIdleTime();
+		if (idle < MIN_IDLE_TIME_MS) {
+			if (LOG.isLoggable(FINE)) {
+				LOG.fine("Not compacting, database idle for " + idle + " ms");
+			}
+			return;
+		}
+		try {
+			long start = now();
+			long before = db.transactionWithResult(true, db::getStorageSize);
+			int slices = db.transactionWithResult(false, txn -> {
+				int rewritten = 0;
+				boolean more = true;
+				while (more && now() - start < MAX_TIME_PER_RUN_MS) {
+					more = db.compactIncrementally(txn, MAX_BYTES_PER_SLICE);
+					if (more) rewritten++;
+				}
+				return rewritten;
+			});
+			long duration = now() - start;
+			timeSpent.addAndGet(duration);
+			if (slices == 0) {
+				// Back off until more space may have become reclaimable
+				backoff = min(max(1, backoff * 2), MAX_CHECKS_TO_SKIP);
+				checksToSkip = backoff;
+				if (LOG.isLoggable(FINE)) {
+					LOG.fine("Compaction found nothing to rewrite in "
+							+ duration + " ms");
+				}
+				return;
+			}
+			backoff = 0;
+			// The database may not free the rewritten space until the
+			// compaction transaction has committed, so measure the storage
+			// size in a new transaction
+			long after = db.transactionWithResult(true, db::getStorageSize);
+			long reclaimed = max(0, before - after);
+			bytesReclaimed.addAndGet(reclaimed);
+			if (LOG.isLoggable(INFO)) {
+				LOG.info("Compaction rewrote " + slices + " slices and "
+						+ "reclaimed " + reclaimed + " bytes in " + duration
+						+ " ms, " + bytesReclaimed.get() + " bytes in "
+						+ timeSpent.get() + " ms since startup");
+			}
+		} catch (DbException e) {
+			logException(LOG, WARNING, e);
+		}
+	}
+
+	/**
+	 * Returns the total number of bytes reclaimed by compaction since the
+	 * service started.
+	 */
+	long getBytesReclaimed() {
+		return bytesReclaimed.get();
+	}
+
+	/**
+	 * Returns the total time in milliseconds spent on compaction since the
+	 * service started, including time spent waiting for the database lock.
+	 */
+	long getTimeSpent() {
+		return timeSpent.get();
+	}
+}
@@ -115,6 +115,8 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 			new ReentrantReadWriteLock(true);
 	private final Visitor visitor = new CommitActionVisitor();
 
+	private volatile long lastTransactionEnded = now();
+
 	@Inject
 	DatabaseComponentImpl(Database<T> db, Class<T> txnClass, EventBus eventBus,
 			@EventExecutor Executor eventExecutor,
@@ -146,6 +148,18 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		db.close();
 	}
 
+	@Override
+	public long getIdleTime() {
+		if (lock.isWriteLocked() || lock.getReadLockCount() > 0) return 0;
+		return now() - lastTransactionEnded;
+	}
+
+	@Override
+	public void registerSelectiveMetadataKey(ClientId c, int majorVersion,
+			String key) {
+		db.registerSelectiveMetadataKey(c, majorVersion, key);
+	}
+
 	@Override
 	public Transaction startTransaction(boolean readOnly) throws DbException {
 		// Don't allow reentrant locking
@@ -187,8 +201,13 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 				db.abortTransaction(txn);
 			}
 		} finally {
-			if (transaction.isReadOnly()) lock.readLock().unlock();
-			else lock.writeLock().unlock();
+			try {
+				for (Runnable r : transaction.getEndTasks()) r.run();
+			} finally {
+				lastTransactionEnded = now();
+				if (transaction.isReadOnly()) lock.readLock().unlock();
+				else lock.writeLock().unlock();
+			}
 		}
 	}
 
@@ -346,6 +365,14 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		return db.addTransportKeys(txn, p, k);
 	}
 
+	@Override
+	public boolean compactIncrementally(Transaction transaction, int maxBytes)
+			throws DbException {
+		if (transaction.isReadOnly()) throw new IllegalArgumentException();
+		T txn = unbox(transaction);
+		return db.compactIncrementally(txn, maxBytes);
+	}
+
 	@Override
 	public boolean containsAcksToSend(Transaction transaction, ContactId c)
 			throws DbException {
@@ -573,6 +600,15 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		return db.getGroupMetadata(txn, g);
 	}
 
+	@Override
+	public Metadata getGroupMetadata(Transaction transaction, GroupId g,
+			Collection<String> keys) throws DbException {
+		T txn = unbox(transaction);
+		if (!db.containsGroup(txn, g))
+			throw new NoSuchGroupException();
+		return db.getGroupMetadata(txn, g, keys);
+	}
+
 	@Override
 	public Collection<Group> getGroups(Transaction transaction, ClientId c,
 			int majorVersion) throws DbException {
@@ -632,6 +668,16 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		return db.getMessageIds(txn, g, query);
 	}
 
+	@Override
+	public Map<MessageId, byte[]> getMessageIdsInMetadataOrder(
+			Transaction transaction, GroupId g, String key,
+			@Nullable byte[] after, int limit) throws DbException {
+		T txn = unbox(transaction);
+		if (!db.containsGroup(txn, g))
+			throw new NoSuchGroupException();
+		return db.getMessageIdsInMetadataOrder(txn, g, key, after, limit);
+	}
+
 	@Override
 	public Collection<MessageId> getMessagesToAck(Transaction transaction,
 			ContactId c) throws DbException {
@@ -671,11 +717,18 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		return db.getMessagesToShare(txn);
 	}
 
+	@Override
+	public int countMessagesToDelete(Transaction transaction)
+			throws DbException {
+		T txn = unbox(transaction);
+		return db.countMessagesToDelete(txn);
+	}
+
 	@Override
 	public Map<GroupId, Collection<MessageId>> getMessagesToDelete(
-			Transaction transaction) throws DbException {
+			Transaction transaction, int maxMessages) throws DbException {
 		T txn = unbox(transaction);
-		return db.getMessagesToDelete(txn);
+		return db.getMessagesToDelete(txn, maxMessages);
 	}
 
 	@Override
@@ -696,6 +749,16 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		return db.getMessageMetadata(txn, g, query);
 	}
 
+	@Override
+	public Map<MessageId, Metadata> getMessageMetadata(Transaction transaction,
+			GroupId g, long minTimestamp, long maxTimestamp)
+			throws DbException {
+		T txn = unbox(transaction);
+		if (!db.containsGroup(txn, g))
+			throw new NoSuchGroupException();
+		return db.getMessageMetadata(txn, g, minTimestamp, maxTimestamp);
+	}
+
 	@Override
 	public Metadata getMessageMetadata(Transaction transaction, MessageId m)
 			throws DbException {
@@ -859,6 +922,12 @@ class DatabaseComponentImpl<T> implements DatabaseComponent {
 		return db.getSettings(txn, namespace);
 	}
 
+	@Override
+	public long getStorageSize(Transaction transaction) throws DbException {
+		T txn = unbox(transaction);
+		return db.getStorageSize(txn);
+	}
+
 	@Override
 	public List<Byte> getSyncVersions(Transaction transaction, ContactId c)
 			throws DbException {
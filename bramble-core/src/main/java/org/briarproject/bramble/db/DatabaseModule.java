@@ -2,16 +2,20 @@ package org.briarproject.bramble.db;
 
 import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.DatabaseConfig;
+import org.briarproject.bramble.api.db.DatabaseExecutor;
 import org.briarproject.bramble.api.db.TransactionManager;
 import org.briarproject.bramble.api.event.EventBus;
 import org.briarproject.bramble.api.event.EventExecutor;
+import org.briarproject.bramble.api.lifecycle.LifecycleManager;
 import org.briarproject.bramble.api.lifecycle.ShutdownManager;
 import org.briarproject.bramble.api.sync.MessageFactory;
 import org.briarproject.bramble.api.system.Clock;
+import org.briarproject.bramble.api.system.TaskScheduler;
 
 import java.sql.Connection;
 import java.util.concurrent.Executor;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import dagger.Module;
@@ -20,6 +24,11 @@ import dagger.Provides;
 @Module
 public class DatabaseModule {
 
+	public static class EagerSingletons {
+		@Inject
+		DatabaseCompactor databaseCompactor;
+	}
+
 	@Provides
 	@Singleton
 	Database<Connection> provideDatabase(DatabaseConfig config,
@@ -36,6 +45,18 @@ public class DatabaseModule {
 				eventExecutor, shutdownManager);
 	}
 
+	@Provides
+	@Singleton
+	DatabaseCompactor provideDatabaseCompactor(
+			LifecycleManager lifecycleManager,
+			@DatabaseExecutor Executor dbExecutor, DatabaseComponent db,
+			TaskScheduler taskScheduler) {
+		DatabaseCompactor databaseCompactor =
+				new DatabaseCompactor(dbExecutor, db, taskScheduler);
+		lifecycleManager.registerService(databaseCompactor);
+		return databaseCompactor;
+	}
+
 	@Provides
 	TransactionManager provideTransactionManager(DatabaseComponent db) {
 		return db;
@@ -9,6 +9,10 @@ import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 import org.briarproject.bramble.api.sync.MessageFactory;
 import org.briarproject.bramble.api.system.Clock;
 import org.briarproject.bramble.util.StringUtils;
+import org.h2.engine.Session;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.db.MVTableEngine.Store;
 
 import java.io.File;
 import java.sql.Connection;
@@ -25,7 +29,9 @@ import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.db.JdbcUtils.tryToClose;
+import static org.briarproject.bramble.util.IoUtils.getSizeOfFileOrDir;
 import static org.briarproject.bramble.util.IoUtils.isNonEmptyDirectory;
+import static org.briarproject.bramble.util.LogUtils.logException;
 import static org.briarproject.bramble.util.LogUtils.logFileOrDir;
 
 /**
@@ -44,6 +50,13 @@ class H2Database extends JdbcDatabase {
 	private static final DatabaseTypes dbTypes = new DatabaseTypes(HASH_TYPE,
 			SECRET_TYPE, BINARY_TYPE, COUNTER_TYPE, STRING_TYPE);
 
+	/**
+	 * Chunks that are less full than this percentage are rewritten by
+	 * incremental compaction. This is the rate H2 uses when compacting the
+	 * file during shutdown.
+	 */
+	private static final int TARGET_FILL_RATE = 80;
+
 	private final DatabaseConfig config;
 	private final String url;
 
@@ -101,6 +114,52 @@ class H2Database extends JdbcDatabase {
 		}
 	}
 
+	@Override
+	public boolean compactIncrementally(Connection txn, int maxBytes)
+			throws DbException {
+		MVStore store = getStore(txn);
+		if (store == null) return false;
+		try {
+			// Rewrite the live pages of sparsely filled chunks. The pages are
+			// written to the first free space, so the end of the file is
+			// freed and truncated over successive slices. We don't use
+			// compactMoveChunks() here: it moves at least one whole chunk,
+			// however large, and writes all unsaved changes, so its cost
+			// isn't bounded by maxBytes
+			boolean rewritten = store.compact(TARGET_FILL_RATE, maxBytes);
+			// Chunks are rewritten until the file has no free space left
+			return rewritten && store.getFileStore().getFillRate() < 100;
+		} catch (IllegalStateException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Returns the MVStore behind the given connection, or null if the
+	 * database doesn't use an MVStore or the connection isn't an H2
+	 * connection.
+	 * <p/>
+	 * This uses H2's internal classes, which are tied to the version of H2
+	 * we depend on (1.4.192). If a different version changes them, the casts
+	 * fail and incremental compaction is skipped.
+	 */
+	@Nullable
+	private MVStore getStore(Connection txn) {
+		try {
+			Session session = (Session) ((JdbcConnection) txn).getSession();
+			Store store = session.getDatabase().getMvStore();
+			return store == null ? null : store.getStore();
+		} catch (ClassCastException e) {
+			logException(LOG, WARNING, e);
+			return null;
+		}
+	}
+
+	@Override
+	public long getStorageSize(Connection txn) {
+		return getSizeOfFileOrDir(config.getDatabaseDirectory());
+	}
+
 	@Override
 	protected Connection createConnection() throws DbException, SQLException {
 		SecretKey key = this.key;
@@ -24,6 +24,7 @@ import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.db.JdbcUtils.tryToClose;
+import static org.briarproject.bramble.util.IoUtils.getSizeOfFileOrDir;
 import static org.briarproject.bramble.util.IoUtils.isNonEmptyDirectory;
 
 /**
@@ -93,6 +94,20 @@ class HyperSqlDatabase extends JdbcDatabase {
 		}
 	}
 
+	@Override
+	public boolean compactIncrementally(Connection txn, int maxBytes)
+			throws DbException {
+		// HyperSQL can only defragment the whole database file, which would
+		// hold the database lock for an unbounded time. The space will be
+		// reclaimed when the database is compacted on shutdown
+		return false;
+	}
+
+	@Override
+	public long getStorageSize(Connection txn) {
+		return getSizeOfFileOrDir(config.getDatabaseDirectory());
+	}
+
 	@Override
 	protected Connection createConnection() throws DbException, SQLException {
 		SecretKey key = this.key;
@@ -40,6 +40,7 @@ import org.briarproject.bramble.api.transport.KeySetId;
 import org.briarproject.bramble.api.transport.OutgoingKeys;
 import org.briarproject.bramble.api.transport.TransportKeySet;
 import org.briarproject.bramble.api.transport.TransportKeys;
+import org.briarproject.bramble.api.versioning.ClientMajorVersion;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -51,11 +52,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -101,7 +105,7 @@ import static org.briarproject.bramble.util.LogUtils.now;
 abstract class JdbcDatabase implements Database<Connection> {
 
 	// Package access for testing
-	static final int CODE_SCHEMA_VERSION = 50;
+	static final int CODE_SCHEMA_VERSION = 51;
 
 	/**
 	 * The maximum number of idle connections to keep open.
@@ -333,9 +337,12 @@ abstract class JdbcDatabase implements Database<Connection> {
 			"CREATE INDEX IF NOT EXISTS groupsByClientIdMajorVersion"
 					+ " ON groups (clientId, majorVersion)";
 
-	private static final String INDEX_MESSAGE_METADATA_BY_GROUP_ID_STATE =
-			"CREATE INDEX IF NOT EXISTS messageMetadataByGroupIdState"
-					+ " ON messageMetadata (groupId, state)";
+	// Covers metadata queries: the message ID is part of the primary key.
+	// Also serves queries on (groupId, state), which are a prefix
+	private static final String
+			INDEX_MESSAGE_METADATA_BY_GROUP_ID_STATE_KEY_VALUE =
+			"CREATE INDEX IF NOT EXISTS messageMetadataByGroupIdStateKeyValue"
+					+ " ON messageMetadata (groupId, state, metaKey, value)";
 
 	private static final String INDEX_MESSAGE_DEPENDENCIES_BY_DEPENDENCY_ID =
 			"CREATE INDEX IF NOT EXISTS messageDependenciesByDependencyId"
@@ -354,6 +361,11 @@ abstract class JdbcDatabase implements Database<Connection> {
 			"CREATE INDEX IF NOT EXISTS statusesByContactIdTxCountTimestamp"
 					+ " ON statuses (contactId, txCount, timestamp)";
 
+	// Covers metadata queries for a range of timestamps within a group
+	private static final String INDEX_MESSAGES_BY_GROUP_ID_TIMESTAMP =
+			"CREATE INDEX IF NOT EXISTS messagesByGroupIdTimestamp"
+					+ " ON messages (groupId, timestamp)";
+
 	private static final String INDEX_MESSAGES_BY_CLEANUP_DEADLINE =
 			"CREATE INDEX IF NOT EXISTS messagesByCleanupDeadline"
 					+ " ON messages (cleanupDeadline)";
@@ -378,6 +390,27 @@ abstract class JdbcDatabase implements Database<Connection> {
 
 	private volatile boolean wasDirtyOnInitialisation = false;
 
+	/**
+	 * Message metadata keys whose values match few messages in each group,
+	 * indexed by the client and major version that registered them.
+	 */
+	private final Map<ClientMajorVersion, Set<String>> selectiveMetadataKeys =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * Prepared statements for frequently used fixed SQL strings, cached for
+	 * the lifetime of each connection. Each connection's statements are only
+	 * used by the thread that holds the connection's transaction.
+	 */
+	private final Map<Connection, Map<String, PreparedStatement>>
+			statementCache = new ConcurrentHashMap<>();
+
+	private final AtomicLong statementsPrepared = new AtomicLong();
+	private final AtomicLong statementsReused = new AtomicLong();
+	private final AtomicLong statementPrepareTime = new AtomicLong();
+	private final AtomicLong statementsExecuted = new AtomicLong();
+	private final AtomicLong statementExecutionTime = new AtomicLong();
+
 	protected abstract Connection createConnection()
 			throws DbException, SQLException;
 
@@ -385,6 +418,14 @@ abstract class JdbcDatabase implements Database<Connection> {
 	// migrations or if the database was not shut down cleanly
 	protected abstract void compactAndClose() throws DbException;
 
+	/**
+	 * Returns true if prepared statements for fixed SQL strings should be
+	 * cached for the lifetime of each connection.
+	 */
+	protected boolean useStatementCache() {
+		return true;
+	}
+
 	JdbcDatabase(DatabaseTypes databaseTypes, MessageFactory messageFactory,
 			Clock clock) {
 		this.dbTypes = databaseTypes;
@@ -447,6 +488,15 @@ abstract class JdbcDatabase implements Database<Connection> {
 		return wasDirtyOnInitialisation;
 	}
 
+	@Override
+	public void registerSelectiveMetadataKey(ClientId c, int majorVersion,
+			String key) {
+		selectiveMetadataKeys.computeIfAbsent(
+				new ClientMajorVersion(c, majorVersion),
+				cv -> Collections.newSetFromMap(new ConcurrentHashMap<>()))
+				.add(key);
+	}
+
 	/**
 	 * Compares the schema version stored in the database with the schema
 	 * version used by the current code and applies any suitable migrations to
@@ -499,7 +549,8 @@ abstract class JdbcDatabase implements Database<Connection> {
 				new Migration46_47(dbTypes),
 				new Migration47_48(),
 				new Migration48_49(),
-				new Migration49_50()
+				new Migration49_50(),
+				new Migration50_51()
 		);
 	}
 
@@ -558,11 +609,12 @@ abstract class JdbcDatabase implements Database<Connection> {
 			s = txn.createStatement();
 			s.executeUpdate(INDEX_CONTACTS_BY_AUTHOR_ID);
 			s.executeUpdate(INDEX_GROUPS_BY_CLIENT_ID_MAJOR_VERSION);
-			s.executeUpdate(INDEX_MESSAGE_METADATA_BY_GROUP_ID_STATE);
+			s.executeUpdate(INDEX_MESSAGE_METADATA_BY_GROUP_ID_STATE_KEY_VALUE);
 			s.executeUpdate(INDEX_MESSAGE_DEPENDENCIES_BY_DEPENDENCY_ID);
 			s.executeUpdate(INDEX_STATUSES_BY_CONTACT_ID_GROUP_ID);
 			s.executeUpdate(INDEX_STATUSES_BY_CONTACT_ID_TIMESTAMP);
 			s.executeUpdate(INDEX_STATUSES_BY_CONTACT_ID_TX_COUNT_TIMESTAMP);
+			s.executeUpdate(INDEX_MESSAGES_BY_GROUP_ID_TIMESTAMP);
 			s.executeUpdate(INDEX_MESSAGES_BY_CLEANUP_DEADLINE);
 			s.close();
 		} catch (SQLException e) {
@@ -628,6 +680,7 @@ abstract class JdbcDatabase implements Database<Connection> {
 	}
 
 	private void closeConnection(Connection txn) {
+		statementCache.remove(txn);
 		tryToClose(txn, LOG, WARNING);
 		connectionsLock.lock();
 		try {
@@ -665,7 +718,147 @@ abstract class JdbcDatabase implements Database<Connection> {
 		} finally {
 			connectionsLock.unlock();
 		}
-		if (shouldClose) tryToClose(txn, LOG, WARNING);
+		if (shouldClose) {
+			statementCache.remove(txn);
+			tryToClose(txn, LOG, WARNING);
+		}
+	}
+
+	/**
+	 * Returns a prepared statement for the given SQL string, which must be
+	 * a constant. If the statement cache is enabled, the statement is cached
+	 * for the lifetime of the connection and must be released by calling
+	 * {@link #releaseStatement(PreparedStatement)} rather than being closed.
+	 * Any result set returned by the statement must be closed before the
+	 * statement is released.
+	 */
+	private PreparedStatement prepareCachedStatement(Connection txn,
+			String sql) throws SQLException {
+		if (!useStatementCache()) return prepareStatement(txn, sql);
+		Map<String, PreparedStatement> statements = statementCache.get(txn);
+		if (statements == null) {
+			statements = new HashMap<>();
+			statementCache.put(txn, statements);
+		}
+		PreparedStatement ps = statements.get(sql);
+		// The statement may have been closed after an earlier exception
+		if (ps != null && !ps.isClosed()) {
+			statementsReused.incrementAndGet();
+			ps.clearParameters();
+			return ps;
+		}
+		ps = prepareStatement(txn, sql);
+		statements.put(sql, ps);
+		return ps;
+	}
+
+	private PreparedStatement prepareStatement(Connection txn, String sql)
+			throws SQLException {
+		long start = System.nanoTime();
+		PreparedStatement ps = txn.prepareStatement(sql);
+		statementPrepareTime.addAndGet(System.nanoTime() - start);
+		long prepared = statementsPrepared.incrementAndGet();
+		if (LOG.isLoggable(FINE) && prepared % 1000 == 0) {
+			LOG.fine(prepared + " statements prepared, "
+					+ statementsReused.get() + " reused, mean preparation "
+					+ getMeanStatementPrepareTime() + " us, mean execution "
+					+ getMeanStatementExecutionTime() + " us");
+		}
+		return ps;
+	}
+
+	/**
+	 * Executes a query returned by
+	 * {@link #prepareCachedStatement(Connection, String)}, recording the
+	 * time taken.
+	 */
+	private ResultSet executeQuery(PreparedStatement ps) throws SQLException {
+		long start = System.nanoTime();
+		ResultSet rs = ps.executeQuery();
+		recordExecution(start);
+		return rs;
+	}
+
+	/**
+	 * Executes an update returned by
+	 * {@link #prepareCachedStatement(Connection, String)}, recording the
+	 * time taken.
+	 */
+	private int executeUpdate(PreparedStatement ps) throws SQLException {
+		long start = System.nanoTime();
+		int affected = ps.executeUpdate();
+		recordExecution(start);
+		return affected;
+	}
+
+	/**
+	 * Executes a batch returned by
+	 * {@link #prepareCachedStatement(Connection, String)}, recording the
+	 * time taken.
+	 */
+	private int[] executeBatch(PreparedStatement ps) throws SQLException {
+		long start = System.nanoTime();
+		int[] batchAffected = ps.executeBatch();
+		recordExecution(start);
+		return batchAffected;
+	}
+
+	private void recordExecution(long start) {
+		statementExecutionTime.addAndGet(System.nanoTime() - start);
+		statementsExecuted.incrementAndGet();
+	}
+
+	/**
+	 * Releases a statement returned by
+	 * {@link #prepareCachedStatement(Connection, String)}.
+	 */
+	private void releaseStatement(PreparedStatement ps) throws SQLException {
+		if (!useStatementCache()) ps.close();
+	}
+
+	/**
+	 * Returns the number of statements that have been prepared via the
+	 * statement cache, including statements prepared while the cache is
+	 * disabled.
+	 */
+	long getStatementsPrepared() {
+		return statementsPrepared.get();
+	}
+
+	/**
+	 * Returns the number of times a cached statement has been reused.
+	 */
+	long getStatementsReused() {
+		return statementsReused.get();
+	}
+
+	/**
+	 * Returns the mean time in microseconds taken to prepare a statement
+	 * via the statement cache.
+	 */
+	long getMeanStatementPrepareTime() {
+		long prepared = statementsPrepared.get();
+		if (prepared == 0) return 0;
+		return statementPrepareTime.get() / prepared / 1000;
+	}
+
+	/**
+	 * Returns the number of times a statement returned by the statement
+	 * cache has been executed.
+	 */
+	long getStatementsExecuted() {
+		return statementsExecuted.get();
+	}
+
+	/**
+	 * Returns the mean time in microseconds taken to execute a statement
+	 * returned by the statement cache, not including the time taken to read
+	 * any results.
+	 */
+	long getMeanStatementExecutionTime() {
+		long executed = statementsExecuted.get();
+		if (executed == 0) return 0;
+		return statementExecutionTime.get() / executed / 1000;
 	}
 
 	void closeAllConnections() {
@@ -673,7 +866,10 @@ abstract class JdbcDatabase implements Database<Connection> {
 		connectionsLock.lock();
 		try {
 			closed = true;
-			for (Connection c : connectionPool) tryToClose(c, LOG, WARNING);
+			for (Connection c : connectionPool) {
+				statementCache.remove(c);
+				tryToClose(c, LOG, WARNING);
+			}
 			openConnections -= connectionPool.size();
 			connectionPool.clear();
 			while (openConnections > 0) {
@@ -687,7 +883,10 @@ abstract class JdbcDatabase implements Database<Connection> {
 					LOG.warning("Interrupted while closing connections");
 					interrupted = true;
 				}
-				for (Connection c : connectionPool) tryToClose(c, LOG, WARNING);
+				for (Connection c : connectionPool) {
+					statementCache.remove(c);
+					tryToClose(c, LOG, WARNING);
+				}
 				openConnections -= connectionPool.size();
 				connectionPool.clear();
 			}
@@ -1199,13 +1398,13 @@ abstract class JdbcDatabase implements Database<Connection> {
 		ResultSet rs = null;
 		try {
 			String sql = "SELECT NULL FROM contacts WHERE contactId = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setInt(1, c.getInt());
-			rs = ps.executeQuery();
+			rs = executeQuery(ps);
 			boolean found = rs.next();
 			if (rs.next()) throw new DbStateException();
 			rs.close();
-			ps.close();
+			releaseStatement(ps);
 			return found;
 		} catch (SQLException e) {
 			tryToClose(rs, LOG, WARNING);
@@ -1221,13 +1420,13 @@ abstract class JdbcDatabase implements Database<Connection> {
 		ResultSet rs = null;
 		try {
 			String sql = "SELECT NULL FROM groups WHERE groupId = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setBytes(1, g.getBytes());
-			rs = ps.executeQuery();
+			rs = executeQuery(ps);
 			boolean found = rs.next();
 			if (rs.next()) throw new DbStateException();
 			rs.close();
-			ps.close();
+			releaseStatement(ps);
 			return found;
 		} catch (SQLException e) {
 			tryToClose(rs, LOG, WARNING);
@@ -1265,13 +1464,13 @@ abstract class JdbcDatabase implements Database<Connection> {
 		ResultSet rs = null;
 		try {
 			String sql = "SELECT NULL FROM messages WHERE messageId = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setBytes(1, m.getBytes());
-			rs = ps.executeQuery();
+			rs = executeQuery(ps);
 			boolean found = rs.next();
 			if (rs.next()) throw new DbStateException();
 			rs.close();
-			ps.close();
+			releaseStatement(ps);
 			return found;
 		} catch (SQLException e) {
 			tryToClose(rs, LOG, WARNING);
@@ -1397,14 +1596,14 @@ abstract class JdbcDatabase implements Database<Connection> {
 			String sql = "SELECT NULL FROM statuses"
 					+ " WHERE messageId = ? AND contactId = ?"
 					+ " AND messageShared = TRUE";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setBytes(1, m.getBytes());
 			ps.setInt(2, c.getInt());
-			rs = ps.executeQuery();
+			rs = executeQuery(ps);
 			boolean found = rs.next();
 			if (rs.next()) throw new DbStateException();
 			rs.close();
-			ps.close();
+			releaseStatement(ps);
 			return found;
 		} catch (SQLException e) {
 			tryToClose(rs, LOG, WARNING);
@@ -1740,16 +1939,16 @@ abstract class JdbcDatabase implements Database<Connection> {
 		try {
 			String sql = "SELECT shared FROM groupVisibilities"
 					+ " WHERE contactId = ? AND groupId = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setInt(1, c.getInt());
 			ps.setBytes(2, g.getBytes());
-			rs = ps.executeQuery();
+			rs = executeQuery(ps);
 			Visibility v;
 			if (rs.next()) v = rs.getBoolean(1) ? SHARED : VISIBLE;
 			else v = INVISIBLE;
 			if (rs.next()) throw new DbStateException();
 			rs.close();
-			ps.close();
+			releaseStatement(ps);
 			return v;
 		} catch (SQLException e) {
 			tryToClose(rs, LOG, WARNING);
@@ -1882,7 +2081,7 @@ abstract class JdbcDatabase implements Database<Connection> {
 			if (raw.length <= MESSAGE_HEADER_LENGTH) throw new AssertionError();
 			byte[] body = new byte[raw.length - MESSAGE_HEADER_LENGTH];
 			System.arraycopy(raw, MESSAGE_HEADER_LENGTH, body, 0, body.length);
-			return new Message(m, g, timestamp, body);
+			return new Message(m, g, timestamp, body, raw);
 		} catch (SQLException e) {
 			tryToClose(rs, LOG, WARNING);
 			tryToClose(ps, LOG, WARNING);
@@ -1919,6 +2118,13 @@ abstract class JdbcDatabase implements Database<Connection> {
 			Metadata query) throws DbException {
 		// If there are no query terms, return all delivered messages
 		if (query.isEmpty()) return getMessageIds(txn, g);
+		// If the query has several terms and one of them has a key that the
+		// group's client registered as selective, look up the messages
+		// matching that term and check the other terms
+		if (query.size() > 1 && !selectiveMetadataKeys.isEmpty()) {
+			String key = getSelectiveMetadataKey(txn, g, query);
+			if (key != null) return getMessageIds(txn, g, query, key);
+		}
 		PreparedStatement ps = null;
 		ResultSet rs = null;
 		try {
@@ -1951,6 +2157,116 @@ abstract class JdbcDatabase implements Database<Connection> {
 		}
 	}
 
+	@Override
+	public Map<MessageId, byte[]> getMessageIdsInMetadataOrder(Connection txn,
+			GroupId g, String key, @Nullable byte[] after, int limit)
+			throws DbException {
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			// Uses the index on (groupId, state, metaKey, value)
+			String sql = "SELECT messageId, value FROM messageMetadata"
+					+ " WHERE groupId = ? AND state = ? AND metaKey = ?";
+			if (after != null) sql += " AND value > ?";
+			sql += " ORDER BY value LIMIT ?";
+			ps = txn.prepareStatement(sql);
+			int index = 1;
+			ps.setBytes(index++, g.getBytes());
+			ps.setInt(index++, DELIVERED.getValue());
+			ps.setString(index++, key);
+			if (after != null) ps.setBytes(index++, after);
+			ps.setInt(index, limit);
+			rs = ps.executeQuery();
+			Map<MessageId, byte[]> values = new LinkedHashMap<>();
+			while (rs.next()) {
+				values.put(new MessageId(rs.getBytes(1)), rs.getBytes(2));
+			}
+			rs.close();
+			ps.close();
+			return values;
+		} catch (SQLException e) {
+			tryToClose(rs, LOG, WARNING);
+			tryToClose(ps, LOG, WARNING);
+			throw new DbException(e);
+		}
+	}
+
+	@Nullable
+	private String getSelectiveMetadataKey(Connection txn, GroupId g,
+			Metadata query) throws DbException {
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			String sql = "SELECT clientId, majorVersion FROM groups"
+					+ " WHERE groupId = ?";
+			ps = txn.prepareStatement(sql);
+			ps.setBytes(1, g.getBytes());
+			rs = ps.executeQuery();
+			Set<String> keys = null;
+			if (rs.next()) {
+				ClientMajorVersion cv = new ClientMajorVersion(
+						new ClientId(rs.getString(1)), rs.getInt(2));
+				keys = selectiveMetadataKeys.get(cv);
+			}
+			rs.close();
+			ps.close();
+			if (keys == null) return null;
+			for (String key : query.keySet()) {
+				if (keys.contains(key)) return key;
+			}
+			return null;
+		} catch (SQLException e) {
+			tryToClose(rs, LOG, WARNING);
+			tryToClose(ps, LOG, WARNING);
+			throw new DbException(e);
+		}
+	}
+
+	private Collection<MessageId> getMessageIds(Connection txn, GroupId g,
+			Metadata query, String selectiveKey) throws DbException {
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			// Join the matches for the selective term to the other terms,
+			// which are checked by primary key
+			List<Entry<String, byte[]>> others = new ArrayList<>();
+			StringBuilder sql = new StringBuilder("SELECT m.messageId"
+					+ " FROM messageMetadata AS m");
+			for (Entry<String, byte[]> e : query.entrySet()) {
+				if (e.getKey().equals(selectiveKey)) continue;
+				String alias = "m" + others.size();
+				sql.append(" JOIN messageMetadata AS ").append(alias)
+						.append(" ON ").append(alias)
+						.append(".messageId = m.messageId AND ")
+						.append(alias).append(".metaKey = ? AND ")
+						.append(alias).append(".value = ?");
+				others.add(e);
+			}
+			sql.append(" WHERE m.groupId = ? AND m.state = ?"
+					+ " AND m.metaKey = ? AND m.value = ?");
+			ps = txn.prepareStatement(sql.toString());
+			int index = 1;
+			for (Entry<String, byte[]> e : others) {
+				ps.setString(index++, e.getKey());
+				ps.setBytes(index++, e.getValue());
+			}
+			ps.setBytes(index++, g.getBytes());
+			ps.setInt(index++, DELIVERED.getValue());
+			ps.setString(index++, selectiveKey);
+			ps.setBytes(index, query.get(selectiveKey));
+			rs = ps.executeQuery();
+			List<MessageId> ids = new ArrayList<>();
+			while (rs.next()) ids.add(new MessageId(rs.getBytes(1)));
+			rs.close();
+			ps.close();
+			return ids;
+		} catch (SQLException e) {
+			tryToClose(rs, LOG, WARNING);
+			tryToClose(ps, LOG, WARNING);
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public int getMessageLength(Connection txn, MessageId m)
 			throws DbException {
@@ -2021,6 +2337,45 @@ abstract class JdbcDatabase implements Database<Connection> {
 		return all;
 	}
 
+	@Override
+	public Map<MessageId, Metadata> getMessageMetadata(Connection txn,
+			GroupId g, long minTimestamp, long maxTimestamp)
+			throws DbException {
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			String sql = "SELECT m.messageId, metaKey, value"
+					+ " FROM messages AS m"
+					+ " JOIN messageMetadata AS md"
+					+ " ON m.messageId = md.messageId"
+					+ " WHERE m.groupId = ? AND m.state = ?"
+					+ " AND timestamp >= ? AND timestamp < ?";
+			ps = txn.prepareStatement(sql);
+			ps.setBytes(1, g.getBytes());
+			ps.setInt(2, DELIVERED.getValue());
+			ps.setLong(3, minTimestamp);
+			ps.setLong(4, maxTimestamp);
+			rs = ps.executeQuery();
+			Map<MessageId, Metadata> all = new HashMap<>();
+			while (rs.next()) {
+				MessageId messageId = new MessageId(rs.getBytes(1));
+				Metadata metadata = all.get(messageId);
+				if (metadata == null) {
+					metadata = new Metadata();
+					all.put(messageId, metadata);
+				}
+				metadata.put(rs.getString(2), rs.getBytes(3));
+			}
+			rs.close();
+			ps.close();
+			return all;
+		} catch (SQLException e) {
+			tryToClose(rs, LOG, WARNING);
+			tryToClose(ps, LOG, WARNING);
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public Metadata getGroupMetadata(Connection txn, GroupId g)
 			throws DbException {
@@ -2044,6 +2399,34 @@ abstract class JdbcDatabase implements Database<Connection> {
 		}
 	}
 
+	@Override
+	public Metadata getGroupMetadata(Connection txn, GroupId g,
+			Collection<String> keys) throws DbException {
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			// Look up each key using the primary key index
+			String sql = "SELECT value FROM groupMetadata"
+					+ " WHERE groupId = ? AND metaKey = ?";
+			ps = txn.prepareStatement(sql);
+			ps.setBytes(1, g.getBytes());
+			Metadata metadata = new Metadata();
+			for (String key : keys) {
+				ps.setString(2, key);
+				rs = ps.executeQuery();
+				if (rs.next()) metadata.put(key, rs.getBytes(1));
+				if (rs.next()) throw new DbStateException();
+				rs.close();
+			}
+			ps.close();
+			return metadata;
+		} catch (SQLException e) {
+			tryToClose(rs, LOG, WARNING);
+			tryToClose(ps, LOG, WARNING);
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public Metadata getMessageMetadata(Connection txn, MessageId m)
 			throws DbException {
@@ -2133,11 +2516,11 @@ abstract class JdbcDatabase implements Database<Connection> {
 		try {
 			String sql = "SELECT txCount > 0, seen FROM statuses"
 					+ " WHERE messageId = ? AND contactId = ? AND state = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setBytes(1, m.getBytes());
 			ps.setInt(2, c.getInt());
 			ps.setInt(3, DELIVERED.getValue());
-			rs = ps.executeQuery();
+			rs = executeQuery(ps);
 			MessageStatus status = null;
 			if (rs.next()) {
 				boolean sent = rs.getBoolean(1);
@@ -2146,7 +2529,7 @@ abstract class JdbcDatabase implements Database<Connection> {
 			}
 			if (rs.next()) throw new DbStateException();
 			rs.close();
-			ps.close();
+			releaseStatement(ps);
 			return status;
 		} catch (SQLException e) {
 			tryToClose(rs, LOG, WARNING);
@@ -2223,14 +2606,14 @@ abstract class JdbcDatabase implements Database<Connection> {
 		ResultSet rs = null;
 		try {
 			String sql = "SELECT state FROM messages WHERE messageId = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setBytes(1, m.getBytes());
-			rs = ps.executeQuery();
+			rs = executeQuery(ps);
 			if (!rs.next()) throw new DbStateException();
 			MessageState state = MessageState.fromValue(rs.getInt(1));
 			if (rs.next()) throw new DbStateException();
 			rs.close();
-			ps.close();
+			releaseStatement(ps);
 			return state;
 		} catch (SQLException e) {
 			tryToClose(rs, LOG, WARNING);
@@ -2476,17 +2859,43 @@ abstract class JdbcDatabase implements Database<Connection> {
 		}
 	}
 
+	@Override
+	public int countMessagesToDelete(Connection txn) throws DbException {
+		long now = clock.currentTimeMillis();
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			String sql = "SELECT COUNT (messageId) FROM messages"
+					+ " WHERE cleanupDeadline <= ?";
+			ps = txn.prepareStatement(sql);
+			ps.setLong(1, now);
+			rs = ps.executeQuery();
+			if (!rs.next()) throw new DbStateException();
+			int count = rs.getInt(1);
+			if (rs.next()) throw new DbStateException();
+			rs.close();
+			ps.close();
+			return count;
+		} catch (SQLException e) {
+			tryToClose(rs, LOG, WARNING);
+			tryToClose(ps, LOG, WARNING);
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public Map<GroupId, Collection<MessageId>> getMessagesToDelete(
-			Connection txn) throws DbException {
+			Connection txn, int maxMessages) throws DbException {
 		long now = clock.currentTimeMillis();
 		PreparedStatement ps = null;
 		ResultSet rs = null;
 		try {
 			String sql = "SELECT messageId, groupId FROM messages"
-					+ " WHERE cleanupDeadline <= ?";
+					+ " WHERE cleanupDeadline <= ?"
+					+ " ORDER BY cleanupDeadline LIMIT ?";
 			ps = txn.prepareStatement(sql);
 			ps.setLong(1, now);
+			ps.setInt(2, maxMessages);
 			rs = ps.executeQuery();
 			Map<GroupId, Collection<MessageId>> ids = new HashMap<>();
 			while (rs.next()) {
@@ -2858,20 +3267,20 @@ abstract class JdbcDatabase implements Database<Connection> {
 		try {
 			String sql = "UPDATE statuses SET ack = FALSE"
 					+ " WHERE messageId = ? AND contactId = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setInt(2, c.getInt());
 			for (MessageId m : acked) {
 				ps.setBytes(1, m.getBytes());
 				ps.addBatch();
 			}
-			int[] batchAffected = ps.executeBatch();
+			int[] batchAffected = executeBatch(ps);
 			if (batchAffected.length != acked.size())
 				throw new DbStateException();
 			for (int rows : batchAffected) {
 				if (rows < 0) throw new DbStateException();
 				if (rows > 1) throw new DbStateException();
 			}
-			ps.close();
+			releaseStatement(ps);
 		} catch (SQLException e) {
 			tryToClose(ps, LOG, WARNING);
 			throw new DbException(e);
@@ -2885,20 +3294,20 @@ abstract class JdbcDatabase implements Database<Connection> {
 		try {
 			String sql = "UPDATE statuses SET requested = FALSE"
 					+ " WHERE messageId = ? AND contactId = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setInt(2, c.getInt());
 			for (MessageId m : requested) {
 				ps.setBytes(1, m.getBytes());
 				ps.addBatch();
 			}
-			int[] batchAffected = ps.executeBatch();
+			int[] batchAffected = executeBatch(ps);
 			if (batchAffected.length != requested.size())
 				throw new DbStateException();
 			for (int rows : batchAffected) {
 				if (rows < 0) throw new DbStateException();
 				if (rows > 1) throw new DbStateException();
 			}
-			ps.close();
+			releaseStatement(ps);
 		} catch (SQLException e) {
 			tryToClose(ps, LOG, WARNING);
 			throw new DbException(e);
@@ -3101,12 +3510,12 @@ abstract class JdbcDatabase implements Database<Connection> {
 		try {
 			String sql = "UPDATE statuses SET ack = TRUE"
 					+ " WHERE messageId = ? AND contactId = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setBytes(1, m.getBytes());
 			ps.setInt(2, c.getInt());
-			int affected = ps.executeUpdate();
+			int affected = executeUpdate(ps);
 			if (affected < 0 || affected > 1) throw new DbStateException();
-			ps.close();
+			releaseStatement(ps);
 		} catch (SQLException e) {
 			tryToClose(ps, LOG, WARNING);
 			throw new DbException(e);
@@ -3120,12 +3529,12 @@ abstract class JdbcDatabase implements Database<Connection> {
 		try {
 			String sql = "UPDATE statuses SET requested = TRUE"
 					+ " WHERE messageId = ? AND contactId = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setBytes(1, m.getBytes());
 			ps.setInt(2, c.getInt());
-			int affected = ps.executeUpdate();
+			int affected = executeUpdate(ps);
 			if (affected < 0 || affected > 1) throw new DbStateException();
-			ps.close();
+			releaseStatement(ps);
 		} catch (SQLException e) {
 			tryToClose(ps, LOG, WARNING);
 			throw new DbException(e);
@@ -3139,12 +3548,12 @@ abstract class JdbcDatabase implements Database<Connection> {
 		try {
 			String sql = "UPDATE statuses SET seen = TRUE"
 					+ " WHERE messageId = ? AND contactId = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setBytes(1, m.getBytes());
 			ps.setInt(2, c.getInt());
-			int affected = ps.executeUpdate();
+			int affected = executeUpdate(ps);
 			if (affected < 0 || affected > 1) throw new DbStateException();
-			ps.close();
+			releaseStatement(ps);
 			return affected == 1;
 		} catch (SQLException e) {
 			tryToClose(ps, LOG, WARNING);
@@ -3737,27 +4146,27 @@ abstract class JdbcDatabase implements Database<Connection> {
 		try {
 			String sql = "SELECT txCount FROM statuses"
 					+ " WHERE messageId = ? AND contactId = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			ps.setBytes(1, m.getBytes());
 			ps.setInt(2, c.getInt());
-			rs = ps.executeQuery();
+			rs = executeQuery(ps);
 			if (!rs.next()) throw new DbStateException();
 			int txCount = rs.getInt(1);
 			if (rs.next()) throw new DbStateException();
 			rs.close();
-			ps.close();
+			releaseStatement(ps);
 			sql = "UPDATE statuses"
 					+ " SET expiry = ?, txCount = txCount + 1, maxLatency = ?"
 					+ " WHERE messageId = ? AND contactId = ?";
-			ps = txn.prepareStatement(sql);
+			ps = prepareCachedStatement(txn, sql);
 			long now = clock.currentTimeMillis();
 			ps.setLong(1, calculateExpiry(now, maxLatency, txCount));
 			ps.setLong(2, maxLatency);
 			ps.setBytes(3, m.getBytes());
 			ps.setInt(4, c.getInt());
-			int affected = ps.executeUpdate();
+			int affected = executeUpdate(ps);
 			if (affected != 1) throw new DbStateException();
-			ps.close();
+			releaseStatement(ps);
 		} catch (SQLException e) {
 			tryToClose(rs, LOG, WARNING);
 			tryToClose(ps, LOG, WARNING);
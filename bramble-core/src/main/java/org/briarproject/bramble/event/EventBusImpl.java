@@ -1,45 +1,290 @@
 package org.briarproject.bramble.event;
 
+import org.briarproject.bramble.PoliteExecutor;
+import org.briarproject.bramble.api.event.BackgroundEventListener;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
 import org.briarproject.bramble.api.event.EventExecutor;
 import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.RepeatableEvent;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
+import org.briarproject.bramble.api.lifecycle.IoExecutor;
 import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
+import javax.inject.Provider;
 
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Logger.getLogger;
+import static org.briarproject.bramble.util.LogUtils.now;
+
+/**
+ * Delivers events to listeners on the {@link EventExecutor}, except for
+ * {@link BackgroundEventListener background listeners}, which each have a
+ * lane that delivers events to the listener one at a time on the
+ * {@link IoExecutor}.
+ */
 @ThreadSafe
 @NotNullByDefault
 class EventBusImpl implements EventBus {
 
-	private final Collection<EventListener> listeners =
+	private static final Logger LOG = getLogger(EventBusImpl.class.getName());
+
+	/**
+	 * The delivery statistics are logged each time this many events have
+	 * been delivered.
+	 */
+	static final int STATS_INTERVAL = 1000;
+
+	private final Object lock = new Object();
+	private final Collection<Registration> registrations =
 			new CopyOnWriteArrayList<>();
+	/**
+	 * An index from event types to the registrations of listeners that want
+	 * to receive events of that type. Entries are created when an event of
+	 * the type is first broadcast, and the index is cleared whenever a
+	 * listener is added or removed.
+	 */
+	private final Map<Class<? extends Event>, List<Registration>> index =
+			new ConcurrentHashMap<>();
+	/**
+	 * {@link RepeatableEvent Repeatable} events that have been broadcast but
+	 * not yet delivered.
+	 */
+	private final Set<Event> waiting = ConcurrentHashMap.newKeySet();
 	private final Executor eventExecutor;
+	// The IO executor depends indirectly on the event bus, so it's provided
+	// when a background listener is added
+	private final Provider<Executor> ioExecutorProvider;
+
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final AtomicLong maxQueueDepth = new AtomicLong();
+	private final AtomicInteger laneDepth = new AtomicInteger();
+	private final AtomicLong maxLaneDepth = new AtomicLong();
+	private final AtomicLong eventsDelivered = new AtomicLong();
+	private final AtomicLong eventsCoalesced = new AtomicLong();
+	private final AtomicLong totalLatency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
 
 	@Inject
-	EventBusImpl(@EventExecutor Executor eventExecutor) {
+	EventBusImpl(@EventExecutor Executor eventExecutor,
+			@IoExecutor Provider<Executor> ioExecutorProvider) {
 		this.eventExecutor = eventExecutor;
+		this.ioExecutorProvider = ioExecutorProvider;
 	}
 
 	@Override
 	public void addListener(EventListener l) {
-		listeners.add(l);
+		Collection<Class<? extends Event>> types = null;
+		if (l instanceof SelectiveEventListener) {
+			types = ((SelectiveEventListener) l).getEventTypes();
+		}
+		Executor lane = null;
+		if (l instanceof BackgroundEventListener) {
+			lane = new PoliteExecutor("EventBusLane",
+					ioExecutorProvider.get(), 1);
+		}
+		synchronized (lock) {
+			registrations.add(new Registration(l, types, lane));
+			index.clear();
+		}
 	}
 
 	@Override
 	public void removeListener(EventListener l) {
-		listeners.remove(l);
+		synchronized (lock) {
+			for (Registration r : registrations) {
+				if (r.listener == l) {
+					// Discard any events waiting in the listener's lane
+					r.removed = true;
+					registrations.remove(r);
+					index.clear();
+					break;
+				}
+			}
+		}
 	}
 
 	@Override
 	public void broadcast(Event e) {
+		// If an equal repeatable event is still waiting to be delivered,
+		// listeners will see the state change when that event is delivered
+		if (e instanceof RepeatableEvent && !waiting.add(e)) {
+			eventsCoalesced.incrementAndGet();
+			return;
+		}
+		long broadcast = now();
+		updateMax(maxQueueDepth, queueDepth.incrementAndGet());
 		eventExecutor.execute(() -> {
-			for (EventListener l : listeners) l.eventOccurred(e);
+			queueDepth.decrementAndGet();
+			if (e instanceof RepeatableEvent) waiting.remove(e);
+			long latency = now() - broadcast;
+			long delivered = eventsDelivered.incrementAndGet();
+			totalLatency.addAndGet(latency);
+			updateMax(maxLatency, latency);
+			if (LOG.isLoggable(FINE)) {
+				LOG.fine("Delivering " + e.getClass().getSimpleName()
+						+ " after " + latency + " ms, "
+						+ queueDepth.get() + " events waiting");
+			}
+			if (delivered % STATS_INTERVAL == 0) logStats();
+			for (Registration r : getRegistrations(e.getClass())) {
+				if (r.lane == null) r.listener.eventOccurred(e);
+				else deliverInLane(r, r.lane, e);
+			}
 		});
 	}
+
+	private void deliverInLane(Registration r, Executor lane, Event e) {
+		updateMax(maxLaneDepth, laneDepth.incrementAndGet());
+		lane.execute(() -> {
+			laneDepth.decrementAndGet();
+			if (!r.removed) r.listener.eventOccurred(e);
+		});
+	}
+
+	private void logStats() {
+		if (LOG.isLoggable(INFO)) {
+			LOG.info("Delivered " + getEventsDelivered() + " events, "
+					+ "coalesced " + getEventsCoalesced() + ", "
+					+ "mean dispatch latency " + getMeanDispatchLatency()
+					+ " ms, max " + getMaxDispatchLatency() + " ms, "
+					+ "max queue depth " + getMaxQueueDepth() + ", "
+					+ "max lane depth " + getMaxLaneDepth());
+		}
+	}
+
+	/**
+	 * Returns the number of events that have been broadcast but not yet
+	 * delivered.
+	 */
+	int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	/**
+	 * Returns the maximum number of events that have been waiting to be
+	 * delivered at the same time.
+	 */
+	long getMaxQueueDepth() {
+		return maxQueueDepth.get();
+	}
+
+	/**
+	 * Returns the number of events that have been passed to
+	 * {@link BackgroundEventListener background listeners'} lanes but not yet
+	 * delivered.
+	 */
+	int getLaneDepth() {
+		return laneDepth.get();
+	}
+
+	/**
+	 * Returns the maximum number of events that have been waiting in
+	 * {@link BackgroundEventListener background listeners'} lanes at the same
+	 * time.
+	 */
+	long getMaxLaneDepth() {
+		return maxLaneDepth.get();
+	}
+
+	/**
+	 * Returns the number of events that have been delivered.
+	 */
+	long getEventsDelivered() {
+		return eventsDelivered.get();
+	}
+
+	/**
+	 * Returns the number of events that were discarded because an equal
+	 * {@link RepeatableEvent repeatable} event was waiting to be delivered.
+	 */
+	long getEventsCoalesced() {
+		return eventsCoalesced.get();
+	}
+
+	/**
+	 * Returns the mean time in milliseconds between broadcasting an event
+	 * and starting to deliver it.
+	 */
+	long getMeanDispatchLatency() {
+		long delivered = eventsDelivered.get();
+		return delivered == 0 ? 0 : totalLatency.get() / delivered;
+	}
+
+	/**
+	 * Returns the maximum time in milliseconds between broadcasting an
+	 * event and starting to deliver it.
+	 */
+	long getMaxDispatchLatency() {
+		return maxLatency.get();
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long old = max.get();
+		while (value > old && !max.compareAndSet(old, value)) old = max.get();
+	}
+
+	/**
+	 * Returns the registrations of listeners that want to receive events of
+	 * the given type, in the order the listeners were added.
+	 */
+	private List<Registration> getRegistrations(Class<? extends Event> type) {
+		List<Registration> interested = index.get(type);
+		if (interested != null) return interested;
+		synchronized (lock) {
+			interested = new ArrayList<>();
+			for (Registration r : registrations) {
+				if (r.accepts(type)) interested.add(r);
+			}
+			index.put(type, interested);
+			return interested;
+		}
+	}
+
+	private static class Registration {
+
+		private final EventListener listener;
+		@Nullable
+		private final Collection<Class<? extends Event>> types;
+		/**
+		 * The executor that delivers events to a background listener, or
+		 * null if events are delivered on the event executor.
+		 */
+		@Nullable
+		private final Executor lane;
+
+		private volatile boolean removed = false;
+
+		private Registration(EventListener listener,
+				@Nullable Collection<Class<? extends Event>> types,
+				@Nullable Executor lane) {
+			this.listener = listener;
+			this.types = types;
+			this.lane = lane;
+		}
+
+		private boolean accepts(Class<? extends Event> type) {
+			if (types == null) return true;
+			for (Class<? extends Event> t : types) {
+				if (t.isAssignableFrom(type)) return true;
+			}
+			return false;
+		}
+	}
 }
@@ -107,6 +107,7 @@ class LifecycleManagerImpl implements LifecycleManager, MigrationListener {
 			LOG.warning("Already running");
 			return ALREADY_RUNNING;
 		}
+		long startup = now();
 		long now = clock.currentTimeMillis();
 		if (now < MIN_REASONABLE_TIME_MS || now > MAX_REASONABLE_TIME_MS) {
 			if (LOG.isLoggable(WARNING)) {
@@ -152,6 +153,10 @@ class LifecycleManagerImpl implements LifecycleManager, MigrationListener {
 			state.set(RUNNING);
 			startupLatch.countDown();
 			eventBus.broadcast(new LifecycleEvent(RUNNING));
+			if (LOG.isLoggable(INFO)) {
+				LOG.info("Opening database and starting services took "
+						+ (now() - startup) + " ms");
+			}
 			return SUCCESS;
 		} catch (DataTooOldException e) {
 			logException(LOG, WARNING, e);
@@ -9,7 +9,7 @@ import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.db.TransactionManager;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventExecutor;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.lifecycle.Service;
 import org.briarproject.bramble.api.lifecycle.ServiceException;
 import org.briarproject.bramble.api.mailbox.MailboxProperties;
@@ -30,6 +30,7 @@ import org.briarproject.bramble.api.plugin.PluginManager;
 import org.briarproject.bramble.api.plugin.event.TransportActiveEvent;
 import org.briarproject.bramble.api.plugin.event.TransportInactiveEvent;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +44,7 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
+import static java.util.Arrays.asList;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.api.mailbox.MailboxConstants.CLIENT_SUPPORTS;
@@ -80,11 +82,21 @@ import static org.briarproject.bramble.util.LogUtils.logException;
  */
 @ThreadSafe
 @NotNullByDefault
-class MailboxClientManager implements Service, EventListener {
+class MailboxClientManager implements Service, SelectiveEventListener {
 
 	private static final Logger LOG =
 			getLogger(MailboxClientManager.class.getName());
 
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			asList(TransportActiveEvent.class,
+					TransportInactiveEvent.class,
+					MailboxPairedEvent.class,
+					MailboxUnpairedEvent.class,
+					MailboxUpdateSentToNewContactEvent.class,
+					ContactRemovedEvent.class,
+					RemoteMailboxUpdateEvent.class,
+					OwnMailboxConnectionStatusEvent.class);
+
 	private final Executor eventExecutor, dbExecutor;
 	private final TransactionManager db;
 	private final ContactManager contactManager;
@@ -252,6 +264,11 @@ class MailboxClientManager implements Service, EventListener {
 		}
 	}
 
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		if (!handleEvents) return;
@@ -4,7 +4,7 @@ import org.briarproject.bramble.api.connection.ConnectionManager;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.lifecycle.IoExecutor;
 import org.briarproject.bramble.api.lifecycle.LifecycleManager;
 import org.briarproject.bramble.api.mailbox.MailboxDirectory;
@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
@@ -30,6 +31,7 @@ import java.util.logging.Logger;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
+import static java.util.Collections.singletonList;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.api.lifecycle.LifecycleManager.LifecycleState.RUNNING;
@@ -41,11 +43,15 @@ import static org.briarproject.bramble.util.LogUtils.logException;
 
 @ThreadSafe
 @NotNullByDefault
-class MailboxFileManagerImpl implements MailboxFileManager, EventListener {
+class MailboxFileManagerImpl
+		implements MailboxFileManager, SelectiveEventListener {
 
 	private static final Logger LOG =
 			getLogger(MailboxFileManagerImpl.class.getName());
 
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			singletonList(TransportActiveEvent.class);
+
 	// Package access for testing
 	static final String DOWNLOAD_DIR_NAME = "downloads";
 	static final String UPLOAD_DIR_NAME = "uploads";
@@ -152,6 +158,11 @@ class MailboxFileManagerImpl implements MailboxFileManager, EventListener {
 		return !lifecycleManager.getLifecycleState().isAfter(RUNNING);
 	}
 
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		// Wait for the transport to become active before handling orphaned
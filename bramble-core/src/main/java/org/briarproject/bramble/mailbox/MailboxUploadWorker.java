@@ -8,7 +8,7 @@ import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
 import org.briarproject.bramble.api.event.EventExecutor;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.lifecycle.IoExecutor;
 import org.briarproject.bramble.api.mailbox.MailboxFolderId;
 import org.briarproject.bramble.api.mailbox.MailboxProperties;
@@ -36,6 +36,7 @@ import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 import static java.lang.Boolean.TRUE;
+import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.logging.Level.INFO;
@@ -49,7 +50,7 @@ import static org.briarproject.bramble.util.LogUtils.logException;
 @ThreadSafe
 @NotNullByDefault
 class MailboxUploadWorker implements MailboxWorker, ConnectivityObserver,
-		EventListener {
+		SelectiveEventListener {
 
 	/**
 	 * When the worker is started it checks for data to send. If data is ready
@@ -82,6 +83,13 @@ class MailboxUploadWorker implements MailboxWorker, ConnectivityObserver,
 	private static final Logger LOG =
 			getLogger(MailboxUploadWorker.class.getName());
 
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			asList(MessageToAckEvent.class,
+					MessageSharedEvent.class,
+					GroupVisibilityUpdatedEvent.class,
+					ContactConnectedEvent.class,
+					ContactDisconnectedEvent.class);
+
 	/**
 	 * When we're waiting for data to send and an event indicates that new data
 	 * may have become available, wait this long before checking the DB. This
@@ -375,6 +383,11 @@ class MailboxUploadWorker implements MailboxWorker, ConnectivityObserver,
 		}
 	}
 
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		if (e instanceof MessageToAckEvent) {
@@ -11,7 +11,7 @@ import org.briarproject.bramble.api.db.NoSuchContactException;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
 import org.briarproject.bramble.api.event.EventExecutor;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.lifecycle.IoExecutor;
 import org.briarproject.bramble.api.mailbox.MailboxProperties;
 import org.briarproject.bramble.api.mailbox.MailboxUpdate;
@@ -36,6 +36,7 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import static java.util.Arrays.asList;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
@@ -45,7 +46,7 @@ import static org.briarproject.bramble.util.LogUtils.logException;
 @ThreadSafe
 @NotNullByDefault
 class OwnMailboxContactListWorker
-		implements MailboxWorker, ConnectivityObserver, EventListener {
+		implements MailboxWorker, ConnectivityObserver, SelectiveEventListener {
 
 	/**
 	 * When the worker is started it waits for a connectivity check, then
@@ -73,6 +74,10 @@ class OwnMailboxContactListWorker
 	private static final Logger LOG =
 			getLogger(OwnMailboxContactListWorker.class.getName());
 
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			asList(ContactAddedEvent.class,
+					ContactRemovedEvent.class);
+
 	private final Executor ioExecutor;
 	private final DatabaseComponent db;
 	private final EventBus eventBus;
@@ -308,6 +313,11 @@ class OwnMailboxContactListWorker
 		updateContactList();
 	}
 
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		if (e instanceof ContactAddedEvent) {
@@ -3,7 +3,7 @@ package org.briarproject.bramble.mailbox;
 import org.briarproject.bramble.api.Cancellable;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.lifecycle.IoExecutor;
 import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 import org.briarproject.bramble.api.plugin.Plugin;
@@ -13,6 +13,7 @@ import org.briarproject.bramble.api.plugin.event.TransportInactiveEvent;
 import org.briarproject.bramble.api.system.TaskScheduler;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Executor;
 
@@ -21,6 +22,7 @@ import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
+import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.briarproject.bramble.api.plugin.Plugin.State.ACTIVE;
 import static org.briarproject.bramble.api.plugin.TorConstants.ID;
@@ -28,7 +30,11 @@ import static org.briarproject.bramble.api.plugin.TorConstants.ID;
 @ThreadSafe
 @NotNullByDefault
 class TorReachabilityMonitorImpl
-		implements TorReachabilityMonitor, EventListener {
+		implements TorReachabilityMonitor, SelectiveEventListener {
+
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			asList(TransportActiveEvent.class,
+					TransportInactiveEvent.class);
 
 	private final Executor ioExecutor;
 	private final TaskScheduler taskScheduler;
@@ -95,6 +101,11 @@ class TorReachabilityMonitorImpl
 		}
 	}
 
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		if (e instanceof TransportActiveEvent) {
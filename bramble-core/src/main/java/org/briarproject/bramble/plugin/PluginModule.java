@@ -20,6 +20,8 @@ public class PluginModule {
 		PluginManager pluginManager;
 		@Inject
 		Poller poller;
+		@Inject
+		WarmConnectionPool warmConnectionPool;
 	}
 
 	@Provides
@@ -42,4 +44,16 @@ public class PluginModule {
 		if (config.shouldPoll()) eventBus.addListener(poller);
 		return poller;
 	}
+
+	@Provides
+	@Singleton
+	WarmConnectionPool provideWarmConnectionPool(PluginConfig config,
+			LifecycleManager lifecycleManager, EventBus eventBus,
+			WarmConnectionPoolImpl warmConnectionPool) {
+		if (config.shouldPoll()) {
+			lifecycleManager.registerService(warmConnectionPool);
+			eventBus.addListener(warmConnectionPool);
+		}
+		return warmConnectionPool;
+	}
 }
@@ -6,9 +6,11 @@ import org.briarproject.bramble.api.connection.ConnectionManager;
 import org.briarproject.bramble.api.connection.ConnectionRegistry;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.event.ContactAddedEvent;
+import org.briarproject.bramble.api.contact.event.ContactRemovedEvent;
+import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.event.Event;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.lifecycle.IoExecutor;
 import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 import org.briarproject.bramble.api.plugin.ConnectionHandler;
@@ -34,10 +36,15 @@ import org.briarproject.bramble.api.system.WakefulIoExecutor;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
@@ -46,29 +53,56 @@ import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
+import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.util.LogUtils.logException;
+import static org.briarproject.bramble.util.LogUtils.now;
 
+/**
+ * Polls plugins periodically to connect to any contacts that aren't already
+ * connected.
+ * <p/>
+ * Plugins may limit the number of connection attempts in progress at once,
+ * so each poll puts the most promising contacts first: those with acks or
+ * messages to send, then those we've connected to most recently over the
+ * same transport.
+ */
 @ThreadSafe
 @NotNullByDefault
-class PollerImpl implements Poller, EventListener {
+class PollerImpl implements Poller, SelectiveEventListener {
 
 	private static final Logger LOG = getLogger(PollerImpl.class.getName());
 
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			asList(ContactAddedEvent.class,
+					ContactRemovedEvent.class,
+					ConnectionClosedEvent.class,
+					ConnectionOpenedEvent.class,
+					TransportActiveEvent.class,
+					TransportInactiveEvent.class);
+
 	private final Executor ioExecutor, wakefulIoExecutor;
 	private final TaskScheduler scheduler;
 	private final ConnectionManager connectionManager;
 	private final ConnectionRegistry connectionRegistry;
 	private final PluginManager pluginManager;
 	private final TransportPropertyManager transportPropertyManager;
+	private final DatabaseComponent db;
 	private final SecureRandom random;
 	private final Clock clock;
 	private final Lock lock;
 	@GuardedBy("lock")
 	private final Map<TransportId, ScheduledPollTask> tasks;
+	// The time (from LogUtils#now()) when each contact was last connected
+	// over each transport
+	private final ConcurrentMap<TransportId, ConcurrentMap<ContactId, Long>>
+			lastConnected = new ConcurrentHashMap<>();
+	private final ConcurrentMap<TransportId, ConnectionStats> stats =
+			new ConcurrentHashMap<>();
 
 	@Inject
 	PollerImpl(@IoExecutor Executor ioExecutor,
@@ -78,6 +112,7 @@ class PollerImpl implements Poller, EventListener {
 			ConnectionRegistry connectionRegistry,
 			PluginManager pluginManager,
 			TransportPropertyManager transportPropertyManager,
+			DatabaseComponent db,
 			SecureRandom random,
 			Clock clock) {
 		this.ioExecutor = ioExecutor;
@@ -87,18 +122,28 @@ class PollerImpl implements Poller, EventListener {
 		this.connectionRegistry = connectionRegistry;
 		this.pluginManager = pluginManager;
 		this.transportPropertyManager = transportPropertyManager;
+		this.db = db;
 		this.random = random;
 		this.clock = clock;
 		lock = new ReentrantLock();
 		tasks = new HashMap<>();
 	}
 
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		if (e instanceof ContactAddedEvent) {
 			ContactAddedEvent c = (ContactAddedEvent) e;
 			// Connect to the newly added contact
 			connectToContact(c.getContactId());
+		} else if (e instanceof ContactRemovedEvent) {
+			ContactRemovedEvent c = (ContactRemovedEvent) e;
+			for (ConcurrentMap<ContactId, Long> m : lastConnected.values())
+				m.remove(c.getContactId());
 		} else if (e instanceof ConnectionClosedEvent) {
 			ConnectionClosedEvent c = (ConnectionClosedEvent) e;
 			// Reschedule polling, the polling interval may have decreased
@@ -109,6 +154,8 @@ class PollerImpl implements Poller, EventListener {
 			}
 		} else if (e instanceof ConnectionOpenedEvent) {
 			ConnectionOpenedEvent c = (ConnectionOpenedEvent) e;
+			// Remember that the contact is reachable over this transport
+			getLastConnected(c.getTransportId()).put(c.getContactId(), now());
 			// Reschedule polling, the polling interval may have decreased
 			reschedule(c.getTransportId());
 		} else if (e instanceof TransportActiveEvent) {
@@ -144,9 +191,13 @@ class PollerImpl implements Poller, EventListener {
 			try {
 				TransportProperties props =
 						transportPropertyManager.getRemoteProperties(c, t);
+				long start = now();
+				getStats(t).attempts.incrementAndGet();
 				TransportConnectionWriter w = p.createWriter(props);
-				if (w != null)
+				if (w != null) {
+					connected(t, start);
 					connectionManager.manageOutgoingConnection(c, t, w);
+				}
 			} catch (DbException e) {
 				logException(LOG, WARNING, e);
 			}
@@ -160,9 +211,13 @@ class PollerImpl implements Poller, EventListener {
 			try {
 				TransportProperties props =
 						transportPropertyManager.getRemoteProperties(c, t);
+				long start = now();
+				getStats(t).attempts.incrementAndGet();
 				DuplexTransportConnection d = p.createConnection(props);
-				if (d != null)
+				if (d != null) {
+					connected(t, start);
 					connectionManager.manageOutgoingConnection(c, t, d);
+				}
 			} catch (DbException e) {
 				logException(LOG, WARNING, e);
 			}
@@ -221,19 +276,142 @@ class PollerImpl implements Poller, EventListener {
 					transportPropertyManager.getRemoteProperties(t);
 			Collection<ContactId> connected =
 					connectionRegistry.getConnectedOrBetterContacts(t);
-			Collection<Pair<TransportProperties, ConnectionHandler>>
-					properties = new ArrayList<>();
+			List<Candidate> candidates = new ArrayList<>();
 			for (Entry<ContactId, TransportProperties> e : remote.entrySet()) {
 				ContactId c = e.getKey();
 				if (!connected.contains(c))
-					properties.add(new Pair<>(e.getValue(), new Handler(c, t)));
+					candidates.add(new Candidate(c, e.getValue()));
 			}
-			if (!properties.isEmpty()) p.poll(properties);
+			if (candidates.isEmpty()) return;
+			if (candidates.size() > 1) prioritise(p, candidates);
+			long start = now();
+			Collection<Pair<TransportProperties, ConnectionHandler>>
+					properties = new ArrayList<>(candidates.size());
+			for (Candidate candidate : candidates) {
+				properties.add(new Pair<>(candidate.properties,
+						new Handler(candidate.contactId, t, start)));
+			}
+			getStats(t).attempts.addAndGet(candidates.size());
+			p.poll(properties);
 		} catch (DbException e) {
 			logException(LOG, WARNING, e);
 		}
 	}
 
+	/**
+	 * Sorts the given candidates so that contacts with data to send come
+	 * first, followed by the contacts that were connected most recently.
+	 */
+	@IoExecutor
+	private void prioritise(Plugin p, List<Candidate> candidates)
+			throws DbException {
+		long maxLatency = p.getMaxLatency();
+		db.transaction(true, txn -> {
+			for (Candidate candidate : candidates) {
+				ContactId c = candidate.contactId;
+				candidate.dataToSend = db.containsAcksToSend(txn, c) ||
+						db.containsMessagesToSend(txn, c, maxLatency, false);
+			}
+		});
+		Map<ContactId, Long> times = getLastConnected(p.getId());
+		int dataToSend = 0;
+		for (Candidate candidate : candidates) {
+			if (candidate.dataToSend) dataToSend++;
+			Long time = times.get(candidate.contactId);
+			if (time != null) candidate.lastConnected = time;
+		}
+		Collections.sort(candidates, (a, b) -> {
+			if (a.dataToSend != b.dataToSend) return a.dataToSend ? -1 : 1;
+			return Long.compare(b.lastConnected, a.lastConnected);
+		});
+		if (LOG.isLoggable(INFO)) {
+			LOG.info("Polling " + candidates.size() + " contacts, "
+					+ dataToSend + " with data to send");
+		}
+	}
+
+	private ConcurrentMap<ContactId, Long> getLastConnected(TransportId t) {
+		ConcurrentMap<ContactId, Long> times = lastConnected.get(t);
+		if (times == null) {
+			times = new ConcurrentHashMap<>();
+			ConcurrentMap<ContactId, Long> old =
+					lastConnected.putIfAbsent(t, times);
+			if (old != null) times = old;
+		}
+		return times;
+	}
+
+	private ConnectionStats getStats(TransportId t) {
+		ConnectionStats s = stats.get(t);
+		if (s == null) {
+			s = new ConnectionStats();
+			ConnectionStats old = stats.putIfAbsent(t, s);
+			if (old != null) s = old;
+		}
+		return s;
+	}
+
+	private void connected(TransportId t, long start) {
+		long latency = now() - start;
+		ConnectionStats s = getStats(t);
+		s.successes.incrementAndGet();
+		s.totalLatency.addAndGet(latency);
+		if (LOG.isLoggable(FINE)) {
+			LOG.fine("Connected via " + t + " in " + latency + " ms, "
+					+ s.successes.get() + " of " + s.attempts.get()
+					+ " attempts have succeeded");
+		}
+	}
+
+	/**
+	 * Returns the number of outgoing connection attempts that have been made
+	 * over the given transport.
+	 */
+	long getConnectionAttempts(TransportId t) {
+		return getStats(t).attempts.get();
+	}
+
+	/**
+	 * Returns the number of outgoing connection attempts over the given
+	 * transport that have succeeded.
+	 */
+	long getConnectionSuccesses(TransportId t) {
+		return getStats(t).successes.get();
+	}
+
+	/**
+	 * Returns the mean time in milliseconds taken by successful connection
+	 * attempts over the given transport, or 0 if no attempts have succeeded.
+	 * For attempts made by polling, this includes any time spent waiting for
+	 * earlier attempts to finish.
+	 */
+	long getMeanConnectionLatency(TransportId t) {
+		ConnectionStats s = getStats(t);
+		long successes = s.successes.get();
+		return successes == 0 ? 0 : s.totalLatency.get() / successes;
+	}
+
+	private static class Candidate {
+
+		private final ContactId contactId;
+		private final TransportProperties properties;
+		private boolean dataToSend = false;
+		private long lastConnected = Long.MIN_VALUE;
+
+		private Candidate(ContactId contactId,
+				TransportProperties properties) {
+			this.contactId = contactId;
+			this.properties = properties;
+		}
+	}
+
+	private static class ConnectionStats {
+
+		private final AtomicLong attempts = new AtomicLong();
+		private final AtomicLong successes = new AtomicLong();
+		private final AtomicLong totalLatency = new AtomicLong();
+	}
+
 	private class ScheduledPollTask {
 
 		private final PollTask task;
@@ -282,14 +460,18 @@ class PollerImpl implements Poller, EventListener {
 
 		private final ContactId contactId;
 		private final TransportId transportId;
+		private final long start;
 
-		private Handler(ContactId contactId, TransportId transportId) {
+		private Handler(ContactId contactId, TransportId transportId,
+				long start) {
 			this.contactId = contactId;
 			this.transportId = transportId;
+			this.start = start;
 		}
 
 		@Override
 		public void handleConnection(DuplexTransportConnection c) {
+			connected(transportId, start);
 			connectionManager.manageOutgoingConnection(contactId,
 					transportId, c);
 		}
@@ -302,6 +484,7 @@ class PollerImpl implements Poller, EventListener {
 
 		@Override
 		public void handleWriter(TransportConnectionWriter w) {
+			connected(transportId, start);
 			connectionManager.manageOutgoingConnection(contactId,
 					transportId, w);
 		}
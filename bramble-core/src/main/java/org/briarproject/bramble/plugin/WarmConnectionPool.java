@@ -0,0 +1,7 @@
+package org.briarproject.bramble.plugin;
+
+/**
+ * Empty interface used for injecting the warm connection pool.
+ */
+interface WarmConnectionPool {
+}
@@ -0,0 +1,266 @@
+package org.briarproject.bramble.plugin;
+
+import org.briarproject.bramble.api.connection.ConnectionManager;
+import org.briarproject.bramble.api.connection.ConnectionRegistry;
+import org.briarproject.bramble.api.contact.ContactId;
+import org.briarproject.bramble.api.contact.event.ContactRemovedEvent;
+import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.event.BackgroundEventListener;
+import org.briarproject.bramble.api.event.Event;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
+import org.briarproject.bramble.api.lifecycle.Service;
+import org.briarproject.bramble.api.lifecycle.ServiceException;
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+import org.briarproject.bramble.api.plugin.ConnectionHandler;
+import org.briarproject.bramble.api.plugin.Plugin;
+import org.briarproject.bramble.api.plugin.PluginManager;
+import org.briarproject.bramble.api.plugin.TransportConnectionReader;
+import org.briarproject.bramble.api.plugin.TransportConnectionWriter;
+import org.briarproject.bramble.api.plugin.duplex.DuplexPlugin;
+import org.briarproject.bramble.api.plugin.duplex.DuplexTransportConnection;
+import org.briarproject.bramble.api.plugin.event.ConnectionClosedEvent;
+import org.briarproject.bramble.api.properties.TransportProperties;
+import org.briarproject.bramble.api.properties.TransportPropertyManager;
+import org.briarproject.bramble.api.settings.Settings;
+import org.briarproject.bramble.api.settings.SettingsManager;
+import org.briarproject.bramble.api.settings.event.SettingsUpdatedEvent;
+import org.briarproject.bramble.api.sync.event.MessageAddedEvent;
+import org.briarproject.bramble.api.sync.event.MessagesSentEvent;
+import org.briarproject.bramble.api.system.Clock;
+import org.briarproject.bramble.api.system.WakefulIoExecutor;
+
+import java.util.Collection;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.inject.Inject;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+import static java.util.logging.Logger.getLogger;
+import static org.briarproject.bramble.api.plugin.TorConstants.DEFAULT_PREF_TOR_WARM_CONNECTIONS;
+import static org.briarproject.bramble.api.plugin.TorConstants.ID;
+import static org.briarproject.bramble.api.plugin.TorConstants.PREF_TOR_WARM_CONNECTIONS;
+import static org.briarproject.bramble.util.LogUtils.logException;
+
+/**
+ * If the user has opted in, keeps Tor connections open to a small number of
+ * contacts we've recently exchanged messages with, so that new messages can
+ * be delivered without waiting for the next poll and a new circuit.
+ * <p/>
+ * Idle connections are kept alive by the keepalives that the duplex sync
+ * session sends, so the pool only needs to replace connections to these
+ * contacts when they're closed. Outgoing connections that fail are already
+ * retried by the {@link Poller}, so the pool replaces incoming connections
+ * and outgoing connections that were closed without an error.
+ * <p/>
+ * Reconnections count towards the plugin's limit on concurrent connection
+ * attempts, but they don't affect the plugin's polling interval.
+ */
+@ThreadSafe
+@NotNullByDefault
+class WarmConnectionPoolImpl implements WarmConnectionPool, Service,
+		SelectiveEventListener, BackgroundEventListener {
+
+	private static final Logger LOG =
+			getLogger(WarmConnectionPoolImpl.class.getName());
+
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			asList(SettingsUpdatedEvent.class,
+					MessagesSentEvent.class,
+					MessageAddedEvent.class,
+					ContactRemovedEvent.class,
+					ConnectionClosedEvent.class);
+
+	/**
+	 * The maximum number of contacts to keep connections open to.
+	 */
+	static final int MAX_WARM_CONTACTS = 5;
+
+	/**
+	 * Contacts we haven't exchanged messages with for this long aren't kept
+	 * connected.
+	 */
+	static final long ACTIVITY_WINDOW_MS = MINUTES.toMillis(30);
+
+	/**
+	 * The minimum interval between attempts to reconnect to a contact, so we
+	 * don't keep building circuits to a contact whose connections keep
+	 * closing.
+	 */
+	static final long MIN_RECONNECT_INTERVAL_MS = MINUTES.toMillis(1);
+
+	private final Executor wakefulIoExecutor;
+	private final ConnectionManager connectionManager;
+	private final ConnectionRegistry connectionRegistry;
+	private final PluginManager pluginManager;
+	private final TransportPropertyManager transportPropertyManager;
+	private final SettingsManager settingsManager;
+	private final Clock clock;
+
+	// The time when we last sent or received messages from each contact
+	private final ConcurrentMap<ContactId, Long> lastActivity =
+			new ConcurrentHashMap<>();
+	// The time when we last tried to reconnect to each contact
+	private final ConcurrentMap<ContactId, Long> lastReconnect =
+			new ConcurrentHashMap<>();
+
+	private volatile boolean enabled = DEFAULT_PREF_TOR_WARM_CONNECTIONS;
+
+	@Inject
+	WarmConnectionPoolImpl(@WakefulIoExecutor Executor wakefulIoExecutor,
+			ConnectionManager connectionManager,
+			ConnectionRegistry connectionRegistry,
+			PluginManager pluginManager,
+			TransportPropertyManager transportPropertyManager,
+			SettingsManager settingsManager,
+			Clock clock) {
+		this.wakefulIoExecutor = wakefulIoExecutor;
+		this.connectionManager = connectionManager;
+		this.connectionRegistry = connectionRegistry;
+		this.pluginManager = pluginManager;
+		this.transportPropertyManager = transportPropertyManager;
+		this.settingsManager = settingsManager;
+		this.clock = clock;
+	}
+
+	@Override
+	public void startService() throws ServiceException {
+		try {
+			updateSettings(settingsManager.getSettings(ID.getString()));
+		} catch (DbException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	@Override
+	public void stopService() {
+	}
+
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
+	@Override
+	public void eventOccurred(Event e) {
+		if (e instanceof SettingsUpdatedEvent) {
+			SettingsUpdatedEvent s = (SettingsUpdatedEvent) e;
+			if (s.getNamespace().equals(ID.getString()))
+				updateSettings(s.getSettings());
+		} else if (e instanceof MessagesSentEvent) {
+			MessagesSentEvent m = (MessagesSentEvent) e;
+			lastActivity.put(m.getContactId(), clock.currentTimeMillis());
+		} else if (e instanceof MessageAddedEvent) {
+			MessageAddedEvent m = (MessageAddedEvent) e;
+			// Only messages received from contacts count as activity
+			ContactId c = m.getContactId();
+			if (c != null) lastActivity.put(c, clock.currentTimeMillis());
+		} else if (e instanceof ContactRemovedEvent) {
+			ContactId c = ((ContactRemovedEvent) e).getContactId();
+			lastActivity.remove(c);
+			lastReconnect.remove(c);
+		} else if (e instanceof ConnectionClosedEvent) {
+			ConnectionClosedEvent c = (ConnectionClosedEvent) e;
+			if (enabled && c.getTransportId().equals(ID)
+					&& (c.isIncoming() || !c.isException())) {
+				maybeReconnect(c.getContactId());
+			}
+		}
+	}
+
+	private void updateSettings(Settings s) {
+		enabled = s.getBoolean(PREF_TOR_WARM_CONNECTIONS,
+				DEFAULT_PREF_TOR_WARM_CONNECTIONS);
+		if (LOG.isLoggable(INFO)) {
+			LOG.info("Warm connections " + (enabled ? "enabled" : "disabled"));
+		}
+	}
+
+	/**
+	 * Returns true if the given contact is one of the
+	 * {@link #MAX_WARM_CONTACTS} contacts with the most recent activity
+	 * within the {@link #ACTIVITY_WINDOW_MS activity window}.
+	 */
+	boolean isWarm(ContactId c) {
+		Long time = lastActivity.get(c);
+		if (time == null) return false;
+		long now = clock.currentTimeMillis();
+		if (now - time > ACTIVITY_WINDOW_MS) return false;
+		int moreRecent = 0;
+		for (Entry<ContactId, Long> e : lastActivity.entrySet()) {
+			if (e.getValue() > time && !e.getKey().equals(c)) {
+				if (++moreRecent >= MAX_WARM_CONTACTS) return false;
+			}
+		}
+		return true;
+	}
+
+	private void maybeReconnect(ContactId c) {
+		if (!isWarm(c)) return;
+		long now = clock.currentTimeMillis();
+		Long last = lastReconnect.get(c);
+		if (last != null && now - last < MIN_RECONNECT_INTERVAL_MS) {
+			LOG.info("Not reconnecting, last attempt was too recent");
+			return;
+		}
+		lastReconnect.put(c, now);
+		wakefulIoExecutor.execute(() -> reconnect(c));
+	}
+
+	@WakefulIoExecutor
+	private void reconnect(ContactId c) {
+		Plugin p = pluginManager.getPlugin(ID);
+		if (!(p instanceof DuplexPlugin)) return;
+		DuplexPlugin plugin = (DuplexPlugin) p;
+		// Don't reconnect if we're connected over Tor or a better transport
+		if (connectionRegistry.getConnectedOrBetterContacts(ID).contains(c))
+			return;
+		try {
+			TransportProperties props =
+					transportPropertyManager.getRemoteProperties(c, ID);
+			if (props.isEmpty()) return;
+			Handler h = new Handler(c, clock.currentTimeMillis());
+			plugin.connect(props, h);
+		} catch (DbException e) {
+			logException(LOG, WARNING, e);
+		}
+	}
+
+	private class Handler implements ConnectionHandler {
+
+		private final ContactId contactId;
+		private final long start;
+
+		private Handler(ContactId contactId, long start) {
+			this.contactId = contactId;
+			this.start = start;
+		}
+
+		@Override
+		public void handleConnection(DuplexTransportConnection d) {
+			if (LOG.isLoggable(INFO)) {
+				long duration = clock.currentTimeMillis() - start;
+				LOG.info("Reconnected to warm contact, circuit setup took "
+						+ duration + " ms");
+			}
+			connectionManager.manageOutgoingConnection(contactId, ID, d);
+		}
+
+		@Override
+		public void handleReader(TransportConnectionReader r) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void handleWriter(TransportConnectionWriter w) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -338,11 +338,18 @@ abstract class AbstractBluetoothPlugin<S, SS> implements BluetoothPlugin,
 		if (getState() != ACTIVE) return;
 		backoff.increment();
 		for (Pair<TransportProperties, ConnectionHandler> p : properties) {
-			connect(p.getFirst(), p.getSecond());
+			connect(p.getFirst(), p.getSecond(), true);
 		}
 	}
 
-	private void connect(TransportProperties p, ConnectionHandler h) {
+	@Override
+	public void connect(TransportProperties p, ConnectionHandler h) {
+		if (getState() != ACTIVE) return;
+		connect(p, h, false);
+	}
+
+	private void connect(TransportProperties p, ConnectionHandler h,
+			boolean polling) {
 		String address = p.get(PROP_ADDRESS);
 		if (isNullOrEmpty(address)) return;
 		String uuid = p.get(PROP_UUID);
@@ -350,7 +357,7 @@ abstract class AbstractBluetoothPlugin<S, SS> implements BluetoothPlugin,
 		wakefulIoExecutor.execute(() -> {
 			DuplexTransportConnection d = createConnection(p);
 			if (d != null) {
-				backoff.reset();
+				if (polling) backoff.reset();
 				setEverConnected();
 				h.handleConnection(d);
 			}
@@ -16,9 +16,11 @@ import java.util.concurrent.Executor;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static org.briarproject.bramble.api.nullsafety.NullSafety.requireNonNull;
 import static org.briarproject.bramble.api.plugin.file.RemovableDriveConstants.ID;
+import static org.briarproject.bramble.util.LogUtils.now;
 
 @ThreadSafe
 @NotNullByDefault
@@ -35,7 +37,9 @@ abstract class RemovableDriveTaskImpl implements RemovableDriveTask {
 	@GuardedBy("lock")
 	private final List<Consumer<State>> observers = new ArrayList<>();
 	@GuardedBy("lock")
-	private State state = new State(0, 0, false, false);
+	private State state = new State(0, 0, 0, false, false);
+	@GuardedBy("lock")
+	private long startTime = now();
 
 	RemovableDriveTaskImpl(
 			Executor eventExecutor,
@@ -78,10 +82,18 @@ abstract class RemovableDriveTaskImpl implements RemovableDriveTask {
 		return (SimplexPlugin) requireNonNull(pluginManager.getPlugin(ID));
 	}
 
+	State getState() {
+		synchronized (lock) {
+			return state;
+		}
+	}
+
 	void setTotal(long total) {
 		synchronized (lock) {
-			state = new State(state.getDone(), total, state.isFinished(),
-					state.isSuccess());
+			// Measure throughput from the time the transfer starts
+			startTime = now();
+			state = new State(state.getDone(), total, state.getThroughput(),
+					state.isFinished(), state.isSuccess());
 			notifyObservers();
 		}
 	}
@@ -90,15 +102,18 @@ abstract class RemovableDriveTaskImpl implements RemovableDriveTask {
 		synchronized (lock) {
 			// Done and total come from different sources; make them consistent
 			done = min(state.getDone() + done, state.getTotal());
-			state = new State(done, state.getTotal(), state.isFinished(),
-					state.isSuccess());
+			long elapsed = max(1, now() - startTime);
+			long throughput = done * 1000 / elapsed;
+			state = new State(done, state.getTotal(), throughput,
+					state.isFinished(), state.isSuccess());
 			notifyObservers();
 		}
 	}
 
 	void setSuccess(boolean success) {
 		synchronized (lock) {
-			state = new State(state.getDone(), state.getTotal(), true, success);
+			state = new State(state.getDone(), state.getTotal(),
+					state.getThroughput(), true, success);
 			notifyObservers();
 		}
 	}
@@ -6,7 +6,7 @@ import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 import org.briarproject.bramble.api.plugin.PluginManager;
 import org.briarproject.bramble.api.plugin.TransportConnectionWriter;
@@ -16,9 +16,11 @@ import org.briarproject.bramble.api.sync.event.MessagesSentEvent;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
+import static java.util.Collections.singletonList;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
@@ -27,11 +29,14 @@ import static org.briarproject.bramble.util.LogUtils.logException;
 
 @NotNullByDefault
 class RemovableDriveWriterTask extends RemovableDriveTaskImpl
-		implements EventListener {
+		implements SelectiveEventListener {
 
 	private static final Logger LOG =
 			getLogger(RemovableDriveWriterTask.class.getName());
 
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			singletonList(MessagesSentEvent.class);
+
 	private final DatabaseComponent db;
 	private final ContactId contactId;
 
@@ -74,6 +79,11 @@ class RemovableDriveWriterTask extends RemovableDriveTaskImpl
 				new DecoratedWriter(w));
 	}
 
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		if (e instanceof MessagesSentEvent) {
@@ -118,6 +128,11 @@ class RemovableDriveWriterTask extends RemovableDriveTaskImpl
 		@Override
 		public void dispose(boolean exception) throws IOException {
 			delegate.dispose(exception);
+			if (LOG.isLoggable(INFO)) {
+				State s = getState();
+				LOG.info("Wrote " + s.getDone() + " of " + s.getTotal()
+						+ " bytes, " + s.getThroughput() + " bytes per second");
+			}
 			registry.removeWriter(RemovableDriveWriterTask.this);
 			eventBus.removeListener(RemovableDriveWriterTask.this);
 			setSuccess(!exception);
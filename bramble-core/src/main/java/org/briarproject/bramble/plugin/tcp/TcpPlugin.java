@@ -64,7 +64,14 @@ abstract class TcpPlugin implements DuplexPlugin, EventListener {
 	private static final Pattern DOTTED_QUAD =
 			Pattern.compile("^\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}$");
 
+	/**
+	 * The maximum number of connection attempts made by polling that may be
+	 * in progress at once.
+	 */
+	static final int MAX_CONCURRENT_POLLING_CONNECTIONS = 16;
+
 	protected final Executor ioExecutor, wakefulIoExecutor, bindExecutor;
+	private final Executor pollingExecutor;
 	protected final Backoff backoff;
 	protected final PluginCallback callback;
 	protected final long maxLatency;
@@ -123,6 +130,8 @@ abstract class TcpPlugin implements DuplexPlugin, EventListener {
 		else socketTimeout = maxIdleTime * 2;
 		// Don't execute more than one bind operation at a time
 		bindExecutor = new PoliteExecutor("TcpPlugin", ioExecutor, 1);
+		pollingExecutor = new PoliteExecutor("TcpPlugin", wakefulIoExecutor,
+				MAX_CONCURRENT_POLLING_CONNECTIONS);
 	}
 
 	@Override
@@ -249,15 +258,22 @@ abstract class TcpPlugin implements DuplexPlugin, EventListener {
 		if (getState() != ACTIVE) return;
 		backoff.increment();
 		for (Pair<TransportProperties, ConnectionHandler> p : properties) {
-			connect(p.getFirst(), p.getSecond());
+			connect(p.getFirst(), p.getSecond(), true);
 		}
 	}
 
-	private void connect(TransportProperties p, ConnectionHandler h) {
-		wakefulIoExecutor.execute(() -> {
+	@Override
+	public void connect(TransportProperties p, ConnectionHandler h) {
+		if (getState() != ACTIVE) return;
+		connect(p, h, false);
+	}
+
+	private void connect(TransportProperties p, ConnectionHandler h,
+			boolean polling) {
+		pollingExecutor.execute(() -> {
 			DuplexTransportConnection d = createConnection(p);
 			if (d != null) {
-				backoff.reset();
+				if (polling) backoff.reset();
 				h.handleConnection(d);
 			}
 		});
@@ -99,6 +99,7 @@ import static org.briarproject.bramble.plugin.tor.TorRendezvousCrypto.SEED_BYTES
 import static org.briarproject.bramble.util.IoUtils.copyAndClose;
 import static org.briarproject.bramble.util.IoUtils.tryToClose;
 import static org.briarproject.bramble.util.LogUtils.logException;
+import static org.briarproject.bramble.util.LogUtils.now;
 import static org.briarproject.bramble.util.PrivacyUtils.scrubOnion;
 import static org.briarproject.bramble.util.StringUtils.isNullOrEmpty;
 
@@ -123,9 +124,15 @@ abstract class TorPlugin implements DuplexPlugin, EventHandler, EventListener {
 	private static final int COOKIE_POLLING_INTERVAL_MS = 200;
 	private static final Pattern ONION_V3 = Pattern.compile("[a-z2-7]{56}");
 
+	/**
+	 * The maximum number of connection attempts made by polling that may be
+	 * in progress at once. Each attempt builds a circuit, so polling a large
+	 * number of contacts at once would put a burst of load on the network.
+	 */
+	static final int MAX_CONCURRENT_POLLING_CONNECTIONS = 8;
+
 	protected final Executor ioExecutor;
-	private final Executor wakefulIoExecutor;
-	private final Executor connectionStatusExecutor;
+	private final Executor connectionStatusExecutor, pollingExecutor;
 	private final NetworkManager networkManager;
 	private final LocationUtils locationUtils;
 	private final SocketFactory torSocketFactory;
@@ -175,7 +182,6 @@ abstract class TorPlugin implements DuplexPlugin, EventHandler, EventListener {
 			int torSocksPort,
 			int torControlPort) {
 		this.ioExecutor = ioExecutor;
-		this.wakefulIoExecutor = wakefulIoExecutor;
 		this.networkManager = networkManager;
 		this.locationUtils = locationUtils;
 		this.torSocketFactory = torSocketFactory;
@@ -202,6 +208,8 @@ abstract class TorPlugin implements DuplexPlugin, EventHandler, EventListener {
 		// Don't execute more than one connection status check at a time
 		connectionStatusExecutor =
 				new PoliteExecutor("TorPlugin", ioExecutor, 1);
+		pollingExecutor = new PoliteExecutor("TorPlugin", wakefulIoExecutor,
+				MAX_CONCURRENT_POLLING_CONNECTIONS);
 	}
 
 	protected File getTorExecutableFile() {
@@ -622,15 +630,22 @@ abstract class TorPlugin implements DuplexPlugin, EventHandler, EventListener {
 		if (getState() != ACTIVE) return;
 		backoff.increment();
 		for (Pair<TransportProperties, ConnectionHandler> p : properties) {
-			connect(p.getFirst(), p.getSecond());
+			connect(p.getFirst(), p.getSecond(), true);
 		}
 	}
 
-	private void connect(TransportProperties p, ConnectionHandler h) {
-		wakefulIoExecutor.execute(() -> {
+	@Override
+	public void connect(TransportProperties p, ConnectionHandler h) {
+		if (getState() != ACTIVE) return;
+		connect(p, h, false);
+	}
+
+	private void connect(TransportProperties p, ConnectionHandler h,
+			boolean polling) {
+		pollingExecutor.execute(() -> {
 			DuplexTransportConnection d = createConnection(p);
 			if (d != null) {
-				backoff.reset();
+				if (polling) backoff.reset();
 				h.handleConnection(d);
 			}
 		});
@@ -653,10 +668,12 @@ abstract class TorPlugin implements DuplexPlugin, EventHandler, EventListener {
 			if (LOG.isLoggable(INFO)) {
 				LOG.info("Connecting to v3 " + scrubOnion(onion3));
 			}
+			long start = now();
 			s = torSocketFactory.createSocket(onion3 + ".onion", 80);
 			s.setSoTimeout(socketTimeout);
 			if (LOG.isLoggable(INFO)) {
-				LOG.info("Connected to v3 " + scrubOnion(onion3));
+				LOG.info("Connected to v3 " + scrubOnion(onion3)
+						+ " in " + (now() - start) + " ms");
 			}
 			return new TorTransportConnection(this, s);
 		} catch (IOException e) {
@@ -1,5 +1,6 @@
 package org.briarproject.bramble.properties;
 
+import org.briarproject.bramble.TransactionalCache;
 import org.briarproject.bramble.api.FormatException;
 import org.briarproject.bramble.api.client.ClientHelper;
 import org.briarproject.bramble.api.client.ContactGroupFactory;
@@ -34,11 +35,16 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
 
 import javax.annotation.Nullable;
-import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.api.properties.TransportPropertyConstants.GROUP_KEY_DISCOVERED;
 import static org.briarproject.bramble.api.properties.TransportPropertyConstants.MSG_KEY_LOCAL;
 import static org.briarproject.bramble.api.properties.TransportPropertyConstants.MSG_KEY_TRANSPORT_ID;
@@ -47,12 +53,15 @@ import static org.briarproject.bramble.api.properties.TransportPropertyConstants
 import static org.briarproject.bramble.api.sync.validation.IncomingMessageHook.DeliveryAction.ACCEPT_DO_NOT_SHARE;
 import static org.briarproject.bramble.util.StringUtils.isNullOrEmpty;
 
-@Immutable
+@ThreadSafe
 @NotNullByDefault
 class TransportPropertyManagerImpl implements TransportPropertyManager,
 		OpenDatabaseHook, ContactHook, ClientVersioningHook,
 		IncomingMessageHook {
 
+	private static final Logger LOG =
+			getLogger(TransportPropertyManagerImpl.class.getName());
+
 	private final DatabaseComponent db;
 	private final ClientHelper clientHelper;
 	private final ClientVersioningManager clientVersioningManager;
@@ -61,6 +70,22 @@ class TransportPropertyManagerImpl implements TransportPropertyManager,
 	private final Clock clock;
 	private final Group localGroup;
 
+	/**
+	 * The latest local properties for each transport.
+	 */
+	private final TransactionalCache<TransportId, TransportProperties>
+			localCache = new TransactionalCache<>();
+	/**
+	 * The latest remote properties, merged with any discovered properties,
+	 * for each transport, indexed by contact group.
+	 */
+	private final TransactionalCache<GroupId,
+			Map<TransportId, TransportProperties>> remoteCache =
+			new TransactionalCache<>();
+
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong cacheMisses = new AtomicLong();
+
 	@Inject
 	TransportPropertyManagerImpl(DatabaseComponent db,
 			ClientHelper clientHelper,
@@ -89,6 +114,7 @@ class TransportPropertyManagerImpl implements TransportPropertyManager,
 	public void addingContact(Transaction txn, Contact c) throws DbException {
 		// Create a group to share with the contact
 		Group g = getContactGroup(c);
+		remoteCache.invalidate(txn, g.getId());
 		db.addGroup(txn, g);
 		// Apply the client's visibility to the contact group
 		Visibility client = clientVersioningManager.getClientVisibility(txn,
@@ -104,7 +130,9 @@ class TransportPropertyManagerImpl implements TransportPropertyManager,
 
 	@Override
 	public void removingContact(Transaction txn, Contact c) throws DbException {
-		db.removeGroup(txn, getContactGroup(c));
+		Group g = getContactGroup(c);
+		remoteCache.invalidate(txn, g.getId());
+		db.removeGroup(txn, g);
 	}
 
 	@Override
@@ -122,6 +150,7 @@ class TransportPropertyManagerImpl implements TransportPropertyManager,
 			// Find the latest update for this transport, if any
 			BdfDictionary d = metadataParser.parse(meta);
 			TransportId t = new TransportId(d.getString(MSG_KEY_TRANSPORT_ID));
+			remoteCache.invalidate(txn, m.getGroupId());
 			LatestUpdate latest = findLatest(txn, m.getGroupId(), t, false);
 			if (latest != null) {
 				if (d.getLong(MSG_KEY_VERSION) > latest.version) {
@@ -146,6 +175,7 @@ class TransportPropertyManagerImpl implements TransportPropertyManager,
 	public void addRemoteProperties(Transaction txn, ContactId c,
 			Map<TransportId, TransportProperties> props) throws DbException {
 		Group g = getContactGroup(db.getContact(txn, c));
+		remoteCache.invalidate(txn, g.getId());
 		for (Entry<TransportId, TransportProperties> e : props.entrySet()) {
 			storeMessage(txn, g.getId(), e.getKey(), e.getValue(), 0,
 					false, false);
@@ -175,6 +205,7 @@ class TransportPropertyManagerImpl implements TransportPropertyManager,
 					changed = !merged.equals(discovered);
 				}
 				if (changed) {
+					remoteCache.invalidate(txn, g.getId());
 					meta.put(GROUP_KEY_DISCOVERED, merged);
 					clientHelper.mergeGroupMetadata(txn, g.getId(), meta);
 					updateLocalProperties(txn, contact, t);
@@ -213,6 +244,12 @@ class TransportPropertyManagerImpl implements TransportPropertyManager,
 	@Override
 	public TransportProperties getLocalProperties(TransportId t)
 			throws DbException {
+		TransportProperties cached = localCache.get(t);
+		if (cached != null) {
+			cacheHits.incrementAndGet();
+			return new TransportProperties(cached);
+		}
+		countCacheMiss();
 		try {
 			return db.transactionWithResult(true, txn -> {
 				TransportProperties p = null;
@@ -225,7 +262,9 @@ class TransportPropertyManagerImpl implements TransportPropertyManager,
 							latest.messageId);
 					p = parseProperties(message);
 				}
-				return p == null ? new TransportProperties() : p;
+				if (p == null) p = new TransportProperties();
+				localCache.put(txn, t, new TransportProperties(p));
+				return p;
 			});
 		} catch (FormatException e) {
 			throw new DbException(e);
@@ -264,6 +303,23 @@ class TransportPropertyManagerImpl implements TransportPropertyManager,
 	private TransportProperties getRemoteProperties(Transaction txn, Contact c,
 			TransportId t) throws DbException {
 		Group g = getContactGroup(c);
+		Map<TransportId, TransportProperties> cached =
+				remoteCache.get(g.getId());
+		TransportProperties p = cached == null ? null : cached.get(t);
+		if (p != null) {
+			cacheHits.incrementAndGet();
+			return new TransportProperties(p);
+		}
+		countCacheMiss();
+		p = loadRemoteProperties(txn, g, t);
+		if (cached == null) cached = new ConcurrentHashMap<>();
+		cached.put(t, new TransportProperties(p));
+		remoteCache.put(txn, g.getId(), cached);
+		return p;
+	}
+
+	private TransportProperties loadRemoteProperties(Transaction txn, Group g,
+			TransportId t) throws DbException {
 		try {
 			// Find the latest remote update
 			TransportProperties remote;
@@ -328,6 +384,7 @@ class TransportPropertyManagerImpl implements TransportPropertyManager,
 					changed = !merged.equals(old);
 				}
 				if (changed) {
+					localCache.invalidate(txn, t);
 					// Store the merged properties in the local group
 					long version = latest == null ? 1 : latest.version + 1;
 					storeMessage(txn, localGroup.getId(), t, merged, version,
@@ -373,6 +430,30 @@ class TransportPropertyManagerImpl implements TransportPropertyManager,
 		if (latest != null) db.removeMessage(txn, latest.messageId);
 	}
 
+	private void countCacheMiss() {
+		long misses = cacheMisses.incrementAndGet();
+		if (LOG.isLoggable(FINE) && misses % 100 == 0) {
+			long hits = cacheHits.get();
+			LOG.fine("Transport property cache: " + hits + " hits, "
+					+ misses + " misses, hit rate "
+					+ (100 * hits / (hits + misses)) + "%");
+		}
+	}
+
+	/**
+	 * Returns the number of times properties were found in the cache.
+	 */
+	long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	/**
+	 * Returns the number of times properties were loaded from the database.
+	 */
+	long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
 	private Group getContactGroup(Contact c) {
 		return contactGroupFactory.createContactGroup(CLIENT_ID,
 				MAJOR_VERSION, c);
@@ -18,12 +18,27 @@ import javax.annotation.concurrent.NotThreadSafe;
 import static org.briarproject.bramble.api.record.Record.MAX_RECORD_PAYLOAD_BYTES;
 import static org.briarproject.bramble.api.record.Record.RECORD_HEADER_BYTES;
 
+/**
+ * A record reader that reuses the payload buffers of records that have been
+ * {@link #releaseRecord(Record) released}. Released buffers are kept in a
+ * small pool and reused for later records with payloads of the same length,
+ * which is common for records such as acks that carry a few IDs.
+ */
 @NotThreadSafe
 @NotNullByDefault
 class RecordReaderImpl implements RecordReader {
 
+	/**
+	 * The maximum number of released payload buffers to keep.
+	 */
+	static final int POOL_SIZE = 8;
+
 	private final DataInputStream in;
 	private final byte[] header = new byte[RECORD_HEADER_BYTES];
+	// Released payload buffers, or null for empty slots
+	private final byte[][] pool = new byte[POOL_SIZE][];
+	// The slot to replace when a buffer is released and the pool is full
+	private int nextVictim = 0;
 
 	RecordReaderImpl(InputStream in) {
 		if (!in.markSupported()) in = new BufferedInputStream(in, 1);
@@ -38,11 +53,23 @@ class RecordReaderImpl implements RecordReader {
 		int payloadLength = ByteUtils.readUint16(header, 2);
 		if (payloadLength < 0 || payloadLength > MAX_RECORD_PAYLOAD_BYTES)
 			throw new FormatException();
-		byte[] payload = new byte[payloadLength];
+		byte[] payload = takeBuffer(payloadLength);
 		in.readFully(payload);
 		return new Record(protocolVersion, recordType, payload);
 	}
 
+	private byte[] takeBuffer(int length) {
+		if (length == 0) return new byte[0];
+		for (int i = 0; i < POOL_SIZE; i++) {
+			byte[] b = pool[i];
+			if (b != null && b.length == length) {
+				pool[i] = null;
+				return b;
+			}
+		}
+		return new byte[length];
+	}
+
 	@Nullable
 	@Override
 	public Record readRecord(Predicate<Record> accept, Predicate<Record> ignore)
@@ -52,7 +79,25 @@ class RecordReaderImpl implements RecordReader {
 			Record r = readRecord();
 			if (accept.test(r)) return r;
 			if (!ignore.test(r)) throw new FormatException();
+			releaseRecord(r);
+		}
+	}
+
+	@Override
+	public void releaseRecord(Record r) {
+		byte[] payload = r.getPayload();
+		if (payload.length == 0) return;
+		int empty = -1;
+		for (int i = 0; i < POOL_SIZE; i++) {
+			byte[] b = pool[i];
+			if (b == payload) return; // Released twice
+			if (b == null) empty = i;
+		}
+		if (empty == -1) {
+			empty = nextVictim;
+			nextVictim = (nextVictim + 1) % POOL_SIZE;
 		}
+		pool[empty] = payload;
 	}
 
 	@Override
@@ -5,10 +5,6 @@ import org.briarproject.bramble.api.reliability.ReadHandler;
 import org.briarproject.bramble.api.system.Clock;
 
 import java.io.IOException;
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -17,31 +13,55 @@ import javax.annotation.concurrent.ThreadSafe;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+/**
+ * Receives data frames and passes them up in order.
+ * <p/>
+ * Data frames that arrive out of order are held in a ring buffer indexed by
+ * sequence number. If selective acks are enabled, each data frame is acked
+ * with a {@link SelectiveAck} describing every frame in the buffer, once the
+ * peer has shown that it understands selective acks by sending one. Until
+ * then each data frame is acked individually.
+ */
 @ThreadSafe
 @NotNullByDefault
 class Receiver implements ReadHandler {
 
 	private static final int READ_TIMEOUT = 5 * 60 * 1000; // Milliseconds
-	private static final int MAX_WINDOW_SIZE = 8 * Data.MAX_PAYLOAD_LENGTH;
+	static final int MAX_WINDOW_SIZE = 32 * Data.MAX_PAYLOAD_LENGTH;
+
+	/**
+	 * The size of the ring buffer. Data frames with sequence numbers too far
+	 * ahead of the next in-order frame to fit in the buffer are dropped
+	 * without being acked.
+	 */
+	static final int BUFFER_FRAMES = 4 * SelectiveAck.BITMAP_FRAMES;
+
+	/**
+	 * The number of individual acks that are followed by a selective ack to
+	 * tell the peer that we understand selective acks.
+	 */
+	private static final int MAX_ANNOUNCEMENTS = 8;
 
 	private final Clock clock;
 	private final Sender sender;
+	private final boolean selectiveAcks;
 	private final Lock windowLock = new ReentrantLock();
 	private final Condition dataFrameAvailable = windowLock.newCondition();
 
 	// The following are locking: windowLock
-	private final SortedSet<Data> dataFrames;
+	private final Data[] dataFrames = new Data[BUFFER_FRAMES];
 	private int windowSize = MAX_WINDOW_SIZE;
+	private int announcementsLeft = MAX_ANNOUNCEMENTS;
 
 	private long finalSequenceNumber = Long.MAX_VALUE;
 	private long nextSequenceNumber = 1;
 
 	private volatile boolean valid = true;
 
-	Receiver(Clock clock, Sender sender) {
+	Receiver(Clock clock, Sender sender, boolean selectiveAcks) {
 		this.sender = sender;
 		this.clock = clock;
-		dataFrames = new TreeSet<>(new SequenceNumberComparator());
+		this.selectiveAcks = selectiveAcks;
 	}
 
 	Data read() throws IOException, InterruptedException {
@@ -49,22 +69,18 @@ class Receiver implements ReadHandler {
 		try {
 			long now = clock.currentTimeMillis(), end = now + READ_TIMEOUT;
 			while (now < end && valid) {
-				if (dataFrames.isEmpty()) {
-					// Wait for a data frame
+				int index = index(nextSequenceNumber);
+				Data d = dataFrames[index];
+				if (d == null) {
+					// Wait for the next in-order data frame
 					dataFrameAvailable.await(end - now, MILLISECONDS);
 				} else {
-					Data d = dataFrames.first();
-					if (d.getSequenceNumber() == nextSequenceNumber) {
-						dataFrames.remove(d);
-						// Update the window
-						windowSize += d.getPayloadLength();
-						sender.sendAck(0, windowSize);
-						nextSequenceNumber++;
-						return d;
-					} else {
-						// Wait for the next in-order data frame
-						dataFrameAvailable.await(end - now, MILLISECONDS);
-					}
+					dataFrames[index] = null;
+					// Update the window
+					windowSize += d.getPayloadLength();
+					nextSequenceNumber++;
+					sendAck(0);
+					return d;
 				}
 				now = clock.currentTimeMillis();
 			}
@@ -75,6 +91,19 @@ class Receiver implements ReadHandler {
 		}
 	}
 
+	/**
+	 * Tells the peer the size of the window, so it doesn't have to probe the
+	 * window before sending its first full-size data frame.
+	 */
+	void sendWindowUpdate() throws IOException {
+		windowLock.lock();
+		try {
+			sendAck(0);
+		} finally {
+			windowLock.unlock();
+		}
+	}
+
 	void invalidate() {
 		valid = false;
 		windowLock.lock();
@@ -96,6 +125,9 @@ class Receiver implements ReadHandler {
 			case Frame.ACK_FLAG:
 				sender.handleAck(b);
 				break;
+			case Frame.SACK_FLAG:
+				sender.handleSelectiveAck(b);
+				break;
 			default:
 				// Ignore unknown frame type
 		}
@@ -120,40 +152,75 @@ class Receiver implements ReadHandler {
 				// Window probe
 			} else if (sequenceNumber < nextSequenceNumber) {
 				// Duplicate data frame
+			} else if (sequenceNumber >= nextSequenceNumber + BUFFER_FRAMES) {
+				// No space in the buffer
+				return;
 			} else if (d.isLastFrame()) {
 				finalSequenceNumber = sequenceNumber;
 				// Remove any data frames with higher sequence numbers
-				Iterator<Data> it = dataFrames.iterator();
-				while (it.hasNext()) {
-					Data d1 = it.next();
-					if (d1.getSequenceNumber() >= finalSequenceNumber)
-						it.remove();
-				}
-				if (dataFrames.add(d)) {
-					windowSize -= payloadLength;
-					dataFrameAvailable.signalAll();
+				long end = nextSequenceNumber + BUFFER_FRAMES;
+				for (long s = sequenceNumber + 1; s < end; s++) {
+					int index = index(s);
+					Data d1 = dataFrames[index];
+					if (d1 != null) {
+						dataFrames[index] = null;
+						windowSize += d1.getPayloadLength();
+					}
 				}
+				add(d);
 			} else if (sequenceNumber < finalSequenceNumber) {
-				if (dataFrames.add(d)) {
-					windowSize -= payloadLength;
-					dataFrameAvailable.signalAll();
-				}
+				add(d);
 			}
 			// Acknowledge the data frame even if it's a duplicate
-			sender.sendAck(sequenceNumber, windowSize);
+			sendAck(sequenceNumber);
 		} finally {
 			windowLock.unlock();
 		}
 	}
 
-	private static class SequenceNumberComparator implements Comparator<Data> {
+	// Locking: windowLock
+	private void add(Data d) {
+		int index = index(d.getSequenceNumber());
+		if (dataFrames[index] == null) {
+			dataFrames[index] = d;
+			windowSize -= d.getPayloadLength();
+			dataFrameAvailable.signalAll();
+		}
+	}
 
-		@Override
-		public int compare(Data d1, Data d2) {
-			long s1 = d1.getSequenceNumber(), s2 = d2.getSequenceNumber();
-			if (s1 < s2) return -1;
-			if (s1 > s2) return 1;
-			return 0;
+	// Locking: windowLock
+	private void sendAck(long sequenceNumber) throws IOException {
+		if (selectiveAcks && sender.isSelectiveAckReceived()) {
+			sendSelectiveAck();
+		} else {
+			sender.sendAck(sequenceNumber, windowSize);
+			if (selectiveAcks && announcementsLeft > 0) {
+				announcementsLeft--;
+				sendSelectiveAck();
+			}
 		}
 	}
+
+	// Locking: windowLock
+	private void sendSelectiveAck() throws IOException {
+		long end = nextSequenceNumber + BUFFER_FRAMES;
+		// Find the last data frame received in order
+		long cumulative = nextSequenceNumber - 1;
+		while (cumulative + 1 < end
+				&& dataFrames[index(cumulative + 1)] != null) {
+			cumulative++;
+		}
+		// Mark the data frames received after the first missing frame
+		long bitmap = 0;
+		for (int i = 0; i < SelectiveAck.BITMAP_FRAMES; i++) {
+			long s = cumulative + 2 + i;
+			if (s >= end) break;
+			if (dataFrames[index(s)] != null) bitmap |= 1L << i;
+		}
+		sender.sendSelectiveAck(cumulative, bitmap, windowSize);
+	}
+
+	private static int index(long sequenceNumber) {
+		return (int) (sequenceNumber % BUFFER_FRAMES);
+	}
 }
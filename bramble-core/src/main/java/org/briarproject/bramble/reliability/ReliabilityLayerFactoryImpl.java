@@ -28,6 +28,7 @@ class ReliabilityLayerFactoryImpl implements ReliabilityLayerFactory {
 
 	@Override
 	public ReliabilityLayer createReliabilityLayer(WriteHandler writeHandler) {
-		return new ReliabilityLayerImpl(ioExecutor, clock, writeHandler);
+		// Selective acks are only used if the peer supports them
+		return new ReliabilityLayerImpl(ioExecutor, clock, writeHandler, true);
 	}
 }
@@ -30,6 +30,7 @@ class ReliabilityLayerImpl implements ReliabilityLayer, WriteHandler {
 	private final Executor executor;
 	private final Clock clock;
 	private final WriteHandler writeHandler;
+	private final boolean selectiveAcks;
 	private final BlockingQueue<byte[]> writes;
 
 	private volatile Receiver receiver = null;
@@ -39,10 +40,11 @@ class ReliabilityLayerImpl implements ReliabilityLayer, WriteHandler {
 	private volatile boolean running = false;
 
 	ReliabilityLayerImpl(Executor executor, Clock clock,
-			WriteHandler writeHandler) {
+			WriteHandler writeHandler, boolean selectiveAcks) {
 		this.executor = executor;
 		this.clock = clock;
 		this.writeHandler = writeHandler;
+		this.selectiveAcks = selectiveAcks;
 		writes = new LinkedBlockingQueue<>();
 	}
 
@@ -50,11 +52,16 @@ class ReliabilityLayerImpl implements ReliabilityLayer, WriteHandler {
 	public void start() {
 		SlipEncoder encoder = new SlipEncoder(this);
 		Sender sender = new Sender(clock, encoder);
-		receiver = new Receiver(clock, sender);
+		receiver = new Receiver(clock, sender, selectiveAcks);
 		decoder = new SlipDecoder(receiver, Data.MAX_LENGTH);
 		inputStream = new ReceiverInputStream(receiver);
 		outputStream = new SenderOutputStream(sender);
 		running = true;
+		try {
+			receiver.sendWindowUpdate();
+		} catch (IOException e) {
+			logException(LOG, WARNING, e);
+		}
 		executor.execute(() -> {
 			long now = clock.currentTimeMillis();
 			long next = now + TICK_INTERVAL;
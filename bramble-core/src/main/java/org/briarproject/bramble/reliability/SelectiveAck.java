@@ -0,0 +1,67 @@
+package org.briarproject.bramble.reliability;
+
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+import org.briarproject.bramble.util.ByteUtils;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * An ack frame that acknowledges all data frames up to and including its
+ * sequence number, plus any of the following data frames that are marked in
+ * its bitmap. Bit i of the bitmap refers to the data frame with sequence
+ * number n + 2 + i, where n is the sequence number of the selective ack,
+ * because frame n + 1 is known to be missing.
+ * <p/>
+ * Peers that don't support selective acks ignore these frames, so they're
+ * only sent to peers that have sent a selective ack themselves.
+ */
+@NotThreadSafe
+@NotNullByDefault
+class SelectiveAck extends Frame {
+
+	static final int LENGTH = 19;
+
+	/**
+	 * The number of data frames after the first missing data frame that can
+	 * be acknowledged selectively.
+	 */
+	static final int BITMAP_FRAMES = 64;
+
+	SelectiveAck() {
+		super(new byte[LENGTH]);
+		buf[0] = Frame.SACK_FLAG;
+	}
+
+	SelectiveAck(byte[] buf) {
+		super(buf);
+		if (buf.length != LENGTH) throw new IllegalArgumentException();
+		buf[0] = Frame.SACK_FLAG;
+	}
+
+	int getWindowSize() {
+		return ByteUtils.readUint16(buf, 5);
+	}
+
+	void setWindowSize(int windowSize) {
+		ByteUtils.writeUint16(windowSize, buf, 5);
+	}
+
+	long getBitmap() {
+		return ByteUtils.readUint32(buf, 7) << 32
+				| ByteUtils.readUint32(buf, 11);
+	}
+
+	void setBitmap(long bitmap) {
+		// Written as two 32-bit words as all 64 bits may be used
+		ByteUtils.writeUint32(bitmap >>> 32, buf, 7);
+		ByteUtils.writeUint32(bitmap & 0xFFFFFFFFL, buf, 11);
+	}
+
+	boolean isAcked(long sequenceNumber) {
+		long cumulative = getSequenceNumber();
+		if (sequenceNumber <= cumulative) return true;
+		long bit = sequenceNumber - cumulative - 2;
+		if (bit < 0 || bit >= BITMAP_FRAMES) return false;
+		return (getBitmap() & (1L << bit)) != 0;
+	}
+}
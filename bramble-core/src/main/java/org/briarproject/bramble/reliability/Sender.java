@@ -6,17 +6,26 @@ import org.briarproject.bramble.api.system.Clock;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+/**
+ * Sends data frames and retransmits them until they're acked.
+ * <p/>
+ * Outstanding data frames are held in a ring buffer indexed by sequence
+ * number. A frame is retransmitted when its retransmission timeout expires,
+ * or immediately when {@link #FAST_RETRANSMIT_THRESHOLD} later frames have
+ * been acked. The amount of unacked data is limited by the receiver's window
+ * and by a congestion window, which grows as data is acked and shrinks when
+ * data is lost.
+ */
 @ThreadSafe
 @NotNullByDefault
 class Sender {
@@ -29,24 +38,50 @@ class Sender {
 	private static final int INITIAL_RTT_VAR = 3 * 1000;
 	private static final int MAX_WINDOW_SIZE = 64 * Data.MAX_PAYLOAD_LENGTH;
 
+	/**
+	 * The maximum number of outstanding data frames, which is the size of the
+	 * ring buffer. This must not exceed the number of frames that can be
+	 * acked by a selective ack.
+	 */
+	static final int MAX_OUTSTANDING_FRAMES = SelectiveAck.BITMAP_FRAMES;
+
+	/**
+	 * The number of later data frames that must be acked before an
+	 * outstanding data frame is considered lost.
+	 */
+	static final int FAST_RETRANSMIT_THRESHOLD = 3;
+
+	static final int INITIAL_CONGESTION_WINDOW = 4 * Data.MAX_PAYLOAD_LENGTH;
+	private static final int MIN_SLOW_START_THRESHOLD =
+			2 * Data.MAX_PAYLOAD_LENGTH;
+
 	private final Clock clock;
 	private final WriteHandler writeHandler;
 	private final Lock windowLock = new ReentrantLock();
 	private final Condition sendWindowAvailable = windowLock.newCondition();
 
 	// The following are locking: windowLock
-	private final LinkedList<Outstanding> outstanding;
-	private int outstandingBytes = 0;
+	private final Outstanding[] outstanding =
+			new Outstanding[MAX_OUTSTANDING_FRAMES];
+	// The sequence number of the oldest outstanding data frame, and the
+	// sequence number after the newest. Frames in between may have been acked
+	private long oldest = 1, next = 1;
+	private int outstandingFrames = 0, outstandingBytes = 0;
 	private int windowSize = Data.MAX_PAYLOAD_LENGTH;
+	private int congestionWindow = INITIAL_CONGESTION_WINDOW;
+	private int slowStartThreshold = MAX_WINDOW_SIZE;
+	// Losses of data frames older than this don't shrink the congestion
+	// window, as it was already shrunk for the same window of data
+	private long recoveryPoint = 0;
 	private int rtt = INITIAL_RTT, rttVar = INITIAL_RTT_VAR;
 	private int rto = rtt + (rttVar << 2);
 	private long lastWindowUpdateOrProbe = Long.MAX_VALUE;
 	private boolean dataWaiting = false;
+	private boolean selectiveAckReceived = false;
 
 	Sender(Clock clock, WriteHandler writeHandler) {
 		this.clock = clock;
 		this.writeHandler = writeHandler;
-		outstanding = new LinkedList<>();
 	}
 
 	void sendAck(long sequenceNumber, int windowSize) throws IOException {
@@ -57,6 +92,29 @@ class Sender {
 		writeHandler.handleWrite(a.getBuffer());
 	}
 
+	void sendSelectiveAck(long sequenceNumber, long bitmap, int windowSize)
+			throws IOException {
+		SelectiveAck a = new SelectiveAck();
+		a.setSequenceNumber(sequenceNumber);
+		a.setBitmap(bitmap);
+		a.setWindowSize(windowSize);
+		a.setChecksum(a.calculateChecksum());
+		writeHandler.handleWrite(a.getBuffer());
+	}
+
+	/**
+	 * Returns true if the peer has sent a selective ack, which means it can
+	 * receive selective acks.
+	 */
+	boolean isSelectiveAckReceived() {
+		windowLock.lock();
+		try {
+			return selectiveAckReceived;
+		} finally {
+			windowLock.unlock();
+		}
+	}
+
 	void handleAck(byte[] b) throws IOException {
 		if (b.length != Ack.LENGTH) {
 			// Ignore ack frame with invalid length
@@ -69,52 +127,128 @@ class Sender {
 		}
 		long sequenceNumber = a.getSequenceNumber();
 		long now = clock.currentTimeMillis();
-		Outstanding fastRetransmit = null;
+		List<Outstanding> fastRetransmit;
 		windowLock.lock();
 		try {
 			// Remove the acked data frame if it's outstanding
-			int foundIndex = -1;
-			Iterator<Outstanding> it = outstanding.iterator();
-			for (int i = 0; it.hasNext(); i++) {
-				Outstanding o = it.next();
-				if (o.data.getSequenceNumber() == sequenceNumber) {
-					it.remove();
-					outstandingBytes -= o.data.getPayloadLength();
-					foundIndex = i;
-					// Update the round-trip time and retransmission timeout
-					if (!o.retransmitted) {
-						int sample = (int) (now - o.lastTransmitted);
-						int error = sample - rtt;
-						rtt += (error >> 3);
-						rttVar += (Math.abs(error) - rttVar) >> 2;
-						rto = rtt + (rttVar << 2);
-						if (rto < MIN_RTO) rto = MIN_RTO;
-						else if (rto > MAX_RTO) rto = MAX_RTO;
-					}
-					break;
-				}
-			}
-			// If any older data frames are outstanding, retransmit the oldest
-			if (foundIndex > 0) {
-				fastRetransmit = outstanding.poll();
-				fastRetransmit.lastTransmitted = now;
-				fastRetransmit.retransmitted = true;
-				outstanding.add(fastRetransmit);
+			boolean acked = acknowledge(sequenceNumber, now);
+			fastRetransmit = acked ? findLostFrames(now) : null;
+			updateWindow(a.getWindowSize(), acked, now);
+		} finally {
+			windowLock.unlock();
+		}
+		retransmit(fastRetransmit);
+	}
+
+	void handleSelectiveAck(byte[] b) throws IOException {
+		if (b.length != SelectiveAck.LENGTH) {
+			// Ignore ack frame with invalid length
+			return;
+		}
+		SelectiveAck a = new SelectiveAck(b);
+		if (a.getChecksum() != a.calculateChecksum()) {
+			// Ignore ack frame with invalid checksum
+			return;
+		}
+		long now = clock.currentTimeMillis();
+		List<Outstanding> fastRetransmit;
+		windowLock.lock();
+		try {
+			selectiveAckReceived = true;
+			// Remove any acked data frames, oldest first
+			boolean acked = false;
+			for (long s = oldest; s < next; s++) {
+				if (outstanding[index(s)] != null && a.isAcked(s))
+					acked |= acknowledge(s, now);
 			}
-			// Update the window
-			lastWindowUpdateOrProbe = now;
-			int oldWindowSize = windowSize;
-			// Don't accept an unreasonably large window size
-			windowSize = Math.min(a.getWindowSize(), MAX_WINDOW_SIZE);
-			// If space has become available, notify any waiting writers
-			if (windowSize > oldWindowSize || foundIndex != -1)
-				sendWindowAvailable.signalAll();
+			fastRetransmit = acked ? findLostFrames(now) : null;
+			updateWindow(a.getWindowSize(), acked, now);
 		} finally {
 			windowLock.unlock();
 		}
-		// Fast retransmission
-		if (fastRetransmit != null)
-			writeHandler.handleWrite(fastRetransmit.data.getBuffer());
+		retransmit(fastRetransmit);
+	}
+
+	// Locking: windowLock
+	private boolean acknowledge(long sequenceNumber, long now) {
+		if (sequenceNumber < oldest || sequenceNumber >= next) return false;
+		int index = index(sequenceNumber);
+		Outstanding o = outstanding[index];
+		if (o == null) return false;
+		outstanding[index] = null;
+		int payloadLength = o.data.getPayloadLength();
+		outstandingFrames--;
+		outstandingBytes -= payloadLength;
+		// Update the round-trip time and retransmission timeout
+		if (!o.retransmitted) {
+			int sample = (int) (now - o.lastTransmitted);
+			int error = sample - rtt;
+			rtt += (error >> 3);
+			rttVar += (Math.abs(error) - rttVar) >> 2;
+			rto = rtt + (rttVar << 2);
+			if (rto < MIN_RTO) rto = MIN_RTO;
+			else if (rto > MAX_RTO) rto = MAX_RTO;
+		}
+		// Open the congestion window: exponentially during slow start,
+		// then by about one frame per window of acked data
+		if (congestionWindow < slowStartThreshold) {
+			congestionWindow += payloadLength;
+		} else {
+			congestionWindow += Data.MAX_PAYLOAD_LENGTH * payloadLength
+					/ congestionWindow;
+		}
+		if (congestionWindow > MAX_WINDOW_SIZE)
+			congestionWindow = MAX_WINDOW_SIZE;
+		// Older data frames that are still outstanding may have been lost
+		for (long s = oldest; s < sequenceNumber; s++) {
+			Outstanding o1 = outstanding[index(s)];
+			if (o1 != null) o1.laterFramesAcked++;
+		}
+		while (oldest < next && outstanding[index(oldest)] == null) oldest++;
+		return true;
+	}
+
+	// Locking: windowLock
+	@Nullable
+	private List<Outstanding> findLostFrames(long now) {
+		List<Outstanding> lost = null;
+		for (long s = oldest; s < next; s++) {
+			Outstanding o = outstanding[index(s)];
+			if (o == null || o.fastRetransmitted) continue;
+			if (o.laterFramesAcked < FAST_RETRANSMIT_THRESHOLD) continue;
+			if (lost == null) lost = new ArrayList<>();
+			lost.add(o);
+			o.lastTransmitted = now;
+			o.retransmitted = true;
+			o.fastRetransmitted = true;
+			// Shrink the congestion window once per window of data
+			if (s >= recoveryPoint) {
+				slowStartThreshold = Math.max(outstandingBytes / 2,
+						MIN_SLOW_START_THRESHOLD);
+				congestionWindow = slowStartThreshold;
+				recoveryPoint = next;
+			}
+		}
+		return lost;
+	}
+
+	// Locking: windowLock
+	private void updateWindow(int newWindowSize, boolean acked, long now) {
+		lastWindowUpdateOrProbe = now;
+		int oldWindowSize = windowSize;
+		// Don't accept an unreasonably large window size
+		windowSize = Math.min(newWindowSize, MAX_WINDOW_SIZE);
+		// If space has become available, notify any waiting writers
+		if (windowSize > oldWindowSize || acked)
+			sendWindowAvailable.signalAll();
+	}
+
+	private void retransmit(@Nullable List<Outstanding> retransmit)
+			throws IOException {
+		if (retransmit != null) {
+			for (Outstanding o : retransmit)
+				writeHandler.handleWrite(o.data.getBuffer());
+		}
 	}
 
 	void tick() throws IOException {
@@ -123,33 +257,36 @@ class Sender {
 		boolean sendProbe = false;
 		windowLock.lock();
 		try {
-			if (outstanding.isEmpty()) {
+			if (outstandingFrames == 0) {
 				if (dataWaiting && now - lastWindowUpdateOrProbe > rto) {
 					sendProbe = true;
 					rto <<= 1;
 					if (rto > MAX_RTO) rto = MAX_RTO;
 				}
 			} else {
-				Iterator<Outstanding> it = outstanding.iterator();
-				while (it.hasNext()) {
-					Outstanding o = it.next();
-					if (now - o.lastTransmitted > rto) {
-						it.remove();
+				for (long s = oldest; s < next; s++) {
+					Outstanding o = outstanding[index(s)];
+					if (o != null && now - o.lastTransmitted > rto) {
 						if (retransmit == null)
 							retransmit = new ArrayList<>();
 						retransmit.add(o);
-						// Update the retransmission timeout
-						rto <<= 1;
-						if (rto > MAX_RTO) rto = MAX_RTO;
-					}
-				}
-				if (retransmit != null) {
-					for (Outstanding o : retransmit) {
 						o.lastTransmitted = now;
 						o.retransmitted = true;
-						outstanding.add(o);
+						// Allow another fast retransmission if needed
+						o.fastRetransmitted = false;
+						o.laterFramesAcked = 0;
 					}
 				}
+				if (retransmit != null) {
+					// Update the retransmission timeout
+					rto <<= 1;
+					if (rto > MAX_RTO) rto = MAX_RTO;
+					// Close the congestion window to a single frame
+					slowStartThreshold = Math.max(outstandingBytes / 2,
+							MIN_SLOW_START_THRESHOLD);
+					congestionWindow = Data.MAX_PAYLOAD_LENGTH;
+					recoveryPoint = next;
+				}
 			}
 		} finally {
 			windowLock.unlock();
@@ -162,10 +299,7 @@ class Sender {
 			writeHandler.handleWrite(buf);
 		}
 		// Retransmit any lost data frames
-		if (retransmit != null) {
-			for (Outstanding o : retransmit)
-				writeHandler.handleWrite(o.data.getBuffer());
-		}
+		retransmit(retransmit);
 	}
 
 	void write(Data d) throws IOException, InterruptedException {
@@ -174,15 +308,18 @@ class Sender {
 		try {
 			// Wait for space in the window
 			long now = clock.currentTimeMillis(), end = now + WRITE_TIMEOUT;
-			while (now < end &&
-					outstandingBytes + payloadLength >= windowSize) {
+			while (now < end && !canSend(payloadLength)) {
 				dataWaiting = true;
 				sendWindowAvailable.await(end - now, MILLISECONDS);
 				now = clock.currentTimeMillis();
 			}
-			if (outstandingBytes + payloadLength >= windowSize)
+			if (!canSend(payloadLength))
 				throw new IOException("Write timed out");
-			outstanding.add(new Outstanding(d, now));
+			long sequenceNumber = d.getSequenceNumber();
+			if (outstandingFrames == 0) oldest = sequenceNumber;
+			outstanding[index(sequenceNumber)] = new Outstanding(d, now);
+			next = sequenceNumber + 1;
+			outstandingFrames++;
 			outstandingBytes += payloadLength;
 			dataWaiting = false;
 		} finally {
@@ -191,27 +328,50 @@ class Sender {
 		writeHandler.handleWrite(d.getBuffer());
 	}
 
+	// Locking: windowLock
+	private boolean canSend(int payloadLength) {
+		if (next - oldest >= MAX_OUTSTANDING_FRAMES) return false;
+		if (outstandingBytes + payloadLength >= windowSize) return false;
+		// The congestion window always allows one frame to be outstanding
+		return outstandingFrames == 0 ||
+				outstandingBytes + payloadLength <= congestionWindow;
+	}
+
 	void flush() throws IOException, InterruptedException {
 		windowLock.lock();
 		try {
-			while (dataWaiting || !outstanding.isEmpty())
+			while (dataWaiting || outstandingFrames > 0)
 				sendWindowAvailable.await();
 		} finally {
 			windowLock.unlock();
 		}
 	}
 
+	int getCongestionWindow() {
+		windowLock.lock();
+		try {
+			return congestionWindow;
+		} finally {
+			windowLock.unlock();
+		}
+	}
+
+	private static int index(long sequenceNumber) {
+		return (int) (sequenceNumber % MAX_OUTSTANDING_FRAMES);
+	}
+
 	private static class Outstanding {
 
 		private final Data data;
 
-		private volatile long lastTransmitted;
-		private volatile boolean retransmitted;
+		// The following are locking: windowLock
+		private long lastTransmitted;
+		private boolean retransmitted = false, fastRetransmitted = false;
+		private int laterFramesAcked = 0;
 
 		private Outstanding(Data data, long lastTransmitted) {
 			this.data = data;
 			this.lastTransmitted = lastTransmitted;
-			retransmitted = false;
 		}
 	}
 }
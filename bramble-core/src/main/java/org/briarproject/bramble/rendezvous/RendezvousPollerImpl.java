@@ -18,7 +18,7 @@ import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
 import org.briarproject.bramble.api.event.EventExecutor;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.identity.IdentityManager;
 import org.briarproject.bramble.api.lifecycle.IoExecutor;
 import org.briarproject.bramble.api.lifecycle.Service;
@@ -60,6 +60,7 @@ import java.util.logging.Logger;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.logging.Level.INFO;
@@ -77,11 +78,20 @@ import static org.briarproject.bramble.util.IoUtils.tryToClose;
 import static org.briarproject.bramble.util.LogUtils.logException;
 
 @NotNullByDefault
-class RendezvousPollerImpl implements RendezvousPoller, Service, EventListener {
+class RendezvousPollerImpl
+		implements RendezvousPoller, Service, SelectiveEventListener {
 
 	private static final Logger LOG =
 			getLogger(RendezvousPollerImpl.class.getName());
 
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			asList(PendingContactAddedEvent.class,
+					PendingContactRemovedEvent.class,
+					TransportActiveEvent.class,
+					TransportInactiveEvent.class,
+					RendezvousConnectionOpenedEvent.class,
+					RendezvousConnectionClosedEvent.class);
+
 	private final TaskScheduler scheduler;
 	private final DatabaseComponent db;
 	private final IdentityManager identityManager;
@@ -275,6 +285,11 @@ class RendezvousPollerImpl implements RendezvousPoller, Service, EventListener {
 	public void stopService() {
 	}
 
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		if (e instanceof PendingContactAddedEvent) {
@@ -7,7 +7,7 @@ import org.briarproject.bramble.api.db.DatabaseExecutor;
 import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.lifecycle.IoExecutor;
 import org.briarproject.bramble.api.lifecycle.event.LifecycleEvent;
 import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
@@ -22,6 +22,7 @@ import org.briarproject.bramble.api.sync.Request;
 import org.briarproject.bramble.api.sync.SyncConstants;
 import org.briarproject.bramble.api.sync.SyncRecordWriter;
 import org.briarproject.bramble.api.sync.SyncSession;
+import org.briarproject.bramble.api.sync.SyncSessionStats;
 import org.briarproject.bramble.api.sync.Versions;
 import org.briarproject.bramble.api.sync.event.CloseSyncConnectionsEvent;
 import org.briarproject.bramble.api.sync.event.GroupVisibilityUpdatedEvent;
@@ -36,15 +37,18 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 
 import static java.lang.Boolean.TRUE;
+import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
@@ -56,35 +60,76 @@ import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_IDS;
 import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_LENGTH;
 import static org.briarproject.bramble.api.sync.SyncConstants.SUPPORTED_VERSIONS;
 import static org.briarproject.bramble.util.LogUtils.logException;
+import static org.briarproject.bramble.util.LogUtils.now;
 
 /**
  * An outgoing {@link SyncSession} suitable for duplex transports. The session
  * offers messages before sending them, keeps its output stream open when there
  * are no records to send, and reacts to events that make records available to
  * send.
+ * <p/>
+ * Records are written in order of priority: acks first, then requests,
+ * offers and finally batches of messages. The size of each batch is adapted
+ * to the measured throughput of the connection, so that on slow connections
+ * acks and requests don't wait long behind a batch, while on fast
+ * connections each database transaction loads more messages.
  */
 @ThreadSafe
 @NotNullByDefault
-class DuplexOutgoingSession implements SyncSession, EventListener {
+class DuplexOutgoingSession implements SyncSession, SelectiveEventListener {
 
 	private static final Logger LOG =
 			getLogger(DuplexOutgoingSession.class.getName());
 
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			asList(ContactRemovedEvent.class,
+					MessageSharedEvent.class,
+					GroupVisibilityUpdatedEvent.class,
+					MessageRequestedEvent.class,
+					MessageToAckEvent.class,
+					MessageToRequestEvent.class,
+					LifecycleEvent.class,
+					CloseSyncConnectionsEvent.class,
+					TransportInactiveEvent.class);
+
 	private static final ThrowingRunnable<IOException> CLOSE = () -> {
 	};
 	private static final ThrowingRunnable<IOException>
 			NEXT_SEND_TIME_DECREASED = () -> {
 	};
 
+	// Priorities of writer tasks, lower values are written first
+	static final int PRIORITY_CONTROL = 0;
+	static final int PRIORITY_ACK = 1;
+	static final int PRIORITY_REQUEST = 2;
+	static final int PRIORITY_OFFER = 3;
+	static final int PRIORITY_BATCH = 4;
+
 	/**
 	 * The batch capacity must be at least {@link Record#RECORD_HEADER_BYTES}
 	 * + {@link SyncConstants#MAX_MESSAGE_LENGTH} to ensure that maximum-size
-	 * messages can be selected for transmission. Larger batches will mean
-	 * fewer round-trips between the DB and the output stream, but each
-	 * round-trip will block the DB for longer.
+	 * messages can be selected for transmission.
+	 */
+	static final int MIN_BATCH_CAPACITY =
+			RECORD_HEADER_BYTES + MAX_MESSAGE_LENGTH;
+
+	/**
+	 * The batch capacity to use until the connection's throughput has been
+	 * measured.
 	 */
-	private static final int BATCH_CAPACITY =
-			(RECORD_HEADER_BYTES + MAX_MESSAGE_LENGTH) * 2;
+	static final int INITIAL_BATCH_CAPACITY = MIN_BATCH_CAPACITY * 2;
+
+	/**
+	 * Larger batches will mean fewer round-trips between the DB and the
+	 * output stream, but each round-trip will block the DB for longer.
+	 */
+	static final int MAX_BATCH_CAPACITY = MIN_BATCH_CAPACITY * 16;
+
+	/**
+	 * Batches are sized so that writing a batch at the measured throughput
+	 * takes about this long.
+	 */
+	static final long TARGET_BATCH_WRITE_TIME_MS = 1000;
 
 	private final DatabaseComponent db;
 	private final Executor dbExecutor;
@@ -97,7 +142,9 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 	private final SyncRecordWriter recordWriter;
 	@Nullable
 	private final Priority priority;
-	private final BlockingQueue<ThrowingRunnable<IOException>> writerTasks;
+	private final BlockingQueue<WriterTask> writerTasks;
+	// Used for writing tasks with equal priorities in the order they're added
+	private final AtomicLong nextTaskSequenceNumber = new AtomicLong(0);
 
 	private final AtomicBoolean generateAckQueued = new AtomicBoolean(false);
 	private final AtomicBoolean generateBatchQueued = new AtomicBoolean(false);
@@ -106,6 +153,25 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 			new AtomicBoolean(false);
 	private final AtomicLong nextSendTime = new AtomicLong(Long.MAX_VALUE);
 
+	// The time when a message to ack was first received since the last ack
+	// was generated, or Long.MIN_VALUE if no messages have been received
+	private final AtomicLong ackPendingSince =
+			new AtomicLong(Long.MIN_VALUE);
+
+	// Counters for the records written by this session
+	private final SyncSessionMetrics metrics = new SyncSessionMetrics();
+	private final AtomicInteger acksSent = new AtomicInteger(0);
+	private final AtomicInteger offersSent = new AtomicInteger(0);
+	private final AtomicInteger requestsSent = new AtomicInteger(0);
+
+	// Only accessed by the IO thread
+	private final ThroughputEstimator throughputEstimator =
+			new ThroughputEstimator();
+	// The measured throughput in bytes per second, or 0 if not yet measured.
+	// Only written by the IO thread
+	private volatile long throughput = 0;
+	private volatile int batchCapacity = INITIAL_BATCH_CAPACITY;
+
 	private volatile boolean interrupted = false;
 
 	DuplexOutgoingSession(DatabaseComponent db, Executor dbExecutor,
@@ -124,7 +190,46 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 		this.streamWriter = streamWriter;
 		this.recordWriter = recordWriter;
 		this.priority = priority;
-		writerTasks = new LinkedBlockingQueue<>();
+		writerTasks = new PriorityBlockingQueue<>();
+	}
+
+	/**
+	 * Returns the number of messages written by this session.
+	 */
+	long getMessagesSent() {
+		return metrics.getMessagesSent();
+	}
+
+	/**
+	 * Returns the number of bytes of message records written by this session.
+	 */
+	long getMessageBytesSent() {
+		return metrics.getBytesSent();
+	}
+
+	int getAcksSent() {
+		return acksSent.get();
+	}
+
+	int getOffersSent() {
+		return offersSent.get();
+	}
+
+	int getRequestsSent() {
+		return requestsSent.get();
+	}
+
+	/**
+	 * Returns the throughput of the connection in bytes per second, measured
+	 * while writing batches of messages, or 0 if the throughput hasn't been
+	 * measured.
+	 */
+	long getThroughput() {
+		return throughput;
+	}
+
+	int getBatchCapacity() {
+		return batchCapacity;
 	}
 
 	@IoExecutor
@@ -159,8 +264,9 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 						nextKeepalive = now + maxIdleTime;
 					}
 					// Wait for a record
-					ThrowingRunnable<IOException> task = writerTasks.poll(wait,
-							MILLISECONDS);
+					WriterTask queued = writerTasks.poll(wait, MILLISECONDS);
+					ThrowingRunnable<IOException> task =
+							queued == null ? null : queued.getTask();
 					if (task == null) {
 						now = clock.currentTimeMillis();
 						if (now >= nextSendTime.get()) {
@@ -184,10 +290,19 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 						LOG.info("Next send time decreased");
 					} else {
 						task.run();
-						dataToFlush = true;
+						// Batches flush the stream when they're written
+						dataToFlush = !(task instanceof WriteBatch);
 					}
 				}
 				streamWriter.sendEndOfStream();
+				if (LOG.isLoggable(INFO)) {
+					LOG.info("Sent " + metrics.getMessagesSent() + " messages ("
+							+ metrics.getBytesSent() + " bytes), "
+							+ acksSent.get() + " acks, "
+							+ offersSent.get() + " offers, "
+							+ requestsSent.get() + " requests, throughput "
+							+ throughput + " bytes/s");
+				}
 			} catch (InterruptedException e) {
 				LOG.info("Interrupted while waiting for a record to write");
 				Thread.currentThread().interrupt();
@@ -219,13 +334,55 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 
 	private void setNextSendTime(long time) {
 		long old = nextSendTime.getAndSet(time);
-		if (time < old) writerTasks.add(NEXT_SEND_TIME_DECREASED);
+		if (time < old) addTask(PRIORITY_CONTROL, NEXT_SEND_TIME_DECREASED);
+	}
+
+	private void addTask(int priority, ThrowingRunnable<IOException> task) {
+		writerTasks.add(new WriterTask(priority,
+				nextTaskSequenceNumber.getAndIncrement(), task));
+	}
+
+	/**
+	 * Updates the throughput estimate and batch capacity after writing and
+	 * flushing a batch of the given size.
+	 */
+	@IoExecutor
+	private void updateThroughput(long bytes, long duration) {
+		if (!throughputEstimator.addSample(bytes, duration)) return;
+		long updated = throughputEstimator.getThroughput();
+		throughput = updated;
+		batchCapacity = calculateBatchCapacity(updated);
+		if (LOG.isLoggable(INFO)) {
+			LOG.info("Throughput " + updated + " bytes/s, batch capacity "
+					+ batchCapacity);
+		}
+	}
+
+	/**
+	 * Returns the batch capacity to use for a connection with the given
+	 * throughput in bytes per second.
+	 */
+	static int calculateBatchCapacity(long throughput) {
+		long capacity = throughput * TARGET_BATCH_WRITE_TIME_MS / 1000;
+		if (capacity < MIN_BATCH_CAPACITY) return MIN_BATCH_CAPACITY;
+		if (capacity > MAX_BATCH_CAPACITY) return MAX_BATCH_CAPACITY;
+		return (int) capacity;
 	}
 
 	@Override
 	public void interrupt() {
 		interrupted = true;
-		writerTasks.add(CLOSE);
+		addTask(PRIORITY_CONTROL, CLOSE);
+	}
+
+	@Override
+	public SyncSessionStats getStats() {
+		return metrics.getStats(writerTasks.size());
+	}
+
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
 	}
 
 	@Override
@@ -251,8 +408,11 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 			if (((MessageRequestedEvent) e).getContactId().equals(contactId))
 				generateBatch();
 		} else if (e instanceof MessageToAckEvent) {
-			if (((MessageToAckEvent) e).getContactId().equals(contactId))
+			if (((MessageToAckEvent) e).getContactId().equals(contactId)) {
+				ackPendingSince.compareAndSet(Long.MIN_VALUE,
+						clock.currentTimeMillis());
 				generateAck();
+			}
 		} else if (e instanceof MessageToRequestEvent) {
 			if (((MessageToRequestEvent) e).getContactId().equals(contactId))
 				generateRequest();
@@ -275,12 +435,16 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 		public void run() {
 			if (interrupted) return;
 			if (!generateAckQueued.getAndSet(false)) throw new AssertionError();
+			// Messages received after this point will be measured from
+			// when they're received, even if they're included in this ack
+			long pendingSince = ackPendingSince.getAndSet(Long.MIN_VALUE);
 			try {
 				Ack a = db.transactionWithNullableResult(false, txn ->
 						db.generateAck(txn, contactId, MAX_MESSAGE_IDS));
 				if (LOG.isLoggable(INFO))
 					LOG.info("Generated ack: " + (a != null));
-				if (a != null) writerTasks.add(new WriteAck(a));
+				if (a != null)
+					addTask(PRIORITY_ACK, new WriteAck(a, pendingSince));
 			} catch (DbException e) {
 				logException(LOG, WARNING, e);
 				interrupt();
@@ -291,9 +455,11 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 	private class WriteAck implements ThrowingRunnable<IOException> {
 
 		private final Ack ack;
+		private final long pendingSince;
 
-		private WriteAck(Ack ack) {
+		private WriteAck(Ack ack, long pendingSince) {
 			this.ack = ack;
+			this.pendingSince = pendingSince;
 		}
 
 		@IoExecutor
@@ -301,6 +467,10 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 		public void run() throws IOException {
 			if (interrupted) return;
 			recordWriter.writeAck(ack);
+			acksSent.incrementAndGet();
+			if (pendingSince != Long.MIN_VALUE) {
+				metrics.onAckSent(clock.currentTimeMillis() - pendingSince);
+			}
 			LOG.info("Sent ack");
 			generateAck();
 		}
@@ -315,18 +485,20 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 			if (!generateBatchQueued.getAndSet(false))
 				throw new AssertionError();
 			try {
+				long start = now();
 				Collection<Message> b =
 						db.transactionWithNullableResult(false, txn -> {
 							Collection<Message> batch =
 									db.generateRequestedBatch(txn, contactId,
-											BATCH_CAPACITY, maxLatency);
+											batchCapacity, maxLatency);
 							setNextSendTime(db.getNextSendTime(txn, contactId,
 									maxLatency));
 							return batch;
 						});
+				metrics.onDbTransaction(now() - start);
 				if (LOG.isLoggable(INFO))
 					LOG.info("Generated batch: " + (b != null));
-				if (b != null) writerTasks.add(new WriteBatch(b));
+				if (b != null) addTask(PRIORITY_BATCH, new WriteBatch(b));
 			} catch (DbException e) {
 				logException(LOG, WARNING, e);
 				interrupt();
@@ -346,7 +518,15 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 		@Override
 		public void run() throws IOException {
 			if (interrupted) return;
-			for (Message m : batch) recordWriter.writeMessage(m);
+			long start = now(), bytes = 0;
+			for (Message m : batch) {
+				recordWriter.writeMessage(m);
+				bytes += RECORD_HEADER_BYTES + m.getRawLength();
+				metrics.onMessageSent(m.getRawLength());
+			}
+			// Flush the batch so the measurement doesn't stop at a buffer
+			recordWriter.flush();
+			updateThroughput(bytes, now() - start);
 			LOG.info("Sent batch");
 			generateBatch();
 		}
@@ -370,7 +550,7 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 				});
 				if (LOG.isLoggable(INFO))
 					LOG.info("Generated offer: " + (o != null));
-				if (o != null) writerTasks.add(new WriteOffer(o));
+				if (o != null) addTask(PRIORITY_OFFER, new WriteOffer(o));
 			} catch (DbException e) {
 				logException(LOG, WARNING, e);
 				interrupt();
@@ -391,6 +571,7 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 		public void run() throws IOException {
 			if (interrupted) return;
 			recordWriter.writeOffer(offer);
+			offersSent.incrementAndGet();
 			LOG.info("Sent offer");
 			generateOffer();
 		}
@@ -409,7 +590,7 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 						db.generateRequest(txn, contactId, MAX_MESSAGE_IDS));
 				if (LOG.isLoggable(INFO))
 					LOG.info("Generated request: " + (r != null));
-				if (r != null) writerTasks.add(new WriteRequest(r));
+				if (r != null) addTask(PRIORITY_REQUEST, new WriteRequest(r));
 			} catch (DbException e) {
 				logException(LOG, WARNING, e);
 				interrupt();
@@ -430,8 +611,78 @@ class DuplexOutgoingSession implements SyncSession, EventListener {
 		public void run() throws IOException {
 			if (interrupted) return;
 			recordWriter.writeRequest(request);
+			requestsSent.incrementAndGet();
 			LOG.info("Sent request");
 			generateRequest();
 		}
 	}
+
+	/**
+	 * Estimates the throughput of a connection from the time taken to write
+	 * and flush batches of messages.
+	 * <p/>
+	 * The time taken to write a small batch is dominated by overheads, so
+	 * consecutive batches are combined until they contain at least
+	 * {@link #MIN_BATCH_CAPACITY} bytes, and each combined sample is added to
+	 * an exponentially weighted moving average.
+	 */
+	@NotThreadSafe
+	static class ThroughputEstimator {
+
+		private long throughput = 0, pendingBytes = 0, pendingDuration = 0;
+
+		/**
+		 * Adds the given number of bytes, written in the given number of
+		 * milliseconds, to the estimate. Returns true if the estimate was
+		 * updated.
+		 */
+		boolean addSample(long bytes, long duration) {
+			pendingBytes += bytes;
+			pendingDuration += duration;
+			if (pendingBytes < MIN_BATCH_CAPACITY) return false;
+			long sample = pendingBytes * 1000 / Math.max(1, pendingDuration);
+			pendingBytes = 0;
+			pendingDuration = 0;
+			if (throughput == 0) throughput = sample;
+			else throughput = (throughput * 3 + sample) / 4;
+			return true;
+		}
+
+		/**
+		 * Returns the estimated throughput in bytes per second, or 0 if no
+		 * estimate has been made.
+		 */
+		long getThroughput() {
+			return throughput;
+		}
+	}
+
+	/**
+	 * A task on the writer queue, ordered by priority and then by the order
+	 * in which the tasks were added.
+	 */
+	static class WriterTask implements Comparable<WriterTask> {
+
+		private final int priority;
+		private final long sequenceNumber;
+		private final ThrowingRunnable<IOException> task;
+
+		WriterTask(int priority, long sequenceNumber,
+				ThrowingRunnable<IOException> task) {
+			this.priority = priority;
+			this.sequenceNumber = sequenceNumber;
+			this.task = task;
+		}
+
+		ThrowingRunnable<IOException> getTask() {
+			return task;
+		}
+
+		@Override
+		public int compareTo(WriterTask o) {
+			if (priority != o.priority)
+				return priority < o.priority ? -1 : 1;
+			return Long.compare(sequenceNumber, o.sequenceNumber);
+		}
+	}
 }
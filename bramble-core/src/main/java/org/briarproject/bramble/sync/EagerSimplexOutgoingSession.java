@@ -2,8 +2,10 @@ package org.briarproject.bramble.sync;
 
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.db.DatabaseComponent;
+import org.briarproject.bramble.api.db.DatabaseExecutor;
 import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.event.EventBus;
+import org.briarproject.bramble.api.lifecycle.IoExecutor;
 import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 import org.briarproject.bramble.api.plugin.TransportId;
 import org.briarproject.bramble.api.sync.Message;
@@ -12,17 +14,30 @@ import org.briarproject.bramble.api.sync.SyncRecordWriter;
 import org.briarproject.bramble.api.transport.StreamWriter;
 
 import java.io.IOException;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Logger;
 
 import javax.annotation.concurrent.ThreadSafe;
 
+import static java.util.Collections.emptyList;
 import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
+import static org.briarproject.bramble.api.record.Record.RECORD_HEADER_BYTES;
+import static org.briarproject.bramble.util.LogUtils.logException;
+import static org.briarproject.bramble.util.LogUtils.now;
 
 /**
  * A {@link SimplexOutgoingSession} that sends messages eagerly, ie
  * regardless of whether they're due for retransmission.
+ * <p/>
+ * Messages are loaded in chunks, each in a single transaction. The next
+ * chunk is loaded on the database executor while the current chunk is being
+ * written. Each chunk is marked as sent after it has been written.
  */
 @ThreadSafe
 @NotNullByDefault
@@ -31,7 +46,27 @@ class EagerSimplexOutgoingSession extends SimplexOutgoingSession {
 	private static final Logger LOG =
 			getLogger(EagerSimplexOutgoingSession.class.getName());
 
+	/**
+	 * The number of bytes of messages, including record headers, after which
+	 * a chunk is complete. A chunk may exceed this by up to one message.
+	 * Larger chunks mean fewer transactions, but each transaction will block
+	 * the DB for longer.
+	 */
+	static final int CHUNK_CAPACITY = BATCH_CAPACITY * 2;
+
+	private static final Chunk END = new Chunk(emptyList(), 0);
+
+	private final Executor dbExecutor;
+	private final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+
+	/**
+	 * Set when {@link #sendMessages()} returns, so any chunk that is still
+	 * waiting to be loaded is not loaded.
+	 */
+	private volatile boolean done = false;
+
 	EagerSimplexOutgoingSession(DatabaseComponent db,
+			Executor dbExecutor,
 			EventBus eventBus,
 			ContactId contactId,
 			TransportId transportId,
@@ -40,27 +75,131 @@ class EagerSimplexOutgoingSession extends SimplexOutgoingSession {
 			SyncRecordWriter recordWriter) {
 		super(db, eventBus, contactId, transportId, maxLatency, streamWriter,
 				recordWriter);
+		this.dbExecutor = dbExecutor;
+	}
+
+	@Override
+	public void interrupt() {
+		super.interrupt();
+		chunks.add(END);
 	}
 
+	@IoExecutor
 	@Override
 	void sendMessages() throws DbException, IOException {
-		for (MessageId m : loadUnackedMessageIdsToSend()) {
-			if (isInterrupted()) break;
-			Message message = db.transactionWithNullableResult(false, txn ->
-					db.getMessageToSend(txn, contactId, m, maxLatency, true));
-			if (message == null) continue; // No longer shared
-			recordWriter.writeMessage(message);
-			LOG.info("Sent message");
+		List<MessageId> ids = loadUnackedMessageIdsToSend();
+		if (ids.isEmpty()) return;
+		long start = now();
+		int sent = 0;
+		long bytes = 0;
+		dbExecutor.execute(new GenerateChunk(ids, 0));
+		try {
+			while (!isInterrupted()) {
+				Chunk chunk = chunks.take();
+				if (chunk == END) break;
+				boolean last = chunk.next == ids.size();
+				// Load the next chunk while this one is being written
+				if (!last) {
+					dbExecutor.execute(new GenerateChunk(ids, chunk.next));
+				}
+				List<MessageId> written =
+						new ArrayList<>(chunk.messages.size());
+				for (Message m : chunk.messages) {
+					recordWriter.writeMessage(m);
+					written.add(m.getId());
+					bytes += RECORD_HEADER_BYTES + m.getRawLength();
+					metrics.onMessageSent(m.getRawLength());
+				}
+				// Only mark the chunk as sent once it has been written
+				if (!written.isEmpty()) setMessagesSent(written);
+				sent += written.size();
+				if (LOG.isLoggable(INFO)) {
+					LOG.info("Sent " + written.size() + " messages");
+				}
+				if (last) break;
+			}
+		} catch (InterruptedException e) {
+			LOG.info("Interrupted while waiting for messages to write");
+			Thread.currentThread().interrupt();
+		} finally {
+			done = true;
+		}
+		if (LOG.isLoggable(INFO)) {
+			long duration = now() - start;
+			LOG.info("Sent " + sent + " messages, " + bytes + " bytes in "
+					+ duration + " ms");
 		}
 	}
 
-	private Collection<MessageId> loadUnackedMessageIdsToSend()
-			throws DbException {
-		Collection<MessageId> ids = db.transactionWithResult(true, txn ->
-				db.getUnackedMessagesToSend(txn, contactId));
+	private void setMessagesSent(List<MessageId> ids) throws DbException {
+		long start = now();
+		db.transaction(false, txn ->
+				db.setMessagesSent(txn, contactId, ids, maxLatency));
+		metrics.onDbTransaction(now() - start);
+	}
+
+	private List<MessageId> loadUnackedMessageIdsToSend() throws DbException {
+		List<MessageId> ids = new ArrayList<>(db.transactionWithResult(true,
+				txn -> db.getUnackedMessagesToSend(txn, contactId)));
 		if (LOG.isLoggable(INFO)) {
 			LOG.info(ids.size() + " unacked messages to send");
 		}
 		return ids;
 	}
+
+	private static class Chunk {
+
+		private final List<Message> messages;
+		/**
+		 * The index of the first message ID that wasn't considered for
+		 * this chunk.
+		 */
+		private final int next;
+
+		private Chunk(List<Message> messages, int next) {
+			this.messages = messages;
+			this.next = next;
+		}
+	}
+
+	private class GenerateChunk implements Runnable {
+
+		private final List<MessageId> ids;
+		private final int first;
+
+		private GenerateChunk(List<MessageId> ids, int first) {
+			this.ids = ids;
+			this.first = first;
+		}
+
+		@DatabaseExecutor
+		@Override
+		public void run() {
+			if (done || isInterrupted()) return;
+			try {
+				long start = now();
+				Chunk chunk = db.transactionWithResult(true, txn -> {
+					List<Message> messages = new ArrayList<>();
+					int i = first, bytes = 0;
+					while (i < ids.size() && bytes < CHUNK_CAPACITY) {
+						Message m = db.getMessageToSend(txn, contactId,
+								ids.get(i++), maxLatency, false);
+						if (m == null) continue; // No longer shared
+						messages.add(m);
+						bytes += RECORD_HEADER_BYTES + m.getRawLength();
+					}
+					return new Chunk(messages, i);
+				});
+				metrics.onDbTransaction(now() - start);
+				if (LOG.isLoggable(INFO)) {
+					LOG.info("Generated chunk of " + chunk.messages.size()
+							+ " messages");
+				}
+				chunks.add(chunk);
+			} catch (DbException e) {
+				logException(LOG, WARNING, e);
+				interrupt();
+			}
+		}
+	}
 }
@@ -8,7 +8,7 @@ import org.briarproject.bramble.api.db.DatabaseExecutor;
 import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.lifecycle.IoExecutor;
 import org.briarproject.bramble.api.lifecycle.event.LifecycleEvent;
 import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
@@ -20,36 +20,45 @@ import org.briarproject.bramble.api.sync.PriorityHandler;
 import org.briarproject.bramble.api.sync.Request;
 import org.briarproject.bramble.api.sync.SyncRecordReader;
 import org.briarproject.bramble.api.sync.SyncSession;
+import org.briarproject.bramble.api.sync.SyncSessionStats;
 import org.briarproject.bramble.api.sync.Versions;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 import javax.annotation.concurrent.ThreadSafe;
 
+import static java.util.Arrays.asList;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.api.lifecycle.LifecycleManager.LifecycleState.STOPPING;
 import static org.briarproject.bramble.util.LogUtils.logException;
+import static org.briarproject.bramble.util.LogUtils.now;
 
 /**
  * An incoming {@link SyncSession}.
  */
 @ThreadSafe
 @NotNullByDefault
-class IncomingSession implements SyncSession, EventListener {
+class IncomingSession implements SyncSession, SelectiveEventListener {
 
 	private static final Logger LOG =
 			getLogger(IncomingSession.class.getName());
 
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			asList(ContactRemovedEvent.class,
+					LifecycleEvent.class);
+
 	private final DatabaseComponent db;
 	private final Executor dbExecutor;
 	private final EventBus eventBus;
 	private final ContactId contactId;
 	private final SyncRecordReader recordReader;
 	private final PriorityHandler priorityHandler;
+	private final SyncSessionMetrics metrics = new SyncSessionMetrics();
 
 	private volatile boolean interrupted = false;
 
@@ -80,6 +89,7 @@ class IncomingSession implements SyncSession, EventListener {
 					dbExecutor.execute(new ReceiveAck(a));
 				} else if (recordReader.hasMessage()) {
 					Message m = recordReader.readMessage();
+					metrics.onMessageReceived(m.getRawLength());
 					dbExecutor.execute(new ReceiveMessage(m));
 				} else if (recordReader.hasOffer()) {
 					Offer o = recordReader.readOffer();
@@ -109,6 +119,16 @@ class IncomingSession implements SyncSession, EventListener {
 		interrupted = true;
 	}
 
+	@Override
+	public SyncSessionStats getStats() {
+		return metrics.getStats(0);
+	}
+
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		if (e instanceof ContactRemovedEvent) {
@@ -153,8 +173,10 @@ class IncomingSession implements SyncSession, EventListener {
 		@Override
 		public void run() {
 			try {
+				long start = now();
 				db.transaction(false, txn ->
 						db.receiveMessage(txn, contactId, message));
+				metrics.onDbTransaction(now() - start);
 			} catch (DbException e) {
 				logException(LOG, WARNING, e);
 				interrupt();
@@ -28,6 +28,7 @@ import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.api.record.Record.RECORD_HEADER_BYTES;
 import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_IDS;
 import static org.briarproject.bramble.api.sync.SyncConstants.MESSAGE_HEADER_LENGTH;
+import static org.briarproject.bramble.util.LogUtils.now;
 
 /**
  * A {@link SimplexOutgoingSession} for sending and acking messages via a
@@ -100,10 +101,13 @@ class MailboxOutgoingSession extends SimplexOutgoingSession {
 		for (MessageId m : loadMessageIdsToSend()) {
 			if (isInterrupted()) break;
 			// Defer marking the message as sent
+			long start = now();
 			Message message = db.transactionWithNullableResult(true, txn ->
 					db.getMessageToSend(txn, contactId, m, maxLatency, false));
+			metrics.onDbTransaction(now() - start);
 			if (message == null) continue; // No longer shared
 			recordWriter.writeMessage(message);
+			metrics.onMessageSent(message.getRawLength());
 			sessionRecord.onMessageSent(m);
 			LOG.info("Sent message");
 		}
@@ -66,11 +66,13 @@ class MessageFactoryImpl implements MessageFactory {
 		byte[] body = new byte[raw.length - MESSAGE_HEADER_LENGTH];
 		System.arraycopy(raw, MESSAGE_HEADER_LENGTH, body, 0, body.length);
 		MessageId id = getMessageId(g, timestamp, body);
-		return new Message(id, g, timestamp, body);
+		return new Message(id, g, timestamp, body, raw);
 	}
 
 	@Override
 	public byte[] getRawMessage(Message m) {
+		byte[] cached = m.getRaw();
+		if (cached != null) return cached;
 		byte[] body = m.getBody();
 		byte[] raw = new byte[MESSAGE_HEADER_LENGTH + body.length];
 		System.arraycopy(m.getGroupId().getBytes(), 0, raw, 0, UniqueId.LENGTH);
@@ -6,7 +6,7 @@ import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.lifecycle.IoExecutor;
 import org.briarproject.bramble.api.lifecycle.event.LifecycleEvent;
 import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
@@ -18,6 +18,7 @@ import org.briarproject.bramble.api.sync.Message;
 import org.briarproject.bramble.api.sync.SyncConstants;
 import org.briarproject.bramble.api.sync.SyncRecordWriter;
 import org.briarproject.bramble.api.sync.SyncSession;
+import org.briarproject.bramble.api.sync.SyncSessionStats;
 import org.briarproject.bramble.api.sync.Versions;
 import org.briarproject.bramble.api.sync.event.CloseSyncConnectionsEvent;
 import org.briarproject.bramble.api.transport.StreamWriter;
@@ -28,6 +29,7 @@ import java.util.logging.Logger;
 
 import javax.annotation.concurrent.ThreadSafe;
 
+import static java.util.Arrays.asList;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Logger.getLogger;
@@ -37,6 +39,7 @@ import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_IDS;
 import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_LENGTH;
 import static org.briarproject.bramble.api.sync.SyncConstants.SUPPORTED_VERSIONS;
 import static org.briarproject.bramble.util.LogUtils.logException;
+import static org.briarproject.bramble.util.LogUtils.now;
 
 /**
  * An outgoing {@link SyncSession} suitable for simplex transports. The session
@@ -45,11 +48,17 @@ import static org.briarproject.bramble.util.LogUtils.logException;
  */
 @ThreadSafe
 @NotNullByDefault
-class SimplexOutgoingSession implements SyncSession, EventListener {
+class SimplexOutgoingSession implements SyncSession, SelectiveEventListener {
 
 	private static final Logger LOG =
 			getLogger(SimplexOutgoingSession.class.getName());
 
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			asList(ContactRemovedEvent.class,
+					LifecycleEvent.class,
+					CloseSyncConnectionsEvent.class,
+					TransportInactiveEvent.class);
+
 	/**
 	 * The batch capacity must be at least {@link Record#RECORD_HEADER_BYTES}
 	 * + {@link SyncConstants#MAX_MESSAGE_LENGTH} to ensure that maximum-size
@@ -67,6 +76,7 @@ class SimplexOutgoingSession implements SyncSession, EventListener {
 	protected final long maxLatency;
 	protected final StreamWriter streamWriter;
 	protected final SyncRecordWriter recordWriter;
+	protected final SyncSessionMetrics metrics = new SyncSessionMetrics();
 
 	private volatile boolean interrupted = false;
 
@@ -114,6 +124,16 @@ class SimplexOutgoingSession implements SyncSession, EventListener {
 		return interrupted;
 	}
 
+	@Override
+	public SyncSessionStats getStats() {
+		return metrics.getStats(0);
+	}
+
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		if (e instanceof ContactRemovedEvent) {
@@ -151,12 +171,17 @@ class SimplexOutgoingSession implements SyncSession, EventListener {
 	}
 
 	private boolean generateAndSendBatch() throws DbException, IOException {
+		long start = now();
 		Collection<Message> b = db.transactionWithNullableResult(false, txn ->
 				db.generateBatch(txn, contactId, BATCH_CAPACITY, maxLatency));
+		metrics.onDbTransaction(now() - start);
 		if (LOG.isLoggable(INFO))
 			LOG.info("Generated batch: " + (b != null));
 		if (b == null) return false; // No more messages to send
-		for (Message m : b) recordWriter.writeMessage(m);
+		for (Message m : b) {
+			recordWriter.writeMessage(m);
+			metrics.onMessageSent(m.getRawLength());
+		}
 		LOG.info("Sent batch");
 		return true;
 	}
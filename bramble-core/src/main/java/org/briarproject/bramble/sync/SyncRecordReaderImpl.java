@@ -110,6 +110,8 @@ class SyncRecordReaderImpl implements SyncRecordReader {
 			System.arraycopy(payload, off, id, 0, UniqueId.LENGTH);
 			ids.add(new MessageId(id));
 		}
+		// The IDs have been copied out of the payload, so it can be reused
+		reader.releaseRecord(nextRecord);
 		nextRecord = null;
 		return ids;
 	}
@@ -130,6 +132,7 @@ class SyncRecordReaderImpl implements SyncRecordReader {
 		long timestamp = ByteUtils.readUint64(payload, UniqueId.LENGTH);
 		if (timestamp < 0) throw new FormatException();
 		nextRecord = null;
+		// The message keeps the payload, so the record isn't released
 		return messageFactory.createMessage(payload);
 	}
 
@@ -174,6 +177,7 @@ class SyncRecordReaderImpl implements SyncRecordReader {
 			throw new FormatException();
 		List<Byte> supported = new ArrayList<>(payload.length);
 		for (byte b : payload) supported.add(b);
+		reader.releaseRecord(nextRecord);
 		nextRecord = null;
 		return supported;
 	}
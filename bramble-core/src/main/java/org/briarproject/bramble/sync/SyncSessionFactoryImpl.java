@@ -68,8 +68,8 @@ class SyncSessionFactoryImpl implements SyncSessionFactory {
 		SyncRecordWriter recordWriter =
 				recordWriterFactory.createRecordWriter(out);
 		if (eager) {
-			return new EagerSimplexOutgoingSession(db, eventBus, c, t,
-					maxLatency, streamWriter, recordWriter);
+			return new EagerSimplexOutgoingSession(db, dbExecutor, eventBus,
+					c, t, maxLatency, streamWriter, recordWriter);
 		} else {
 			return new SimplexOutgoingSession(db, eventBus, c, t,
 					maxLatency, streamWriter, recordWriter);
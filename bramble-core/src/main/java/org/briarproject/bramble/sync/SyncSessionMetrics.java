@@ -0,0 +1,94 @@
+package org.briarproject.bramble.sync;
+
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+import org.briarproject.bramble.api.sync.LatencyHistogram;
+import org.briarproject.bramble.api.sync.SyncSessionStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import static org.briarproject.bramble.api.record.Record.RECORD_HEADER_BYTES;
+import static org.briarproject.bramble.api.sync.LatencyHistogram.BUCKETS;
+import static org.briarproject.bramble.api.sync.LatencyHistogram.getBucket;
+
+/**
+ * Counters and histograms for a single sync session, from which
+ * {@link SyncSessionStats} snapshots can be taken at any time.
+ */
+@ThreadSafe
+@NotNullByDefault
+class SyncSessionMetrics {
+
+	private final AtomicLong messagesSent = new AtomicLong(0);
+	private final AtomicLong bytesSent = new AtomicLong(0);
+	private final AtomicLong messagesReceived = new AtomicLong(0);
+	private final AtomicLong bytesReceived = new AtomicLong(0);
+	private final Recorder dbTime = new Recorder();
+	private final Recorder ackLatency = new Recorder();
+
+	/**
+	 * Records that a message with the given raw length was sent.
+	 */
+	void onMessageSent(int rawLength) {
+		messagesSent.incrementAndGet();
+		bytesSent.addAndGet(RECORD_HEADER_BYTES + rawLength);
+	}
+
+	/**
+	 * Records that a message with the given raw length was received.
+	 */
+	void onMessageReceived(int rawLength) {
+		messagesReceived.incrementAndGet();
+		bytesReceived.addAndGet(RECORD_HEADER_BYTES + rawLength);
+	}
+
+	void onDbTransaction(long duration) {
+		dbTime.add(duration);
+	}
+
+	void onAckSent(long latency) {
+		ackLatency.add(latency);
+	}
+
+	long getMessagesSent() {
+		return messagesSent.get();
+	}
+
+	long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	SyncSessionStats getStats(int writeQueueDepth) {
+		return new SyncSessionStats(messagesSent.get(), bytesSent.get(),
+				messagesReceived.get(), bytesReceived.get(), writeQueueDepth,
+				dbTime.getHistogram(), ackLatency.getHistogram());
+	}
+
+	@ThreadSafe
+	private static class Recorder {
+
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		private final AtomicLong total = new AtomicLong(0);
+		private final AtomicLong max = new AtomicLong(0);
+
+		private void add(long duration) {
+			if (duration < 0) duration = 0;
+			counts.incrementAndGet(getBucket(duration));
+			total.addAndGet(duration);
+			while (true) {
+				long old = max.get();
+				if (duration <= old || max.compareAndSet(old, duration)) break;
+			}
+		}
+
+		private LatencyHistogram getHistogram() {
+			// The fields may be read while a duration is being added, so the
+			// snapshot isn't guaranteed to be consistent
+			long[] snapshot = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++) snapshot[i] = counts.get(i);
+			return new LatencyHistogram(snapshot, total.get(), max.get());
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package org.briarproject.bramble.system;
 
 import org.briarproject.bramble.api.lifecycle.LifecycleManager;
+import org.briarproject.bramble.api.system.Clock;
+import org.briarproject.bramble.api.system.CoarseScheduler;
 import org.briarproject.bramble.api.system.TaskScheduler;
 
 import java.util.concurrent.RejectedExecutionHandler;
@@ -36,4 +38,12 @@ public class DefaultTaskSchedulerModule {
 		lifecycleManager.registerForShutdown(scheduledExecutorService);
 		return new TaskSchedulerImpl(scheduledExecutorService);
 	}
+
+	@Provides
+	@Singleton
+	@CoarseScheduler
+	TaskScheduler provideCoarseScheduler(TaskScheduler scheduler,
+			Clock clock) {
+		return new TimerWheel(scheduler, clock);
+	}
 }
@@ -0,0 +1,283 @@
+package org.briarproject.bramble.system;
+
+import org.briarproject.bramble.api.Cancellable;
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+import org.briarproject.bramble.api.system.Clock;
+import org.briarproject.bramble.api.system.TaskScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A {@link TaskScheduler} for large numbers of coarse-grained deadlines.
+ * <p>
+ * Tasks are kept in a hierarchical timer wheel with a resolution of
+ * {@link #TICK_MS}. Each level of the wheel has {@link #SLOTS} slots, and
+ * each slot of a level covers as many ticks as the whole of the level below.
+ * When the wheel reaches a slot above the bottom level, the slot's tasks are
+ * moved down to the levels below. Scheduling and cancelling a task therefore
+ * take constant time, however many tasks are scheduled.
+ * <p>
+ * Only one task at a time is scheduled with the underlying scheduler, to
+ * advance the wheel when the next non-empty slot is reached.
+ */
+@ThreadSafe
+@NotNullByDefault
+class TimerWheel implements TaskScheduler {
+
+	/**
+	 * The resolution of the wheel. Tasks may run up to this many
+	 * milliseconds after their deadlines.
+	 */
+	static final long TICK_MS = 1000;
+
+	private static final int SLOT_BITS = 6;
+	static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	static final int LEVELS = 4;
+
+	/**
+	 * Tasks that are due further in the future are placed in the top level
+	 * as if they were due this many ticks in the future, and placed again
+	 * when their slot is reached.
+	 */
+	private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+	private static final Executor DIRECT = Runnable::run;
+
+	private final TaskScheduler scheduler;
+	private final Clock clock;
+	private final Object lock = new Object();
+
+	/**
+	 * The first timer in each slot of each level, or null if the slot is
+	 * empty. The timers in each slot form a doubly linked list.
+	 */
+	@GuardedBy("lock")
+	private final Timer[][] slots = new Timer[LEVELS][SLOTS];
+
+	/**
+	 * The last tick that has been processed.
+	 */
+	@GuardedBy("lock")
+	private long currentTick;
+
+	@GuardedBy("lock")
+	private int size = 0;
+
+	/**
+	 * The tick at which the wheel will next be advanced, or Long.MAX_VALUE
+	 * if no wake-up is scheduled.
+	 */
+	@GuardedBy("lock")
+	private long wakeTick = Long.MAX_VALUE;
+
+	@GuardedBy("lock")
+	@Nullable
+	private Cancellable wakeTask = null;
+
+	TimerWheel(TaskScheduler scheduler, Clock clock) {
+		this.scheduler = scheduler;
+		this.clock = clock;
+		currentTick = clock.currentTimeMillis() / TICK_MS;
+	}
+
+	@Override
+	public Cancellable schedule(Runnable task, Executor executor, long delay,
+			TimeUnit unit) {
+		Timer t = new Timer(task, executor, 0);
+		schedule(t, MILLISECONDS.convert(delay, unit));
+		return t;
+	}
+
+	@Override
+	public Cancellable scheduleWithFixedDelay(Runnable task, Executor executor,
+			long delay, long interval, TimeUnit unit) {
+		long intervalMs = max(1, MILLISECONDS.convert(interval, unit));
+		Timer t = new Timer(task, executor, intervalMs);
+		schedule(t, MILLISECONDS.convert(delay, unit));
+		return t;
+	}
+
+	/**
+	 * Returns the number of tasks waiting in the wheel.
+	 */
+	int getSize() {
+		synchronized (lock) {
+			return size;
+		}
+	}
+
+	private void schedule(Timer t, long delayMs) {
+		long deadline = clock.currentTimeMillis() + max(0, delayMs);
+		// Round up so the task doesn't run before its deadline
+		long deadlineTick = (deadline + TICK_MS - 1) / TICK_MS;
+		synchronized (lock) {
+			if (t.cancelled) return;
+			t.deadlineTick = max(deadlineTick, currentTick + 1);
+			insert(t);
+			long tick = getProcessingTick(t.level, t.slot);
+			if (tick < wakeTick) scheduleWakeUp(tick);
+		}
+	}
+
+	private void wakeUp() {
+		List<Timer> expired = new ArrayList<>();
+		synchronized (lock) {
+			wakeTask = null;
+			wakeTick = Long.MAX_VALUE;
+			long targetTick = clock.currentTimeMillis() / TICK_MS;
+			while (size > 0) {
+				// Skip any ticks where all the slots to be processed are empty
+				long tick = getNextProcessingTick();
+				if (tick > targetTick) break;
+				currentTick = tick;
+				// Move timers down from the top first, so timers that are
+				// moved down to a slot that's being processed are moved again
+				for (int level = LEVELS - 1; level > 0; level--) {
+					int shift = SLOT_BITS * level;
+					if ((tick & ((1L << shift) - 1)) == 0) {
+						int slot = (int) (tick >>> shift) & SLOT_MASK;
+						for (Timer t : removeAll(level, slot)) insert(t);
+					}
+				}
+				expired.addAll(removeAll(0, (int) tick & SLOT_MASK));
+			}
+			if (currentTick < targetTick) currentTick = targetTick;
+			if (size > 0) scheduleWakeUp(getNextProcessingTick());
+		}
+		for (Timer t : expired) t.executor.execute(t);
+	}
+
+	@GuardedBy("lock")
+	private void scheduleWakeUp(long tick) {
+		if (wakeTask != null) wakeTask.cancel();
+		wakeTick = tick;
+		long delay = max(0, tick * TICK_MS - clock.currentTimeMillis());
+		wakeTask = scheduler.schedule(this::wakeUp, DIRECT, delay,
+				MILLISECONDS);
+	}
+
+	/**
+	 * Returns the next tick after the current tick at which the given slot
+	 * of the given level will be processed.
+	 */
+	@GuardedBy("lock")
+	private long getProcessingTick(int level, int slot) {
+		int shift = SLOT_BITS * level;
+		long block = currentTick >>> shift;
+		long next = block + ((slot - block) & SLOT_MASK);
+		if (next == block) next += SLOTS;
+		return next << shift;
+	}
+
+	@GuardedBy("lock")
+	private long getNextProcessingTick() {
+		long next = Long.MAX_VALUE;
+		for (int level = 0; level < LEVELS; level++) {
+			for (int slot = 0; slot < SLOTS; slot++) {
+				if (slots[level][slot] != null) {
+					next = min(next, getProcessingTick(level, slot));
+				}
+			}
+		}
+		return next;
+	}
+
+	@GuardedBy("lock")
+	private void insert(Timer t) {
+		long delta = min(t.deadlineTick - currentTick, MAX_DELTA);
+		int level = 0;
+		while (level < LEVELS - 1
+				&& delta >= 1L << (SLOT_BITS * (level + 1))) {
+			level++;
+		}
+		long tick = currentTick + delta;
+		int slot = (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+		Timer head = slots[level][slot];
+		t.level = level;
+		t.slot = slot;
+		t.prev = null;
+		t.next = head;
+		if (head != null) head.prev = t;
+		slots[level][slot] = t;
+		size++;
+	}
+
+	@GuardedBy("lock")
+	private void remove(Timer t) {
+		if (t.prev == null) slots[t.level][t.slot] = t.next;
+		else t.prev.next = t.next;
+		if (t.next != null) t.next.prev = t.prev;
+		t.prev = t.next = null;
+		t.level = -1;
+		size--;
+	}
+
+	@GuardedBy("lock")
+	private List<Timer> removeAll(int level, int slot) {
+		List<Timer> removed = new ArrayList<>();
+		Timer t = slots[level][slot];
+		while (t != null) {
+			Timer next = t.next;
+			t.prev = t.next = null;
+			t.level = -1;
+			removed.add(t);
+			t = next;
+		}
+		slots[level][slot] = null;
+		size -= removed.size();
+		return removed;
+	}
+
+	private class Timer implements Cancellable, Runnable {
+
+		private final Runnable task;
+		private final Executor executor;
+		private final long interval;
+
+		@GuardedBy("lock")
+		private long deadlineTick;
+		@GuardedBy("lock")
+		private int level = -1, slot = -1;
+		@GuardedBy("lock")
+		@Nullable
+		private Timer prev = null, next = null;
+		@GuardedBy("lock")
+		private boolean cancelled = false;
+
+		private Timer(Runnable task, Executor executor, long interval) {
+			this.task = task;
+			this.executor = executor;
+			this.interval = interval;
+		}
+
+		@Override
+		public void cancel() {
+			synchronized (lock) {
+				cancelled = true;
+				if (level != -1) remove(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			synchronized (lock) {
+				if (cancelled) return;
+			}
+			task.run();
+			// Fixed delay: measured from the end of this execution
+			if (interval > 0) schedule(this, interval);
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.briarproject.bramble.versioning;
 
+import org.briarproject.bramble.TransactionalCache;
 import org.briarproject.bramble.api.FormatException;
 import org.briarproject.bramble.api.client.ClientHelper;
 import org.briarproject.bramble.api.client.ContactGroupFactory;
@@ -42,11 +43,17 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.api.sync.Group.Visibility.INVISIBLE;
 import static org.briarproject.bramble.api.sync.Group.Visibility.SHARED;
 import static org.briarproject.bramble.api.sync.Group.Visibility.VISIBLE;
@@ -54,10 +61,14 @@ import static org.briarproject.bramble.api.sync.validation.IncomingMessageHook.D
 import static org.briarproject.bramble.versioning.ClientVersioningConstants.MSG_KEY_LOCAL;
 import static org.briarproject.bramble.versioning.ClientVersioningConstants.MSG_KEY_UPDATE_VERSION;
 
+@ThreadSafe
 @NotNullByDefault
 class ClientVersioningManagerImpl implements ClientVersioningManager,
 		Service, OpenDatabaseHook, ContactHook, IncomingMessageHook {
 
+	private static final Logger LOG =
+			getLogger(ClientVersioningManagerImpl.class.getName());
+
 	private final DatabaseComponent db;
 	private final ClientHelper clientHelper;
 	private final ContactGroupFactory contactGroupFactory;
@@ -68,6 +79,21 @@ class ClientVersioningManagerImpl implements ClientVersioningManager,
 	private final Map<ClientMajorVersion, ClientVersioningHook> hooks =
 			new ConcurrentHashMap<>();
 
+	/**
+	 * The client visibilities calculated from the latest committed local and
+	 * remote updates for each contact, and the minor versions from the latest
+	 * committed remote update for each contact.
+	 */
+	private final TransactionalCache<ContactId,
+			Map<ClientMajorVersion, Visibility>> visibilityCache =
+			new TransactionalCache<>();
+	private final TransactionalCache<ContactId,
+			Map<ClientMajorVersion, Integer>> minorVersionCache =
+			new TransactionalCache<>();
+
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong cacheMisses = new AtomicLong();
+
 	@Inject
 	ClientVersioningManagerImpl(DatabaseComponent db, ClientHelper clientHelper,
 			ContactGroupFactory contactGroupFactory, Clock clock) {
@@ -90,42 +116,115 @@ class ClientVersioningManagerImpl implements ClientVersioningManager,
 	@Override
 	public Visibility getClientVisibility(Transaction txn, ContactId contactId,
 			ClientId clientId, int majorVersion) throws DbException {
+		Map<ClientMajorVersion, Visibility> visibilities =
+				visibilityCache.get(contactId);
+		if (visibilities == null) {
+			countCacheMiss();
+			visibilities = loadVisibilities(txn, contactId);
+			if (visibilities == null) return INVISIBLE;
+			visibilityCache.put(txn, contactId, visibilities);
+		} else {
+			cacheHits.incrementAndGet();
+		}
+		ClientMajorVersion key = new ClientMajorVersion(clientId, majorVersion);
+		Visibility v = visibilities.get(key);
+		return v == null ? INVISIBLE : v;
+	}
+
+	@Override
+	public int getClientMinorVersion(Transaction txn, ContactId contactId,
+			ClientId clientId, int majorVersion) throws DbException {
+		Map<ClientMajorVersion, Integer> minorVersions =
+				minorVersionCache.get(contactId);
+		if (minorVersions == null) {
+			countCacheMiss();
+			minorVersions = loadRemoteMinorVersions(txn, contactId);
+			if (minorVersions == null) return -1;
+			minorVersionCache.put(txn, contactId, minorVersions);
+		} else {
+			cacheHits.incrementAndGet();
+		}
+		ClientMajorVersion key = new ClientMajorVersion(clientId, majorVersion);
+		Integer minorVersion = minorVersions.get(key);
+		return minorVersion == null ? -1 : minorVersion;
+	}
+
+	/**
+	 * Returns the client visibilities for the given contact, or null if the
+	 * contact's group doesn't exist.
+	 */
+	@Nullable
+	private Map<ClientMajorVersion, Visibility> loadVisibilities(
+			Transaction txn, ContactId c) throws DbException {
 		try {
-			LatestUpdates latest = findLatestUpdates(txn, contactId);
-			if (latest == null || latest.remote == null) return INVISIBLE;
+			LatestUpdates latest = findLatestUpdates(txn, c);
+			if (latest == null) return null;
+			if (latest.remote == null) return emptyMap();
 			if (latest.local == null) throw new DbException();
 			Update localUpdate = loadUpdate(txn, latest.local.messageId);
 			Update remoteUpdate = loadUpdate(txn, latest.remote.messageId);
-			Map<ClientMajorVersion, Visibility> visibilities =
-					getVisibilities(localUpdate.states, remoteUpdate.states);
-			ClientMajorVersion key =
-					new ClientMajorVersion(clientId, majorVersion);
-			Visibility v = visibilities.get(key);
-			return v == null ? INVISIBLE : v;
+			return getVisibilities(localUpdate.states, remoteUpdate.states);
 		} catch (FormatException e) {
 			throw new DbException(e);
 		}
 	}
 
-	@Override
-	public int getClientMinorVersion(Transaction txn, ContactId contactId,
-			ClientId clientId, int majorVersion) throws DbException {
+	/**
+	 * Returns the minor versions of the clients in the given contact's latest
+	 * update, or null if the contact's group doesn't exist.
+	 */
+	@Nullable
+	private Map<ClientMajorVersion, Integer> loadRemoteMinorVersions(
+			Transaction txn, ContactId c) throws DbException {
 		try {
-			LatestUpdates latest = findLatestUpdates(txn, contactId);
-			if (latest == null || latest.remote == null) return -1;
+			LatestUpdates latest = findLatestUpdates(txn, c);
+			if (latest == null) return null;
+			if (latest.remote == null) return emptyMap();
 			Update remoteUpdate = loadUpdate(txn, latest.remote.messageId);
-			ClientMajorVersion key =
-					new ClientMajorVersion(clientId, majorVersion);
+			Map<ClientMajorVersion, Integer> minorVersions = new HashMap<>();
 			for (ClientState remote : remoteUpdate.states) {
-				if (remote.clientVersion.getClientMajorVersion().equals(key))
-					return remote.clientVersion.getMinorVersion();
+				minorVersions.put(remote.clientVersion.getClientMajorVersion(),
+						remote.clientVersion.getMinorVersion());
 			}
-			return -1;
+			return minorVersions;
 		} catch (FormatException e) {
 			throw new DbException(e);
 		}
 	}
 
+	private void countCacheMiss() {
+		long misses = cacheMisses.incrementAndGet();
+		if (LOG.isLoggable(FINE) && misses % 100 == 0) {
+			LOG.fine("Client versioning cache: " + cacheHits.get()
+					+ " hits, " + misses + " misses");
+		}
+	}
+
+	/**
+	 * Removes the cached entries for the given contact, whose updates are
+	 * being changed by the given read-write transaction.
+	 */
+	private void invalidate(Transaction txn, ContactId c) {
+		visibilityCache.invalidate(txn, c);
+		minorVersionCache.invalidate(txn, c);
+	}
+
+	/**
+	 * Returns the number of times a contact's client visibilities or minor
+	 * versions were found in the cache.
+	 */
+	long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	/**
+	 * Returns the number of times a contact's client visibilities or minor
+	 * versions were loaded from the database.
+	 */
+	long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
 	@Override
 	public void onDatabaseOpened(Transaction txn) throws DbException {
 		if (db.containsGroup(txn, localGroup.getId())) return;
@@ -156,6 +255,7 @@ class ClientVersioningManagerImpl implements ClientVersioningManager,
 
 	@Override
 	public void addingContact(Transaction txn, Contact c) throws DbException {
+		invalidate(txn, c.getId());
 		// Create a group and share it with the contact
 		Group g = getContactGroup(c);
 		db.addGroup(txn, g);
@@ -170,6 +270,7 @@ class ClientVersioningManagerImpl implements ClientVersioningManager,
 
 	@Override
 	public void removingContact(Transaction txn, Contact c) throws DbException {
+		invalidate(txn, c.getId());
 		db.removeGroup(txn, getContactGroup(c));
 	}
 
@@ -190,6 +291,8 @@ class ClientVersioningManagerImpl implements ClientVersioningManager,
 				db.deleteMessageMetadata(txn, m.getId());
 				return ACCEPT_DO_NOT_SHARE;
 			}
+			ContactId c = clientHelper.getContactId(txn, m.getGroupId());
+			invalidate(txn, c);
 			// Load and parse the latest local update
 			if (latest.local == null) throw new DbException();
 			Update oldLocalUpdate = loadUpdate(txn, latest.local.messageId);
@@ -223,7 +326,6 @@ class ClientVersioningManagerImpl implements ClientVersioningManager,
 			Map<ClientMajorVersion, Visibility> after =
 					getVisibilities(newLocalStates, newRemoteStates);
 			// Call hooks for any visibilities that have changed
-			ContactId c = clientHelper.getContactId(txn, m.getGroupId());
 			if (!before.equals(after)) {
 				Contact contact = db.getContact(txn, c);
 				callVisibilityHooks(txn, contact, before, after);
@@ -315,6 +417,7 @@ class ClientVersioningManagerImpl implements ClientVersioningManager,
 	private void clientVersionsUpdated(Transaction txn, Contact c,
 			List<ClientVersion> versions) throws DbException {
 		try {
+			invalidate(txn, c.getId());
 			// Find the latest local and remote updates
 			Group g = getContactGroup(c);
 			LatestUpdates latest = findLatestUpdates(txn, g.getId());
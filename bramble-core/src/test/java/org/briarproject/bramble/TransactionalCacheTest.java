@@ -0,0 +1,71 @@
+package org.briarproject.bramble;
+
+import org.briarproject.bramble.api.db.Transaction;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionalCacheTest extends BrambleTestCase {
+
+	private final TransactionalCache<String, String> cache =
+			new TransactionalCache<>();
+
+	@Test
+	public void testValueIsCached() {
+		Transaction txn = new Transaction(null, true);
+		assertNull(cache.get("key"));
+		cache.put(txn, "key", "value");
+		assertEquals("value", cache.get("key"));
+	}
+
+	@Test
+	public void testInvalidatingTransactionCannotCacheValue() {
+		Transaction txn = new Transaction(null, false);
+		cache.put(txn, "key", "old");
+		cache.invalidate(txn, "key");
+		assertNull(cache.get("key"));
+		// The invalidating transaction's value isn't cached
+		cache.put(txn, "key", "new");
+		assertNull(cache.get("key"));
+		// Other keys are unaffected
+		cache.put(txn, "other", "value");
+		assertEquals("value", cache.get("other"));
+	}
+
+	@Test
+	public void testValueIsCachedAfterCommit() {
+		Transaction txn = new Transaction(null, false);
+		cache.invalidate(txn, "key");
+		cache.invalidate(txn, "key");
+		// Only one end task is attached for each key
+		assertEquals(1, txn.getEndTasks().size());
+		txn.setCommitted();
+		for (Runnable r : txn.getEndTasks()) r.run();
+		// Once the transaction has ended, it no longer blocks caching
+		cache.put(txn, "key", "value");
+		assertEquals("value", cache.get("key"));
+	}
+
+	@Test
+	public void testValueIsCachedAfterAbort() {
+		Transaction txn = new Transaction(null, false);
+		cache.invalidate(txn, "key");
+		for (Runnable r : txn.getEndTasks()) r.run();
+		Transaction txn1 = new Transaction(null, true);
+		cache.put(txn1, "key", "value");
+		assertEquals("value", cache.get("key"));
+	}
+
+	@Test
+	public void testOtherTransactionCanCacheValue() {
+		Transaction txn = new Transaction(null, false);
+		cache.invalidate(txn, "key");
+		Transaction txn1 = new Transaction(null, true);
+		cache.put(txn1, "key", "value");
+		assertEquals("value", cache.get("key"));
+		assertTrue(txn1.getEndTasks().isEmpty());
+	}
+}
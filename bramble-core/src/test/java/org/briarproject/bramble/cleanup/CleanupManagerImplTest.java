@@ -0,0 +1,276 @@
+package org.briarproject.bramble.cleanup;
+
+import org.briarproject.bramble.api.Cancellable;
+import org.briarproject.bramble.api.cleanup.CleanupHook;
+import org.briarproject.bramble.api.db.DatabaseComponent;
+import org.briarproject.bramble.api.db.Transaction;
+import org.briarproject.bramble.api.sync.ClientId;
+import org.briarproject.bramble.api.sync.Group;
+import org.briarproject.bramble.api.sync.GroupId;
+import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.bramble.api.system.TaskScheduler;
+import org.briarproject.bramble.test.BrambleMockTestCase;
+import org.briarproject.bramble.test.CaptureArgumentAction;
+import org.briarproject.bramble.test.DbExpectations;
+import org.briarproject.bramble.test.SettableClock;
+import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
+import org.jmock.lib.action.DoAllAction;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.briarproject.bramble.api.cleanup.CleanupManager.BATCH_DELAY_MS;
+import static org.briarproject.bramble.api.db.DatabaseComponent.NO_CLEANUP_DEADLINE;
+import static org.briarproject.bramble.cleanup.CleanupManagerImpl.MAX_MESSAGES_PER_TRANSACTION;
+import static org.briarproject.bramble.cleanup.CleanupManagerImpl.MAX_TRANSACTION_TIME_MS;
+import static org.briarproject.bramble.test.TestUtils.getClientId;
+import static org.briarproject.bramble.test.TestUtils.getGroup;
+import static org.briarproject.bramble.test.TestUtils.getRandomId;
+import static org.junit.Assert.assertEquals;
+
+public class CleanupManagerImplTest extends BrambleMockTestCase {
+
+	private final Executor dbExecutor = context.mock(Executor.class);
+	private final DatabaseComponent db = context.mock(DatabaseComponent.class);
+	private final TaskScheduler taskScheduler =
+			context.mock(TaskScheduler.class);
+	private final Cancellable cancellable = context.mock(Cancellable.class);
+
+	private final ClientId clientId = getClientId();
+	private final int majorVersion = 123;
+	private final Group group1 = getGroup(clientId, majorVersion);
+	private final Group group2 = getGroup(clientId, majorVersion);
+	private final GroupId groupId1 = group1.getId();
+	private final GroupId groupId2 = group2.getId();
+	private final long now = System.currentTimeMillis();
+	private final AtomicLong time = new AtomicLong(now);
+	private final Transaction txn = new Transaction(null, false);
+
+	// The groups passed to the hook, and how long each call takes
+	private final List<GroupId> hookCalls = new ArrayList<>();
+	private final List<Collection<MessageId>> hookMessages =
+			new ArrayList<>();
+	private long hookDuration = 0;
+	// How long each query for the messages to delete takes
+	private long queryDuration = 0;
+
+	private final CleanupManagerImpl cleanupManager = new CleanupManagerImpl(
+			dbExecutor, db, taskScheduler, new SettableClock(time));
+
+	public CleanupManagerImplTest() {
+		CleanupHook hook = (txn1, g, messageIds) -> {
+			hookCalls.add(g);
+			hookMessages.add(messageIds);
+			time.addAndGet(hookDuration);
+		};
+		cleanupManager.registerCleanupHook(clientId, majorVersion, hook);
+	}
+
+	@Test
+	public void testChunkIsLimitedToMaxMessages() throws Exception {
+		Runnable task = startService();
+
+		// The first chunk reaches the limit, so another chunk is queued
+		List<MessageId> chunk1 = getMessageIds(MAX_MESSAGES_PER_TRANSACTION);
+		AtomicReference<Runnable> nextChunk = new AtomicReference<>();
+		expectDeleteMessages(singletonMap(groupId1, chunk1), chunk1,
+				now + 1000);
+		context.checking(new Expectations() {{
+			oneOf(db).getGroup(txn, groupId1);
+			will(returnValue(group1));
+			oneOf(dbExecutor).execute(with(any(Runnable.class)));
+			will(new CaptureArgumentAction<>(nextChunk, Runnable.class, 0));
+		}});
+
+		task.run();
+		assertEquals(singletonList(groupId1), hookCalls);
+		assertEquals(singletonList(chunk1), hookMessages);
+
+		// The second chunk is smaller than the limit, so the run is complete
+		List<MessageId> chunk2 = getMessageIds(1);
+		expectDeleteMessages(singletonMap(groupId1, chunk2), chunk2,
+				NO_CLEANUP_DEADLINE);
+		context.checking(new Expectations() {{
+			oneOf(db).getGroup(txn, groupId1);
+			will(returnValue(group1));
+		}});
+
+		nextChunk.get().run();
+		assertEquals(2, hookCalls.size());
+		assertEquals(chunk2, hookMessages.get(1));
+	}
+
+	@Test
+	public void testChunkStopsWhenTimeBudgetRunsOut() throws Exception {
+		Runnable task = startService();
+
+		// Deleting the first group uses up the time budget, so the second
+		// group is left for the next chunk
+		hookDuration = MAX_TRANSACTION_TIME_MS;
+		List<MessageId> ids1 = getMessageIds(1), ids2 = getMessageIds(1);
+		Map<GroupId, Collection<MessageId>> due = new LinkedHashMap<>();
+		due.put(groupId1, ids1);
+		due.put(groupId2, ids2);
+		AtomicReference<Runnable> nextChunk = new AtomicReference<>();
+		expectDeleteMessages(due, ids1, now + 1000);
+		context.checking(new Expectations() {{
+			oneOf(db).getGroup(txn, groupId1);
+			will(returnValue(group1));
+			oneOf(dbExecutor).execute(with(any(Runnable.class)));
+			will(new CaptureArgumentAction<>(nextChunk, Runnable.class, 0));
+		}});
+
+		task.run();
+		assertEquals(singletonList(groupId1), hookCalls);
+
+		// The next chunk deletes the second group and completes the run
+		expectDeleteMessages(singletonMap(groupId2, ids2), ids2,
+				NO_CLEANUP_DEADLINE);
+		context.checking(new Expectations() {{
+			oneOf(db).getGroup(txn, groupId2);
+			will(returnValue(group2));
+		}});
+
+		nextChunk.get().run();
+		assertEquals(2, hookCalls.size());
+		assertEquals(groupId2, hookCalls.get(1));
+		assertEquals(ids2, hookMessages.get(1));
+	}
+
+	@Test
+	public void testChunkMakesProgressWhenQueryUsesUpTimeBudget()
+			throws Exception {
+		Runnable task = startService();
+
+		// Finding the due messages uses up the time budget, but the first
+		// group is still deleted and the second group is left for the next
+		// chunk
+		queryDuration = MAX_TRANSACTION_TIME_MS;
+		List<MessageId> ids1 = getMessageIds(1), ids2 = getMessageIds(1);
+		Map<GroupId, Collection<MessageId>> due = new LinkedHashMap<>();
+		due.put(groupId1, ids1);
+		due.put(groupId2, ids2);
+		AtomicReference<Runnable> nextChunk = new AtomicReference<>();
+		expectDeleteMessages(due, ids1, now + 1000);
+		context.checking(new Expectations() {{
+			oneOf(db).getGroup(txn, groupId1);
+			will(returnValue(group1));
+			oneOf(dbExecutor).execute(with(any(Runnable.class)));
+			will(new CaptureArgumentAction<>(nextChunk, Runnable.class, 0));
+		}});
+
+		task.run();
+		assertEquals(singletonList(groupId1), hookCalls);
+
+		// The next chunk also uses up the budget finding the due messages,
+		// deletes the second group and completes the run
+		expectDeleteMessages(singletonMap(groupId2, ids2), ids2,
+				NO_CLEANUP_DEADLINE);
+		context.checking(new Expectations() {{
+			oneOf(db).getGroup(txn, groupId2);
+			will(returnValue(group2));
+		}});
+
+		nextChunk.get().run();
+		assertEquals(2, hookCalls.size());
+		assertEquals(groupId2, hookCalls.get(1));
+		assertEquals(ids2, hookMessages.get(1));
+	}
+
+	@Test
+	public void testNextDeadlineIsScheduledWhenRunCompletes()
+			throws Exception {
+		Runnable task = startService();
+
+		// When the run is complete, a task is scheduled for the next deadline
+		List<MessageId> ids = getMessageIds(1);
+		long nextDeadline = now + 1000;
+		AtomicReference<Runnable> nextTask = new AtomicReference<>();
+		expectDeleteMessages(singletonMap(groupId1, ids), ids, nextDeadline);
+		context.checking(new Expectations() {{
+			oneOf(db).getGroup(txn, groupId1);
+			will(returnValue(group1));
+			oneOf(taskScheduler).schedule(with(any(Runnable.class)),
+					with(dbExecutor), with(1000 + BATCH_DELAY_MS),
+					with(MILLISECONDS));
+			will(new DoAllAction(
+					new CaptureArgumentAction<>(nextTask, Runnable.class, 0),
+					returnValue(cancellable)
+			));
+		}});
+
+		task.run();
+		assertEquals(singletonList(ids), hookMessages);
+
+		// The next task deletes the remaining messages
+		time.set(nextDeadline + BATCH_DELAY_MS);
+		List<MessageId> remaining = getMessageIds(1);
+		expectDeleteMessages(singletonMap(groupId2, remaining), remaining,
+				NO_CLEANUP_DEADLINE);
+		context.checking(new Expectations() {{
+			oneOf(db).getGroup(txn, groupId2);
+			will(returnValue(group2));
+		}});
+
+		nextTask.get().run();
+		assertEquals(2, hookMessages.size());
+		assertEquals(remaining, hookMessages.get(1));
+	}
+
+	private Runnable startService() {
+		AtomicReference<Runnable> task = new AtomicReference<>();
+		context.checking(new Expectations() {{
+			oneOf(taskScheduler).schedule(with(any(Runnable.class)),
+					with(dbExecutor), with(BATCH_DELAY_MS),
+					with(MILLISECONDS));
+			will(new DoAllAction(
+					new CaptureArgumentAction<>(task, Runnable.class, 0),
+					returnValue(cancellable)
+			));
+		}});
+
+		cleanupManager.startService();
+		context.assertIsSatisfied();
+		return task.get();
+	}
+
+	private void expectDeleteMessages(Map<GroupId, Collection<MessageId>> due,
+			Collection<MessageId> deleted, long nextDeadline)
+			throws Exception {
+		context.checking(new DbExpectations() {{
+			oneOf(db).transactionWithResult(with(false),
+					withDbCallable(txn));
+			allowing(db).countMessagesToDelete(txn);
+			will(returnValue(due.size()));
+			oneOf(db).getMessagesToDelete(txn, MAX_MESSAGES_PER_TRANSACTION);
+			will(new CustomAction("get messages to delete") {
+				@Override
+				public Object invoke(Invocation invocation) {
+					time.addAndGet(queryDuration);
+					return due;
+				}
+			});
+			for (MessageId m : deleted) oneOf(db).stopCleanupTimer(txn, m);
+			oneOf(db).getNextCleanupDeadline(txn);
+			will(returnValue(nextDeadline));
+		}});
+	}
+
+	private List<MessageId> getMessageIds(int count) {
+		List<MessageId> ids = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) ids.add(new MessageId(getRandomId()));
+		return ids;
+	}
+}
@@ -0,0 +1,189 @@
+package org.briarproject.bramble.client;
+
+import org.briarproject.bramble.api.UniqueId;
+import org.briarproject.bramble.api.client.ClientHelper;
+import org.briarproject.bramble.api.data.BdfDictionary;
+import org.briarproject.bramble.api.data.BdfEntry;
+import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.db.Transaction;
+import org.briarproject.bramble.api.sync.GroupId;
+import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.bramble.test.BrambleMockTestCase;
+import org.jmock.Expectations;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.briarproject.bramble.api.client.SessionIndex.GROUP_KEY_SESSION_PREFIX;
+import static org.briarproject.bramble.api.data.BdfDictionary.NULL_VALUE;
+import static org.briarproject.bramble.test.TestUtils.getRandomId;
+import static org.briarproject.bramble.util.StringUtils.toHexString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SessionIndexImplTest extends BrambleMockTestCase {
+
+	private final ClientHelper clientHelper = context.mock(ClientHelper.class);
+
+	private final GroupId groupId = new GroupId(getRandomId());
+	private final UniqueId sessionId = new UniqueId(getRandomId());
+	private final MessageId messageId = new MessageId(getRandomId());
+	private final String key =
+			GROUP_KEY_SESSION_PREFIX + toHexString(sessionId.getBytes());
+	private final String indexedKey = GROUP_KEY_SESSION_PREFIX + "indexed";
+	private final BdfDictionary query =
+			BdfDictionary.of(new BdfEntry("q", "u"));
+
+	private final SessionIndexImpl sessionIndex =
+			new SessionIndexImpl(clientHelper);
+
+	@Test
+	public void testIndexedSessionIsFoundWithoutQuery() throws Exception {
+		Transaction txn = new Transaction(null, true);
+
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn, groupId,
+					asList(key, indexedKey));
+			will(returnValue(BdfDictionary.of(new BdfEntry(key, messageId))));
+		}});
+
+		assertEquals(messageId, sessionIndex.getSessionMessageId(txn,
+				groupId, sessionId, query));
+	}
+
+	@Test
+	public void testUnindexedSessionIsFoundWithQueryAndIndexed()
+			throws Exception {
+		Transaction txn = new Transaction(null, false);
+
+		expectQuery(txn, singletonList(messageId));
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).mergeGroupMetadata(txn, groupId,
+					BdfDictionary.of(new BdfEntry(key, messageId)));
+		}});
+
+		assertEquals(messageId, sessionIndex.getSessionMessageId(txn,
+				groupId, sessionId, query));
+	}
+
+	@Test
+	public void testUnindexedSessionIsNotIndexedInReadOnlyTransaction()
+			throws Exception {
+		Transaction txn = new Transaction(null, true);
+
+		expectQuery(txn, singletonList(messageId));
+
+		assertEquals(messageId, sessionIndex.getSessionMessageId(txn,
+				groupId, sessionId, query));
+	}
+
+	@Test
+	public void testMissingSessionReturnsNull() throws Exception {
+		Transaction txn = new Transaction(null, false);
+
+		expectQuery(txn, emptyList());
+
+		assertNull(sessionIndex.getSessionMessageId(txn, groupId, sessionId,
+				query));
+	}
+
+	@Test
+	public void testMissingSessionInIndexedGroupReturnsNullWithoutQuery()
+			throws Exception {
+		Transaction txn = new Transaction(null, false);
+
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn, groupId,
+					asList(key, indexedKey));
+			will(returnValue(
+					BdfDictionary.of(new BdfEntry(indexedKey, true))));
+		}});
+
+		assertNull(sessionIndex.getSessionMessageId(txn, groupId, sessionId,
+				query));
+	}
+
+	@Test
+	public void testIndexGroupAddsExistingSessions() throws Exception {
+		Transaction txn = new Transaction(null, false);
+		UniqueId sessionId1 = new UniqueId(getRandomId());
+		MessageId messageId1 = new MessageId(getRandomId());
+		String key1 =
+				GROUP_KEY_SESSION_PREFIX + toHexString(sessionId1.getBytes());
+		// A storage message that doesn't hold a session yet is skipped
+		Map<MessageId, BdfDictionary> sessions = new HashMap<>();
+		sessions.put(messageId,
+				BdfDictionary.of(new BdfEntry("sessionId", sessionId)));
+		sessions.put(messageId1,
+				BdfDictionary.of(new BdfEntry("sessionId", sessionId1)));
+		sessions.put(new MessageId(getRandomId()), new BdfDictionary());
+
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn, groupId,
+					singletonList(indexedKey));
+			will(returnValue(new BdfDictionary()));
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn, groupId,
+					query);
+			will(returnValue(sessions));
+			oneOf(clientHelper).mergeGroupMetadata(txn, groupId,
+					BdfDictionary.of(
+							new BdfEntry(key, messageId),
+							new BdfEntry(key1, messageId1),
+							new BdfEntry(indexedKey, true)
+					));
+		}});
+
+		sessionIndex.indexGroup(txn, groupId, query, "sessionId");
+	}
+
+	@Test
+	public void testIndexGroupSkipsIndexedGroup() throws Exception {
+		Transaction txn = new Transaction(null, false);
+
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn, groupId,
+					singletonList(indexedKey));
+			will(returnValue(
+					BdfDictionary.of(new BdfEntry(indexedKey, true))));
+		}});
+
+		sessionIndex.indexGroup(txn, groupId, query, "sessionId");
+	}
+
+	@Test(expected = DbException.class)
+	public void testMultipleSessionsThrowException() throws Exception {
+		Transaction txn = new Transaction(null, false);
+
+		expectQuery(txn, asList(messageId, new MessageId(getRandomId())));
+
+		sessionIndex.getSessionMessageId(txn, groupId, sessionId, query);
+	}
+
+	@Test
+	public void testRemoveSession() throws Exception {
+		Transaction txn = new Transaction(null, false);
+
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).mergeGroupMetadata(txn, groupId,
+					BdfDictionary.of(new BdfEntry(key, NULL_VALUE)));
+		}});
+
+		sessionIndex.removeSession(txn, groupId, sessionId);
+	}
+
+	private void expectQuery(Transaction txn, List<MessageId> results)
+			throws Exception {
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn, groupId,
+					asList(key, indexedKey));
+			will(returnValue(new BdfDictionary()));
+			oneOf(clientHelper).getMessageIds(txn, groupId, query);
+			will(returnValue(results));
+		}});
+	}
+}
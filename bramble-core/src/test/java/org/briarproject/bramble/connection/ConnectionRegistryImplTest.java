@@ -14,8 +14,13 @@ import org.briarproject.bramble.api.plugin.event.ContactConnectedEvent;
 import org.briarproject.bramble.api.plugin.event.ContactDisconnectedEvent;
 import org.briarproject.bramble.api.rendezvous.event.RendezvousConnectionClosedEvent;
 import org.briarproject.bramble.api.rendezvous.event.RendezvousConnectionOpenedEvent;
+import org.briarproject.bramble.api.sync.LatencyHistogram;
 import org.briarproject.bramble.api.sync.Priority;
+import org.briarproject.bramble.api.sync.SyncSession;
+import org.briarproject.bramble.api.sync.SyncSessionStats;
+import org.briarproject.bramble.api.sync.event.SyncSessionStatsEvent;
 import org.briarproject.bramble.test.BrambleMockTestCase;
+import org.briarproject.bramble.test.PredicateMatcher;
 import org.jmock.Expectations;
 import org.junit.Test;
 
@@ -31,6 +36,7 @@ import static org.briarproject.bramble.test.TestUtils.getTransportId;
 import static org.briarproject.bramble.util.StringUtils.fromHexString;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -44,6 +50,12 @@ public class ConnectionRegistryImplTest extends BrambleMockTestCase {
 			context.mock(InterruptibleConnection.class, "conn2");
 	private final InterruptibleConnection conn3 =
 			context.mock(InterruptibleConnection.class, "conn3");
+	private final SyncSession session1 =
+			context.mock(SyncSession.class, "session1");
+	private final SyncSession session2 =
+			context.mock(SyncSession.class, "session2");
+	private final SyncSession session3 =
+			context.mock(SyncSession.class, "session3");
 
 	private final ContactId contactId1 = getContactId();
 	private final ContactId contactId2 = getContactId();
@@ -613,4 +625,86 @@ public class ConnectionRegistryImplTest extends BrambleMockTestCase {
 			// Expected
 		}
 	}
+
+	@Test
+	public void testSyncSessionStatsAreCombinedPerContactAndTransport() {
+		SyncSessionStats stats1 = createStats(1, 10, 100);
+		SyncSessionStats stats2 = createStats(2, 20, 2000);
+		SyncSessionStats stats3 = createStats(4, 40, 5);
+
+		context.checking(new Expectations() {{
+			allowing(pluginConfig).getTransportPreferences();
+			will(returnValue(emptyMap()));
+			allowing(session1).getStats();
+			will(returnValue(stats1));
+			allowing(session2).getStats();
+			will(returnValue(stats2));
+			allowing(session3).getStats();
+			will(returnValue(stats3));
+		}});
+
+		ConnectionRegistry c =
+				new ConnectionRegistryImpl(eventBus, pluginConfig);
+
+		assertNull(c.getSyncSessionStats(contactId1, transportId1));
+
+		c.registerSyncSession(contactId1, transportId1, session1);
+		c.registerSyncSession(contactId1, transportId1, session2);
+		c.registerSyncSession(contactId2, transportId1, session3);
+
+		// The stats of sessions with the same contact and transport should
+		// be combined
+		SyncSessionStats combined =
+				c.getSyncSessionStats(contactId1, transportId1);
+		assertEquals(3, combined.getMessagesSent());
+		assertEquals(30, combined.getBytesSent());
+		assertEquals(2, combined.getDbTime().getCount());
+		assertEquals(2000, combined.getDbTime().getMax());
+		assertEquals(1050, combined.getDbTime().getMean());
+		assertEquals(1, combined.getDbTime().getCount(
+				LatencyHistogram.getBucket(100)));
+		assertEquals(1, combined.getDbTime().getCount(
+				LatencyHistogram.getBucket(2000)));
+		assertEquals(4, c.getSyncSessionStats(contactId2, transportId1)
+				.getMessagesSent());
+		assertNull(c.getSyncSessionStats(contactId1, transportId2));
+
+		// One event should be broadcast for each contact and transport
+		context.checking(new Expectations() {{
+			oneOf(eventBus).broadcast(with(new PredicateMatcher<>(
+					SyncSessionStatsEvent.class, e ->
+					e.getContactId().equals(contactId1) &&
+							e.getTransportId().equals(transportId1) &&
+							e.getStats().getMessagesSent() == 3)));
+			oneOf(eventBus).broadcast(with(new PredicateMatcher<>(
+					SyncSessionStatsEvent.class, e ->
+					e.getContactId().equals(contactId2) &&
+							e.getTransportId().equals(transportId1) &&
+							e.getStats().getMessagesSent() == 4)));
+		}});
+		c.broadcastSyncSessionStats();
+		context.assertIsSatisfied();
+
+		c.unregisterSyncSession(contactId1, transportId1, session1);
+		assertEquals(2, c.getSyncSessionStats(contactId1, transportId1)
+				.getMessagesSent());
+		c.unregisterSyncSession(contactId1, transportId1, session2);
+		assertNull(c.getSyncSessionStats(contactId1, transportId1));
+
+		try {
+			c.unregisterSyncSession(contactId1, transportId1, session1);
+			fail();
+		} catch (IllegalArgumentException expected) {
+			// Expected
+		}
+	}
+
+	private SyncSessionStats createStats(long messagesSent, long bytesSent,
+			long dbTime) {
+		long[] counts = new long[LatencyHistogram.BUCKETS];
+		counts[LatencyHistogram.getBucket(dbTime)] = 1;
+		LatencyHistogram h = new LatencyHistogram(counts, dbTime, dbTime);
+		return new SyncSessionStats(messagesSent, bytesSent, 0, 0, 0, h,
+				LatencyHistogram.EMPTY);
+	}
 }
@@ -9,6 +9,7 @@ import org.briarproject.bramble.test.TestSecureRandomProvider;
 import org.jmock.Expectations;
 import org.junit.Test;
 
+import static org.briarproject.bramble.api.crypto.CryptoConstants.DEFAULT_KDF_TARGET_TIME_MS;
 import static org.briarproject.bramble.api.crypto.DecryptionResult.INVALID_CIPHERTEXT;
 import static org.briarproject.bramble.api.crypto.DecryptionResult.INVALID_PASSWORD;
 import static org.briarproject.bramble.api.crypto.DecryptionResult.KEY_STRENGTHENER_ERROR;
@@ -25,7 +26,8 @@ public class PasswordBasedEncryptionTest extends BrambleMockTestCase {
 
 	private final CryptoComponentImpl crypto =
 			new CryptoComponentImpl(new TestSecureRandomProvider(),
-					new ScryptKdf(new SystemClock()));
+					new ScryptKdf(new SystemClock(),
+							DEFAULT_KDF_TARGET_TIME_MS, null));
 
 	@Test
 	public void testEncryptionAndDecryption() throws Exception {
@@ -6,21 +6,35 @@ import org.briarproject.bramble.api.system.Clock;
 import org.briarproject.bramble.system.SystemClock;
 import org.briarproject.bramble.test.ArrayClock;
 import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.After;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 
 import static junit.framework.TestCase.assertTrue;
+import static org.briarproject.bramble.api.crypto.CryptoConstants.DEFAULT_KDF_TARGET_TIME_MS;
+import static org.briarproject.bramble.test.TestUtils.deleteTestDirectory;
 import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
+import static org.briarproject.bramble.test.TestUtils.getTestDirectory;
 import static org.briarproject.bramble.util.StringUtils.getRandomString;
 import static org.junit.Assert.assertEquals;
 
 public class ScryptKdfTest extends BrambleTestCase {
 
+	private final File testDir = getTestDirectory();
+	private final File calibrationFile = new File(testDir, "kdf.calibration");
+
+	@After
+	public void tearDown() {
+		deleteTestDirectory(testDir);
+	}
+
 	@Test
 	public void testPasswordAffectsKey() throws Exception {
-		PasswordBasedKdf kdf = new ScryptKdf(new SystemClock());
+		PasswordBasedKdf kdf = new ScryptKdf(new SystemClock(),
+				DEFAULT_KDF_TARGET_TIME_MS, null);
 		byte[] salt = getRandomBytes(32);
 		Set<Bytes> keys = new HashSet<>();
 		for (int i = 0; i < 100; i++) {
@@ -32,7 +46,8 @@ public class ScryptKdfTest extends BrambleTestCase {
 
 	@Test
 	public void testSaltAffectsKey() throws Exception {
-		PasswordBasedKdf kdf = new ScryptKdf(new SystemClock());
+		PasswordBasedKdf kdf = new ScryptKdf(new SystemClock(),
+				DEFAULT_KDF_TARGET_TIME_MS, null);
 		String password = getRandomString(16);
 		Set<Bytes> keys = new HashSet<>();
 		for (int i = 0; i < 100; i++) {
@@ -44,7 +59,8 @@ public class ScryptKdfTest extends BrambleTestCase {
 
 	@Test
 	public void testCostParameterAffectsKey() throws Exception {
-		PasswordBasedKdf kdf = new ScryptKdf(new SystemClock());
+		PasswordBasedKdf kdf = new ScryptKdf(new SystemClock(),
+				DEFAULT_KDF_TARGET_TIME_MS, null);
 		String password = getRandomString(16);
 		byte[] salt = getRandomBytes(32);
 		Set<Bytes> keys = new HashSet<>();
@@ -63,7 +79,7 @@ public class ScryptKdfTest extends BrambleTestCase {
 				0, 400, // Duration for cost 2048
 				0, 800 // Duration for cost 4096
 		);
-		PasswordBasedKdf kdf = new ScryptKdf(clock);
+		PasswordBasedKdf kdf = new ScryptKdf(clock, DEFAULT_KDF_TARGET_TIME_MS, null);
 		assertEquals(4096, kdf.chooseCostParameter());
 	}
 
@@ -72,7 +88,67 @@ public class ScryptKdfTest extends BrambleTestCase {
 		Clock clock = new ArrayClock(
 				0, 2000 // Duration for cost 256 is already too high
 		);
-		PasswordBasedKdf kdf = new ScryptKdf(clock);
+		PasswordBasedKdf kdf = new ScryptKdf(clock, DEFAULT_KDF_TARGET_TIME_MS, null);
+		assertEquals(256, kdf.chooseCostParameter());
+	}
+
+	@Test
+	public void testCalibrationUsesTarget() throws Exception {
+		Clock clock = new ArrayClock(
+				0, 50, // Duration for cost 256
+				0, 100, // Duration for cost 512
+				0, 200 // Duration for cost 1024
+		);
+		PasswordBasedKdf kdf = new ScryptKdf(clock, 300, null);
+		assertEquals(1024, kdf.chooseCostParameter());
+	}
+
+	@Test
+	public void testCalibrationIsCached() throws Exception {
+		Clock clock = new ArrayClock(
+				0, 50, // Duration for cost 256
+				0, 2000 // Duration for cost 512
+		);
+		PasswordBasedKdf kdf = new ScryptKdf(clock, DEFAULT_KDF_TARGET_TIME_MS, null);
+		assertEquals(512, kdf.chooseCostParameter());
+		// The clock would throw an exception if calibration was repeated
+		assertEquals(512, kdf.chooseCostParameter());
+	}
+
+	@Test
+	public void testCalibrationIsStored() throws Exception {
+		Clock clock = new ArrayClock(
+				0, 50, // Duration for cost 256
+				0, 2000 // Duration for cost 512
+		);
+		PasswordBasedKdf kdf = new ScryptKdf(clock, DEFAULT_KDF_TARGET_TIME_MS,
+				calibrationFile);
+		assertEquals(512, kdf.chooseCostParameter());
+		assertTrue(calibrationFile.exists());
+
+		// Another instance should load the result instead of calibrating.
+		// The clock would throw an exception if calibration was repeated
+		kdf = new ScryptKdf(new ArrayClock(), DEFAULT_KDF_TARGET_TIME_MS,
+				calibrationFile);
+		assertEquals(512, kdf.chooseCostParameter());
+	}
+
+	@Test
+	public void testStoredCalibrationIsIgnoredIfTargetChanges()
+			throws Exception {
+		Clock clock = new ArrayClock(
+				0, 50, // Duration for cost 256
+				0, 2000 // Duration for cost 512
+		);
+		PasswordBasedKdf kdf = new ScryptKdf(clock, DEFAULT_KDF_TARGET_TIME_MS,
+				calibrationFile);
+		assertEquals(512, kdf.chooseCostParameter());
+
+		// Calibrating for a lower target should choose a lower cost
+		clock = new ArrayClock(
+				0, 50 // Duration for cost 256
+		);
+		kdf = new ScryptKdf(clock, 90, calibrationFile);
 		assertEquals(256, kdf.chooseCostParameter());
 	}
 }
@@ -0,0 +1,105 @@
+package org.briarproject.bramble.db;
+
+import org.briarproject.bramble.api.db.DatabaseComponent;
+import org.briarproject.bramble.api.db.Transaction;
+import org.briarproject.bramble.api.system.TaskScheduler;
+import org.briarproject.bramble.test.BrambleMockTestCase;
+import org.briarproject.bramble.test.DbExpectations;
+import org.briarproject.bramble.test.ImmediateExecutor;
+import org.jmock.Expectations;
+import org.junit.Test;
+
+import static org.briarproject.bramble.db.DatabaseCompactor.MAX_BYTES_PER_SLICE;
+import static org.briarproject.bramble.db.DatabaseCompactor.MIN_IDLE_TIME_MS;
+import static org.junit.Assert.assertEquals;
+
+public class DatabaseCompactorTest extends BrambleMockTestCase {
+
+	private final DatabaseComponent db = context.mock(DatabaseComponent.class);
+	private final TaskScheduler taskScheduler =
+			context.mock(TaskScheduler.class);
+
+	private final DatabaseCompactor compactor = new DatabaseCompactor(
+			new ImmediateExecutor(), db, taskScheduler);
+
+	@Test
+	public void testDoesNotCompactIfDatabaseIsBusy() {
+		context.checking(new Expectations() {{
+			oneOf(db).getIdleTime();
+			will(returnValue(MIN_IDLE_TIME_MS - 1));
+		}});
+
+		compactor.compactIfIdle();
+
+		assertEquals(0, compactor.getBytesReclaimed());
+	}
+
+	@Test
+	public void testCompactsInSlicesIfDatabaseIsIdle() throws Exception {
+		Transaction beforeTxn = new Transaction(null, true);
+		Transaction txn = new Transaction(null, false);
+		Transaction afterTxn = new Transaction(null, true);
+
+		context.checking(new DbExpectations() {{
+			oneOf(db).getIdleTime();
+			will(returnValue(MIN_IDLE_TIME_MS));
+			oneOf(db).transactionWithResult(with(true),
+					withDbCallable(beforeTxn));
+			oneOf(db).getStorageSize(beforeTxn);
+			will(returnValue(3000L));
+			oneOf(db).transactionWithResult(with(false), withDbCallable(txn));
+			// The first slice leaves more to do, the second doesn't
+			exactly(2).of(db).compactIncrementally(txn, MAX_BYTES_PER_SLICE);
+			will(onConsecutiveCalls(returnValue(true), returnValue(false)));
+			// The storage size is measured after the compaction commits
+			oneOf(db).transactionWithResult(with(true),
+					withDbCallable(afterTxn));
+			oneOf(db).getStorageSize(afterTxn);
+			will(returnValue(1000L));
+		}});
+
+		compactor.compactIfIdle();
+
+		assertEquals(2000, compactor.getBytesReclaimed());
+
+		// The next check should run, even if the space hasn't been freed yet
+		context.checking(new Expectations() {{
+			oneOf(db).getIdleTime();
+			will(returnValue(0L));
+		}});
+
+		compactor.compactIfIdle();
+	}
+
+	@Test
+	public void testSkipsChecksAfterRunThatRewritesNothing() throws Exception {
+		Transaction beforeTxn = new Transaction(null, true);
+		Transaction txn = new Transaction(null, false);
+
+		context.checking(new DbExpectations() {{
+			oneOf(db).getIdleTime();
+			will(returnValue(MIN_IDLE_TIME_MS));
+			oneOf(db).transactionWithResult(with(true),
+					withDbCallable(beforeTxn));
+			oneOf(db).getStorageSize(beforeTxn);
+			will(returnValue(1000L));
+			oneOf(db).transactionWithResult(with(false), withDbCallable(txn));
+			oneOf(db).compactIncrementally(txn, MAX_BYTES_PER_SLICE);
+			will(returnValue(false));
+		}});
+
+		compactor.compactIfIdle();
+
+		// The next check should be skipped
+		compactor.compactIfIdle();
+		context.assertIsSatisfied();
+
+		// The check after that should run
+		context.checking(new Expectations() {{
+			oneOf(db).getIdleTime();
+			will(returnValue(0L));
+		}});
+
+		compactor.compactIfIdle();
+	}
+}
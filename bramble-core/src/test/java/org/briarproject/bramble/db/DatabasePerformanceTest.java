@@ -85,6 +85,18 @@ public abstract class DatabasePerformanceTest extends BrambleTestCase {
 	private static final int METADATA_VALUE_LENGTH = 100;
 	private static final int OFFERED_MESSAGES_PER_CONTACT = 100;
 
+	/**
+	 * How many messages to simulate in a large group whose messages share a
+	 * few metadata keys, such as a conversation with a busy contact.
+	 */
+	private static final int LARGE_GROUP_MESSAGES = 2_000;
+	private static final int LARGE_GROUP_SESSIONS = 100;
+	private static final int LARGE_GROUP_MESSAGE_TYPES = 4;
+
+	private static final String KEY_SESSION_ID = "sessionId";
+	private static final String KEY_MESSAGE_TYPE = "messageType";
+	private static final String KEY_AVAILABLE = "available";
+
 	/**
 	 * How many benchmark iterations to run in each block.
 	 */
@@ -114,6 +126,9 @@ public abstract class DatabasePerformanceTest extends BrambleTestCase {
 	private Map<GroupId, List<Metadata>> messageMeta;
 	private Map<ContactId, List<Group>> contactGroups;
 	private Map<GroupId, List<MessageId>> groupMessages;
+	private ClientId largeGroupClientId;
+	private GroupId largeGroupId;
+	private List<byte[]> sessionIds;
 
 	protected abstract String getTestName();
 
@@ -372,6 +387,30 @@ public abstract class DatabasePerformanceTest extends BrambleTestCase {
 		});
 	}
 
+	@Test
+	public void testGetMessageIdsWithMultiTermQuery() throws Exception {
+		String name = "getMessageIds(T, GroupId, Metadata) [multi-term]";
+		benchmark(name, db -> {
+			Connection txn = db.startTransaction();
+			db.getMessageIds(txn, largeGroupId, getLargeGroupQuery());
+			db.commitTransaction(txn);
+		});
+	}
+
+	@Test
+	public void testGetMessageIdsWithSelectiveKey() throws Exception {
+		String name = "getMessageIds(T, GroupId, Metadata) [selective key]";
+		benchmark(name, db -> {
+			// Registering the key again is cheap, and the database is
+			// reopened after being populated, so register it here
+			db.registerSelectiveMetadataKey(largeGroupClientId, 123,
+					KEY_SESSION_ID);
+			Connection txn = db.startTransaction();
+			db.getMessageIds(txn, largeGroupId, getLargeGroupQuery());
+			db.commitTransaction(txn);
+		});
+	}
+
 	@Test
 	public void testGetMessageMetadataByGroupId() throws Exception {
 		String name = "getMessageMetadata(T, GroupId)";
@@ -616,9 +655,36 @@ public abstract class DatabasePerformanceTest extends BrambleTestCase {
 				groupMessages.get(g.getId()).add(m.getId());
 			}
 		}
+		// The large group isn't included in the lists used by the other
+		// benchmarks
+		largeGroupClientId = getClientId();
+		Group largeGroup = getGroup(largeGroupClientId, 123);
+		largeGroupId = largeGroup.getId();
+		sessionIds = new ArrayList<>();
+		for (int i = 0; i < LARGE_GROUP_SESSIONS; i++)
+			sessionIds.add(getRandomId());
+		db.addGroup(txn, largeGroup);
+		for (int i = 0; i < LARGE_GROUP_MESSAGES; i++) {
+			Message m = getMessage(largeGroupId);
+			db.addMessage(txn, m, DELIVERED, false, false, null);
+			Metadata mm = new Metadata();
+			mm.put(KEY_SESSION_ID, pickRandom(sessionIds));
+			mm.put(KEY_MESSAGE_TYPE, new byte[] {
+					(byte) random.nextInt(LARGE_GROUP_MESSAGE_TYPES)});
+			mm.put(KEY_AVAILABLE, new byte[] {(byte) random.nextInt(2)});
+			db.mergeMessageMetadata(txn, m.getId(), mm);
+		}
 		db.commitTransaction(txn);
 	}
 
+	private Metadata getLargeGroupQuery() {
+		Metadata query = new Metadata();
+		query.put(KEY_SESSION_ID, pickRandom(sessionIds));
+		query.put(KEY_MESSAGE_TYPE, new byte[] {0});
+		query.put(KEY_AVAILABLE, new byte[] {1});
+		return query;
+	}
+
 	private ClientId getClientId() {
 		return new ClientId(getRandomString(CLIENT_ID_LENGTH));
 	}
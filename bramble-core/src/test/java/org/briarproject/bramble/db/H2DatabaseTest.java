@@ -4,6 +4,10 @@ import org.briarproject.bramble.api.db.DatabaseConfig;
 import org.briarproject.bramble.api.sync.MessageFactory;
 import org.briarproject.bramble.api.system.Clock;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
 public class H2DatabaseTest extends JdbcDatabaseTest {
 
 	@Override
@@ -11,4 +15,13 @@ public class H2DatabaseTest extends JdbcDatabaseTest {
 			MessageFactory messageFactory, Clock clock) {
 		return new H2Database(config, messageFactory, clock);
 	}
+
+	@Override
+	protected void allowImmediateCompaction(Connection txn)
+			throws SQLException {
+		// By default H2 keeps freed space for 45 seconds before reusing it
+		Statement s = txn.createStatement();
+		s.execute("SET RETENTION_TIME 0");
+		s.close();
+	}
 }
@@ -47,6 +47,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -57,6 +58,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -68,10 +70,12 @@ import static org.briarproject.bramble.api.record.Record.RECORD_HEADER_BYTES;
 import static org.briarproject.bramble.api.sync.Group.Visibility.INVISIBLE;
 import static org.briarproject.bramble.api.sync.Group.Visibility.SHARED;
 import static org.briarproject.bramble.api.sync.Group.Visibility.VISIBLE;
+import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_BODY_LENGTH;
 import static org.briarproject.bramble.api.sync.validation.MessageState.DELIVERED;
 import static org.briarproject.bramble.api.sync.validation.MessageState.INVALID;
 import static org.briarproject.bramble.api.sync.validation.MessageState.PENDING;
 import static org.briarproject.bramble.api.sync.validation.MessageState.UNKNOWN;
+import static org.briarproject.bramble.db.DatabaseCompactor.MAX_BYTES_PER_SLICE;
 import static org.briarproject.bramble.test.TestUtils.deleteTestDirectory;
 import static org.briarproject.bramble.test.TestUtils.getAgreementPrivateKey;
 import static org.briarproject.bramble.test.TestUtils.getAgreementPublicKey;
@@ -138,6 +142,21 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 	protected abstract JdbcDatabase createDatabase(DatabaseConfig config,
 			MessageFactory messageFactory, Clock clock);
 
+	/**
+	 * Allows space freed by deleting data to be reclaimed by compaction
+	 * without waiting, if the database would otherwise keep it for a while.
+	 */
+	protected void allowImmediateCompaction(Connection txn)
+			throws SQLException {
+	}
+
+	/**
+	 * Returns true if the database can reclaim space without closing.
+	 */
+	protected boolean canCompactIncrementally() {
+		return true;
+	}
+
 	@Before
 	public void setUp() {
 		assertTrue(testDir.mkdirs());
@@ -1234,6 +1253,11 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 		assertTrue(retrieved.containsKey("baz"));
 		assertArrayEquals(metadata.get("baz"), retrieved.get("baz"));
 
+		// Retrieve some of the keys
+		retrieved = db.getGroupMetadata(txn, groupId, asList("foo", "qux"));
+		assertEquals(1, retrieved.size());
+		assertArrayEquals(metadata.get("foo"), retrieved.get("foo"));
+
 		// Update the metadata
 		metadata.put("foo", REMOVE);
 		metadata.put("baz", new byte[] {'q', 'u', 'x'});
@@ -1379,6 +1403,44 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 		db.close();
 	}
 
+	@Test
+	public void testMessageMetadataInTimestampRange() throws Exception {
+		Database<Connection> db = open(false);
+		Connection txn = db.startTransaction();
+
+		// Add a group and three messages with consecutive timestamps
+		db.addGroup(txn, group);
+		Message message1 = getMessage(groupId, 100, 1000);
+		Message message2 = getMessage(groupId, 100, 1001);
+		Message message3 = getMessage(groupId, 100, 1002);
+		Metadata metadata = new Metadata();
+		metadata.put("foo", new byte[] {'b', 'a', 'r'});
+		for (Message m : asList(message1, message2, message3)) {
+			db.addMessage(txn, m, DELIVERED, true, false, null);
+			db.mergeMessageMetadata(txn, m.getId(), metadata);
+		}
+
+		// The range includes the minimum but not the maximum
+		Map<MessageId, Metadata> map =
+				db.getMessageMetadata(txn, groupId, 1001, 1002);
+		assertEquals(singleton(message2.getId()), map.keySet());
+		assertArrayEquals(metadata.get("foo"),
+				map.get(message2.getId()).get("foo"));
+		map = db.getMessageMetadata(txn, groupId, Long.MIN_VALUE, 1002);
+		assertEquals(new HashSet<>(asList(message1.getId(),
+				message2.getId())), map.keySet());
+		map = db.getMessageMetadata(txn, groupId, 1003, Long.MAX_VALUE);
+		assertTrue(map.isEmpty());
+
+		// No metadata for messages that haven't been delivered
+		db.setMessageState(txn, message2.getId(), PENDING);
+		map = db.getMessageMetadata(txn, groupId, 1001, 1002);
+		assertTrue(map.isEmpty());
+
+		db.commitTransaction(txn);
+		db.close();
+	}
+
 	@Test
 	public void testMetadataQueries() throws Exception {
 		Message message1 = getMessage(groupId);
@@ -1483,6 +1545,125 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 		db.close();
 	}
 
+	@Test
+	public void testGetMessageIdsInMetadataOrder() throws Exception {
+		Message message1 = getMessage(groupId);
+		MessageId messageId1 = message1.getId();
+		Message message2 = getMessage(groupId);
+		MessageId messageId2 = message2.getId();
+		Message message3 = getMessage(groupId);
+		MessageId messageId3 = message3.getId();
+
+		Database<Connection> db = open(false);
+		Connection txn = db.startTransaction();
+
+		// Add a group and four messages, one of which is not delivered
+		db.addGroup(txn, group);
+		db.addMessage(txn, message, DELIVERED, true, false, null);
+		db.addMessage(txn, message1, DELIVERED, true, false, null);
+		db.addMessage(txn, message2, DELIVERED, true, false, null);
+		db.addMessage(txn, message3, PENDING, true, false, null);
+
+		// Give three of the messages values for the key, out of order
+		byte[] a = {'a'}, b = {'b'}, c = {'c'};
+		db.mergeMessageMetadata(txn, messageId, singletonMetadata("foo", c));
+		db.mergeMessageMetadata(txn, messageId1, singletonMetadata("foo", a));
+		db.mergeMessageMetadata(txn, messageId2, singletonMetadata("bar", b));
+		db.mergeMessageMetadata(txn, messageId3, singletonMetadata("foo", b));
+
+		// The delivered messages with values are returned in value order
+		Map<MessageId, byte[]> values =
+				db.getMessageIdsInMetadataOrder(txn, groupId, "foo", null, 10);
+		assertEquals(asList(messageId1, messageId),
+				new ArrayList<>(values.keySet()));
+		assertArrayEquals(a, values.get(messageId1));
+		assertArrayEquals(c, values.get(messageId));
+
+		// The number of results is limited
+		values = db.getMessageIdsInMetadataOrder(txn, groupId, "foo", null, 1);
+		assertEquals(singletonList(messageId1),
+				new ArrayList<>(values.keySet()));
+
+		// Only values greater than the given value are returned
+		values = db.getMessageIdsInMetadataOrder(txn, groupId, "foo", a, 10);
+		assertEquals(singletonList(messageId),
+				new ArrayList<>(values.keySet()));
+		values = db.getMessageIdsInMetadataOrder(txn, groupId, "foo", c, 10);
+		assertTrue(values.isEmpty());
+
+		db.commitTransaction(txn);
+		db.close();
+	}
+
+	private Metadata singletonMetadata(String key, byte[] value) {
+		Metadata metadata = new Metadata();
+		metadata.put(key, value);
+		return metadata;
+	}
+
+	@Test
+	public void testMetadataQueriesWithSelectiveKey() throws Exception {
+		Message message1 = getMessage(groupId);
+		MessageId messageId1 = message1.getId();
+		Message message2 = getMessage(groupId);
+		MessageId messageId2 = message2.getId();
+
+		Database<Connection> db = open(false);
+		db.registerSelectiveMetadataKey(clientId, majorVersion, "foo");
+		Connection txn = db.startTransaction();
+
+		// Add a group and three messages, one of which is not delivered
+		db.addGroup(txn, group);
+		db.addMessage(txn, message, DELIVERED, true, false, null);
+		db.addMessage(txn, message1, DELIVERED, true, false, null);
+		db.addMessage(txn, message2, PENDING, true, false, null);
+
+		// Attach some metadata to the messages
+		Metadata metadata = new Metadata();
+		metadata.put("foo", new byte[] {'b', 'a', 'r'});
+		metadata.put("baz", new byte[] {'b', 'a', 'm'});
+		metadata.put("qux", new byte[] {'q', 'u', 'x'});
+		db.mergeMessageMetadata(txn, messageId, metadata);
+		Metadata metadata1 = new Metadata();
+		metadata1.put("foo", new byte[] {'b', 'a', 'r'});
+		metadata1.put("baz", new byte[] {'b', 'o', 'b'});
+		metadata1.put("qux", new byte[] {'q', 'u', 'x'});
+		db.mergeMessageMetadata(txn, messageId1, metadata1);
+		db.mergeMessageMetadata(txn, messageId2, metadata);
+
+		// Use a multi-term query that matches the first message
+		Metadata query = new Metadata();
+		query.put("foo", metadata.get("foo"));
+		query.put("baz", metadata.get("baz"));
+		assertEquals(singletonList(messageId),
+				new ArrayList<>(db.getMessageIds(txn, groupId, query)));
+
+		// Use a multi-term query that matches both delivered messages
+		query = new Metadata();
+		query.put("foo", metadata.get("foo"));
+		query.put("qux", metadata.get("qux"));
+		Collection<MessageId> ids = db.getMessageIds(txn, groupId, query);
+		assertEquals(2, ids.size());
+		assertTrue(ids.contains(messageId));
+		assertTrue(ids.contains(messageId1));
+
+		// Use a multi-term query that doesn't match any messages
+		query = new Metadata();
+		query.put("foo", metadata.get("foo"));
+		query.put("baz", new byte[] {'b', 'u', 'm'});
+		query.put("qux", metadata.get("qux"));
+		assertTrue(db.getMessageIds(txn, groupId, query).isEmpty());
+
+		// Use a multi-term query with a missing key
+		query = new Metadata();
+		query.put("foo", metadata.get("foo"));
+		query.put("quux", metadata.get("qux"));
+		assertTrue(db.getMessageIds(txn, groupId, query).isEmpty());
+
+		db.commitTransaction(txn);
+		db.close();
+	}
+
 	@Test
 	public void testMetadataQueriesOnlyForDeliveredMessages() throws Exception {
 		Message message1 = getMessage(groupId);
@@ -2429,7 +2610,7 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 		Connection txn = db.startTransaction();
 
 		// No messages should be due or scheduled for deletion
-		assertTrue(db.getMessagesToDelete(txn).isEmpty());
+		assertTrue(db.getMessagesToDelete(txn, 10).isEmpty());
 		assertEquals(NO_CLEANUP_DEADLINE, db.getNextCleanupDeadline(txn));
 
 		// Add a group and a message
@@ -2437,14 +2618,14 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 		db.addMessage(txn, message, DELIVERED, false, false, null);
 
 		// No messages should be due or scheduled for deletion
-		assertTrue(db.getMessagesToDelete(txn).isEmpty());
+		assertTrue(db.getMessagesToDelete(txn, 10).isEmpty());
 		assertEquals(NO_CLEANUP_DEADLINE, db.getNextCleanupDeadline(txn));
 
 		// Set the message's cleanup timer duration
 		db.setCleanupTimerDuration(txn, messageId, duration);
 
 		// No messages should be due or scheduled for deletion
-		assertTrue(db.getMessagesToDelete(txn).isEmpty());
+		assertTrue(db.getMessagesToDelete(txn, 10).isEmpty());
 		assertEquals(NO_CLEANUP_DEADLINE, db.getNextCleanupDeadline(txn));
 
 		// Start the message's cleanup timer
@@ -2455,14 +2636,14 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 
 		// No messages should be due for deletion, but the message should be
 		// scheduled for deletion
-		assertTrue(db.getMessagesToDelete(txn).isEmpty());
+		assertTrue(db.getMessagesToDelete(txn, 10).isEmpty());
 		assertEquals(now + duration, db.getNextCleanupDeadline(txn));
 
 		// Stop the timer
 		db.stopCleanupTimer(txn, messageId);
 
 		// No messages should be due or scheduled for deletion
-		assertTrue(db.getMessagesToDelete(txn).isEmpty());
+		assertTrue(db.getMessagesToDelete(txn, 10).isEmpty());
 		assertEquals(NO_CLEANUP_DEADLINE, db.getNextCleanupDeadline(txn));
 
 		// Start the timer again
@@ -2470,36 +2651,167 @@ public abstract class JdbcDatabaseTest extends BrambleTestCase {
 
 		// No messages should be due for deletion, but the message should be
 		// scheduled for deletion
-		assertTrue(db.getMessagesToDelete(txn).isEmpty());
+		assertTrue(db.getMessagesToDelete(txn, 10).isEmpty());
 		assertEquals(now + duration, db.getNextCleanupDeadline(txn));
 
 		// 1 ms before the timer expires, no messages should be due for
 		// deletion but the message should be scheduled for deletion
 		time.set(now + duration - 1);
-		assertTrue(db.getMessagesToDelete(txn).isEmpty());
+		assertTrue(db.getMessagesToDelete(txn, 10).isEmpty());
 		assertEquals(now + duration, db.getNextCleanupDeadline(txn));
 
 		// When the timer expires, the message should be due and scheduled for
 		// deletion
 		time.set(now + duration);
 		assertEquals(singletonMap(groupId, singletonList(messageId)),
-				db.getMessagesToDelete(txn));
+				db.getMessagesToDelete(txn, 10));
 		assertEquals(now + duration, db.getNextCleanupDeadline(txn));
 
 		// 1 ms after the timer expires, the message should be due and
 		// scheduled for deletion
 		time.set(now + duration + 1);
 		assertEquals(singletonMap(groupId, singletonList(messageId)),
-				db.getMessagesToDelete(txn));
+				db.getMessagesToDelete(txn, 10));
 		assertEquals(now + duration, db.getNextCleanupDeadline(txn));
 
 		// Once the message has been deleted, it should no longer be due
 		// or scheduled for deletion
 		db.deleteMessage(txn, messageId);
-		assertTrue(db.getMessagesToDelete(txn).isEmpty());
+		assertTrue(db.getMessagesToDelete(txn, 10).isEmpty());
 		assertEquals(NO_CLEANUP_DEADLINE, db.getNextCleanupDeadline(txn));
 	}
 
+	@Test
+	public void testMessagesToDeleteAreLimited() throws Exception {
+		long now = System.currentTimeMillis();
+		AtomicLong time = new AtomicLong(now);
+		Database<Connection> db =
+				open(false, new TestMessageFactory(), new SettableClock(time));
+		Connection txn = db.startTransaction();
+
+		// Add a group and three messages with different timer durations
+		db.addGroup(txn, group);
+		List<MessageId> ids = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Message m = getMessage(groupId);
+			db.addMessage(txn, m, DELIVERED, false, false, null);
+			db.setCleanupTimerDuration(txn, m.getId(), 1000 - i);
+			assertEquals(now + 1000 - i, db.startCleanupTimer(txn, m.getId()));
+			ids.add(m.getId());
+		}
+		assertEquals(0, db.countMessagesToDelete(txn));
+
+		// When all the timers have expired, all the messages should be due
+		time.set(now + 1000);
+		assertEquals(3, db.countMessagesToDelete(txn));
+
+		// The messages whose timers expired first should be returned first
+		Map<GroupId, Collection<MessageId>> due =
+				db.getMessagesToDelete(txn, 2);
+		assertEquals(singletonMap(groupId, asList(ids.get(2), ids.get(1))),
+				due);
+
+		db.commitTransaction(txn);
+		db.close();
+	}
+
+	@Test
+	public void testCompactIncrementally() throws Exception {
+		Database<Connection> db = open(false);
+		Connection txn = db.startTransaction();
+
+		// Add a group and some large messages
+		db.addGroup(txn, group);
+		db.addMessage(txn, message, DELIVERED, true, false, null);
+		List<MessageId> deleted = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			Message m = getMessage(groupId, MAX_MESSAGE_BODY_LENGTH);
+			db.addMessage(txn, m, DELIVERED, true, false, null);
+			deleted.add(m.getId());
+		}
+		db.commitTransaction(txn);
+
+		// Delete all the messages except one. H2 1.4.192 only frees the
+		// storage of one BLOB per transaction, so use a transaction for each
+		// message
+		txn = db.startTransaction();
+		allowImmediateCompaction(txn);
+		db.commitTransaction(txn);
+		for (MessageId m : deleted) {
+			txn = db.startTransaction();
+			db.deleteMessage(txn, m);
+			db.commitTransaction(txn);
+		}
+		txn = db.startTransaction();
+		long before = db.getStorageSize(txn);
+		db.commitTransaction(txn);
+
+		// Compact the database in slices, as the compactor does, until
+		// there's nothing left to do
+		boolean more = true;
+		for (int i = 0; more && i < 1000; i++) {
+			txn = db.startTransaction();
+			more = db.compactIncrementally(txn, MAX_BYTES_PER_SLICE);
+			db.commitTransaction(txn);
+		}
+		assertFalse(more);
+
+		// The remaining message should be unaffected
+		txn = db.startTransaction();
+		assertArrayEquals(message.getBody(),
+				db.getMessage(txn, messageId).getBody());
+		for (MessageId m : deleted) {
+			assertEquals(DELIVERED, db.getMessageState(txn, m));
+		}
+		// The space used by the deleted messages should have been reclaimed,
+		// if the database can do that without closing
+		long after = db.getStorageSize(txn);
+		assertTrue(after > 0);
+		if (canCompactIncrementally()) assertTrue(after < before);
+		db.commitTransaction(txn);
+
+		db.close();
+	}
+
+	@Test
+	public void testCachedStatementsAreReused() throws Exception {
+		JdbcDatabase db = createDatabase(new TestDatabaseConfig(testDir),
+				new TestMessageFactory(), new SystemClock());
+		db.open(key, null);
+
+		Connection txn = db.startTransaction();
+		assertFalse(db.containsContact(txn, contactId));
+		long prepared = db.getStatementsPrepared();
+		long reused = db.getStatementsReused();
+		long executed = db.getStatementsExecuted();
+		assertFalse(db.containsContact(txn, contactId));
+		db.commitTransaction(txn);
+		assertEquals(prepared, db.getStatementsPrepared());
+		assertEquals(reused + 1, db.getStatementsReused());
+		assertEquals(executed + 1, db.getStatementsExecuted());
+
+		// The statement is still cached when the connection is reused
+		txn = db.startTransaction();
+		db.addIdentity(txn, identity);
+		assertEquals(contactId,
+				db.addContact(txn, author, localAuthor.getId(), null, true));
+		assertTrue(db.containsContact(txn, contactId));
+		db.commitTransaction(txn);
+		assertEquals(prepared, db.getStatementsPrepared());
+		assertEquals(reused + 2, db.getStatementsReused());
+
+		// Aborting the transaction closes the connection and its statements
+		txn = db.startTransaction();
+		assertTrue(db.containsContact(txn, contactId));
+		db.abortTransaction(txn);
+		txn = db.startTransaction();
+		assertTrue(db.containsContact(txn, contactId));
+		db.commitTransaction(txn);
+		assertEquals(prepared + 1, db.getStatementsPrepared());
+
+		db.close();
+	}
+
 	private Database<Connection> open(boolean resume) throws Exception {
 		return open(resume, new TestMessageFactory(), new SystemClock());
 	}
@@ -0,0 +1,220 @@
+package org.briarproject.bramble.event;
+
+import org.briarproject.bramble.api.contact.ContactId;
+import org.briarproject.bramble.api.event.BackgroundEventListener;
+import org.briarproject.bramble.api.event.Event;
+import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
+import org.briarproject.bramble.api.sync.event.MessageToAckEvent;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventBusImplTest extends BrambleTestCase {
+
+	private final QueueExecutor executor = new QueueExecutor();
+	private final QueueExecutor ioExecutor = new QueueExecutor();
+	private final EventBusImpl eventBus =
+			new EventBusImpl(executor, () -> ioExecutor);
+
+	@Test
+	public void testEventsAreDeliveredInOrder() {
+		RecordingListener listener1 = new RecordingListener();
+		RecordingListener listener2 = new RecordingListener();
+		eventBus.addListener(listener1);
+		eventBus.addListener(listener2);
+
+		Event e1 = new TestEvent(), e2 = new TestEvent();
+		eventBus.broadcast(e1);
+		eventBus.broadcast(e2);
+		// One task per event
+		assertEquals(2, executor.tasks.size());
+		executor.runAll();
+
+		assertEquals(asList(e1, e2), listener1.events);
+		assertEquals(asList(e1, e2), listener2.events);
+	}
+
+	@Test
+	public void testRemovedListenerDoesNotReceiveEvents() {
+		RecordingListener listener = new RecordingListener();
+		eventBus.addListener(listener);
+		eventBus.removeListener(listener);
+		eventBus.broadcast(new TestEvent());
+		executor.runAll();
+
+		assertTrue(listener.events.isEmpty());
+	}
+
+	@Test
+	public void testSelectiveListenerOnlyReceivesDeclaredTypes() {
+		RecordingListener all = new RecordingListener();
+		SelectiveListener selective =
+				new SelectiveListener(singletonList(TestEvent.class));
+		eventBus.addListener(all);
+		eventBus.addListener(selective);
+
+		Event e1 = new TestEvent(), e2 = new OtherEvent();
+		Event e3 = new TestSubclassEvent();
+		eventBus.broadcast(e1);
+		eventBus.broadcast(e2);
+		eventBus.broadcast(e3);
+		executor.runAll();
+
+		assertEquals(asList(e1, e2, e3), all.events);
+		// Subclasses of the declared types are delivered
+		assertEquals(asList(e1, e3), selective.events);
+
+		// Listeners added after an event type has been indexed receive it
+		RecordingListener late = new RecordingListener();
+		eventBus.addListener(late);
+		eventBus.broadcast(e2);
+		executor.runAll();
+		assertEquals(singletonList(e2), late.events);
+		assertEquals(asList(e1, e3), selective.events);
+	}
+
+	@Test
+	public void testBackgroundListenerReceivesEventsInItsLane() {
+		RecordingListener listener = new RecordingListener();
+		BackgroundListener background = new BackgroundListener();
+		eventBus.addListener(listener);
+		eventBus.addListener(background);
+
+		Event e1 = new TestEvent(), e2 = new TestEvent();
+		eventBus.broadcast(e1);
+		eventBus.broadcast(e2);
+		executor.runAll();
+
+		// Other listeners don't wait for the background listener
+		assertEquals(asList(e1, e2), listener.events);
+		assertTrue(background.events.isEmpty());
+		assertEquals(2, eventBus.getLaneDepth());
+		// The lane delivers one event at a time, in order
+		assertEquals(1, ioExecutor.tasks.size());
+		ioExecutor.runAll();
+
+		assertEquals(asList(e1, e2), background.events);
+		assertEquals(0, eventBus.getLaneDepth());
+		assertEquals(2, eventBus.getMaxLaneDepth());
+	}
+
+	@Test
+	public void testRemovedBackgroundListenerDoesNotReceiveWaitingEvents() {
+		BackgroundListener background = new BackgroundListener();
+		eventBus.addListener(background);
+
+		eventBus.broadcast(new TestEvent());
+		executor.runAll();
+		eventBus.removeListener(background);
+		ioExecutor.runAll();
+
+		assertTrue(background.events.isEmpty());
+		assertEquals(0, eventBus.getLaneDepth());
+	}
+
+	@Test
+	public void testWaitingRepeatableEventsAreCoalesced() {
+		RecordingListener listener = new RecordingListener();
+		eventBus.addListener(listener);
+
+		ContactId c1 = new ContactId(1), c2 = new ContactId(2);
+		Event ack1 = new MessageToAckEvent(c1);
+		Event ack2 = new MessageToAckEvent(c2);
+		eventBus.broadcast(ack1);
+		eventBus.broadcast(ack2);
+		eventBus.broadcast(new MessageToAckEvent(c1));
+		eventBus.broadcast(new MessageToAckEvent(c2));
+		// Only the first of each pair of equal events is queued
+		assertEquals(2, executor.tasks.size());
+		executor.runAll();
+
+		assertEquals(asList(ack1, ack2), listener.events);
+		assertEquals(2, eventBus.getEventsCoalesced());
+
+		// Once the event has been delivered, an equal event is not discarded
+		Event ack3 = new MessageToAckEvent(c1);
+		eventBus.broadcast(ack3);
+		executor.runAll();
+		assertEquals(asList(ack1, ack2, ack3), listener.events);
+	}
+
+	@Test
+	public void testQueueDepthIsCounted() {
+		eventBus.addListener(new RecordingListener());
+
+		eventBus.broadcast(new TestEvent());
+		eventBus.broadcast(new TestEvent());
+		assertEquals(2, eventBus.getQueueDepth());
+		executor.runAll();
+
+		assertEquals(0, eventBus.getQueueDepth());
+		assertEquals(2, eventBus.getMaxQueueDepth());
+		assertEquals(2, eventBus.getEventsDelivered());
+		assertTrue(eventBus.getMaxDispatchLatency() >=
+				eventBus.getMeanDispatchLatency());
+	}
+
+	private static class TestEvent extends Event {
+	}
+
+	private static class TestSubclassEvent extends TestEvent {
+	}
+
+	private static class OtherEvent extends Event {
+	}
+
+	private static class SelectiveListener extends RecordingListener
+			implements SelectiveEventListener {
+
+		private final Collection<Class<? extends Event>> types;
+
+		private SelectiveListener(Collection<Class<? extends Event>> types) {
+			this.types = types;
+		}
+
+		@Override
+		public Collection<Class<? extends Event>> getEventTypes() {
+			return types;
+		}
+	}
+
+	private static class BackgroundListener extends RecordingListener
+			implements BackgroundEventListener {
+	}
+
+	private static class RecordingListener implements EventListener {
+
+		final List<Event> events = new ArrayList<>();
+
+		@Override
+		public void eventOccurred(Event e) {
+			events.add(e);
+		}
+	}
+
+	private static class QueueExecutor implements Executor {
+
+		private final Queue<Runnable> tasks = new LinkedList<>();
+
+		@Override
+		public void execute(Runnable r) {
+			tasks.add(r);
+		}
+
+		private void runAll() {
+			while (!tasks.isEmpty()) tasks.remove().run();
+		}
+	}
+}
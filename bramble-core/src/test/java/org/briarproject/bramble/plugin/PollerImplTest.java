@@ -1,10 +1,13 @@
 package org.briarproject.bramble.plugin;
 
 import org.briarproject.bramble.api.Cancellable;
+import org.briarproject.bramble.api.Pair;
 import org.briarproject.bramble.api.connection.ConnectionManager;
 import org.briarproject.bramble.api.connection.ConnectionRegistry;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.event.ContactAddedEvent;
+import org.briarproject.bramble.api.db.DatabaseComponent;
+import org.briarproject.bramble.api.db.Transaction;
 import org.briarproject.bramble.api.plugin.ConnectionHandler;
 import org.briarproject.bramble.api.plugin.Plugin;
 import org.briarproject.bramble.api.plugin.PluginManager;
@@ -22,14 +25,21 @@ import org.briarproject.bramble.api.properties.TransportPropertyManager;
 import org.briarproject.bramble.api.system.Clock;
 import org.briarproject.bramble.api.system.TaskScheduler;
 import org.briarproject.bramble.test.BrambleMockTestCase;
+import org.briarproject.bramble.test.DbExpectations;
 import org.briarproject.bramble.test.ImmediateExecutor;
 import org.briarproject.bramble.test.RunAction;
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
 import org.jmock.imposters.ByteBuddyClassImposteriser;
+import org.jmock.lib.action.CustomAction;
 import org.junit.Test;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 
 import static java.util.Arrays.asList;
@@ -41,6 +51,7 @@ import static org.briarproject.bramble.test.CollectionMatcher.collectionOf;
 import static org.briarproject.bramble.test.PairMatcher.pairOf;
 import static org.briarproject.bramble.test.TestUtils.getContactId;
 import static org.briarproject.bramble.test.TestUtils.getTransportId;
+import static org.junit.Assert.assertEquals;
 
 public class PollerImplTest extends BrambleMockTestCase {
 
@@ -53,6 +64,7 @@ public class PollerImplTest extends BrambleMockTestCase {
 			context.mock(PluginManager.class);
 	private final TransportPropertyManager transportPropertyManager =
 			context.mock(TransportPropertyManager.class);
+	private final DatabaseComponent db = context.mock(DatabaseComponent.class);
 	private final Clock clock = context.mock(Clock.class);
 	private final Cancellable cancellable = context.mock(Cancellable.class);
 	private final SecureRandom random;
@@ -72,7 +84,7 @@ public class PollerImplTest extends BrambleMockTestCase {
 		Executor wakefulIoExecutor = new ImmediateExecutor();
 		poller = new PollerImpl(ioExecutor, wakefulIoExecutor, scheduler,
 				connectionManager, connectionRegistry, pluginManager,
-				transportPropertyManager, random, clock);
+				transportPropertyManager, db, random, clock);
 	}
 
 	@Test
@@ -415,6 +427,110 @@ public class PollerImplTest extends BrambleMockTestCase {
 		poller.eventOccurred(new TransportActiveEvent(transportId));
 	}
 
+	@Test
+	public void testPollsContactsInOrderOfPriority() throws Exception {
+		DuplexPlugin plugin = context.mock(DuplexPlugin.class);
+		Transaction txn = new Transaction(null, true);
+		long maxLatency = 30_000;
+		// The first contact has no data to send and hasn't been connected.
+		// The second has data to send. The third has been connected
+		ContactId contactId1 = getContactId(), contactId2 = getContactId();
+		TransportProperties properties1 = new TransportProperties();
+		properties1.put("foo", "1");
+		TransportProperties properties2 = new TransportProperties();
+		properties2.put("foo", "2");
+		Map<ContactId, TransportProperties> remote = new LinkedHashMap<>();
+		remote.put(contactId, properties);
+		remote.put(contactId1, properties1);
+		remote.put(contactId2, properties2);
+		List<Pair<TransportProperties, ConnectionHandler>> polled =
+				new ArrayList<>();
+		DuplexTransportConnection duplexConnection =
+				context.mock(DuplexTransportConnection.class);
+
+		context.checking(new DbExpectations() {{
+			allowing(plugin).getId();
+			will(returnValue(transportId));
+			// Get the plugin for each event
+			exactly(2).of(pluginManager).getPlugin(transportId);
+			will(returnValue(plugin));
+			// The plugin doesn't support polling when the connection opens,
+			// but it supports polling when it's activated
+			exactly(2).of(plugin).shouldPoll();
+			will(onConsecutiveCalls(returnValue(false), returnValue(true)));
+			// Schedule a polling task immediately
+			oneOf(clock).currentTimeMillis();
+			will(returnValue(now));
+			oneOf(scheduler).schedule(with(any(Runnable.class)),
+					with(ioExecutor), with(0L), with(MILLISECONDS));
+			will(returnValue(cancellable));
+			will(new RunAction());
+			// Running the polling task schedules the next polling task
+			oneOf(plugin).getPollingInterval();
+			will(returnValue(pollingInterval));
+			oneOf(random).nextDouble();
+			will(returnValue(0.5));
+			oneOf(clock).currentTimeMillis();
+			will(returnValue(now));
+			oneOf(scheduler).schedule(with(any(Runnable.class)),
+					with(ioExecutor), with((long) (pollingInterval * 0.5)),
+					with(MILLISECONDS));
+			will(returnValue(cancellable));
+			// Get the transport properties and connected contacts
+			oneOf(transportPropertyManager).getRemoteProperties(transportId);
+			will(returnValue(remote));
+			oneOf(connectionRegistry).getConnectedOrBetterContacts(transportId);
+			will(returnValue(emptyList()));
+			// Check which contacts have data to send
+			oneOf(plugin).getMaxLatency();
+			will(returnValue(maxLatency));
+			oneOf(db).transaction(with(true), withDbRunnable(txn));
+			oneOf(db).containsAcksToSend(txn, contactId);
+			will(returnValue(false));
+			oneOf(db).containsMessagesToSend(txn, contactId, maxLatency,
+					false);
+			will(returnValue(false));
+			oneOf(db).containsAcksToSend(txn, contactId1);
+			will(returnValue(false));
+			oneOf(db).containsMessagesToSend(txn, contactId1, maxLatency,
+					false);
+			will(returnValue(true));
+			oneOf(db).containsAcksToSend(txn, contactId2);
+			will(returnValue(false));
+			oneOf(db).containsMessagesToSend(txn, contactId2, maxLatency,
+					false);
+			will(returnValue(false));
+			// Poll the plugin
+			oneOf(plugin).poll(with(any(Collection.class)));
+			will(new CustomAction("capture polled properties") {
+				@Override
+				@SuppressWarnings("unchecked")
+				public Object invoke(Invocation invocation) {
+					polled.addAll((Collection<Pair<TransportProperties,
+							ConnectionHandler>>) invocation.getParameter(0));
+					return null;
+				}
+			});
+			// The plugin connects to the second contact
+			oneOf(connectionManager).manageOutgoingConnection(contactId1,
+					transportId, duplexConnection);
+		}});
+
+		poller.eventOccurred(new ConnectionOpenedEvent(contactId2,
+				transportId, true));
+		poller.eventOccurred(new TransportActiveEvent(transportId));
+
+		assertEquals(3, polled.size());
+		assertEquals(properties1, polled.get(0).getFirst());
+		assertEquals(properties2, polled.get(1).getFirst());
+		assertEquals(properties, polled.get(2).getFirst());
+		assertEquals(3, poller.getConnectionAttempts(transportId));
+		assertEquals(0, poller.getConnectionSuccesses(transportId));
+
+		polled.get(0).getSecond().handleConnection(duplexConnection);
+		assertEquals(1, poller.getConnectionSuccesses(transportId));
+	}
+
 	@Test
 	public void testCancelsPollingOnTransportDeactivated() {
 		Plugin plugin = context.mock(Plugin.class);
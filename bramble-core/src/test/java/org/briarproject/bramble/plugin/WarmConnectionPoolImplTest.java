@@ -0,0 +1,186 @@
+package org.briarproject.bramble.plugin;
+
+import org.briarproject.bramble.api.connection.ConnectionManager;
+import org.briarproject.bramble.api.connection.ConnectionRegistry;
+import org.briarproject.bramble.api.contact.ContactId;
+import org.briarproject.bramble.api.plugin.ConnectionHandler;
+import org.briarproject.bramble.api.plugin.PluginManager;
+import org.briarproject.bramble.api.plugin.duplex.DuplexPlugin;
+import org.briarproject.bramble.api.plugin.duplex.DuplexTransportConnection;
+import org.briarproject.bramble.api.plugin.event.ConnectionClosedEvent;
+import org.briarproject.bramble.api.properties.TransportProperties;
+import org.briarproject.bramble.api.properties.TransportPropertyManager;
+import org.briarproject.bramble.api.settings.Settings;
+import org.briarproject.bramble.api.settings.SettingsManager;
+import org.briarproject.bramble.api.settings.event.SettingsUpdatedEvent;
+import org.briarproject.bramble.api.sync.event.MessagesSentEvent;
+import org.briarproject.bramble.test.BrambleMockTestCase;
+import org.briarproject.bramble.test.CaptureArgumentAction;
+import org.briarproject.bramble.test.ImmediateExecutor;
+import org.briarproject.bramble.test.SettableClock;
+import org.jmock.Expectations;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Collections.emptyList;
+import static org.briarproject.bramble.api.plugin.TorConstants.ID;
+import static org.briarproject.bramble.api.plugin.TorConstants.PREF_TOR_WARM_CONNECTIONS;
+import static org.briarproject.bramble.plugin.WarmConnectionPoolImpl.ACTIVITY_WINDOW_MS;
+import static org.briarproject.bramble.plugin.WarmConnectionPoolImpl.MAX_WARM_CONTACTS;
+import static org.briarproject.bramble.plugin.WarmConnectionPoolImpl.MIN_RECONNECT_INTERVAL_MS;
+import static org.briarproject.bramble.test.TestUtils.getContactId;
+import static org.briarproject.bramble.test.TestUtils.getTransportId;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WarmConnectionPoolImplTest extends BrambleMockTestCase {
+
+	private final ConnectionManager connectionManager =
+			context.mock(ConnectionManager.class);
+	private final ConnectionRegistry connectionRegistry =
+			context.mock(ConnectionRegistry.class);
+	private final PluginManager pluginManager =
+			context.mock(PluginManager.class);
+	private final TransportPropertyManager transportPropertyManager =
+			context.mock(TransportPropertyManager.class);
+	private final SettingsManager settingsManager =
+			context.mock(SettingsManager.class);
+	private final DuplexPlugin plugin = context.mock(DuplexPlugin.class);
+
+	private final AtomicLong time = new AtomicLong(System.currentTimeMillis());
+	private final ContactId contactId = getContactId();
+	private final TransportProperties properties = new TransportProperties();
+
+	private final WarmConnectionPoolImpl pool;
+
+	public WarmConnectionPoolImplTest() {
+		pool = new WarmConnectionPoolImpl(new ImmediateExecutor(),
+				connectionManager, connectionRegistry, pluginManager,
+				transportPropertyManager, settingsManager,
+				new SettableClock(time));
+	}
+
+	@Before
+	public void setUp() {
+		properties.put("foo", "bar");
+	}
+
+	@Test
+	public void testDoesNotReconnectIfDisabled() {
+		pool.eventOccurred(createMessagesSentEvent(contactId));
+		assertTrue(pool.isWarm(contactId));
+
+		pool.eventOccurred(new ConnectionClosedEvent(contactId, ID, true,
+				true));
+	}
+
+	@Test
+	public void testReconnectsWhenIncomingConnectionIsClosed()
+			throws Exception {
+		enable();
+		pool.eventOccurred(createMessagesSentEvent(contactId));
+
+		AtomicReference<ConnectionHandler> captured = expectReconnect();
+
+		pool.eventOccurred(new ConnectionClosedEvent(contactId, ID, true,
+				true));
+		context.assertIsSatisfied();
+
+		// The pool hands the connection to the connection manager
+		DuplexTransportConnection connection =
+				context.mock(DuplexTransportConnection.class);
+		context.checking(new Expectations() {{
+			oneOf(connectionManager).manageOutgoingConnection(contactId, ID,
+					connection);
+		}});
+
+		captured.get().handleConnection(connection);
+	}
+
+	@Test
+	public void testDoesNotReconnectWhenOutgoingConnectionFails() {
+		enable();
+		pool.eventOccurred(createMessagesSentEvent(contactId));
+
+		// The poller retries outgoing connections that fail
+		pool.eventOccurred(new ConnectionClosedEvent(contactId, ID, false,
+				true));
+		// Connections over other transports are ignored
+		pool.eventOccurred(new ConnectionClosedEvent(contactId,
+				getTransportId(), true, false));
+	}
+
+	@Test
+	public void testDoesNotReconnectTooOften() throws Exception {
+		enable();
+		pool.eventOccurred(createMessagesSentEvent(contactId));
+
+		expectReconnect();
+
+		pool.eventOccurred(new ConnectionClosedEvent(contactId, ID, true,
+				false));
+		// The second connection is closed too soon after the first
+		time.addAndGet(MIN_RECONNECT_INTERVAL_MS - 1);
+		pool.eventOccurred(new ConnectionClosedEvent(contactId, ID, true,
+				false));
+		context.assertIsSatisfied();
+
+		expectReconnect();
+
+		time.addAndGet(1);
+		pool.eventOccurred(new ConnectionClosedEvent(contactId, ID, true,
+				false));
+	}
+
+	@Test
+	public void testOnlyRecentlyActiveContactsAreWarm() {
+		ContactId[] contactIds = new ContactId[MAX_WARM_CONTACTS + 1];
+		for (int i = 0; i < contactIds.length; i++) {
+			contactIds[i] = getContactId();
+			pool.eventOccurred(createMessagesSentEvent(contactIds[i]));
+			time.incrementAndGet();
+		}
+		// The least recently active contact has been pushed out
+		assertFalse(pool.isWarm(contactIds[0]));
+		for (int i = 1; i < contactIds.length; i++)
+			assertTrue(pool.isWarm(contactIds[i]));
+
+		// All contacts become cold when the activity window expires
+		time.addAndGet(ACTIVITY_WINDOW_MS);
+		assertFalse(pool.isWarm(contactIds[contactIds.length - 1]));
+	}
+
+	private void enable() {
+		Settings settings = new Settings();
+		settings.putBoolean(PREF_TOR_WARM_CONNECTIONS, true);
+		pool.eventOccurred(new SettingsUpdatedEvent(ID.getString(),
+				settings));
+	}
+
+	private AtomicReference<ConnectionHandler> expectReconnect()
+			throws Exception {
+		AtomicReference<ConnectionHandler> captured = new AtomicReference<>();
+		context.checking(new Expectations() {{
+			oneOf(pluginManager).getPlugin(ID);
+			will(returnValue(plugin));
+			oneOf(connectionRegistry).getConnectedOrBetterContacts(ID);
+			will(returnValue(emptyList()));
+			oneOf(transportPropertyManager).getRemoteProperties(contactId,
+					ID);
+			will(returnValue(properties));
+			// The reconnection doesn't affect the plugin's polling interval
+			oneOf(plugin).connect(with(properties),
+					with(any(ConnectionHandler.class)));
+			will(new CaptureArgumentAction<>(captured,
+					ConnectionHandler.class, 1));
+		}});
+		return captured;
+	}
+
+	private MessagesSentEvent createMessagesSentEvent(ContactId c) {
+		return new MessagesSentEvent(c, emptyList(), 0);
+	}
+}
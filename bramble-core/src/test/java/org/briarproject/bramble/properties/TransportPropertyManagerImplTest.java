@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
@@ -545,6 +546,137 @@ public class TransportPropertyManagerImplTest extends BrambleMockTestCase {
 		assertEquals(merged, properties.get(contact.getId()));
 	}
 
+	@Test
+	public void testCachesRemotePropertiesUntilUpdateIsDelivered()
+			throws Exception {
+		Transaction txn1 = new Transaction(null, true);
+		Transaction txn2 = new Transaction(null, false);
+		Transaction txn3 = new Transaction(null, true);
+		Contact contact = getContact();
+		Group contactGroup = getGroup(CLIENT_ID, MAJOR_VERSION);
+		Message message = getMessage(contactGroup.getId());
+		Metadata meta = new Metadata();
+		BdfDictionary metaDictionary = BdfDictionary.of(
+				new BdfEntry(MSG_KEY_TRANSPORT_ID, "foo"),
+				new BdfEntry(MSG_KEY_VERSION, 1),
+				new BdfEntry(MSG_KEY_LOCAL, false)
+		);
+		Map<MessageId, BdfDictionary> messageMetadata =
+				singletonMap(message.getId(), metaDictionary);
+		BdfList fooUpdate = BdfList.of("foo", 1, fooPropertiesDict);
+
+		context.checking(new DbExpectations() {{
+			// The first lookup loads the properties, the second hits the cache
+			exactly(2).of(db).transactionWithResult(with(true),
+					withDbCallable(txn1));
+			exactly(2).of(db).getContact(txn1, contact.getId());
+			will(returnValue(contact));
+			exactly(2).of(contactGroupFactory).createContactGroup(CLIENT_ID,
+					MAJOR_VERSION, contact);
+			will(returnValue(contactGroup));
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn1,
+					contactGroup.getId());
+			will(returnValue(emptyMap()));
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn1,
+					contactGroup.getId());
+			will(returnValue(new BdfDictionary()));
+			// An update is delivered
+			oneOf(metadataParser).parse(meta);
+			will(returnValue(metaDictionary));
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn2,
+					contactGroup.getId());
+			will(returnValue(emptyMap()));
+			// The next lookup loads the new properties
+			oneOf(db).transactionWithResult(with(true), withDbCallable(txn3));
+			oneOf(db).getContact(txn3, contact.getId());
+			will(returnValue(contact));
+			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
+					MAJOR_VERSION, contact);
+			will(returnValue(contactGroup));
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn3,
+					contactGroup.getId());
+			will(returnValue(messageMetadata));
+			oneOf(clientHelper).getMessageAsList(txn3, message.getId());
+			will(returnValue(fooUpdate));
+			oneOf(clientHelper).parseAndValidateTransportProperties(
+					fooPropertiesDict);
+			will(returnValue(fooProperties));
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn3,
+					contactGroup.getId());
+			will(returnValue(new BdfDictionary()));
+		}});
+
+		TransportPropertyManagerImpl t = createInstance();
+		TransportId fooId = new TransportId("foo");
+		assertEquals(0, t.getRemoteProperties(contact.getId(), fooId).size());
+		assertEquals(0, t.getRemoteProperties(contact.getId(), fooId).size());
+		assertEquals(ACCEPT_DO_NOT_SHARE,
+				t.incomingMessage(txn2, message, meta));
+		assertEquals(fooProperties,
+				t.getRemoteProperties(contact.getId(), fooId));
+		assertEquals(1, t.getCacheHits());
+		assertEquals(2, t.getCacheMisses());
+	}
+
+	@Test
+	public void testCachedLocalPropertiesAreInvalidatedByMerging()
+			throws Exception {
+		Transaction txn1 = new Transaction(null, true);
+		Transaction txn2 = new Transaction(null, false);
+		Transaction txn3 = new Transaction(null, true);
+		TransportProperties merged = new TransportProperties(fooProperties);
+		merged.put("fooKey3", "fooValue3");
+		BdfDictionary mergedDict = new BdfDictionary(merged);
+		Message message = getMessage(localGroup.getId());
+		BdfDictionary messageMetadata = BdfDictionary.of(
+				new BdfEntry(MSG_KEY_TRANSPORT_ID, "foo"),
+				new BdfEntry(MSG_KEY_VERSION, 1L),
+				new BdfEntry(MSG_KEY_LOCAL, true)
+		);
+		BdfList mergedUpdate = BdfList.of("foo", 1L, mergedDict);
+
+		context.checking(new DbExpectations() {{
+			// The first lookup finds no properties, the second hits the cache
+			oneOf(db).transactionWithResult(with(true), withDbCallable(txn1));
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn1,
+					localGroup.getId());
+			will(returnValue(emptyMap()));
+			// New properties are merged and there are no contacts
+			oneOf(db).transaction(with(false), withDbRunnable(txn2));
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn2,
+					localGroup.getId());
+			will(returnValue(emptyMap()));
+			oneOf(clock).currentTimeMillis();
+			will(returnValue(message.getTimestamp()));
+			oneOf(clientHelper).createMessage(localGroup.getId(),
+					message.getTimestamp(), mergedUpdate);
+			will(returnValue(message));
+			oneOf(clientHelper).addLocalMessage(txn2, message,
+					messageMetadata, false, false);
+			oneOf(db).getContacts(txn2);
+			will(returnValue(emptyList()));
+			// The next lookup loads the merged properties
+			oneOf(db).transactionWithResult(with(true), withDbCallable(txn3));
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn3,
+					localGroup.getId());
+			will(returnValue(singletonMap(message.getId(), messageMetadata)));
+			oneOf(clientHelper).getMessageAsList(txn3, message.getId());
+			will(returnValue(mergedUpdate));
+			oneOf(clientHelper).parseAndValidateTransportProperties(
+					mergedDict);
+			will(returnValue(merged));
+		}});
+
+		TransportPropertyManagerImpl t = createInstance();
+		TransportId fooId = new TransportId("foo");
+		assertEquals(0, t.getLocalProperties(fooId).size());
+		assertEquals(0, t.getLocalProperties(fooId).size());
+		t.mergeLocalProperties(fooId, merged);
+		assertEquals(merged, t.getLocalProperties(fooId));
+		assertEquals(1, t.getCacheHits());
+		assertEquals(2, t.getCacheMisses());
+	}
+
 	@Test
 	public void testMergingUnchangedPropertiesDoesNotCreateUpdate()
 			throws Exception {
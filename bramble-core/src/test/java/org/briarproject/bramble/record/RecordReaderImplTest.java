@@ -18,7 +18,9 @@ import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 public class RecordReaderImplTest extends BrambleTestCase {
@@ -210,4 +212,44 @@ public class RecordReaderImplTest extends BrambleTestCase {
 		// The reader should have reached the end of the stream
 		assertNull(reader.readRecord(accept, ignore));
 	}
+
+	@Test
+	public void testReusesPayloadOfReleasedRecord() throws Exception {
+		byte[] payload1 = getRandomBytes(123);
+		byte[] payload2 = getRandomBytes(123);
+		byte[] payload3 = getRandomBytes(123);
+		byte[] payload4 = getRandomBytes(45);
+		RecordReader reader = new RecordReaderImpl(new ByteArrayInputStream(
+				createRecords(payload1, payload2, payload3, payload4)));
+
+		Record r1 = reader.readRecord();
+		assertArrayEquals(payload1, r1.getPayload());
+		// The second record needs a new buffer, the first hasn't been released
+		Record r2 = reader.readRecord();
+		assertArrayEquals(payload2, r2.getPayload());
+		assertNotSame(r1.getPayload(), r2.getPayload());
+
+		// The third record should reuse the buffer of the first
+		reader.releaseRecord(r1);
+		Record r3 = reader.readRecord();
+		assertSame(r1.getPayload(), r3.getPayload());
+		assertArrayEquals(payload3, r3.getPayload());
+
+		// The fourth record is a different length, so it needs a new buffer
+		reader.releaseRecord(r2);
+		Record r4 = reader.readRecord();
+		assertNotSame(r2.getPayload(), r4.getPayload());
+		assertArrayEquals(payload4, r4.getPayload());
+	}
+
+	private byte[] createRecords(byte[]... payloads) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] payload : payloads) {
+			byte[] header = new byte[RECORD_HEADER_BYTES];
+			ByteUtils.writeUint16(payload.length, header, 2);
+			out.write(header);
+			out.write(payload);
+		}
+		return out.toByteArray();
+	}
 }
@@ -0,0 +1,140 @@
+package org.briarproject.bramble.reliability;
+
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+import org.briarproject.bramble.api.reliability.ReliabilityLayer;
+import org.briarproject.bramble.api.reliability.WriteHandler;
+import org.briarproject.bramble.api.system.Clock;
+import org.briarproject.bramble.system.SystemClock;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Measures the goodput of a connection between two reliability layers over
+ * a simulated serial link with limited bandwidth, fixed latency and random
+ * frame loss, with and without selective acks.
+ */
+@Ignore
+public class LossyLinkPerformanceTest extends BrambleTestCase {
+
+	private static final int BYTES_TO_SEND = 64 * 1024;
+	private static final int BITS_PER_SECOND = 256 * 1000;
+	private static final int LATENCY_MS = 100;
+	private static final double[] LOSS_RATES = {0, 0.01, 0.05, 0.1};
+
+	private final Clock clock = new SystemClock();
+	private final Random random = new Random(0);
+
+	private ExecutorService ioExecutor;
+	private ScheduledExecutorService linkExecutor;
+
+	@Before
+	public void setUp() {
+		ioExecutor = newCachedThreadPool();
+		linkExecutor = newSingleThreadScheduledExecutor();
+	}
+
+	@After
+	public void tearDown() {
+		ioExecutor.shutdownNow();
+		linkExecutor.shutdownNow();
+	}
+
+	@Test
+	public void testGoodputOverLossyLink() throws Exception {
+		for (double lossRate : LOSS_RATES) {
+			long individual = measureGoodput(false, lossRate);
+			long selective = measureGoodput(true, lossRate);
+			System.out.println("Loss rate " + lossRate
+					+ ": individual acks " + individual + " bytes/s, "
+					+ "selective acks " + selective + " bytes/s");
+		}
+	}
+
+	private long measureGoodput(boolean selectiveAcks, double lossRate)
+			throws Exception {
+		SimulatedLink aToB = new SimulatedLink(lossRate);
+		SimulatedLink bToA = new SimulatedLink(lossRate);
+		ReliabilityLayer a = new ReliabilityLayerImpl(ioExecutor, clock,
+				aToB, selectiveAcks);
+		ReliabilityLayer b = new ReliabilityLayerImpl(ioExecutor, clock,
+				bToA, selectiveAcks);
+		aToB.receiver = b;
+		bToA.receiver = a;
+		a.start();
+		b.start();
+		byte[] data = getRandomBytes(BYTES_TO_SEND);
+		long start = clock.currentTimeMillis();
+		Future<?> writer = ioExecutor.submit(() -> {
+			OutputStream out = a.getOutputStream();
+			out.write(data);
+			out.flush();
+			return null;
+		});
+		byte[] received = new byte[BYTES_TO_SEND];
+		InputStream in = b.getInputStream();
+		int offset = 0;
+		while (offset < received.length) {
+			int read = in.read(received, offset, received.length - offset);
+			if (read == -1) throw new IOException();
+			offset += read;
+		}
+		long duration = clock.currentTimeMillis() - start;
+		writer.get();
+		a.stop();
+		b.stop();
+		assertArrayEquals(data, received);
+		return BYTES_TO_SEND * 1000L / Math.max(1, duration);
+	}
+
+	/**
+	 * A link in one direction that delivers each frame after it has been
+	 * serialised at the link's bit rate and has crossed the link, unless the
+	 * frame is lost.
+	 */
+	@NotNullByDefault
+	private class SimulatedLink implements WriteHandler {
+
+		private final double lossRate;
+
+		private volatile ReliabilityLayer receiver;
+		// Only accessed by the writing reliability layer's thread
+		private long linkFreeMicros = 0;
+
+		private SimulatedLink(double lossRate) {
+			this.lossRate = lossRate;
+		}
+
+		@Override
+		public void handleWrite(byte[] b) {
+			long nowMicros = System.nanoTime() / 1000;
+			linkFreeMicros = Math.max(linkFreeMicros, nowMicros)
+					+ b.length * 8 * 1_000_000L / BITS_PER_SECOND;
+			if (random.nextDouble() < lossRate) return;
+			long delay = linkFreeMicros - nowMicros + LATENCY_MS * 1000;
+			linkExecutor.schedule(() -> {
+				try {
+					receiver.handleRead(b);
+				} catch (IOException e) {
+					// The connection has been closed
+				}
+			}, delay, MICROSECONDS);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package org.briarproject.bramble.reliability;
+
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.briarproject.bramble.test.SettableClock;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.briarproject.bramble.reliability.Receiver.MAX_WINDOW_SIZE;
+import static org.junit.Assert.assertEquals;
+
+public class ReceiverTest extends BrambleTestCase {
+
+	private static final int PAYLOAD_LENGTH = 100;
+
+	private final SettableClock clock =
+			new SettableClock(new AtomicLong(System.currentTimeMillis()));
+	private final List<byte[]> written = new ArrayList<>();
+	private final Sender sender = new Sender(clock, written::add);
+
+	@Test
+	public void testAcksIndividuallyIfSelectiveAcksAreDisabled()
+			throws Exception {
+		Receiver receiver = new Receiver(clock, sender, false);
+		receiver.handleRead(createData(2));
+
+		assertEquals(1, written.size());
+		Ack a = new Ack(written.get(0));
+		assertEquals(2, a.getSequenceNumber());
+		assertEquals(MAX_WINDOW_SIZE - PAYLOAD_LENGTH, a.getWindowSize());
+	}
+
+	@Test
+	public void testAnnouncesSelectiveAcksUntilPeerSendsOne()
+			throws Exception {
+		Receiver receiver = new Receiver(clock, sender, true);
+		receiver.handleRead(createData(2));
+
+		// The individual ack should be followed by a selective ack
+		assertEquals(2, written.size());
+		assertEquals(Frame.ACK_FLAG, written.get(0)[0]);
+		assertEquals(Frame.SACK_FLAG, written.get(1)[0]);
+
+		// Once the peer has sent a selective ack, only selective acks are sent
+		receiver.handleRead(createSelectiveAck());
+		receiver.handleRead(createData(3));
+		assertEquals(3, written.size());
+		assertEquals(Frame.SACK_FLAG, written.get(2)[0]);
+	}
+
+	@Test
+	public void testSelectiveAckDescribesOutOfOrderFrames() throws Exception {
+		Receiver receiver = new Receiver(clock, sender, true);
+		receiver.handleRead(createSelectiveAck());
+
+		receiver.handleRead(createData(1));
+		receiver.handleRead(createData(3));
+		receiver.handleRead(createData(5));
+
+		// Frames 1, 3 and 5 have been received, so frame 2 is missing
+		SelectiveAck a = new SelectiveAck(written.get(written.size() - 1));
+		assertEquals(1, a.getSequenceNumber());
+		assertEquals(0b101, a.getBitmap());
+		assertEquals(MAX_WINDOW_SIZE - 3 * PAYLOAD_LENGTH, a.getWindowSize());
+
+		// Reading frame 1 opens the window but doesn't change the acks
+		assertEquals(1, receiver.read().getSequenceNumber());
+		a = new SelectiveAck(written.get(written.size() - 1));
+		assertEquals(1, a.getSequenceNumber());
+		assertEquals(0b101, a.getBitmap());
+		assertEquals(MAX_WINDOW_SIZE - 2 * PAYLOAD_LENGTH, a.getWindowSize());
+
+		// Receiving frame 2 fills the gap
+		receiver.handleRead(createData(2));
+		a = new SelectiveAck(written.get(written.size() - 1));
+		assertEquals(3, a.getSequenceNumber());
+		assertEquals(0b1, a.getBitmap());
+	}
+
+	@Test
+	public void testDropsFramesBeyondBuffer() throws Exception {
+		Receiver receiver = new Receiver(clock, sender, false);
+		receiver.handleRead(createData(1 + Receiver.BUFFER_FRAMES));
+		assertEquals(0, written.size());
+	}
+
+	private byte[] createData(long sequenceNumber) {
+		Data d = new Data(new byte[Data.MIN_LENGTH + PAYLOAD_LENGTH]);
+		d.setSequenceNumber(sequenceNumber);
+		d.setChecksum(d.calculateChecksum());
+		return d.getBuffer();
+	}
+
+	private byte[] createSelectiveAck() {
+		SelectiveAck a = new SelectiveAck();
+		a.setWindowSize(MAX_WINDOW_SIZE);
+		a.setChecksum(a.calculateChecksum());
+		return a.getBuffer();
+	}
+}
@@ -0,0 +1,143 @@
+package org.briarproject.bramble.reliability;
+
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.briarproject.bramble.test.SettableClock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.briarproject.bramble.reliability.Data.MAX_PAYLOAD_LENGTH;
+import static org.briarproject.bramble.reliability.Sender.INITIAL_CONGESTION_WINDOW;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SenderTest extends BrambleTestCase {
+
+	private final AtomicLong time = new AtomicLong(System.currentTimeMillis());
+	private final List<byte[]> written = new ArrayList<>();
+	private final Sender sender =
+			new Sender(new SettableClock(time), written::add);
+
+	@Before
+	public void setUp() throws Exception {
+		// Open the receiver's window
+		sender.handleAck(createAck(0, Receiver.MAX_WINDOW_SIZE));
+	}
+
+	@Test
+	public void testCongestionWindowLimitsInitialWrites() throws Exception {
+		int frames = INITIAL_CONGESTION_WINDOW / MAX_PAYLOAD_LENGTH;
+		writeFullFrames(frames);
+		assertEquals(frames, written.size());
+
+		// The next write should block until a frame is acked
+		Thread writer = new Thread(() -> {
+			try {
+				sender.write(createData(frames + 1));
+			} catch (Exception e) {
+				throw new AssertionError(e);
+			}
+		});
+		writer.start();
+		writer.join(100);
+		assertEquals(frames, written.size());
+
+		sender.handleAck(createAck(1, Receiver.MAX_WINDOW_SIZE));
+		writer.join();
+		assertEquals(frames + 1, written.size());
+		// The congestion window should have grown by the acked frame
+		assertEquals(INITIAL_CONGESTION_WINDOW + MAX_PAYLOAD_LENGTH,
+				sender.getCongestionWindow());
+	}
+
+	@Test
+	public void testSelectiveAckTriggersFastRetransmit() throws Exception {
+		List<Data> frames = writeFullFrames(4);
+		assertEquals(4, written.size());
+
+		// Ack frames 2, 3 and 4, leaving frame 1 missing
+		sender.handleSelectiveAck(createSelectiveAck(0, 0b111));
+
+		// Frame 1 should have been retransmitted
+		assertEquals(5, written.size());
+		assertArrayEquals(frames.get(0).getBuffer(), written.get(4));
+		// The congestion window should have been halved
+		assertEquals(2 * MAX_PAYLOAD_LENGTH, sender.getCongestionWindow());
+		assertTrue(sender.isSelectiveAckReceived());
+
+		// Repeating the selective ack shouldn't cause another retransmission
+		sender.handleSelectiveAck(createSelectiveAck(0, 0b111));
+		assertEquals(5, written.size());
+	}
+
+	@Test
+	public void testIndividualAcksTriggerFastRetransmit() throws Exception {
+		List<Data> frames = writeFullFrames(4);
+
+		// Acking two later frames shouldn't trigger a retransmission
+		sender.handleAck(createAck(2, Receiver.MAX_WINDOW_SIZE));
+		sender.handleAck(createAck(3, Receiver.MAX_WINDOW_SIZE));
+		assertEquals(4, written.size());
+
+		// Acking a third later frame should
+		sender.handleAck(createAck(4, Receiver.MAX_WINDOW_SIZE));
+		assertEquals(5, written.size());
+		assertArrayEquals(frames.get(0).getBuffer(), written.get(4));
+		assertFalse(sender.isSelectiveAckReceived());
+	}
+
+	@Test
+	public void testTimeoutClosesCongestionWindow() throws Exception {
+		List<Data> frames = writeFullFrames(2);
+
+		// Nothing should be retransmitted before the timeout expires
+		sender.tick();
+		assertEquals(2, written.size());
+
+		time.addAndGet(60_000);
+		sender.tick();
+		assertEquals(4, written.size());
+		assertArrayEquals(frames.get(0).getBuffer(), written.get(2));
+		assertArrayEquals(frames.get(1).getBuffer(), written.get(3));
+		assertEquals(MAX_PAYLOAD_LENGTH, sender.getCongestionWindow());
+	}
+
+	private List<Data> writeFullFrames(int count) throws Exception {
+		List<Data> frames = new ArrayList<>(count);
+		for (int i = 1; i <= count; i++) {
+			Data d = createData(i);
+			sender.write(d);
+			frames.add(d);
+		}
+		return frames;
+	}
+
+	private Data createData(long sequenceNumber) {
+		Data d = new Data(new byte[Data.MAX_LENGTH]);
+		d.setSequenceNumber(sequenceNumber);
+		d.setChecksum(d.calculateChecksum());
+		return d;
+	}
+
+	private byte[] createAck(long sequenceNumber, int windowSize) {
+		Ack a = new Ack();
+		a.setSequenceNumber(sequenceNumber);
+		a.setWindowSize(windowSize);
+		a.setChecksum(a.calculateChecksum());
+		return a.getBuffer();
+	}
+
+	private byte[] createSelectiveAck(long sequenceNumber, long bitmap) {
+		SelectiveAck a = new SelectiveAck();
+		a.setSequenceNumber(sequenceNumber);
+		a.setBitmap(bitmap);
+		a.setWindowSize(Receiver.MAX_WINDOW_SIZE);
+		a.setChecksum(a.calculateChecksum());
+		return a.getBuffer();
+	}
+}
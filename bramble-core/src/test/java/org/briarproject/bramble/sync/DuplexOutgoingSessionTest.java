@@ -0,0 +1,103 @@
+package org.briarproject.bramble.sync;
+
+import org.briarproject.bramble.sync.DuplexOutgoingSession.ThroughputEstimator;
+import org.briarproject.bramble.sync.DuplexOutgoingSession.WriterTask;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.PriorityBlockingQueue;
+
+import static org.briarproject.bramble.sync.DuplexOutgoingSession.MAX_BATCH_CAPACITY;
+import static org.briarproject.bramble.sync.DuplexOutgoingSession.MIN_BATCH_CAPACITY;
+import static org.briarproject.bramble.sync.DuplexOutgoingSession.PRIORITY_ACK;
+import static org.briarproject.bramble.sync.DuplexOutgoingSession.PRIORITY_BATCH;
+import static org.briarproject.bramble.sync.DuplexOutgoingSession.PRIORITY_CONTROL;
+import static org.briarproject.bramble.sync.DuplexOutgoingSession.PRIORITY_OFFER;
+import static org.briarproject.bramble.sync.DuplexOutgoingSession.PRIORITY_REQUEST;
+import static org.briarproject.bramble.sync.DuplexOutgoingSession.TARGET_BATCH_WRITE_TIME_MS;
+import static org.briarproject.bramble.sync.DuplexOutgoingSession.calculateBatchCapacity;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DuplexOutgoingSessionTest extends BrambleTestCase {
+
+	@Test
+	public void testWriterTasksAreOrderedByPriority() {
+		ThrowingRunnable<IOException> batch1 = () -> {
+		};
+		ThrowingRunnable<IOException> batch2 = () -> {
+		};
+		ThrowingRunnable<IOException> offer = () -> {
+		};
+		ThrowingRunnable<IOException> request = () -> {
+		};
+		ThrowingRunnable<IOException> ack = () -> {
+		};
+		ThrowingRunnable<IOException> close = () -> {
+		};
+
+		PriorityBlockingQueue<WriterTask> queue = new PriorityBlockingQueue<>();
+		queue.add(new WriterTask(PRIORITY_BATCH, 0, batch1));
+		queue.add(new WriterTask(PRIORITY_OFFER, 1, offer));
+		queue.add(new WriterTask(PRIORITY_BATCH, 2, batch2));
+		queue.add(new WriterTask(PRIORITY_REQUEST, 3, request));
+		queue.add(new WriterTask(PRIORITY_ACK, 4, ack));
+		queue.add(new WriterTask(PRIORITY_CONTROL, 5, close));
+
+		assertSame(close, queue.remove().getTask());
+		assertSame(ack, queue.remove().getTask());
+		assertSame(request, queue.remove().getTask());
+		assertSame(offer, queue.remove().getTask());
+		// Batches should be written in the order they were added
+		assertSame(batch1, queue.remove().getTask());
+		assertSame(batch2, queue.remove().getTask());
+	}
+
+	@Test
+	public void testBatchCapacityFollowsThroughput() {
+		// Slow connections get the minimum batch capacity
+		assertEquals(MIN_BATCH_CAPACITY, calculateBatchCapacity(0));
+		assertEquals(MIN_BATCH_CAPACITY, calculateBatchCapacity(1000));
+
+		// Batches should take the target time to write
+		long throughput = MIN_BATCH_CAPACITY * 4 * 1000
+				/ TARGET_BATCH_WRITE_TIME_MS;
+		assertEquals(MIN_BATCH_CAPACITY * 4,
+				calculateBatchCapacity(throughput));
+
+		// Fast connections get the maximum batch capacity
+		assertEquals(MAX_BATCH_CAPACITY,
+				calculateBatchCapacity(Long.MAX_VALUE / 1000));
+	}
+
+	@Test
+	public void testSmallBatchesAreCombined() {
+		ThroughputEstimator estimator = new ThroughputEstimator();
+		int half = MIN_BATCH_CAPACITY / 2;
+		// A small batch isn't measured on its own
+		assertFalse(estimator.addSample(half, 1000));
+		assertEquals(0, estimator.getThroughput());
+		// Together with the next batch it makes a sample
+		assertTrue(estimator.addSample(MIN_BATCH_CAPACITY - half, 1000));
+		assertEquals(MIN_BATCH_CAPACITY / 2, estimator.getThroughput());
+		// The combined batches have been used up
+		assertFalse(estimator.addSample(half, 1));
+	}
+
+	@Test
+	public void testThroughputIsMovingAverage() {
+		ThroughputEstimator estimator = new ThroughputEstimator();
+		// The first sample is used as the estimate
+		assertTrue(estimator.addSample(MIN_BATCH_CAPACITY, 1000));
+		assertEquals(MIN_BATCH_CAPACITY, estimator.getThroughput());
+		// Later samples are weighted by a quarter
+		assertTrue(estimator.addSample(MIN_BATCH_CAPACITY * 5, 1000));
+		assertEquals(MIN_BATCH_CAPACITY * 2, estimator.getThroughput());
+		// A batch written in no measurable time doesn't divide by zero
+		assertTrue(estimator.addSample(MIN_BATCH_CAPACITY, 0));
+		assertTrue(estimator.getThroughput() > MIN_BATCH_CAPACITY * 2);
+	}
+}
@@ -14,23 +14,35 @@ import org.briarproject.bramble.api.sync.Versions;
 import org.briarproject.bramble.api.transport.StreamWriter;
 import org.briarproject.bramble.test.BrambleMockTestCase;
 import org.briarproject.bramble.test.DbExpectations;
+import org.briarproject.bramble.test.ImmediateExecutor;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
+import static org.briarproject.bramble.api.record.Record.RECORD_HEADER_BYTES;
 import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_BODY_LENGTH;
 import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_IDS;
 import static org.briarproject.bramble.test.TestUtils.getContactId;
 import static org.briarproject.bramble.test.TestUtils.getMessage;
 import static org.briarproject.bramble.test.TestUtils.getRandomId;
+import static org.briarproject.bramble.sync.EagerSimplexOutgoingSession.CHUNK_CAPACITY;
 import static org.briarproject.bramble.test.TestUtils.getTransportId;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class EagerSimplexOutgoingSessionTest extends BrambleMockTestCase {
 
 	private static final int MAX_LATENCY = Integer.MAX_VALUE;
 
 	private final DatabaseComponent db = context.mock(DatabaseComponent.class);
+	private final Executor dbExecutor = new ImmediateExecutor();
 	private final EventBus eventBus = context.mock(EventBus.class);
 	private final StreamWriter streamWriter = context.mock(StreamWriter.class);
 	private final SyncRecordWriter recordWriter =
@@ -48,8 +60,9 @@ public class EagerSimplexOutgoingSessionTest extends BrambleMockTestCase {
 	@Test
 	public void testNothingToSendEagerly() throws Exception {
 		EagerSimplexOutgoingSession session =
-				new EagerSimplexOutgoingSession(db, eventBus, contactId,
-						transportId, MAX_LATENCY, streamWriter, recordWriter);
+				new EagerSimplexOutgoingSession(db, dbExecutor, eventBus,
+						contactId, transportId, MAX_LATENCY, streamWriter,
+						recordWriter);
 
 		Transaction noAckTxn = new Transaction(null, false);
 		Transaction noIdsTxn = new Transaction(null, true);
@@ -81,14 +94,15 @@ public class EagerSimplexOutgoingSessionTest extends BrambleMockTestCase {
 	@Test
 	public void testSomethingToSendEagerly() throws Exception {
 		EagerSimplexOutgoingSession session =
-				new EagerSimplexOutgoingSession(db, eventBus, contactId,
-						transportId, MAX_LATENCY, streamWriter, recordWriter);
+				new EagerSimplexOutgoingSession(db, dbExecutor, eventBus,
+						contactId, transportId, MAX_LATENCY, streamWriter,
+						recordWriter);
 
 		Transaction ackTxn = new Transaction(null, false);
 		Transaction noAckTxn = new Transaction(null, false);
 		Transaction idsTxn = new Transaction(null, true);
-		Transaction msgTxn = new Transaction(null, false);
-		Transaction msgTxn1 = new Transaction(null, false);
+		Transaction msgTxn = new Transaction(null, true);
+		Transaction sentTxn = new Transaction(null, false);
 
 		context.checking(new DbExpectations() {{
 			// Add listener
@@ -110,19 +124,22 @@ public class EagerSimplexOutgoingSessionTest extends BrambleMockTestCase {
 			oneOf(db).transactionWithResult(with(true), withDbCallable(idsTxn));
 			oneOf(db).getUnackedMessagesToSend(idsTxn, contactId);
 			will(returnValue(asList(message.getId(), message1.getId())));
+			// Load both messages in one transaction
+			oneOf(db).transactionWithResult(with(true),
+					withDbCallable(msgTxn));
 			// Try to send the first message - it's no longer shared
-			oneOf(db).transactionWithNullableResult(with(false),
-					withNullableDbCallable(msgTxn));
 			oneOf(db).getMessageToSend(msgTxn, contactId, message.getId(),
-					MAX_LATENCY, true);
+					MAX_LATENCY, false);
 			will(returnValue(null));
 			// Send the second message
-			oneOf(db).transactionWithNullableResult(with(false),
-					withNullableDbCallable(msgTxn1));
-			oneOf(db).getMessageToSend(msgTxn1, contactId, message1.getId(),
-					MAX_LATENCY, true);
+			oneOf(db).getMessageToSend(msgTxn, contactId, message1.getId(),
+					MAX_LATENCY, false);
 			will(returnValue(message1));
 			oneOf(recordWriter).writeMessage(message1);
+			// Mark the second message as sent after writing it
+			oneOf(db).transaction(with(false), withDbRunnable(sentTxn));
+			oneOf(db).setMessagesSent(sentTxn, contactId,
+					singletonList(message1.getId()), MAX_LATENCY);
 			// Send the end of stream marker
 			oneOf(streamWriter).sendEndOfStream();
 			// Remove listener
@@ -131,4 +148,135 @@ public class EagerSimplexOutgoingSessionTest extends BrambleMockTestCase {
 
 		session.run();
 	}
+
+	@Test
+	public void testMessagesAreLoadedInChunks() throws Exception {
+		EagerSimplexOutgoingSession session =
+				new EagerSimplexOutgoingSession(db, dbExecutor, eventBus,
+						contactId, transportId, MAX_LATENCY, streamWriter,
+						recordWriter);
+
+		// Each chunk holds as many maximum-size messages as will fit
+		int perChunk = CHUNK_CAPACITY / (RECORD_HEADER_BYTES
+				+ message.getRawLength());
+		List<Message> messages = new ArrayList<>();
+		List<MessageId> ids = new ArrayList<>();
+		for (int i = 0; i < perChunk + 1; i++) {
+			Message m = getMessage(new GroupId(getRandomId()),
+					MAX_MESSAGE_BODY_LENGTH);
+			messages.add(m);
+			ids.add(m.getId());
+		}
+
+		Transaction noAckTxn = new Transaction(null, false);
+		Transaction idsTxn = new Transaction(null, true);
+		Transaction chunkTxn = new Transaction(null, true);
+		Transaction chunkTxn1 = new Transaction(null, true);
+		Transaction sentTxn = new Transaction(null, false);
+		Transaction sentTxn1 = new Transaction(null, false);
+
+		context.checking(new DbExpectations() {{
+			// Add listener
+			oneOf(eventBus).addListener(session);
+			// Send the protocol versions
+			oneOf(recordWriter).writeVersions(with(any(Versions.class)));
+			// No acks to send
+			oneOf(db).transactionWithNullableResult(with(false),
+					withNullableDbCallable(noAckTxn));
+			oneOf(db).generateAck(noAckTxn, contactId, MAX_MESSAGE_IDS);
+			will(returnValue(null));
+			// Load the IDs of the messages to send
+			oneOf(db).transactionWithResult(with(true), withDbCallable(idsTxn));
+			oneOf(db).getUnackedMessagesToSend(idsTxn, contactId);
+			will(returnValue(ids));
+			// Load a full chunk, then a chunk with the remaining message
+			oneOf(db).transactionWithResult(with(true),
+					withDbCallable(chunkTxn));
+			oneOf(db).transactionWithResult(with(true),
+					withDbCallable(chunkTxn1));
+			for (int i = 0; i < perChunk + 1; i++) {
+				Transaction txn = i < perChunk ? chunkTxn : chunkTxn1;
+				oneOf(db).getMessageToSend(txn, contactId, ids.get(i),
+						MAX_LATENCY, false);
+				will(returnValue(messages.get(i)));
+				oneOf(recordWriter).writeMessage(messages.get(i));
+			}
+			// Mark each chunk as sent after writing it
+			oneOf(db).transaction(with(false), withDbRunnable(sentTxn));
+			oneOf(db).setMessagesSent(sentTxn, contactId,
+					ids.subList(0, perChunk), MAX_LATENCY);
+			oneOf(db).transaction(with(false), withDbRunnable(sentTxn1));
+			oneOf(db).setMessagesSent(sentTxn1, contactId,
+					ids.subList(perChunk, perChunk + 1), MAX_LATENCY);
+			// Send the end of stream marker
+			oneOf(streamWriter).sendEndOfStream();
+			// Remove listener
+			oneOf(eventBus).removeListener(session);
+		}});
+
+		session.run();
+	}
+
+	@Test
+	public void testChunkIsNotMarkedAsSentIfWritingFails() throws Exception {
+		// Load the first chunk immediately and hold back any later chunks
+		AtomicBoolean first = new AtomicBoolean(true);
+		List<Runnable> deferred = new ArrayList<>();
+		Executor dbExecutor = r -> {
+			if (first.getAndSet(false)) r.run();
+			else deferred.add(r);
+		};
+		EagerSimplexOutgoingSession session =
+				new EagerSimplexOutgoingSession(db, dbExecutor, eventBus,
+						contactId, transportId, MAX_LATENCY, streamWriter,
+						recordWriter);
+
+		int perChunk = CHUNK_CAPACITY / (RECORD_HEADER_BYTES
+				+ message.getRawLength());
+		List<MessageId> ids = new ArrayList<>();
+		for (int i = 0; i < perChunk + 1; i++) ids.add(message.getId());
+
+		Transaction noAckTxn = new Transaction(null, false);
+		Transaction idsTxn = new Transaction(null, true);
+		Transaction chunkTxn = new Transaction(null, true);
+
+		context.checking(new DbExpectations() {{
+			// Add listener
+			oneOf(eventBus).addListener(session);
+			// Send the protocol versions
+			oneOf(recordWriter).writeVersions(with(any(Versions.class)));
+			// No acks to send
+			oneOf(db).transactionWithNullableResult(with(false),
+					withNullableDbCallable(noAckTxn));
+			oneOf(db).generateAck(noAckTxn, contactId, MAX_MESSAGE_IDS);
+			will(returnValue(null));
+			// Load the IDs of the messages to send
+			oneOf(db).transactionWithResult(with(true), withDbCallable(idsTxn));
+			oneOf(db).getUnackedMessagesToSend(idsTxn, contactId);
+			will(returnValue(ids));
+			// Load the first chunk
+			oneOf(db).transactionWithResult(with(true),
+					withDbCallable(chunkTxn));
+			exactly(perChunk).of(db).getMessageToSend(chunkTxn, contactId,
+					message.getId(), MAX_LATENCY, false);
+			will(returnValue(message));
+			// Writing the first message fails, so nothing is marked as sent
+			oneOf(recordWriter).writeMessage(message);
+			will(throwException(new IOException()));
+			// Remove listener
+			oneOf(eventBus).removeListener(session);
+		}});
+
+		try {
+			session.run();
+			fail();
+		} catch (IOException expected) {
+			// Expected
+		}
+
+		// The second chunk was queued, but isn't loaded after the session
+		// has stopped sending messages
+		assertEquals(1, deferred.size());
+		deferred.get(0).run();
+	}
 }
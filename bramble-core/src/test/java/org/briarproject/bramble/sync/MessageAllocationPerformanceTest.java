@@ -0,0 +1,79 @@
+package org.briarproject.bramble.sync;
+
+import org.briarproject.bramble.api.sync.Message;
+import org.briarproject.bramble.api.sync.MessageFactory;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import javax.inject.Inject;
+
+import static org.briarproject.bramble.api.sync.SyncConstants.MAX_MESSAGE_BODY_LENGTH;
+import static org.briarproject.bramble.test.TestUtils.getClientId;
+import static org.briarproject.bramble.test.TestUtils.getGroup;
+import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
+
+/**
+ * Measures the bytes allocated per incoming message between parsing the
+ * raw message and getting the raw message back for storage, with and
+ * without the raw message being kept by the parsed message.
+ */
+@Ignore
+public class MessageAllocationPerformanceTest extends BrambleTestCase {
+
+	private static final int ITERATIONS = 1000;
+	private static final int[] BODY_LENGTHS =
+			{100, 1024, 16 * 1024, MAX_MESSAGE_BODY_LENGTH};
+
+	@Inject
+	MessageFactory messageFactory;
+
+	@Before
+	public void setUp() {
+		DaggerSyncIntegrationTestComponent.builder().build().inject(this);
+	}
+
+	@Test
+	public void testAllocationsPerMessage() {
+		for (int bodyLength : BODY_LENGTHS) {
+			Message m = messageFactory.createMessage(
+					getGroup(getClientId(), 123).getId(),
+					System.currentTimeMillis(), getRandomBytes(bodyLength));
+			byte[] raw = messageFactory.getRawMessage(m);
+			// Warm up
+			measure(raw, true);
+			measure(raw, false);
+			long kept = measure(raw, true);
+			long rebuilt = measure(raw, false);
+			System.out.println("Body length " + bodyLength + ": "
+					+ rebuilt + " bytes per message when rebuilding raw, "
+					+ kept + " bytes per message when keeping raw");
+		}
+	}
+
+	private long measure(byte[] raw, boolean keepRaw) {
+		long before = getAllocatedBytes();
+		for (int i = 0; i < ITERATIONS; i++) {
+			// The record reader allocates a new buffer for each record
+			byte[] payload = raw.clone();
+			Message m = messageFactory.createMessage(payload);
+			if (!keepRaw) {
+				m = new Message(m.getId(), m.getGroupId(), m.getTimestamp(),
+						m.getBody());
+			}
+			// The database gets the raw message for storage
+			messageFactory.getRawMessage(m);
+		}
+		return (getAllocatedBytes() - before) / ITERATIONS;
+	}
+
+	private long getAllocatedBytes() {
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean)
+						ManagementFactory.getThreadMXBean();
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -21,4 +21,8 @@ interface SyncIntegrationTestComponent extends
 		BrambleCoreIntegrationTestEagerSingletons {
 
 	void inject(SyncIntegrationTest testCase);
+
+	void inject(MessageAllocationPerformanceTest testCase);
+
+	void inject(SyncRecordReaderAllocationPerformanceTest testCase);
 }
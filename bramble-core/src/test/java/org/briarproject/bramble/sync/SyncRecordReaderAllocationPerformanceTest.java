@@ -0,0 +1,85 @@
+package org.briarproject.bramble.sync;
+
+import org.briarproject.bramble.api.sync.Ack;
+import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.bramble.api.sync.SyncRecordReader;
+import org.briarproject.bramble.api.sync.SyncRecordReaderFactory;
+import org.briarproject.bramble.api.sync.SyncRecordWriter;
+import org.briarproject.bramble.api.sync.SyncRecordWriterFactory;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import static org.briarproject.bramble.test.TestUtils.getRandomId;
+
+/**
+ * Measures the bytes allocated per ack record read by the sync record
+ * reader, for acks of various sizes.
+ */
+@Ignore
+public class SyncRecordReaderAllocationPerformanceTest
+		extends BrambleTestCase {
+
+	private static final int RECORDS = 1000;
+	private static final int[] IDS_PER_RECORD = {1, 10, 100, 1000};
+
+	@Inject
+	SyncRecordReaderFactory syncRecordReaderFactory;
+	@Inject
+	SyncRecordWriterFactory syncRecordWriterFactory;
+
+	@Before
+	public void setUp() {
+		DaggerSyncIntegrationTestComponent.builder().build().inject(this);
+	}
+
+	@Test
+	public void testAllocationsPerAck() throws Exception {
+		for (int ids : IDS_PER_RECORD) {
+			byte[] stream = createAcks(ids);
+			// Warm up
+			measure(stream);
+			long perRecord = measure(stream);
+			System.out.println(ids + " IDs per ack: " + perRecord
+					+ " bytes per record, " + perRecord / ids + " per ID");
+		}
+	}
+
+	private byte[] createAcks(int ids) throws Exception {
+		List<MessageId> messageIds = new ArrayList<>(ids);
+		for (int i = 0; i < ids; i++)
+			messageIds.add(new MessageId(getRandomId()));
+		Ack ack = new Ack(messageIds);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SyncRecordWriter writer =
+				syncRecordWriterFactory.createRecordWriter(out);
+		for (int i = 0; i < RECORDS; i++) writer.writeAck(ack);
+		writer.flush();
+		return out.toByteArray();
+	}
+
+	private long measure(byte[] stream) throws Exception {
+		ByteArrayInputStream in = new ByteArrayInputStream(stream);
+		SyncRecordReader reader =
+				syncRecordReaderFactory.createRecordReader(in);
+		long before = getAllocatedBytes();
+		while (!reader.eof()) reader.readAck();
+		return (getAllocatedBytes() - before) / RECORDS;
+	}
+
+	private long getAllocatedBytes() {
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean)
+						ManagementFactory.getThreadMXBean();
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
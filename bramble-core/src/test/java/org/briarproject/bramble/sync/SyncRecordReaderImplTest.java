@@ -48,7 +48,9 @@ public class SyncRecordReaderImplTest extends BrambleMockTestCase {
 
 	@Test
 	public void testNoFormatExceptionIfAckIsMaximumSize() throws Exception {
-		expectReadRecord(createAck());
+		Record record = createAck();
+		expectReadRecord(record);
+		expectReleaseRecord(record);
 
 		Ack ack = reader.readAck();
 		assertEquals(MAX_MESSAGE_IDS, ack.getMessageIds().size());
@@ -63,7 +65,9 @@ public class SyncRecordReaderImplTest extends BrambleMockTestCase {
 
 	@Test
 	public void testNoFormatExceptionIfOfferIsMaximumSize() throws Exception {
-		expectReadRecord(createOffer());
+		Record record = createOffer();
+		expectReadRecord(record);
+		expectReleaseRecord(record);
 
 		Offer offer = reader.readOffer();
 		assertEquals(MAX_MESSAGE_IDS, offer.getMessageIds().size());
@@ -78,7 +82,9 @@ public class SyncRecordReaderImplTest extends BrambleMockTestCase {
 
 	@Test
 	public void testNoFormatExceptionIfRequestIsMaximumSize() throws Exception {
-		expectReadRecord(createRequest());
+		Record record = createRequest();
+		expectReadRecord(record);
+		expectReleaseRecord(record);
 
 		Request request = reader.readRequest();
 		assertEquals(MAX_MESSAGE_IDS, request.getMessageIds().size());
@@ -94,7 +100,9 @@ public class SyncRecordReaderImplTest extends BrambleMockTestCase {
 	@Test
 	public void testNoFormatExceptionIfVersionsIsMaximumSize()
 			throws Exception {
-		expectReadRecord(createVersions(MAX_SUPPORTED_VERSIONS));
+		Record record = createVersions(MAX_SUPPORTED_VERSIONS);
+		expectReadRecord(record);
+		expectReleaseRecord(record);
 
 		Versions versions = reader.readVersions();
 		List<Byte> supported = versions.getSupportedVersions();
@@ -145,7 +153,9 @@ public class SyncRecordReaderImplTest extends BrambleMockTestCase {
 
 	@Test
 	public void testEofReturnsTrueWhenAtEndOfStream() throws Exception {
-		expectReadRecord(createAck());
+		Record record = createAck();
+		expectReadRecord(record);
+		expectReleaseRecord(record);
 		expectReadRecord(null);
 
 		SyncRecordReader reader =
@@ -167,6 +177,12 @@ public class SyncRecordReaderImplTest extends BrambleMockTestCase {
 		}});
 	}
 
+	private void expectReleaseRecord(Record record) {
+		context.checking(new Expectations() {{
+			oneOf(recordReader).releaseRecord(record);
+		}});
+	}
+
 	private Record createAck() throws Exception {
 		return new Record(PROTOCOL_VERSION, ACK, createPayload());
 	}
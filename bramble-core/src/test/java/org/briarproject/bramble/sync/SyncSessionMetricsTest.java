@@ -0,0 +1,66 @@
+package org.briarproject.bramble.sync;
+
+import org.briarproject.bramble.api.sync.LatencyHistogram;
+import org.briarproject.bramble.api.sync.SyncSessionStats;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.Test;
+
+import static org.briarproject.bramble.api.record.Record.RECORD_HEADER_BYTES;
+import static org.briarproject.bramble.api.sync.LatencyHistogram.BUCKETS;
+import static org.briarproject.bramble.api.sync.LatencyHistogram.getBucket;
+import static org.junit.Assert.assertEquals;
+
+public class SyncSessionMetricsTest extends BrambleTestCase {
+
+	private final SyncSessionMetrics metrics = new SyncSessionMetrics();
+
+	@Test
+	public void testNewSessionHasEmptyStats() {
+		SyncSessionStats stats = metrics.getStats(0);
+		assertEquals(0, stats.getMessagesSent());
+		assertEquals(0, stats.getBytesReceived());
+		assertEquals(0, stats.getDbTime().getCount());
+		assertEquals(0, stats.getAckLatency().getPercentile(99));
+	}
+
+	@Test
+	public void testMessagesAreCounted() {
+		metrics.onMessageSent(100);
+		metrics.onMessageSent(200);
+		metrics.onMessageReceived(300);
+		SyncSessionStats stats = metrics.getStats(3);
+		assertEquals(2, stats.getMessagesSent());
+		assertEquals(300 + 2 * RECORD_HEADER_BYTES, stats.getBytesSent());
+		assertEquals(1, stats.getMessagesReceived());
+		assertEquals(300 + RECORD_HEADER_BYTES, stats.getBytesReceived());
+		assertEquals(3, stats.getWriteQueueDepth());
+	}
+
+	@Test
+	public void testDurationsAreRecordedInHistograms() {
+		metrics.onDbTransaction(5);
+		metrics.onDbTransaction(50);
+		metrics.onDbTransaction(500);
+		// Negative durations count as zero
+		metrics.onAckSent(-10);
+		metrics.onAckSent(20);
+
+		LatencyHistogram dbTime = metrics.getStats(0).getDbTime();
+		assertEquals(3, dbTime.getCount());
+		assertEquals(555, dbTime.getTotal());
+		assertEquals(500, dbTime.getMax());
+		for (int i = 0; i < BUCKETS; i++) {
+			long expected = i == getBucket(5) || i == getBucket(50)
+					|| i == getBucket(500) ? 1 : 0;
+			assertEquals(expected, dbTime.getCount(i));
+		}
+		assertEquals(100, dbTime.getPercentile(50));
+		assertEquals(500, dbTime.getPercentile(100));
+
+		LatencyHistogram ackLatency = metrics.getStats(0).getAckLatency();
+		assertEquals(2, ackLatency.getCount());
+		assertEquals(1, ackLatency.getCount(getBucket(0)));
+		assertEquals(20, ackLatency.getTotal());
+		assertEquals(20, ackLatency.getMax());
+	}
+}
@@ -2,6 +2,7 @@ package org.briarproject.bramble.system;
 
 import org.briarproject.bramble.api.lifecycle.LifecycleManager;
 import org.briarproject.bramble.api.system.Clock;
+import org.briarproject.bramble.api.system.CoarseScheduler;
 import org.briarproject.bramble.api.system.TaskScheduler;
 import org.briarproject.bramble.test.SettableClock;
 import org.briarproject.bramble.test.TimeTravel;
@@ -91,6 +92,15 @@ public class TimeTravelModule {
 		return taskScheduler;
 	}
 
+	@Provides
+	@Singleton
+	@CoarseScheduler
+	TaskScheduler provideCoarseScheduler(TaskScheduler scheduler) {
+		// Use the task scheduler directly so that tasks run at exactly
+		// their deadlines when travelling in time
+		return scheduler;
+	}
+
 	@Provides
 	TimeTravel provideTimeTravel() {
 		return timeTravel;
@@ -0,0 +1,82 @@
+package org.briarproject.bramble.system;
+
+import org.briarproject.bramble.api.Cancellable;
+import org.briarproject.bramble.api.system.TaskScheduler;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Compares the cost of scheduling and cancelling large numbers of timers
+ * with the {@link TimerWheel} and with {@link TaskSchedulerImpl}, as when
+ * many cleanup deadlines are scheduled and then replaced by earlier ones.
+ * None of the timers are due while the test is running.
+ */
+@Ignore
+public class TimerWheelPerformanceTest extends BrambleTestCase {
+
+	private static final int TIMERS = 100_000;
+	private static final int ROUNDS = 5;
+	private static final Executor DIRECT = Runnable::run;
+
+	private final ScheduledThreadPoolExecutor heapExecutor =
+			new ScheduledThreadPoolExecutor(1);
+	private final ScheduledThreadPoolExecutor wheelExecutor =
+			new ScheduledThreadPoolExecutor(1);
+	private final long[] delays = new long[TIMERS];
+
+	@After
+	public void tearDown() {
+		heapExecutor.shutdownNow();
+		wheelExecutor.shutdownNow();
+	}
+
+	@Test
+	public void testScheduleAndCancel() {
+		Random random = new Random();
+		long min = MINUTES.toMillis(1), range = DAYS.toMillis(30);
+		for (int i = 0; i < TIMERS; i++) {
+			delays[i] = min + (long) (random.nextDouble() * range);
+		}
+		TaskScheduler heap = new TaskSchedulerImpl(heapExecutor);
+		TaskScheduler wheel = new TimerWheel(
+				new TaskSchedulerImpl(wheelExecutor), new SystemClock());
+		// Warm up
+		measure(heap);
+		measure(wheel);
+		heapExecutor.purge();
+		for (int i = 0; i < ROUNDS; i++) {
+			System.out.println("Scheduled executor: " + measure(heap));
+			System.out.println("Heap size after cancelling: "
+					+ heapExecutor.getQueue().size());
+			heapExecutor.purge();
+			System.out.println("Timer wheel: " + measure(wheel));
+			System.out.println("Underlying heap size: "
+					+ wheelExecutor.getQueue().size());
+		}
+	}
+
+	private String measure(TaskScheduler scheduler) {
+		Cancellable[] cancellables = new Cancellable[TIMERS];
+		long start = System.nanoTime();
+		for (int i = 0; i < TIMERS; i++) {
+			cancellables[i] = scheduler.schedule(() -> {
+			}, DIRECT, delays[i], MILLISECONDS);
+		}
+		long scheduled = System.nanoTime();
+		for (Cancellable c : cancellables) c.cancel();
+		long cancelled = System.nanoTime();
+		return TIMERS + " timers scheduled in "
+				+ (scheduled - start) / 1_000_000 + " ms, cancelled in "
+				+ (cancelled - scheduled) / 1_000_000 + " ms";
+	}
+}
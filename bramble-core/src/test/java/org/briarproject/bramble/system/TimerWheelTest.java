@@ -0,0 +1,163 @@
+package org.briarproject.bramble.system;
+
+import org.briarproject.bramble.api.Cancellable;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.briarproject.bramble.test.SettableClock;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.briarproject.bramble.system.TimerWheel.LEVELS;
+import static org.briarproject.bramble.system.TimerWheel.SLOTS;
+import static org.briarproject.bramble.system.TimerWheel.TICK_MS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimerWheelTest extends BrambleTestCase {
+
+	private static final Executor DIRECT = Runnable::run;
+
+	private final AtomicLong time = new AtomicLong(123456789);
+	private final SettableClock clock = new SettableClock(time);
+	private final TestTaskScheduler scheduler = new TestTaskScheduler(clock);
+	private final TimerWheel wheel = new TimerWheel(scheduler, clock);
+	private final List<Integer> ran = new ArrayList<>();
+
+	@Test
+	public void testTasksRunInDeadlineOrder() throws Exception {
+		schedule(3, 2500);
+		schedule(1, 10);
+		schedule(2, 1500);
+		assertEquals(3, wheel.getSize());
+
+		advance(2 * TICK_MS);
+		assertEquals(asList(1), ran);
+		advance(TICK_MS);
+		assertEquals(asList(1, 2), ran);
+		advance(TICK_MS);
+		assertEquals(asList(1, 2, 3), ran);
+		assertEquals(0, wheel.getSize());
+	}
+
+	@Test
+	public void testTasksDoNotRunBeforeDeadlines() throws Exception {
+		schedule(1, 5 * TICK_MS + 1);
+
+		advance(5 * TICK_MS);
+		assertEquals(emptyList(), ran);
+		advance(TICK_MS);
+		assertEquals(asList(1), ran);
+	}
+
+	@Test
+	public void testCancelledTasksDoNotRun() throws Exception {
+		schedule(1, TICK_MS);
+		Cancellable c = schedule(2, TICK_MS);
+		schedule(3, TICK_MS);
+		c.cancel();
+		assertEquals(2, wheel.getSize());
+		// Cancelling twice has no effect
+		c.cancel();
+		assertEquals(2, wheel.getSize());
+
+		advance(2 * TICK_MS);
+		assertEquals(2, ran.size());
+		assertTrue(ran.contains(1));
+		assertTrue(ran.contains(3));
+	}
+
+	@Test
+	public void testDistantTasksAreMovedDownTheWheel() throws Exception {
+		long levelOne = SLOTS * TICK_MS + 123;
+		long levelTwo = SLOTS * SLOTS * TICK_MS + 456;
+		long beyondTop = 2 * DAYS.toMillis(365);
+		schedule(1, levelOne);
+		schedule(2, levelTwo);
+		schedule(3, beyondTop);
+
+		advance(levelOne - 1);
+		assertEquals(emptyList(), ran);
+		advance(TICK_MS + 1);
+		assertEquals(asList(1), ran);
+		advance(levelTwo - levelOne - 2 * TICK_MS);
+		assertEquals(asList(1), ran);
+		advance(2 * TICK_MS);
+		assertEquals(asList(1, 2), ran);
+		// Travel to just before the last task is due, one top-level slot at
+		// a time, so the task is moved down the wheel several times
+		advanceInSteps(beyondTop - levelTwo - 2 * TICK_MS);
+		assertEquals(asList(1, 2), ran);
+		advance(2 * TICK_MS);
+		assertEquals(asList(1, 2, 3), ran);
+		assertEquals(0, wheel.getSize());
+	}
+
+	@Test
+	public void testTasksAreRunWhenClockJumpsAhead() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			schedule(i, (long) i * SLOTS * TICK_MS);
+		}
+		advance(DAYS.toMillis(1));
+		assertEquals(100, ran.size());
+		for (int i = 0; i < 100; i++) assertEquals(i, (int) ran.get(i));
+	}
+
+	@Test
+	public void testFixedDelayTaskRunsUntilCancelled() throws Exception {
+		Cancellable c = wheel.scheduleWithFixedDelay(() -> ran.add(1), DIRECT,
+				10, 30, SECONDS);
+
+		advance(SECONDS.toMillis(10) + TICK_MS);
+		assertEquals(1, ran.size());
+		// The interval is measured from the end of the previous execution
+		// and the deadline is rounded up to the next tick
+		advance(SECONDS.toMillis(30) + TICK_MS);
+		assertEquals(2, ran.size());
+		advance(SECONDS.toMillis(30) + TICK_MS);
+		assertEquals(3, ran.size());
+
+		c.cancel();
+		assertEquals(0, wheel.getSize());
+		advance(SECONDS.toMillis(60));
+		assertEquals(3, ran.size());
+	}
+
+	@Test
+	public void testEarlierTasksCanBeScheduledAfterLaterTasks()
+			throws Exception {
+		// Schedule tasks in decreasing order of deadline, so each task
+		// needs an earlier wake-up than the last
+		for (int i = 10; i > 0; i--) schedule(i, i * TICK_MS);
+		advance(SECONDS.toMillis(11));
+		assertEquals(10, ran.size());
+		for (int i = 0; i < 10; i++) assertEquals(i + 1, (int) ran.get(i));
+	}
+
+	private Cancellable schedule(int id, long delayMs) {
+		return wheel.schedule(() -> ran.add(id), DIRECT, delayMs,
+				MILLISECONDS);
+	}
+
+	private void advance(long ms) throws Exception {
+		time.addAndGet(ms);
+		scheduler.runTasks();
+	}
+
+	private void advanceInSteps(long ms) throws Exception {
+		long step = TICK_MS;
+		for (int level = 1; level < LEVELS; level++) step *= SLOTS;
+		while (ms > step) {
+			advance(step);
+			ms -= step;
+		}
+		advance(ms);
+	}
+}
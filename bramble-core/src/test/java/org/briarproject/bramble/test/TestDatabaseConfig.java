@@ -8,6 +8,8 @@ import java.io.File;
 
 import javax.annotation.Nullable;
 
+import static org.briarproject.bramble.api.crypto.CryptoConstants.DEFAULT_KDF_TARGET_TIME_MS;
+
 @NotNullByDefault
 public class TestDatabaseConfig implements DatabaseConfig {
 
@@ -33,4 +35,9 @@ public class TestDatabaseConfig implements DatabaseConfig {
 	public KeyStrengthener getKeyStrengthener() {
 		return null;
 	}
+
+	@Override
+	public long getKdfTargetTime() {
+		return DEFAULT_KDF_TARGET_TIME_MS;
+	}
 }
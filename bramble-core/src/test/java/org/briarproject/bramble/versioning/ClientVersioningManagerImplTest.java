@@ -968,6 +968,99 @@ public class ClientVersioningManagerImplTest extends BrambleMockTestCase {
 				clientId, 123));
 	}
 
+	@Test
+	public void testCachesVisibilityAndMinorVersion() throws Exception {
+		MessageId localUpdateId = new MessageId(getRandomId());
+		BdfDictionary localUpdateMeta = BdfDictionary.of(
+				new BdfEntry(MSG_KEY_UPDATE_VERSION, 1L),
+				new BdfEntry(MSG_KEY_LOCAL, true));
+		MessageId remoteUpdateId = new MessageId(getRandomId());
+		BdfDictionary remoteUpdateMeta = BdfDictionary.of(
+				new BdfEntry(MSG_KEY_UPDATE_VERSION, 1L),
+				new BdfEntry(MSG_KEY_LOCAL, false));
+		Map<MessageId, BdfDictionary> messageMetadata = new HashMap<>();
+		messageMetadata.put(localUpdateId, localUpdateMeta);
+		messageMetadata.put(remoteUpdateId, remoteUpdateMeta);
+		// The client is supported locally and remotely and active
+		BdfList localUpdateBody = BdfList.of(BdfList.of(
+				BdfList.of(clientId.getString(), 123, 234, true)), 1L);
+		BdfList remoteUpdateBody = BdfList.of(BdfList.of(
+				BdfList.of(clientId.getString(), 123, 234, true)), 1L);
+
+		// The updates are only loaded the first time each value is requested
+		expectGetContactGroup(true);
+		expectGetContactGroup(true);
+		context.checking(new Expectations() {{
+			exactly(2).of(clientHelper).getMessageMetadataAsDictionary(txn,
+					contactGroup.getId());
+			will(returnValue(messageMetadata));
+			oneOf(clientHelper).getMessageAsList(txn, localUpdateId);
+			will(returnValue(localUpdateBody));
+			exactly(2).of(clientHelper).getMessageAsList(txn, remoteUpdateId);
+			will(returnValue(remoteUpdateBody));
+		}});
+
+		ClientVersioningManagerImpl c = createInstance();
+		for (int i = 0; i < 3; i++) {
+			assertEquals(SHARED, c.getClientVisibility(txn, contact.getId(),
+					clientId, 123));
+			assertEquals(234, c.getClientMinorVersion(txn, contact.getId(),
+					clientId, 123));
+		}
+		assertEquals(2, c.getCacheMisses());
+		assertEquals(4, c.getCacheHits());
+	}
+
+	@Test
+	public void testDoesNotCacheVisibilityInTransactionThatChangedUpdates()
+			throws Exception {
+		MessageId localUpdateId = new MessageId(getRandomId());
+		BdfDictionary localUpdateMeta = BdfDictionary.of(
+				new BdfEntry(MSG_KEY_UPDATE_VERSION, 1L),
+				new BdfEntry(MSG_KEY_LOCAL, true));
+		Transaction txn1 = new Transaction(null, false);
+
+		context.checking(new Expectations() {{
+			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
+					MAJOR_VERSION, contact);
+			will(returnValue(contactGroup));
+			oneOf(db).removeGroup(txn, contactGroup);
+		}});
+		// The contact group still exists in the transaction that's removing
+		// it, so the visibility is loaded without being cached
+		expectGetContactGroup(true);
+		expectGetContactGroup(true);
+		context.checking(new Expectations() {{
+			exactly(2).of(clientHelper).getMessageMetadataAsDictionary(txn,
+					contactGroup.getId());
+			will(returnValue(singletonMap(localUpdateId, localUpdateMeta)));
+			// Another transaction loads the visibility and caches it
+			oneOf(db).getContact(txn1, contact.getId());
+			will(returnValue(contact));
+			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
+					MAJOR_VERSION, contact);
+			will(returnValue(contactGroup));
+			oneOf(db).containsGroup(txn1, contactGroup.getId());
+			will(returnValue(true));
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn1,
+					contactGroup.getId());
+			will(returnValue(singletonMap(localUpdateId, localUpdateMeta)));
+		}});
+
+		ClientVersioningManagerImpl c = createInstance();
+		c.removingContact(txn, contact);
+		assertEquals(INVISIBLE, c.getClientVisibility(txn, contact.getId(),
+				clientId, 123));
+		assertEquals(INVISIBLE, c.getClientVisibility(txn, contact.getId(),
+				clientId, 123));
+		assertEquals(INVISIBLE, c.getClientVisibility(txn1, contact.getId(),
+				clientId, 123));
+		assertEquals(INVISIBLE, c.getClientVisibility(txn1, contact.getId(),
+				clientId, 123));
+		assertEquals(3, c.getCacheMisses());
+		assertEquals(1, c.getCacheHits());
+	}
+
 	private void expectGetContactGroup(boolean exists) throws Exception {
 		context.checking(new Expectations() {{
 			oneOf(db).getContact(txn, contact.getId());
@@ -0,0 +1,161 @@
+package org.briarproject.bramble.versioning;
+
+import org.briarproject.bramble.BrambleCoreIntegrationTestEagerSingletons;
+import org.briarproject.bramble.api.client.ClientHelper;
+import org.briarproject.bramble.api.client.ContactGroupFactory;
+import org.briarproject.bramble.api.contact.Contact;
+import org.briarproject.bramble.api.contact.ContactId;
+import org.briarproject.bramble.api.contact.ContactManager;
+import org.briarproject.bramble.api.crypto.SecretKey;
+import org.briarproject.bramble.api.data.BdfDictionary;
+import org.briarproject.bramble.api.data.BdfEntry;
+import org.briarproject.bramble.api.data.BdfList;
+import org.briarproject.bramble.api.db.DatabaseComponent;
+import org.briarproject.bramble.api.identity.AuthorId;
+import org.briarproject.bramble.api.identity.Identity;
+import org.briarproject.bramble.api.lifecycle.LifecycleManager;
+import org.briarproject.bramble.api.sync.Group.Visibility;
+import org.briarproject.bramble.api.sync.GroupId;
+import org.briarproject.bramble.api.sync.Message;
+import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.bramble.api.versioning.ClientVersioningManager;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.briarproject.bramble.test.TestDatabaseConfigModule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import static org.briarproject.bramble.api.properties.TransportPropertyManager.CLIENT_ID;
+import static org.briarproject.bramble.api.properties.TransportPropertyManager.MAJOR_VERSION;
+import static org.briarproject.bramble.api.sync.Group.Visibility.SHARED;
+import static org.briarproject.bramble.test.TestUtils.deleteTestDirectory;
+import static org.briarproject.bramble.test.TestUtils.getAuthor;
+import static org.briarproject.bramble.test.TestUtils.getSecretKey;
+import static org.briarproject.bramble.test.TestUtils.getTestDirectory;
+import static org.briarproject.bramble.versioning.ClientVersioningConstants.MSG_KEY_LOCAL;
+import static org.briarproject.bramble.versioning.ClientVersioningConstants.MSG_KEY_UPDATE_VERSION;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the cost of looking up client visibilities and minor versions on
+ * a node with many contacts, the first time (when the updates are loaded from
+ * the database) and on subsequent passes (when they're cached).
+ */
+@Ignore
+public class ClientVersioningPerformanceTest extends BrambleTestCase {
+
+	private static final int CONTACTS = 500;
+	private static final int PASSES = 10;
+
+	private final File testDir = getTestDirectory();
+	private final SecretKey databaseKey = getSecretKey();
+
+	private ClientVersioningPerformanceTestComponent component;
+
+	@Before
+	public void setUp() throws Exception {
+		component = DaggerClientVersioningPerformanceTestComponent.builder()
+				.testDatabaseConfigModule(new TestDatabaseConfigModule(testDir))
+				.build();
+		BrambleCoreIntegrationTestEagerSingletons.Helper
+				.injectEagerSingletons(component);
+		Identity identity =
+				component.getIdentityManager().createIdentity("Alice");
+		component.getIdentityManager().registerIdentity(identity);
+		LifecycleManager lifecycleManager = component.getLifecycleManager();
+		lifecycleManager.startServices(databaseKey);
+		lifecycleManager.waitForStartup();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		LifecycleManager lifecycleManager = component.getLifecycleManager();
+		lifecycleManager.stopServices();
+		lifecycleManager.waitForShutdown();
+		deleteTestDirectory(testDir);
+	}
+
+	@Test
+	public void testClientVisibilityLookups() throws Exception {
+		DatabaseComponent db = component.getDatabaseComponent();
+		ContactManager contactManager = component.getContactManager();
+		ClientHelper clientHelper = component.getClientHelper();
+		ClientVersioningManagerImpl clientVersioningManager =
+				(ClientVersioningManagerImpl)
+						component.getClientVersioningManager();
+
+		// Add the contacts, each with a remote update that activates all the
+		// clients supported locally
+		AuthorId localAuthorId =
+				component.getIdentityManager().getLocalAuthor().getId();
+		List<ContactId> contactIds = new ArrayList<>(CONTACTS);
+		db.transaction(false, txn -> {
+			for (int i = 0; i < CONTACTS; i++) {
+				contactIds.add(contactManager.addContact(txn, getAuthor(),
+						localAuthorId, true));
+			}
+		});
+		for (ContactId c : contactIds) {
+			db.transaction(false, txn -> {
+				Contact contact = db.getContact(txn, c);
+				GroupId g = getContactGroupId(contact);
+				BdfList localStates = null;
+				for (Entry<MessageId, BdfDictionary> e : clientHelper
+						.getMessageMetadataAsDictionary(txn, g).entrySet()) {
+					if (e.getValue().getBoolean(MSG_KEY_LOCAL)) {
+						localStates = clientHelper
+								.getMessageAsList(txn, e.getKey()).getList(0);
+					}
+				}
+				if (localStates == null) throw new AssertionError();
+				BdfList remoteStates = new BdfList();
+				for (int i = 0; i < localStates.size(); i++) {
+					BdfList state = localStates.getList(i);
+					remoteStates.add(BdfList.of(state.getString(0),
+							state.getLong(1), state.getLong(2), true));
+				}
+				Message m = clientHelper.createMessage(g,
+						System.currentTimeMillis(),
+						BdfList.of(remoteStates, 1L));
+				BdfDictionary meta = BdfDictionary.of(
+						new BdfEntry(MSG_KEY_UPDATE_VERSION, 1L),
+						new BdfEntry(MSG_KEY_LOCAL, false));
+				clientHelper.addLocalMessage(txn, m, meta, false, false);
+			});
+		}
+
+		// Look up the visibility and minor version of a client for each
+		// contact, once per transaction as the clients do
+		for (int pass = 0; pass < PASSES; pass++) {
+			long start = System.nanoTime();
+			for (ContactId c : contactIds) {
+				db.transaction(true, txn -> {
+					Visibility v = clientVersioningManager.getClientVisibility(
+							txn, c, CLIENT_ID, MAJOR_VERSION);
+					assertEquals(SHARED, v);
+					clientVersioningManager.getClientMinorVersion(txn, c,
+							CLIENT_ID, MAJOR_VERSION);
+				});
+			}
+			long duration = System.nanoTime() - start;
+			System.out.println("Pass " + pass + ": "
+					+ duration / 1000 / CONTACTS + " us per contact, "
+					+ clientVersioningManager.getCacheHits() + " hits, "
+					+ clientVersioningManager.getCacheMisses() + " misses");
+		}
+	}
+
+	private GroupId getContactGroupId(Contact c) {
+		ContactGroupFactory contactGroupFactory =
+				component.getContactGroupFactory();
+		return contactGroupFactory.createContactGroup(
+				ClientVersioningManager.CLIENT_ID,
+				ClientVersioningManager.MAJOR_VERSION, c).getId();
+	}
+}
@@ -0,0 +1,37 @@
+package org.briarproject.bramble.versioning;
+
+import org.briarproject.bramble.BrambleCoreModule;
+import org.briarproject.bramble.api.client.ContactGroupFactory;
+import org.briarproject.bramble.api.contact.ContactManager;
+import org.briarproject.bramble.api.db.DatabaseComponent;
+import org.briarproject.bramble.api.lifecycle.LifecycleManager;
+import org.briarproject.bramble.api.versioning.ClientVersioningManager;
+import org.briarproject.bramble.test.BrambleCoreIntegrationTestModule;
+import org.briarproject.bramble.test.BrambleIntegrationTestComponent;
+import org.briarproject.bramble.test.TestDnsModule;
+import org.briarproject.bramble.test.TestSocksModule;
+
+import javax.inject.Singleton;
+
+import dagger.Component;
+
+@Singleton
+@Component(modules = {
+		BrambleCoreIntegrationTestModule.class,
+		BrambleCoreModule.class,
+		TestDnsModule.class,
+		TestSocksModule.class
+})
+interface ClientVersioningPerformanceTestComponent
+		extends BrambleIntegrationTestComponent {
+
+	ContactManager getContactManager();
+
+	ContactGroupFactory getContactGroupFactory();
+
+	LifecycleManager getLifecycleManager();
+
+	DatabaseComponent getDatabaseComponent();
+
+	ClientVersioningManager getClientVersioningManager();
+}
@@ -141,6 +141,11 @@ class ModemPlugin implements DuplexPlugin, Modem.Callback {
 		throw new UnsupportedOperationException();
 	}
 
+	@Override
+	public void connect(TransportProperties p, ConnectionHandler h) {
+		throw new UnsupportedOperationException();
+	}
+
 	private void resetModem() {
 		if (getState() != ACTIVE) return;
 		for (String portName : serialPortList.getPortNames()) {
@@ -8,6 +8,8 @@ import java.io.File;
 
 import javax.annotation.Nullable;
 
+import static org.briarproject.bramble.api.crypto.CryptoConstants.DEFAULT_KDF_TARGET_TIME_MS;
+
 @NotNullByDefault
 class AndroidDatabaseConfig implements DatabaseConfig {
 
@@ -37,4 +39,9 @@ class AndroidDatabaseConfig implements DatabaseConfig {
 	public KeyStrengthener getKeyStrengthener() {
 		return keyStrengthener;
 	}
+
+	@Override
+	public long getKdfTargetTime() {
+		return DEFAULT_KDF_TARGET_TIME_MS;
+	}
 }
@@ -158,23 +158,30 @@ class GroupViewModel extends ThreadListViewModel<GroupMessageItem> {
 
 	@Override
 	public void loadItems() {
-		loadFromDb(txn -> {
-			// check first if group is dissolved
-			isDissolved
-					.postValue(privateGroupManager.isDissolved(txn, groupId));
-			// now continue to load the items
-			long start = now();
-			List<GroupMessageHeader> headers =
-					privateGroupManager.getHeaders(txn, groupId);
-			logDuration(LOG, "Loading headers", start);
-			start = now();
-			List<GroupMessageItem> items = new ArrayList<>();
-			for (GroupMessageHeader header : headers) {
-				items.add(loadItem(txn, header));
-			}
-			logDuration(LOG, "Loading bodies and creating items", start);
-			return items;
-		}, this::setItems);
+		// check first if group is dissolved
+		runOnDbThread(true, txn -> {
+			boolean dissolved = privateGroupManager.isDissolved(txn, groupId);
+			isDissolved.postValue(dissolved);
+		}, this::handleException);
+		// now continue to load the items
+		super.loadItems();
+	}
+
+	@Override
+	@DatabaseExecutor
+	protected List<GroupMessageItem> loadItems(Transaction txn,
+			long minTimestamp, long maxTimestamp) throws DbException {
+		long start = now();
+		List<GroupMessageHeader> headers = privateGroupManager.getHeaders(txn,
+				groupId, minTimestamp, maxTimestamp);
+		logDuration(LOG, "Loading headers", start);
+		start = now();
+		List<GroupMessageItem> items = new ArrayList<>();
+		for (GroupMessageHeader header : headers) {
+			items.add(loadItem(txn, header));
+		}
+		logDuration(LOG, "Loading bodies and creating items", start);
+		return items;
 	}
 
 	private GroupMessageItem loadItem(Transaction txn,
@@ -33,6 +33,8 @@ public class ConnectionsFragment extends PreferenceFragmentCompat {
 			"pref_key_tor_mobile_data";
 	static final String PREF_KEY_TOR_ONLY_WHEN_CHARGING =
 			"pref_key_tor_only_when_charging";
+	static final String PREF_KEY_TOR_WARM_CONNECTIONS =
+			"pref_key_tor_warm_connections";
 
 	@Inject
 	ViewModelProvider.Factory viewModelFactory;
@@ -46,6 +48,7 @@ public class ConnectionsFragment extends PreferenceFragmentCompat {
 	private ListPreference torNetwork;
 	private SwitchPreferenceCompat torMobile;
 	private SwitchPreferenceCompat torOnlyWhenCharging;
+	private SwitchPreferenceCompat torWarmConnections;
 
 	@Override
 	public void onAttach(@NonNull Context context) {
@@ -66,6 +69,7 @@ public class ConnectionsFragment extends PreferenceFragmentCompat {
 		torNetwork = findPreference(PREF_KEY_TOR_NETWORK);
 		torMobile = findPreference(PREF_KEY_TOR_MOBILE_DATA);
 		torOnlyWhenCharging = findPreference(PREF_KEY_TOR_ONLY_WHEN_CHARGING);
+		torWarmConnections = findPreference(PREF_KEY_TOR_WARM_CONNECTIONS);
 
 		torNetwork.setSummaryProvider(viewModel.torSummaryProvider);
 
@@ -75,6 +79,7 @@ public class ConnectionsFragment extends PreferenceFragmentCompat {
 		torNetwork.setPreferenceDataStore(connectionsManager.torStore);
 		torMobile.setPreferenceDataStore(connectionsManager.torStore);
 		torOnlyWhenCharging.setPreferenceDataStore(connectionsManager.torStore);
+		torWarmConnections.setPreferenceDataStore(connectionsManager.torStore);
 	}
 
 	@Override
@@ -107,6 +112,11 @@ public class ConnectionsFragment extends PreferenceFragmentCompat {
 			torOnlyWhenCharging.setChecked(enabled);
 			enableAndPersist(torOnlyWhenCharging);
 		});
+		connectionsManager.torWarmConnections().observe(lifecycleOwner,
+				enabled -> {
+					torWarmConnections.setChecked(enabled);
+					enableAndPersist(torWarmConnections);
+				});
 	}
 
 	@Override
@@ -16,10 +16,12 @@ import static org.briarproject.bramble.api.plugin.Plugin.PREF_PLUGIN_ENABLE;
 import static org.briarproject.bramble.api.plugin.TorConstants.DEFAULT_PREF_TOR_MOBILE;
 import static org.briarproject.bramble.api.plugin.TorConstants.DEFAULT_PREF_TOR_NETWORK;
 import static org.briarproject.bramble.api.plugin.TorConstants.DEFAULT_PREF_TOR_ONLY_WHEN_CHARGING;
+import static org.briarproject.bramble.api.plugin.TorConstants.DEFAULT_PREF_TOR_WARM_CONNECTIONS;
 import static org.briarproject.bramble.api.plugin.TorConstants.PREF_TOR_MOBILE;
 import static org.briarproject.bramble.api.plugin.TorConstants.PREF_TOR_NETWORK;
 import static org.briarproject.bramble.api.plugin.TorConstants.PREF_TOR_NETWORK_NEVER;
 import static org.briarproject.bramble.api.plugin.TorConstants.PREF_TOR_ONLY_WHEN_CHARGING;
+import static org.briarproject.bramble.api.plugin.TorConstants.PREF_TOR_WARM_CONNECTIONS;
 import static org.briarproject.briar.android.settings.SettingsViewModel.BT_NAMESPACE;
 import static org.briarproject.briar.android.settings.SettingsViewModel.TOR_NAMESPACE;
 import static org.briarproject.briar.android.settings.SettingsViewModel.WIFI_NAMESPACE;
@@ -39,6 +41,8 @@ class ConnectionsManager {
 	private final MutableLiveData<Boolean> torMobile = new MutableLiveData<>();
 	private final MutableLiveData<Boolean> torCharging =
 			new MutableLiveData<>();
+	private final MutableLiveData<Boolean> torWarmConnections =
+			new MutableLiveData<>();
 
 	ConnectionsManager(SettingsManager settingsManager,
 			Executor dbExecutor) {
@@ -74,6 +78,8 @@ class ConnectionsManager {
 		torCharging
 				.postValue(torSettings.getBoolean(PREF_TOR_ONLY_WHEN_CHARGING,
 						DEFAULT_PREF_TOR_ONLY_WHEN_CHARGING));
+		torWarmConnections.postValue(torSettings.getBoolean(
+				PREF_TOR_WARM_CONNECTIONS, DEFAULT_PREF_TOR_WARM_CONNECTIONS));
 	}
 
 	// TODO: Remove after a reasonable migration period (added 2020-06-25)
@@ -113,4 +119,8 @@ class ConnectionsManager {
 		return torCharging;
 	}
 
+	LiveData<Boolean> torWarmConnections() {
+		return torWarmConnections;
+	}
+
 }
@@ -11,11 +11,13 @@ import static org.briarproject.bramble.api.plugin.Plugin.PREF_PLUGIN_ENABLE;
 import static org.briarproject.bramble.api.plugin.TorConstants.PREF_TOR_MOBILE;
 import static org.briarproject.bramble.api.plugin.TorConstants.PREF_TOR_NETWORK;
 import static org.briarproject.bramble.api.plugin.TorConstants.PREF_TOR_ONLY_WHEN_CHARGING;
+import static org.briarproject.bramble.api.plugin.TorConstants.PREF_TOR_WARM_CONNECTIONS;
 import static org.briarproject.briar.android.settings.ConnectionsFragment.PREF_KEY_BLUETOOTH;
 import static org.briarproject.briar.android.settings.ConnectionsFragment.PREF_KEY_TOR_ENABLE;
 import static org.briarproject.briar.android.settings.ConnectionsFragment.PREF_KEY_TOR_MOBILE_DATA;
 import static org.briarproject.briar.android.settings.ConnectionsFragment.PREF_KEY_TOR_NETWORK;
 import static org.briarproject.briar.android.settings.ConnectionsFragment.PREF_KEY_TOR_ONLY_WHEN_CHARGING;
+import static org.briarproject.briar.android.settings.ConnectionsFragment.PREF_KEY_TOR_WARM_CONNECTIONS;
 import static org.briarproject.briar.android.settings.ConnectionsFragment.PREF_KEY_WIFI;
 
 @NotNullByDefault
@@ -44,6 +46,9 @@ class ConnectionsStore extends SettingsStore {
 			case PREF_KEY_TOR_ONLY_WHEN_CHARGING:
 				newKey = PREF_TOR_ONLY_WHEN_CHARGING;
 				break;
+			case PREF_KEY_TOR_WARM_CONNECTIONS:
+				newKey = PREF_TOR_WARM_CONNECTIONS;
+				break;
 			default:
 				throw new AssertionError();
 		}
@@ -6,6 +6,7 @@ import org.briarproject.bramble.api.crypto.CryptoExecutor;
 import org.briarproject.bramble.api.db.DatabaseExecutor;
 import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.db.NoSuchGroupException;
+import org.briarproject.bramble.api.db.Transaction;
 import org.briarproject.bramble.api.db.TransactionManager;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.event.EventBus;
@@ -28,6 +29,7 @@ import org.briarproject.briar.api.client.MessageTracker;
 import org.briarproject.briar.api.client.MessageTree;
 import org.briarproject.briar.client.MessageTreeImpl;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
@@ -41,6 +43,7 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.DAYS;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Logger.getLogger;
 
@@ -52,6 +55,12 @@ public abstract class ThreadListViewModel<I extends ThreadItem>
 	private static final Logger LOG =
 			getLogger(ThreadListViewModel.class.getName());
 
+	/**
+	 * Items newer than this are loaded and shown first, so large groups can
+	 * be displayed before the rest of their items have been loaded.
+	 */
+	private static final long RECENT_ITEMS_MS = DAYS.toMillis(7);
+
 	protected final IdentityManager identityManager;
 	protected final AndroidNotificationManager notificationManager;
 	protected final SharingController sharingController;
@@ -68,6 +77,11 @@ public abstract class ThreadListViewModel<I extends ThreadItem>
 			new MutableLiveData<>();
 	private final AtomicReference<MessageId> scrollToItem =
 			new AtomicReference<>();
+	/**
+	 * True once all items have been loaded, not just the recent ones.
+	 */
+	// UIThread
+	private boolean allItemsLoaded = false;
 
 	protected volatile GroupId groupId;
 	@Nullable
@@ -164,7 +178,28 @@ public abstract class ThreadListViewModel<I extends ThreadItem>
 		});
 	}
 
-	public abstract void loadItems();
+	/**
+	 * Loads the recent items and then the older ones, showing the recent
+	 * items while the older ones are loaded.
+	 */
+	public void loadItems() {
+		long recent = clock.currentTimeMillis() - RECENT_ITEMS_MS;
+		loadFromDb(txn -> loadItems(txn, recent, Long.MAX_VALUE), items -> {
+			setItems(items, false);
+			if (!items.hasError()) {
+				loadFromDb(txn -> loadItems(txn, Long.MIN_VALUE, recent),
+						this::addItems);
+			}
+		});
+	}
+
+	/**
+	 * Loads the items with timestamps greater than or equal to minTimestamp
+	 * and less than maxTimestamp, and their ancestors.
+	 */
+	@DatabaseExecutor
+	protected abstract List<I> loadItems(Transaction txn, long minTimestamp,
+			long maxTimestamp) throws DbException;
 
 	public abstract void createAndStoreMessage(String text,
 			@Nullable MessageId parentMessageId);
@@ -177,6 +212,16 @@ public abstract class ThreadListViewModel<I extends ThreadItem>
 
 	@UiThread
 	protected void setItems(LiveResult<List<I>> items) {
+		setItems(items, true);
+	}
+
+	/**
+	 * @param complete false if more items will be added by
+	 * {@link #addItems(LiveResult)}
+	 */
+	@UiThread
+	private void setItems(LiveResult<List<I>> items, boolean complete) {
+		allItemsLoaded = complete;
 		if (items.hasError()) {
 			this.items.setValue(items);
 		} else {
@@ -189,6 +234,26 @@ public abstract class ThreadListViewModel<I extends ThreadItem>
 		}
 	}
 
+	/**
+	 * Adds the items that weren't loaded by {@link #setItems(LiveResult)},
+	 * skipping any items that are already in the list.
+	 */
+	@UiThread
+	private void addItems(LiveResult<List<I>> items) {
+		allItemsLoaded = true;
+		if (items.hasError()) {
+			this.items.setValue(items);
+			return;
+		}
+		List<I> added = new ArrayList<>();
+		// not null, because hasError() is false
+		for (I item : requireNonNull(items.getResultOrNull())) {
+			if (!messageTree.contains(item.getId())) added.add(item);
+		}
+		messageTree.add(added);
+		this.items.setValue(new LiveResult<>(messageTree.depthFirstOrder()));
+	}
+
 	/**
 	 * Add a remote item on the UI thread.
 	 *
@@ -237,10 +302,14 @@ public abstract class ThreadListViewModel<I extends ThreadItem>
 	/**
 	 * Returns the {@link MessageId} of the item that was at the top of the
 	 * list last time or null if there has been nothing stored, yet.
+	 * The ID is only reset once all items have been loaded, as the item
+	 * may not be among the recent items that are shown first.
 	 */
+	@UiThread
 	@Nullable
 	MessageId getAndResetRestoredMessageId() {
-		return storedMessageId.getAndSet(null);
+		if (allItemsLoaded) return storedMessageId.getAndSet(null);
+		return storedMessageId.get();
 	}
 
 	LiveData<LiveResult<List<I>>> getItems() {
@@ -29,5 +29,18 @@ public interface BlogConstants {
 	 * or of a message from the same group that therefore needed no wrapping.
 	 */
 	String KEY_PARENT_MSG_ID = "parentMessageId";
+	/**
+	 * A string that sorts posts and comments into timeline order, newest
+	 * first, so that pages of the timeline can be read from the metadata
+	 * index.
+	 */
+	String KEY_TIMELINE_ORDER = "timelineOrder";
+
+	// Group metadata keys
+	/**
+	 * Set once the posts and comments in a blog have all been given a
+	 * {@link #KEY_TIMELINE_ORDER timeline order}.
+	 */
+	String GROUP_KEY_TIMELINE_ORDER = "timelineOrder";
 
 }
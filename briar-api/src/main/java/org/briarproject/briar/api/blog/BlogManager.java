@@ -1,6 +1,7 @@
 package org.briarproject.briar.api.blog;
 
 import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.db.NoSuchMessageException;
 import org.briarproject.bramble.api.db.Transaction;
 import org.briarproject.bramble.api.identity.Author;
 import org.briarproject.bramble.api.identity.LocalAuthor;
@@ -131,6 +132,19 @@ public interface BlogManager {
 	List<BlogPostHeader> getPostHeaders(Transaction txn, GroupId g)
 			throws DbException;
 
+	/**
+	 * Returns the headers of up to the given number of posts and comments
+	 * from all blogs, ordered by the time they were received, newest first.
+	 * Posts and comments received at the same time are ordered by ID.
+	 *
+	 * @param after The ID of the last post or comment on the previous page,
+	 * or null to return the first page
+	 * @throws NoSuchMessageException if the given ID isn't the ID of a post
+	 * or comment
+	 */
+	List<BlogPostHeader> getTimeline(Transaction txn, @Nullable MessageId after,
+			int limit) throws DbException;
+
 	/**
 	 * Marks a blog post as read or unread.
 	 */
@@ -19,6 +19,14 @@ public interface MessageTree<T extends MessageTree.MessageNode> {
 
 	List<T> depthFirstOrder();
 
+	/**
+	 * Returns a view of the tree that visits the nodes lazily in
+	 * depth-first order, setting the level of each node as it is visited.
+	 * The view's iterators throw a ConcurrentModificationException if the
+	 * tree is modified while they are in use.
+	 */
+	Iterable<T> depthFirstView();
+
 	boolean contains(MessageId m);
 
 	@NotNullByDefault
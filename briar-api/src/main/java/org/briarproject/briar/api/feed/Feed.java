@@ -16,12 +16,13 @@ public class Feed implements Comparable<Feed> {
 	private final Blog blog;
 	private final LocalAuthor localAuthor;
 	@Nullable
-	private final String description, rssAuthor;
+	private final String description, rssAuthor, eTag, lastModified;
 	private final long added, updated, lastEntryTime;
 
 	public Feed(String url, Blog blog, LocalAuthor localAuthor,
 			@Nullable String description, @Nullable String rssAuthor,
-			long added, long updated, long lastEntryTime) {
+			long added, long updated, long lastEntryTime,
+			@Nullable String eTag, @Nullable String lastModified) {
 		this.url = url;
 		this.blog = blog;
 		this.localAuthor = localAuthor;
@@ -30,6 +31,15 @@ public class Feed implements Comparable<Feed> {
 		this.added = added;
 		this.updated = updated;
 		this.lastEntryTime = lastEntryTime;
+		this.eTag = eTag;
+		this.lastModified = lastModified;
+	}
+
+	public Feed(String url, Blog blog, LocalAuthor localAuthor,
+			@Nullable String description, @Nullable String rssAuthor,
+			long added, long updated, long lastEntryTime) {
+		this(url, blog, localAuthor, description, rssAuthor, added, updated,
+				lastEntryTime, null, null);
 	}
 
 	public Feed(String url, Blog blog, LocalAuthor localAuthor,
@@ -84,6 +94,24 @@ public class Feed implements Comparable<Feed> {
 		return lastEntryTime;
 	}
 
+	/**
+	 * Returns the value of the ETag header sent by the server the last time
+	 * the feed was fetched, or null if the server didn't send one.
+	 */
+	@Nullable
+	public String getETag() {
+		return eTag;
+	}
+
+	/**
+	 * Returns the value of the Last-Modified header sent by the server the
+	 * last time the feed was fetched, or null if the server didn't send one.
+	 */
+	@Nullable
+	public String getLastModified() {
+		return lastModified;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -107,6 +107,16 @@ public interface ForumManager {
 	List<ForumPostHeader> getPostHeaders(Transaction txn, GroupId g)
 			throws DbException;
 
+	/**
+	 * Returns the headers of the posts in the given forum with timestamps
+	 * greater than or equal to minTimestamp and less than maxTimestamp.
+	 * The headers of the ancestors of those posts are also returned, even if
+	 * they fall outside the range, so that every reply can be placed in its
+	 * thread.
+	 */
+	List<ForumPostHeader> getPostHeaders(Transaction txn, GroupId g,
+			long minTimestamp, long maxTimestamp) throws DbException;
+
 	/**
 	 * Registers a hook to be called whenever a forum is removed.
 	 */
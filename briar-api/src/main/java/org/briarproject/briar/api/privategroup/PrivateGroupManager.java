@@ -135,6 +135,16 @@ public interface PrivateGroupManager {
 	List<GroupMessageHeader> getHeaders(Transaction txn, GroupId g)
 			throws DbException;
 
+	/**
+	 * Returns the headers of the messages in the given private group with
+	 * timestamps greater than or equal to minTimestamp and less than
+	 * maxTimestamp. The headers of the ancestors of those messages are also
+	 * returned, even if they fall outside the range, so that every reply can
+	 * be placed in its thread.
+	 */
+	List<GroupMessageHeader> getHeaders(Transaction txn, GroupId g,
+			long minTimestamp, long maxTimestamp) throws DbException;
+
 	/**
 	 * Returns all members of the given private group.
 	 */
@@ -1,5 +1,6 @@
 package org.briarproject.briar.blog;
 
+import org.briarproject.bramble.api.Bytes;
 import org.briarproject.bramble.api.FormatException;
 import org.briarproject.bramble.api.client.BdfIncomingMessageHook;
 import org.briarproject.bramble.api.client.ClientHelper;
@@ -11,6 +12,7 @@ import org.briarproject.bramble.api.data.BdfList;
 import org.briarproject.bramble.api.data.MetadataParser;
 import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.db.NoSuchMessageException;
 import org.briarproject.bramble.api.db.Transaction;
 import org.briarproject.bramble.api.identity.Author;
 import org.briarproject.bramble.api.identity.AuthorId;
@@ -42,16 +44,24 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
+import static java.lang.Math.max;
+import static java.util.Collections.singletonList;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Logger.getLogger;
 import static org.briarproject.bramble.api.sync.validation.IncomingMessageHook.DeliveryAction.ACCEPT_DO_NOT_SHARE;
 import static org.briarproject.bramble.api.sync.validation.IncomingMessageHook.DeliveryAction.ACCEPT_SHARE;
+import static org.briarproject.bramble.util.StringUtils.toHexString;
+import static org.briarproject.briar.api.blog.BlogConstants.GROUP_KEY_TIMELINE_ORDER;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_AUTHOR;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_COMMENT;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_ORIGINAL_MSG_ID;
@@ -59,6 +69,7 @@ import static org.briarproject.briar.api.blog.BlogConstants.KEY_ORIGINAL_PARENT_
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_PARENT_MSG_ID;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_READ;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_RSS_FEED;
+import static org.briarproject.briar.api.blog.BlogConstants.KEY_TIMELINE_ORDER;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_TIMESTAMP;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_TIME_RECEIVED;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_TYPE;
@@ -72,6 +83,9 @@ import static org.briarproject.briar.api.identity.AuthorInfo.Status.NONE;
 class BlogManagerImpl extends BdfIncomingMessageHook implements BlogManager,
 		OpenDatabaseHook, ContactHook {
 
+	private static final Logger LOG =
+			getLogger(BlogManagerImpl.class.getName());
+
 	private final IdentityManager identityManager;
 	private final AuthorManager authorManager;
 	private final BlogFactory blogFactory;
@@ -97,6 +111,37 @@ class BlogManagerImpl extends BdfIncomingMessageHook implements BlogManager,
 		LocalAuthor a = identityManager.getLocalAuthor(txn);
 		Blog b = blogFactory.createBlog(a);
 		db.addGroup(txn, b.getGroup());  // does nothing, if group exists
+		// Give posts and comments stored by older versions a timeline order
+		Collection<String> keys = singletonList(GROUP_KEY_TIMELINE_ORDER);
+		try {
+			for (GroupId g : getBlogIds(txn)) {
+				BdfDictionary meta =
+						clientHelper.getGroupMetadataAsDictionary(txn, g, keys);
+				if (!meta.getBoolean(GROUP_KEY_TIMELINE_ORDER, false))
+					migrateTimelineOrder(txn, g);
+			}
+		} catch (FormatException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private void migrateTimelineOrder(Transaction txn, GroupId g)
+			throws DbException, FormatException {
+		int migrated = 0;
+		for (Entry<MessageId, BdfDictionary> e :
+				getPostMetadata(txn, g).entrySet()) {
+			BdfDictionary meta = e.getValue();
+			if (meta.containsKey(KEY_TIMELINE_ORDER)) continue;
+			BdfDictionary merged = BdfDictionary.of(new BdfEntry(
+					KEY_TIMELINE_ORDER,
+					getTimelineOrder(getTimeReceived(meta), e.getKey())));
+			clientHelper.mergeMessageMetadata(txn, e.getKey(), merged);
+			migrated++;
+		}
+		clientHelper.mergeGroupMetadata(txn, g, BdfDictionary.of(
+				new BdfEntry(GROUP_KEY_TIMELINE_ORDER, true)));
+		if (migrated > 0 && LOG.isLoggable(INFO))
+			LOG.info("Added timeline order to " + migrated + " blog posts");
 	}
 
 	@Override
@@ -119,6 +164,15 @@ class BlogManagerImpl extends BdfIncomingMessageHook implements BlogManager,
 		MessageType type = getMessageType(meta);
 
 		if (type == POST || type == COMMENT) {
+			// Posts and comments validated by an older version may have
+			// been delivered after the blog's timeline order was migrated
+			if (!meta.containsKey(KEY_TIMELINE_ORDER)) {
+				String order = getTimelineOrder(getTimeReceived(meta),
+						m.getId());
+				clientHelper.mergeMessageMetadata(txn, m.getId(),
+						BdfDictionary.of(
+								new BdfEntry(KEY_TIMELINE_ORDER, order)));
+			}
 			BlogPostHeader h =
 					getPostHeaderFromMetadata(txn, groupId, m.getId(), meta);
 
@@ -237,11 +291,13 @@ class BlogManagerImpl extends BdfIncomingMessageHook implements BlogManager,
 			meta.put(KEY_AUTHOR, clientHelper.toList(p.getAuthor()));
 			meta.put(KEY_READ, true);
 			meta.put(KEY_RSS_FEED, b.isRssFeed());
+			MessageId postId = p.getMessage().getId();
+			meta.put(KEY_TIMELINE_ORDER,
+					getTimelineOrder(getTimeReceived(meta), postId));
 			clientHelper.addLocalMessage(txn, p.getMessage(), meta, true,
 					false);
 
 			// broadcast event about new post
-			MessageId postId = p.getMessage().getId();
 			BlogPostHeader h =
 					getPostHeaderFromMetadata(txn, groupId, postId, meta);
 			boolean local = !b.isRssFeed();
@@ -281,6 +337,8 @@ class BlogManagerImpl extends BdfIncomingMessageHook implements BlogManager,
 			meta.put(KEY_ORIGINAL_PARENT_MSG_ID, parentOriginalId);
 			meta.put(KEY_PARENT_MSG_ID, parentCurrentId);
 			meta.put(KEY_AUTHOR, clientHelper.toList(author));
+			meta.put(KEY_TIMELINE_ORDER,
+					getTimelineOrder(message.getTimestamp(), message.getId()));
 
 			// Send comment
 			clientHelper.addLocalMessage(txn, message, meta, true, false);
@@ -509,42 +567,20 @@ class BlogManagerImpl extends BdfIncomingMessageHook implements BlogManager,
 	@Override
 	public List<BlogPostHeader> getPostHeaders(Transaction txn, GroupId g)
 			throws DbException {
-		// Query for posts and comments only
-		BdfDictionary query1 = BdfDictionary.of(
-				new BdfEntry(KEY_TYPE, POST.getInt())
-		);
-		BdfDictionary query2 = BdfDictionary.of(
-				new BdfEntry(KEY_TYPE, COMMENT.getInt())
-		);
-
 		List<BlogPostHeader> headers = new ArrayList<>();
 		try {
-			Map<MessageId, BdfDictionary> metadata1 =
-					clientHelper.getMessageMetadataAsDictionary(txn, g, query1);
-			Map<MessageId, BdfDictionary> metadata2 =
-					clientHelper.getMessageMetadataAsDictionary(txn, g, query2);
-			Map<MessageId, BdfDictionary> metadata =
-					new HashMap<>(metadata1.size() + metadata2.size());
-			metadata.putAll(metadata1);
-			metadata.putAll(metadata2);
-			// get all authors we need to get the information for
-			Set<AuthorId> authors = new HashSet<>();
-			for (Entry<MessageId, BdfDictionary> entry : metadata.entrySet()) {
-				BdfList authorList = entry.getValue().getList(KEY_AUTHOR);
-				Author a = clientHelper.parseAndValidateAuthor(authorList);
-				authors.add(a.getId());
-			}
-			// get information for all authors
-			Map<AuthorId, AuthorInfo> authorInfos = new HashMap<>();
-			for (AuthorId authorId : authors) {
-				authorInfos.put(authorId,
-						authorManager.getAuthorInfo(txn, authorId));
-			}
-			// get post headers
+			Map<MessageId, BdfDictionary> metadata = getPostMetadata(txn, g);
+			Map<AuthorId, AuthorInfo> authorInfos =
+					getAuthorInfos(txn, metadata.values());
+			// get post headers, resolving the parents of comments from the
+			// metadata we've already loaded, or else from the metadata of
+			// the whole blog, which is loaded at most once
+			HeaderCache cache = new HeaderCache(authorInfos, true);
+			cache.metadata.putAll(metadata);
 			for (Entry<MessageId, BdfDictionary> entry : metadata.entrySet()) {
 				BdfDictionary meta = entry.getValue();
 				BlogPostHeader h = getPostHeaderFromMetadata(txn, g,
-						entry.getKey(), meta, authorInfos);
+						entry.getKey(), meta, cache);
 				headers.add(h);
 			}
 		} catch (FormatException e) {
@@ -553,6 +589,102 @@ class BlogManagerImpl extends BdfIncomingMessageHook implements BlogManager,
 		return headers;
 	}
 
+	@Override
+	public List<BlogPostHeader> getTimeline(Transaction txn,
+			@Nullable MessageId after, int limit) throws DbException {
+		try {
+			// The encoded timeline order of the cursor can be compared with
+			// the encoded timeline orders in the metadata index
+			byte[] afterOrder = null;
+			if (after != null) {
+				afterOrder = db.getMessageMetadata(txn, after)
+						.get(KEY_TIMELINE_ORDER);
+				if (afterOrder == null) throw new NoSuchMessageException();
+			}
+			// Read the first page after the cursor from each blog's index,
+			// then keep the first page of the merged results
+			List<TimelineEntry> entries = new ArrayList<>();
+			for (GroupId g : getBlogIds(txn)) {
+				Map<MessageId, byte[]> page = db.getMessageIdsInMetadataOrder(
+						txn, g, KEY_TIMELINE_ORDER, afterOrder, limit);
+				for (Entry<MessageId, byte[]> e : page.entrySet()) {
+					entries.add(new TimelineEntry(g, e.getKey(),
+							e.getValue()));
+				}
+			}
+			Collections.sort(entries);
+			if (entries.size() > limit) entries = entries.subList(0, limit);
+			// Only load the metadata of the page we're returning
+			List<BdfDictionary> selected = new ArrayList<>(entries.size());
+			for (TimelineEntry t : entries) {
+				selected.add(clientHelper.getMessageMetadataAsDictionary(txn,
+						t.id));
+			}
+			Map<AuthorId, AuthorInfo> authorInfos =
+					getAuthorInfos(txn, selected);
+			Map<GroupId, HeaderCache> caches = new HashMap<>();
+			List<BlogPostHeader> headers = new ArrayList<>(entries.size());
+			for (int i = 0; i < entries.size(); i++) {
+				TimelineEntry t = entries.get(i);
+				HeaderCache cache = caches.get(t.groupId);
+				if (cache == null) {
+					cache = new HeaderCache(authorInfos, false);
+					caches.put(t.groupId, cache);
+				}
+				headers.add(getPostHeaderFromMetadata(txn, t.groupId, t.id,
+						selected.get(i), cache));
+			}
+			return headers;
+		} catch (FormatException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Returns the metadata of the posts and comments in the given blog.
+	 */
+	private Map<MessageId, BdfDictionary> getPostMetadata(Transaction txn,
+			GroupId g) throws DbException, FormatException {
+		// Query for posts and comments only
+		BdfDictionary query1 = BdfDictionary.of(
+				new BdfEntry(KEY_TYPE, POST.getInt())
+		);
+		BdfDictionary query2 = BdfDictionary.of(
+				new BdfEntry(KEY_TYPE, COMMENT.getInt())
+		);
+		Map<MessageId, BdfDictionary> metadata1 =
+				clientHelper.getMessageMetadataAsDictionary(txn, g, query1);
+		Map<MessageId, BdfDictionary> metadata2 =
+				clientHelper.getMessageMetadataAsDictionary(txn, g, query2);
+		Map<MessageId, BdfDictionary> metadata =
+				new HashMap<>(metadata1.size() + metadata2.size());
+		metadata.putAll(metadata1);
+		metadata.putAll(metadata2);
+		return metadata;
+	}
+
+	/**
+	 * Returns information about the authors of the given posts and comments.
+	 */
+	private Map<AuthorId, AuthorInfo> getAuthorInfos(Transaction txn,
+			Collection<BdfDictionary> metadata)
+			throws DbException, FormatException {
+		// get all authors we need to get the information for
+		Set<AuthorId> authors = new HashSet<>();
+		for (BdfDictionary meta : metadata) {
+			BdfList authorList = meta.getList(KEY_AUTHOR);
+			Author a = clientHelper.parseAndValidateAuthor(authorList);
+			authors.add(a.getId());
+		}
+		// get information for all authors
+		Map<AuthorId, AuthorInfo> authorInfos = new HashMap<>();
+		for (AuthorId authorId : authors) {
+			authorInfos.put(authorId,
+					authorManager.getAuthorInfo(txn, authorId));
+		}
+		return authorInfos;
+	}
+
 	@Override
 	public void setReadFlag(MessageId m, boolean read) throws DbException {
 		try {
@@ -569,29 +701,23 @@ class BlogManagerImpl extends BdfIncomingMessageHook implements BlogManager,
 		removeHooks.add(hook);
 	}
 
-	private BlogPostHeader getPostHeaderFromMetadata(Transaction txn,
-			GroupId groupId, MessageId id) throws DbException, FormatException {
-		BdfDictionary meta =
-				clientHelper.getMessageMetadataAsDictionary(txn, id);
-		return getPostHeaderFromMetadata(txn, groupId, id, meta);
-	}
-
 	private BlogPostHeader getPostHeaderFromMetadata(Transaction txn,
 			GroupId groupId, MessageId id, BdfDictionary meta)
 			throws DbException, FormatException {
 		return getPostHeaderFromMetadata(txn, groupId, id, meta,
-				Collections.emptyMap());
+				new HeaderCache(Collections.emptyMap(), false));
 	}
 
 	private BlogPostHeader getPostHeaderFromMetadata(Transaction txn,
 			GroupId groupId, MessageId id, BdfDictionary meta,
-			Map<AuthorId, AuthorInfo> authorInfos)
-			throws DbException, FormatException {
+			HeaderCache cache) throws DbException, FormatException {
+		BlogPostHeader cached = cache.headers.get(id);
+		if (cached != null) return cached;
 
 		MessageType type = getMessageType(meta);
 
 		long timestamp = meta.getLong(KEY_TIMESTAMP);
-		long timeReceived = meta.getLong(KEY_TIME_RECEIVED, timestamp);
+		long timeReceived = getTimeReceived(meta);
 
 		BdfList authorList = meta.getList(KEY_AUTHOR);
 		Author author = clientHelper.parseAndValidateAuthor(authorList);
@@ -599,29 +725,120 @@ class BlogManagerImpl extends BdfIncomingMessageHook implements BlogManager,
 		AuthorInfo authorInfo;
 		if (isFeedPost) {
 			authorInfo = new AuthorInfo(NONE);
-		} else if (authorInfos.containsKey(author.getId())) {
-			authorInfo = authorInfos.get(author.getId());
+		} else if (cache.authorInfos.containsKey(author.getId())) {
+			authorInfo = cache.authorInfos.get(author.getId());
 		} else {
 			authorInfo = authorManager.getAuthorInfo(txn, author.getId());
 		}
 
 		boolean read = meta.getBoolean(KEY_READ, false);
 
+		BlogPostHeader header;
 		if (type == COMMENT || type == WRAPPED_COMMENT) {
 			String comment = meta.getOptionalString(KEY_COMMENT);
 			MessageId parentId = new MessageId(meta.getRaw(KEY_PARENT_MSG_ID));
-			BlogPostHeader parent =
-					getPostHeaderFromMetadata(txn, groupId, parentId);
-			return new BlogCommentHeader(type, groupId, comment, parent, id,
+			BlogPostHeader parent = cache.headers.get(parentId);
+			if (parent == null) {
+				BdfDictionary parentMeta =
+						getParentMetadata(txn, groupId, parentId, cache);
+				parent = getPostHeaderFromMetadata(txn, groupId, parentId,
+						parentMeta, cache);
+			}
+			header = new BlogCommentHeader(type, groupId, comment, parent, id,
 					timestamp, timeReceived, author, authorInfo, read);
 		} else {
-			return new BlogPostHeader(type, groupId, id, timestamp,
+			header = new BlogPostHeader(type, groupId, id, timestamp,
 					timeReceived, author, authorInfo, isFeedPost, read);
 		}
+		cache.headers.put(id, header);
+		return header;
+	}
+
+	private BdfDictionary getParentMetadata(Transaction txn, GroupId groupId,
+			MessageId parentId, HeaderCache cache)
+			throws DbException, FormatException {
+		BdfDictionary meta = cache.metadata.get(parentId);
+		if (meta == null && cache.loadGroupMetadata) {
+			// Parents are in the same blog, so one query finds all of them
+			cache.metadata.putAll(
+					clientHelper.getMessageMetadataAsDictionary(txn, groupId));
+			cache.loadGroupMetadata = false;
+			meta = cache.metadata.get(parentId);
+		}
+		if (meta == null) {
+			meta = clientHelper.getMessageMetadataAsDictionary(txn, parentId);
+		}
+		return meta;
+	}
+
+	/**
+	 * Returns a string that sorts posts and comments by the time they were
+	 * received, newest first, and then by ID. The string is fixed-length
+	 * ASCII, so its encoding sorts the same way whether the database compares
+	 * bytes as signed or unsigned values.
+	 */
+	static String getTimelineOrder(long timeReceived, MessageId m) {
+		byte[] id = m.getBytes();
+		byte[] inverted = new byte[id.length];
+		for (int i = 0; i < id.length; i++) inverted[i] = (byte) ~id[i];
+		long inverseTime = Long.MAX_VALUE - max(0, timeReceived);
+		return String.format(Locale.US, "%019d", inverseTime)
+				+ toHexString(inverted);
+	}
+
+	private static long getTimeReceived(BdfDictionary meta)
+			throws FormatException {
+		long timestamp = meta.getLong(KEY_TIMESTAMP);
+		return meta.getLong(KEY_TIME_RECEIVED, timestamp);
 	}
 
 	private MessageType getMessageType(BdfDictionary d) throws FormatException {
 		Long longType = d.getLong(KEY_TYPE);
 		return MessageType.valueOf(longType.intValue());
 	}
+
+	/**
+	 * Headers and metadata that have already been loaded while building the
+	 * headers of a blog, so that posts that are the parents of several
+	 * comments are only loaded once.
+	 */
+	private static class HeaderCache {
+
+		private final Map<AuthorId, AuthorInfo> authorInfos;
+		private final Map<MessageId, BdfDictionary> metadata = new HashMap<>();
+		private final Map<MessageId, BlogPostHeader> headers = new HashMap<>();
+		/**
+		 * True if the metadata of the whole blog should be loaded the first
+		 * time a parent's metadata is missing from the cache.
+		 */
+		private boolean loadGroupMetadata;
+
+		private HeaderCache(Map<AuthorId, AuthorInfo> authorInfos,
+				boolean loadGroupMetadata) {
+			this.authorInfos = authorInfos;
+			this.loadGroupMetadata = loadGroupMetadata;
+		}
+	}
+
+	/**
+	 * A post or comment in the timeline, ordered by its encoded timeline
+	 * order.
+	 */
+	private static class TimelineEntry implements Comparable<TimelineEntry> {
+
+		private final GroupId groupId;
+		private final MessageId id;
+		private final byte[] order;
+
+		private TimelineEntry(GroupId groupId, MessageId id, byte[] order) {
+			this.groupId = groupId;
+			this.id = id;
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(TimelineEntry e) {
+			return Bytes.compare(order, e.order);
+		}
+	}
 }
@@ -36,6 +36,7 @@ import static org.briarproject.briar.api.blog.BlogConstants.KEY_ORIGINAL_PARENT_
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_PARENT_MSG_ID;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_READ;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_RSS_FEED;
+import static org.briarproject.briar.api.blog.BlogConstants.KEY_TIMELINE_ORDER;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_TIMESTAMP;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_TIME_RECEIVED;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_TYPE;
@@ -47,6 +48,7 @@ import static org.briarproject.briar.api.blog.BlogPostFactory.SIGNING_LABEL_COMM
 import static org.briarproject.briar.api.blog.BlogPostFactory.SIGNING_LABEL_POST;
 import static org.briarproject.briar.api.blog.MessageType.COMMENT;
 import static org.briarproject.briar.api.blog.MessageType.POST;
+import static org.briarproject.briar.blog.BlogManagerImpl.getTimelineOrder;
 
 @Immutable
 @NotNullByDefault
@@ -77,11 +79,11 @@ class BlogPostValidator extends BdfMessageValidator {
 		switch (MessageType.valueOf(type)) {
 			case POST:
 				c = validatePost(m, g, body);
-				addMessageMetadata(c, m.getTimestamp());
+				addMessageMetadata(c, m);
 				break;
 			case COMMENT:
 				c = validateComment(m, g, body);
-				addMessageMetadata(c, m.getTimestamp());
+				addMessageMetadata(c, m);
 				break;
 			case WRAPPED_POST:
 				c = validateWrappedPost(body);
@@ -281,10 +283,13 @@ class BlogPostValidator extends BdfMessageValidator {
 		return new BdfMessageContext(meta, dependencies);
 	}
 
-	private void addMessageMetadata(BdfMessageContext c, long time) {
-		c.getDictionary().put(KEY_TIMESTAMP, time);
-		c.getDictionary().put(KEY_TIME_RECEIVED, clock.currentTimeMillis());
+	private void addMessageMetadata(BdfMessageContext c, Message m) {
+		long timeReceived = clock.currentTimeMillis();
+		c.getDictionary().put(KEY_TIMESTAMP, m.getTimestamp());
+		c.getDictionary().put(KEY_TIME_RECEIVED, timeReceived);
 		c.getDictionary().put(KEY_READ, false);
+		c.getDictionary().put(KEY_TIMELINE_ORDER,
+				getTimelineOrder(timeReceived, m.getId()));
 	}
 
 }
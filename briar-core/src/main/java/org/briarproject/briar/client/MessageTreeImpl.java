@@ -4,15 +4,23 @@ import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 import org.briarproject.bramble.api.sync.MessageId;
 import org.briarproject.briar.api.client.MessageTree;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 
 @ThreadSafe
@@ -20,14 +28,24 @@ import javax.annotation.concurrent.ThreadSafe;
 public class MessageTreeImpl<T extends MessageTree.MessageNode>
 		implements MessageTree<T> {
 
+	/**
+	 * The children of each node, sorted by timestamp.
+	 */
 	@GuardedBy("this")
 	private final Map<MessageId, List<T>> nodeMap = new HashMap<>();
 
+	/**
+	 * The nodes without parents, sorted by timestamp.
+	 */
 	@GuardedBy("this")
 	private final List<T> roots = new ArrayList<>();
 
+	/**
+	 * Incremented whenever the tree is modified, so that depth-first views
+	 * can detect concurrent modifications.
+	 */
 	@GuardedBy("this")
-	private final List<List<T>> unsortedLists = new ArrayList<>();
+	private int modCount = 0;
 
 	@SuppressWarnings("UseCompareMethod")
 	private final Comparator<T> comparator = (o1, o2) ->
@@ -37,75 +55,112 @@ public class MessageTreeImpl<T extends MessageTree.MessageNode>
 	public synchronized void clear() {
 		roots.clear();
 		nodeMap.clear();
+		modCount++;
 	}
 
 	@Override
 	public synchronized void add(Collection<T> nodes) {
+		if (nodes.size() == 1) {
+			add(nodes.iterator().next());
+			return;
+		}
 		// add all nodes to the node map
 		for (T node : nodes) {
 			nodeMap.put(node.getId(), new ArrayList<>());
 		}
-		// parse the nodes for dependencies
+		// append the nodes to their siblings and sort the affected lists once
+		Set<List<T>> unsortedLists =
+				Collections.newSetFromMap(new IdentityHashMap<>());
 		for (T node : nodes) {
-			parseNode(node);
+			List<T> siblings = getSiblings(node);
+			siblings.add(node);
+			unsortedLists.add(siblings);
+		}
+		for (List<T> list : unsortedLists) {
+			//noinspection Java8ListSort
+			Collections.sort(list, comparator);
 		}
-		sortUnsorted();
+		modCount++;
 	}
 
 	@Override
 	public synchronized void add(T node) {
-		add(Collections.singletonList(node));
-	}
-
-	@GuardedBy("this")
-	private void markAsUnsorted(List<T> list) {
-		if (!unsortedLists.contains(list))
-			unsortedLists.add(list);
-	}
-
-	@GuardedBy("this")
-	private void parseNode(T node) {
-		if (node.getParentId() == null) {
-			roots.add(node);
-			markAsUnsorted(roots);
-		} else {
-			// retrieve the parent's children
-			List<T> pChildren = nodeMap.get(node.getParentId());
-			pChildren.add(node);
-			markAsUnsorted(pChildren);
-		}
-	}
-
-	@GuardedBy("this")
-	private void sortUnsorted() {
-		for (List<T> list : unsortedLists) {
-			//noinspection Java8ListSort
-			Collections.sort(list, comparator);
+		nodeMap.put(node.getId(), new ArrayList<>());
+		List<T> siblings = getSiblings(node);
+		// insert the node after any siblings with the same timestamp, which
+		// gives the same order as appending the node and sorting
+		int low = 0, high = siblings.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparator.compare(siblings.get(mid), node) <= 0) low = mid + 1;
+			else high = mid;
 		}
-		unsortedLists.clear();
+		siblings.add(low, node);
+		modCount++;
 	}
 
 	@GuardedBy("this")
-	private void traverse(List<T> list, T node, int level) {
-		list.add(node);
-		List<T> children = nodeMap.get(node.getId());
-		node.setLevel(level);
-		for (T child : children) {
-			traverse(list, child, level + 1);
-		}
+	private List<T> getSiblings(T node) {
+		MessageId parentId = node.getParentId();
+		if (parentId == null) return roots;
+		// retrieve the parent's children
+		return nodeMap.get(parentId);
 	}
 
 	@Override
 	public synchronized List<T> depthFirstOrder() {
-		List<T> orderedList = new ArrayList<>();
-		for (T root : roots) {
-			traverse(orderedList, root, 0);
-		}
+		List<T> orderedList = new ArrayList<>(nodeMap.size());
+		for (T node : depthFirstView()) orderedList.add(node);
 		return orderedList;
 	}
 
+	@Override
+	public Iterable<T> depthFirstView() {
+		return DepthFirstIterator::new;
+	}
+
 	@Override
 	public synchronized boolean contains(MessageId m) {
 		return nodeMap.containsKey(m);
 	}
+
+	@NotThreadSafe
+	private class DepthFirstIterator implements Iterator<T> {
+
+		/**
+		 * The remaining siblings at each level of the current path.
+		 */
+		private final Deque<Iterator<T>> stack = new ArrayDeque<>();
+		private final int expectedModCount;
+
+		private DepthFirstIterator() {
+			synchronized (MessageTreeImpl.this) {
+				expectedModCount = modCount;
+				stack.push(roots.iterator());
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			synchronized (MessageTreeImpl.this) {
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				while (!stack.isEmpty() && !stack.peek().hasNext()) {
+					stack.pop();
+				}
+				return !stack.isEmpty();
+			}
+		}
+
+		@Override
+		public T next() {
+			synchronized (MessageTreeImpl.this) {
+				if (!hasNext()) throw new NoSuchElementException();
+				T node = stack.peek().next();
+				node.setLevel(stack.size() - 1);
+				stack.push(nodeMap.get(node.getId()).iterator());
+				return node;
+			}
+		}
+	}
 }
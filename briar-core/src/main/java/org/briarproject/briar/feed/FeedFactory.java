@@ -6,6 +6,8 @@ import org.briarproject.bramble.api.FormatException;
 import org.briarproject.bramble.api.data.BdfDictionary;
 import org.briarproject.briar.api.feed.Feed;
 
+import javax.annotation.Nullable;
+
 interface FeedFactory {
 
 	/**
@@ -16,10 +18,18 @@ interface FeedFactory {
 
 	/**
 	 * Creates a new updated feed, based on the given existing feed,
-	 * new metadata from the given {@link SyndFeed}
-	 * and the time of the last feed entry.
+	 * new metadata from the given {@link SyndFeed},
+	 * the time of the last feed entry
+	 * and the validators sent by the server for conditional requests.
+	 */
+	Feed createFeed(Feed feed, SyndFeed f, long lastEntryTime,
+			@Nullable String eTag, @Nullable String lastModified);
+
+	/**
+	 * Creates a new updated feed, based on the given existing feed,
+	 * which the server reported as not modified since it was last fetched.
 	 */
-	Feed createFeed(Feed feed, SyndFeed f, long lastEntryTime);
+	Feed createFeed(Feed feed);
 
 	/**
 	 * De-serializes a {@link BdfDictionary} into a {@link Feed}.
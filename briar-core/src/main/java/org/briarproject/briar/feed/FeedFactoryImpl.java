@@ -18,13 +18,16 @@ import org.briarproject.briar.api.blog.Blog;
 import org.briarproject.briar.api.blog.BlogFactory;
 import org.briarproject.briar.api.feed.Feed;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import static org.briarproject.bramble.api.identity.AuthorConstants.MAX_AUTHOR_NAME_LENGTH;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_ADDED;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_AUTHOR;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_DESC;
+import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_ETAG;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_LAST_ENTRY;
+import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_LAST_MODIFIED;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_PRIVATE_KEY;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_RSS_AUTHOR;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEED_UPDATED;
@@ -60,11 +63,21 @@ class FeedFactoryImpl implements FeedFactory {
 	}
 
 	@Override
-	public Feed createFeed(Feed feed, SyndFeed f, long lastEntryTime) {
+	public Feed createFeed(Feed feed, SyndFeed f, long lastEntryTime,
+			@Nullable String eTag, @Nullable String lastModified) {
 		long updated = clock.currentTimeMillis();
 		return new Feed(feed.getUrl(), feed.getBlog(), feed.getLocalAuthor(),
 				f.getDescription(), f.getAuthor(), feed.getAdded(), updated,
-				lastEntryTime);
+				lastEntryTime, eTag, lastModified);
+	}
+
+	@Override
+	public Feed createFeed(Feed feed) {
+		long updated = clock.currentTimeMillis();
+		return new Feed(feed.getUrl(), feed.getBlog(), feed.getLocalAuthor(),
+				feed.getDescription(), feed.getRssAuthor(), feed.getAdded(),
+				updated, feed.getLastEntryTime(), feed.getETag(),
+				feed.getLastModified());
 	}
 
 	@Override
@@ -85,9 +98,11 @@ class FeedFactoryImpl implements FeedFactory {
 		long added = d.getLong(KEY_FEED_ADDED, 0L);
 		long updated = d.getLong(KEY_FEED_UPDATED, 0L);
 		long lastEntryTime = d.getLong(KEY_FEED_LAST_ENTRY, 0L);
+		String eTag = d.getOptionalString(KEY_FEED_ETAG);
+		String lastModified = d.getOptionalString(KEY_FEED_LAST_MODIFIED);
 
 		return new Feed(url, blog, localAuthor, desc, rssAuthor, added,
-				updated, lastEntryTime);
+				updated, lastEntryTime, eTag, lastModified);
 	}
 
 	@Override
@@ -106,6 +121,10 @@ class FeedFactoryImpl implements FeedFactory {
 			d.put(KEY_FEED_DESC, feed.getDescription());
 		if (feed.getRssAuthor() != null)
 			d.put(KEY_FEED_RSS_AUTHOR, feed.getRssAuthor());
+		if (feed.getETag() != null)
+			d.put(KEY_FEED_ETAG, feed.getETag());
+		if (feed.getLastModified() != null)
+			d.put(KEY_FEED_LAST_MODIFIED, feed.getLastModified());
 		return d;
 	}
 
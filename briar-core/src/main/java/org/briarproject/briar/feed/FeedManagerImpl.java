@@ -18,7 +18,7 @@ import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.DbException;
 import org.briarproject.bramble.api.db.Transaction;
 import org.briarproject.bramble.api.event.Event;
-import org.briarproject.bramble.api.event.EventListener;
+import org.briarproject.bramble.api.event.SelectiveEventListener;
 import org.briarproject.bramble.api.identity.LocalAuthor;
 import org.briarproject.bramble.api.lifecycle.IoExecutor;
 import org.briarproject.bramble.api.lifecycle.LifecycleManager.OpenDatabaseHook;
@@ -45,10 +45,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
@@ -61,9 +64,14 @@ import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+import static java.util.Arrays.asList;
 import static java.util.Collections.sort;
 import static java.util.logging.Level.WARNING;
+import static org.briarproject.bramble.api.nullsafety.NullSafety.requireNonNull;
+import static org.briarproject.bramble.util.LogUtils.logDuration;
 import static org.briarproject.bramble.util.LogUtils.logException;
+import static org.briarproject.bramble.util.LogUtils.now;
 import static org.briarproject.briar.api.blog.BlogConstants.MAX_BLOG_POST_TEXT_LENGTH;
 import static org.briarproject.briar.api.feed.FeedConstants.FETCH_DELAY_INITIAL;
 import static org.briarproject.briar.api.feed.FeedConstants.FETCH_INTERVAL;
@@ -75,12 +83,21 @@ import static org.briarproject.briar.util.HtmlUtils.clean;
 
 @ThreadSafe
 @NotNullByDefault
-class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
-		RemoveBlogHook {
+class FeedManagerImpl implements FeedManager, SelectiveEventListener,
+		OpenDatabaseHook, RemoveBlogHook {
 
 	private static final Logger LOG =
 			Logger.getLogger(FeedManagerImpl.class.getName());
 
+	private static final Collection<Class<? extends Event>> EVENT_TYPES =
+			asList(TransportActiveEvent.class,
+					TransportInactiveEvent.class);
+
+	/**
+	 * The maximum number of feeds that are fetched at the same time.
+	 */
+	static final int MAX_CONCURRENT_FETCHES = 4;
+
 	private final TaskScheduler scheduler;
 	private final Executor ioExecutor;
 	private final DatabaseComponent db;
@@ -118,6 +135,11 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 		this.clock = clock;
 	}
 
+	@Override
+	public Collection<Class<? extends Event>> getEventTypes() {
+		return EVENT_TYPES;
+	}
+
 	@Override
 	public void eventOccurred(Event e) {
 		if (e instanceof TransportActiveEvent) {
@@ -274,8 +296,9 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 
 	/**
 	 * This method is called periodically by the task scheduler.
-	 * It fetches all available feeds and posts new entries to the respective
-	 * blog.
+	 * It fetches all available feeds, a few at a time, and posts new entries
+	 * to the respective blog. Feeds that haven't changed since they were last
+	 * fetched are not downloaded again.
 	 * <p>
 	 * We can not do this within one database {@link Transaction},
 	 * because fetching can take a long time
@@ -295,20 +318,39 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 			return;
 		}
 
-		// Fetch and update all feeds
-		List<Feed> newFeeds = new ArrayList<>(feeds.size());
-		for (Feed feed : feeds) {
-			try {
-				newFeeds.add(fetchFeed(feed));
-			} catch (IOException | DbException e) {
-				logException(LOG, WARNING, e);
-				newFeeds.add(feed);
+		// Fetch and update all feeds, a few at a time
+		int size = feeds.size();
+		Feed[] newFeeds = new Feed[size];
+		Semaphore semaphore = new Semaphore(MAX_CONCURRENT_FETCHES);
+		CountDownLatch latch = new CountDownLatch(size);
+		try {
+			for (int i = 0; i < size; i++) {
+				int index = i;
+				Feed feed = feeds.get(i);
+				// Keep the old feed if fetching fails
+				newFeeds[index] = feed;
+				semaphore.acquire();
+				ioExecutor.execute(() -> {
+					try {
+						newFeeds[index] = fetchFeed(feed);
+					} catch (IOException | DbException e) {
+						logException(LOG, WARNING, e);
+					} finally {
+						semaphore.release();
+						latch.countDown();
+					}
+				});
 			}
+			latch.await();
+		} catch (InterruptedException e) {
+			LOG.warning("Interrupted while updating RSS feeds");
+			Thread.currentThread().interrupt();
+			return;
 		}
 
 		// Store updated feeds
 		try {
-			storeFeeds(newFeeds);
+			storeFeeds(asList(newFeeds));
 		} catch (DbException e) {
 			logException(LOG, WARNING, e);
 		}
@@ -316,10 +358,21 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 	}
 
 	private SyndFeed fetchSyndFeed(String url) throws IOException {
-		// fetch feed
-		InputStream stream = getFeedInputStream(url);
-		SyndFeed f = getSyndFeed(stream);
-		stream.close();
+		Request request = new Request.Builder()
+				.url(url)
+				.build();
+		return getSyndFeed(executeRequest(request));
+	}
+
+	private SyndFeed getSyndFeed(Response response) throws IOException {
+		// parse feed
+		InputStream stream = getFeedInputStream(response);
+		SyndFeed f;
+		try {
+			f = getSyndFeed(stream);
+		} finally {
+			stream.close();
+		}
 
 		if (f.getEntries().size() == 0)
 			throw new IOException("Feed has no entries");
@@ -347,25 +400,47 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 	}
 
 	private Feed fetchFeed(Feed feed) throws IOException, DbException {
+		long start = now();
+		// ask the server to only send the feed if it has changed
+		Request.Builder builder = new Request.Builder()
+				.url(feed.getUrl());
+		String eTag = feed.getETag();
+		if (eTag != null) builder.header("If-None-Match", eTag);
+		String lastModified = feed.getLastModified();
+		if (lastModified != null)
+			builder.header("If-Modified-Since", lastModified);
+		Response response = executeRequest(builder.build());
+		if (response.code() == HTTP_NOT_MODIFIED) {
+			response.close();
+			logDuration(LOG, "Fetching unmodified RSS feed", start);
+			return feedFactory.createFeed(feed);
+		}
+
 		// fetch and clean feed
-		SyndFeed f = fetchSyndFeed(feed.getUrl());
+		SyndFeed f = getSyndFeed(response);
+		logDuration(LOG, "Fetching RSS feed", start);
 
 		// sort and add new entries
+		start = now();
 		long lastEntryTime = postFeedEntries(feed, f.getEntries());
+		logDuration(LOG, "Posting RSS feed entries", start);
 
-		return feedFactory.createFeed(feed, f, lastEntryTime);
+		return feedFactory.createFeed(feed, f, lastEntryTime,
+				response.header("ETag"), response.header("Last-Modified"));
 	}
 
-	private InputStream getFeedInputStream(String url) throws IOException {
-		// Build Request
-		Request request = new Request.Builder()
-				.url(url)
-				.build();
-
-		// Execute Request
+	private Response executeRequest(Request request) throws IOException {
 		OkHttpClient client = httpClientProvider.get();
-		Response response = client.newCall(request).execute();
+		return client.newCall(request).execute();
+	}
+
+	private InputStream getFeedInputStream(Response response)
+			throws IOException {
 		ResponseBody body = response.body();
+		if (!response.isSuccessful()) {
+			response.close();
+			throw new IOException("Unexpected response: " + response.code());
+		}
 		if (body != null) return body.byteStream();
 		throw new IOException("Empty response body");
 	}
@@ -383,26 +458,28 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 	long postFeedEntries(Feed feed, List<SyndEntry> entries)
 			throws DbException {
 
+		// skip the entries we've already posted before sorting the rest
 		long lastEntryTime = feed.getLastEntryTime();
+		List<SyndEntry> newEntries = new ArrayList<>();
+		for (SyndEntry entry : entries) {
+			Date date = getEntryDate(entry);
+			if (date == null) {
+				// no time information available, ignore this entry
+				LOG.warning("Entry has no date, ignored.");
+			} else if (date.getTime() > lastEntryTime) {
+				newEntries.add(entry);
+			}
+		}
+		if (newEntries.isEmpty()) return lastEntryTime;
+
 		Transaction txn = db.startTransaction(false);
 		try {
 			//noinspection Java8ListSort
-			sort(entries, getEntryComparator());
-			for (SyndEntry entry : entries) {
-				long entryTime;
-				if (entry.getPublishedDate() != null) {
-					entryTime = entry.getPublishedDate().getTime();
-				} else if (entry.getUpdatedDate() != null) {
-					entryTime = entry.getUpdatedDate().getTime();
-				} else {
-					// no time information available, ignore this entry
-					LOG.warning("Entry has no date, ignored.");
-					continue;
-				}
-				if (entryTime > feed.getLastEntryTime()) {
-					postEntry(txn, feed, entry);
-					if (entryTime > lastEntryTime) lastEntryTime = entryTime;
-				}
+			sort(newEntries, getEntryComparator());
+			for (SyndEntry entry : newEntries) {
+				postEntry(txn, feed, entry);
+				long entryTime = requireNonNull(getEntryDate(entry)).getTime();
+				if (entryTime > lastEntryTime) lastEntryTime = entryTime;
 			}
 			db.commitTransaction(txn);
 		} finally {
@@ -476,12 +553,16 @@ class FeedManagerImpl implements FeedManager, EventListener, OpenDatabaseHook,
 		return StringUtils.truncateUtf8(text, MAX_BLOG_POST_TEXT_LENGTH);
 	}
 
+	@Nullable
+	private Date getEntryDate(SyndEntry entry) {
+		return entry.getPublishedDate() != null ? entry.getPublishedDate() :
+				entry.getUpdatedDate();
+	}
+
 	private Comparator<SyndEntry> getEntryComparator() {
 		return (e1, e2) -> {
-			Date d1 = e1.getPublishedDate() != null ? e1.getPublishedDate() :
-					e1.getUpdatedDate();
-			Date d2 = e2.getPublishedDate() != null ? e2.getPublishedDate() :
-					e2.getUpdatedDate();
+			Date d1 = getEntryDate(e1);
+			Date d2 = getEntryDate(e2);
 			if (d1 == null && d2 == null) return 0;
 			if (d1 == null) return -1;
 			if (d2 == null) return 1;
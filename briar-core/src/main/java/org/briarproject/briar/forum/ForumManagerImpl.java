@@ -8,6 +8,7 @@ import org.briarproject.bramble.api.data.BdfList;
 import org.briarproject.bramble.api.data.MetadataParser;
 import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.db.NoSuchMessageException;
 import org.briarproject.bramble.api.db.Transaction;
 import org.briarproject.bramble.api.identity.Author;
 import org.briarproject.bramble.api.identity.AuthorId;
@@ -37,7 +38,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -218,33 +218,81 @@ class ForumManagerImpl extends BdfIncomingMessageHook implements ForumManager {
 	public List<ForumPostHeader> getPostHeaders(Transaction txn, GroupId g)
 			throws DbException {
 		try {
-			List<ForumPostHeader> headers = new ArrayList<>();
 			Map<MessageId, BdfDictionary> metadata =
 					clientHelper.getMessageMetadataAsDictionary(txn, g);
-			// get all authors we need to get the info for
-			Set<AuthorId> authors = new HashSet<>();
-			for (Entry<MessageId, BdfDictionary> entry : metadata.entrySet()) {
-				BdfList authorList = entry.getValue().getList(KEY_AUTHOR);
-				Author a = clientHelper.parseAndValidateAuthor(authorList);
-				authors.add(a.getId());
-			}
-			// get information for all authors
-			Map<AuthorId, AuthorInfo> authorInfos = new HashMap<>();
-			for (AuthorId id : authors) {
-				authorInfos.put(id, authorManager.getAuthorInfo(txn, id));
-			}
-			// Parse the metadata
-			for (Entry<MessageId, BdfDictionary> entry : metadata.entrySet()) {
-				BdfDictionary meta = entry.getValue();
-				headers.add(getForumPostHeader(txn, entry.getKey(), meta,
-						authorInfos));
-			}
-			return headers;
+			return getPostHeaders(txn, metadata, metadata.keySet());
+		} catch (FormatException e) {
+			throw new DbException(e);
+		}
+	}
+
+	@Override
+	public List<ForumPostHeader> getPostHeaders(Transaction txn, GroupId g,
+			long minTimestamp, long maxTimestamp) throws DbException {
+		try {
+			// Load the posts in the range, then any ancestors outside it
+			Map<MessageId, BdfDictionary> metadata =
+					clientHelper.getMessageMetadataAsDictionary(txn, g,
+							minTimestamp, maxTimestamp);
+			for (BdfDictionary meta : new ArrayList<>(metadata.values()))
+				addAncestors(txn, g, metadata, meta);
+			return getPostHeaders(txn, metadata, metadata.keySet());
 		} catch (FormatException e) {
 			throw new DbException(e);
 		}
 	}
 
+	/**
+	 * Adds the metadata of any ancestors of the given post that are missing
+	 * from the given map, stopping at the top-level post, an ancestor that's
+	 * already in the map, or an ancestor that hasn't been delivered or belongs
+	 * to another group.
+	 */
+	private void addAncestors(Transaction txn, GroupId g,
+			Map<MessageId, BdfDictionary> metadata, BdfDictionary meta)
+			throws DbException, FormatException {
+		byte[] parent = meta.getOptionalRaw(KEY_PARENT);
+		while (parent != null) {
+			MessageId parentId = new MessageId(parent);
+			if (metadata.containsKey(parentId)) break;
+			BdfDictionary parentMeta;
+			try {
+				if (!db.getGroupId(txn, parentId).equals(g)) break;
+				parentMeta = clientHelper.getMessageMetadataAsDictionary(txn,
+						parentId);
+			} catch (NoSuchMessageException e) {
+				break;
+			}
+			if (parentMeta.isEmpty()) break; // Not delivered
+			metadata.put(parentId, parentMeta);
+			parent = parentMeta.getOptionalRaw(KEY_PARENT);
+		}
+	}
+
+	private List<ForumPostHeader> getPostHeaders(Transaction txn,
+			Map<MessageId, BdfDictionary> metadata, Collection<MessageId> ids)
+			throws DbException, FormatException {
+		List<ForumPostHeader> headers = new ArrayList<>(ids.size());
+		// get all authors we need to get the info for
+		Set<AuthorId> authors = new HashSet<>();
+		for (MessageId id : ids) {
+			BdfList authorList = metadata.get(id).getList(KEY_AUTHOR);
+			Author a = clientHelper.parseAndValidateAuthor(authorList);
+			authors.add(a.getId());
+		}
+		// get information for all authors
+		Map<AuthorId, AuthorInfo> authorInfos = new HashMap<>();
+		for (AuthorId id : authors) {
+			authorInfos.put(id, authorManager.getAuthorInfo(txn, id));
+		}
+		// Parse the metadata
+		for (MessageId id : ids) {
+			headers.add(getForumPostHeader(txn, id, metadata.get(id),
+					authorInfos));
+		}
+		return headers;
+	}
+
 	@Override
 	public void registerRemoveForumHook(RemoveForumHook hook) {
 		removeHooks.add(hook);
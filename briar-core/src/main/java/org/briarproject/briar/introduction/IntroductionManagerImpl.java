@@ -4,6 +4,7 @@ import org.briarproject.bramble.api.FormatException;
 import org.briarproject.bramble.api.cleanup.CleanupHook;
 import org.briarproject.bramble.api.client.ClientHelper;
 import org.briarproject.bramble.api.client.ContactGroupFactory;
+import org.briarproject.bramble.api.client.SessionIndex;
 import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.ContactManager;
@@ -66,6 +67,7 @@ import static org.briarproject.briar.introduction.IntroduceeState.REMOTE_DECLINE
 import static org.briarproject.briar.introduction.IntroducerState.A_DECLINED;
 import static org.briarproject.briar.introduction.IntroducerState.B_DECLINED;
 import static org.briarproject.briar.introduction.IntroducerState.START;
+import static org.briarproject.briar.introduction.IntroductionConstants.SESSION_KEY_SESSION_ID;
 import static org.briarproject.briar.introduction.MessageType.ABORT;
 import static org.briarproject.briar.introduction.MessageType.ACCEPT;
 import static org.briarproject.briar.introduction.MessageType.ACTIVATE;
@@ -85,6 +87,7 @@ class IntroductionManagerImpl extends ConversationClientImpl
 	private final MessageParser messageParser;
 	private final SessionEncoder sessionEncoder;
 	private final SessionParser sessionParser;
+	private final SessionIndex sessionIndex;
 	private final IntroducerProtocolEngine introducerEngine;
 	private final IntroduceeProtocolEngine introduceeEngine;
 	private final IntroductionCrypto crypto;
@@ -105,6 +108,7 @@ class IntroductionManagerImpl extends ConversationClientImpl
 			MessageParser messageParser,
 			SessionEncoder sessionEncoder,
 			SessionParser sessionParser,
+			SessionIndex sessionIndex,
 			IntroducerProtocolEngine introducerEngine,
 			IntroduceeProtocolEngine introduceeEngine,
 			IntroductionCrypto crypto,
@@ -117,6 +121,7 @@ class IntroductionManagerImpl extends ConversationClientImpl
 		this.messageParser = messageParser;
 		this.sessionEncoder = sessionEncoder;
 		this.sessionParser = sessionParser;
+		this.sessionIndex = sessionIndex;
 		this.introducerEngine = introducerEngine;
 		this.introduceeEngine = introduceeEngine;
 		this.crypto = crypto;
@@ -129,12 +134,27 @@ class IntroductionManagerImpl extends ConversationClientImpl
 	@Override
 	public void onDatabaseOpened(Transaction txn) throws DbException {
 		// Create a local group to store protocol sessions
-		if (db.containsGroup(txn, localGroup.getId())) return;
+		if (db.containsGroup(txn, localGroup.getId())) {
+			// Index any sessions stored before the session index was used
+			indexSessions(txn);
+			return;
+		}
 		db.addGroup(txn, localGroup);
+		indexSessions(txn);
 		// Set up groups for communication with any pre-existing contacts
 		for (Contact c : db.getContacts(txn)) addingContact(txn, c);
 	}
 
+	private void indexSessions(Transaction txn) throws DbException {
+		// Every message in the local group stores a session
+		try {
+			sessionIndex.indexGroup(txn, localGroup.getId(),
+					new BdfDictionary(), SESSION_KEY_SESSION_ID);
+		} catch (FormatException e) {
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public void addingContact(Transaction txn, Contact c) throws DbException {
 		// Create a group to share with the contact
@@ -197,7 +217,7 @@ class IntroductionManagerImpl extends ConversationClientImpl
 		if (ss == null) {
 			if (meta.getMessageType() != REQUEST) throw new FormatException();
 			if (newIntroduceeSession == null) throw new AssertionError();
-			storageId = createStorageId(txn);
+			storageId = createStorageId(txn, sessionId);
 			session = handleMessage(txn, m, body, meta.getMessageType(),
 					newIntroduceeSession, introduceeEngine);
 		} else {
@@ -264,18 +284,19 @@ class IntroductionManagerImpl extends ConversationClientImpl
 			@Nullable SessionId sessionId) throws DbException, FormatException {
 		if (sessionId == null) return null;
 		BdfDictionary query = sessionParser.getSessionQuery(sessionId);
-		Map<MessageId, BdfDictionary> results = clientHelper
-				.getMessageMetadataAsDictionary(txn, localGroup.getId(), query);
-		if (results.size() > 1) throw new DbException();
-		if (results.isEmpty()) return null;
-		return new StoredSession(results.keySet().iterator().next(),
-				results.values().iterator().next());
+		MessageId storageId = sessionIndex.getSessionMessageId(txn,
+				localGroup.getId(), sessionId, query);
+		if (storageId == null) return null;
+		return new StoredSession(storageId,
+				clientHelper.getMessageMetadataAsDictionary(txn, storageId));
 	}
 
-	private MessageId createStorageId(Transaction txn) throws DbException {
+	private MessageId createStorageId(Transaction txn, SessionId sessionId)
+			throws DbException {
 		Message m = clientHelper
 				.createMessageForStoringMetadata(localGroup.getId());
 		db.addLocalMessage(txn, m, new Metadata(), false, false);
+		sessionIndex.addSession(txn, localGroup.getId(), sessionId, m.getId());
 		return m.getId();
 	}
 
@@ -353,7 +374,7 @@ class IntroductionManagerImpl extends ConversationClientImpl
 						alice ? groupId2 : groupId1,
 						alice ? c2.getAuthor() : c1.getAuthor()
 				);
-				storageId = createStorageId(txn);
+				storageId = createStorageId(txn, sessionId);
 			} else {
 				// An earlier request exists, so we already have a session
 				session = sessionParser.parseIntroducerSession(ss.bdfSession);
@@ -522,16 +543,19 @@ class IntroductionManagerImpl extends ConversationClientImpl
 			Contact introducer) throws DbException {
 		BdfDictionary query = sessionEncoder
 				.getIntroduceeSessionsByIntroducerQuery(introducer.getAuthor());
-		Collection<MessageId> sessionIds;
 		try {
-			sessionIds = clientHelper.getMessageIds(txn, localGroup.getId(),
-					query);
+			Map<MessageId, BdfDictionary> sessions = clientHelper
+					.getMessageMetadataAsDictionary(txn, localGroup.getId(),
+							query);
+			for (Entry<MessageId, BdfDictionary> entry : sessions.entrySet()) {
+				SessionId sessionId = new SessionId(
+						entry.getValue().getRaw(SESSION_KEY_SESSION_ID));
+				sessionIndex.removeSession(txn, localGroup.getId(), sessionId);
+				db.removeMessage(txn, entry.getKey());
+			}
 		} catch (FormatException e) {
 			throw new DbException(e);
 		}
-		for (MessageId id : sessionIds) {
-			db.removeMessage(txn, id);
-		}
 	}
 
 	private void abortOrRemoveSessionWithIntroducee(Transaction txn,
@@ -571,6 +595,8 @@ class IntroductionManagerImpl extends ConversationClientImpl
 					introducerEngine.onIntroduceeRemoved(txn, i, s);
 			storeSession(txn, storageId, session);
 		} else {
+			sessionIndex.removeSession(txn, localGroup.getId(),
+					s.getSessionId());
 			db.removeMessage(txn, storageId);
 		}
 	}
@@ -13,6 +13,15 @@ interface GroupConstants {
 	String KEY_MEMBER = "member";
 	String KEY_INITIAL_JOIN_MSG = "initialJoinMsg";
 
+	/**
+	 * Each member is stored under its own key, made of this prefix and the
+	 * hex-encoded author ID, so it can be looked up and updated on its own.
+	 */
+	String GROUP_KEY_MEMBER_PREFIX = "member_";
+	/**
+	 * Older versions stored all members in a list under this key. Lists
+	 * found under this key are migrated when the database is opened.
+	 */
 	String GROUP_KEY_MEMBERS = "members";
 	String GROUP_KEY_OUR_GROUP = "ourGroup";
 	String GROUP_KEY_CREATOR_ID = "creatorId";
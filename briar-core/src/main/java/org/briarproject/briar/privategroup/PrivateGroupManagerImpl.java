@@ -11,12 +11,14 @@ import org.briarproject.bramble.api.data.BdfList;
 import org.briarproject.bramble.api.data.MetadataParser;
 import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.DbException;
+import org.briarproject.bramble.api.db.NoSuchMessageException;
 import org.briarproject.bramble.api.db.Transaction;
 import org.briarproject.bramble.api.event.Event;
 import org.briarproject.bramble.api.identity.Author;
 import org.briarproject.bramble.api.identity.AuthorId;
 import org.briarproject.bramble.api.identity.IdentityManager;
 import org.briarproject.bramble.api.identity.LocalAuthor;
+import org.briarproject.bramble.api.lifecycle.LifecycleManager.OpenDatabaseHook;
 import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
 import org.briarproject.bramble.api.sync.Group;
 import org.briarproject.bramble.api.sync.GroupId;
@@ -51,11 +53,19 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Logger.getLogger;
+import static org.briarproject.bramble.api.data.BdfDictionary.NULL_VALUE;
 import static org.briarproject.bramble.api.sync.validation.IncomingMessageHook.DeliveryAction.ACCEPT_SHARE;
+import static org.briarproject.bramble.util.StringUtils.toHexString;
 import static org.briarproject.briar.api.identity.AuthorInfo.Status.UNVERIFIED;
 import static org.briarproject.briar.api.identity.AuthorInfo.Status.VERIFIED;
 import static org.briarproject.briar.api.privategroup.MessageType.JOIN;
@@ -66,6 +76,7 @@ import static org.briarproject.briar.api.privategroup.Visibility.REVEALED_BY_US;
 import static org.briarproject.briar.api.privategroup.Visibility.VISIBLE;
 import static org.briarproject.briar.privategroup.GroupConstants.GROUP_KEY_CREATOR_ID;
 import static org.briarproject.briar.privategroup.GroupConstants.GROUP_KEY_DISSOLVED;
+import static org.briarproject.briar.privategroup.GroupConstants.GROUP_KEY_MEMBER_PREFIX;
 import static org.briarproject.briar.privategroup.GroupConstants.GROUP_KEY_MEMBERS;
 import static org.briarproject.briar.privategroup.GroupConstants.GROUP_KEY_OUR_GROUP;
 import static org.briarproject.briar.privategroup.GroupConstants.GROUP_KEY_VISIBILITY;
@@ -80,7 +91,10 @@ import static org.briarproject.briar.privategroup.GroupConstants.KEY_TYPE;
 @ThreadSafe
 @NotNullByDefault
 class PrivateGroupManagerImpl extends BdfIncomingMessageHook
-		implements PrivateGroupManager {
+		implements PrivateGroupManager, OpenDatabaseHook {
+
+	private static final Logger LOG =
+			getLogger(PrivateGroupManagerImpl.class.getName());
 
 	private final PrivateGroupFactory privateGroupFactory;
 	private final ContactManager contactManager;
@@ -104,6 +118,37 @@ class PrivateGroupManagerImpl extends BdfIncomingMessageHook
 		hooks = new CopyOnWriteArrayList<>();
 	}
 
+	@Override
+	public void onDatabaseOpened(Transaction txn) throws DbException {
+		// Move members stored by older versions to their own keys
+		Collection<String> keys = singletonList(GROUP_KEY_MEMBERS);
+		try {
+			for (Group g : db.getGroups(txn, CLIENT_ID, MAJOR_VERSION)) {
+				BdfDictionary meta = clientHelper
+						.getGroupMetadataAsDictionary(txn, g.getId(), keys);
+				if (meta.containsKey(GROUP_KEY_MEMBERS))
+					migrateMembers(txn, g.getId(), meta);
+			}
+		} catch (FormatException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private void migrateMembers(Transaction txn, GroupId g, BdfDictionary meta)
+			throws FormatException, DbException {
+		BdfList list = meta.getList(GROUP_KEY_MEMBERS);
+		BdfDictionary merged = new BdfDictionary();
+		for (int i = 0; i < list.size(); i++) {
+			BdfDictionary d = list.getDictionary(i);
+			Author member = getAuthor(d);
+			merged.put(getMemberKey(member.getId()), d);
+		}
+		merged.put(GROUP_KEY_MEMBERS, NULL_VALUE);
+		clientHelper.mergeGroupMetadata(txn, g, merged);
+		if (LOG.isLoggable(INFO))
+			LOG.info("Migrated " + list.size() + " private group members");
+	}
+
 	@Override
 	public void addPrivateGroup(PrivateGroup group, GroupMessage joinMsg,
 			boolean creator) throws DbException {
@@ -123,7 +168,6 @@ class PrivateGroupManagerImpl extends BdfIncomingMessageHook
 			db.addGroup(txn, group.getGroup());
 			AuthorId creatorId = group.getCreator().getId();
 			BdfDictionary meta = BdfDictionary.of(
-					new BdfEntry(GROUP_KEY_MEMBERS, new BdfList()),
 					new BdfEntry(GROUP_KEY_CREATOR_ID, creatorId),
 					new BdfEntry(GROUP_KEY_OUR_GROUP, creator),
 					new BdfEntry(GROUP_KEY_DISSOLVED, false)
@@ -181,7 +225,8 @@ class PrivateGroupManagerImpl extends BdfIncomingMessageHook
 
 	private MessageId getPreviousMsgId(Transaction txn, GroupId g)
 			throws DbException, FormatException {
-		BdfDictionary d = clientHelper.getGroupMetadataAsDictionary(txn, g);
+		BdfDictionary d = clientHelper.getGroupMetadataAsDictionary(txn, g,
+				singletonList(KEY_PREVIOUS_MSG_ID));
 		byte[] previousMsgIdBytes = d.getRaw(KEY_PREVIOUS_MSG_ID);
 		return new MessageId(previousMsgIdBytes);
 	}
@@ -302,8 +347,8 @@ class PrivateGroupManagerImpl extends BdfIncomingMessageHook
 	@Override
 	public boolean isDissolved(Transaction txn, GroupId g) throws DbException {
 		try {
-			BdfDictionary meta =
-					clientHelper.getGroupMetadataAsDictionary(txn, g);
+			BdfDictionary meta = clientHelper.getGroupMetadataAsDictionary(
+					txn, g, singletonList(GROUP_KEY_DISSOLVED));
 			return meta.getBoolean(GROUP_KEY_DISSOLVED);
 		} catch (FormatException e) {
 			throw new DbException(e);
@@ -349,37 +394,86 @@ class PrivateGroupManagerImpl extends BdfIncomingMessageHook
 	@Override
 	public List<GroupMessageHeader> getHeaders(Transaction txn, GroupId g)
 			throws DbException {
-		List<GroupMessageHeader> headers = new ArrayList<>();
 		try {
 			Map<MessageId, BdfDictionary> metadata =
 					clientHelper.getMessageMetadataAsDictionary(txn, g);
-			// get all authors we need to get the information for
-			Set<AuthorId> authors = new HashSet<>();
-			for (BdfDictionary meta : metadata.values()) {
-				authors.add(getAuthor(meta).getId());
-			}
-			// get information for all authors
-			Map<AuthorId, AuthorInfo> authorInfos = new HashMap<>();
-			for (AuthorId id : authors) {
-				authorInfos.put(id, authorManager.getAuthorInfo(txn, id));
-			}
-			// parse the metadata
-			for (Entry<MessageId, BdfDictionary> entry : metadata.entrySet()) {
-				BdfDictionary meta = entry.getValue();
-				if (meta.getLong(KEY_TYPE) == JOIN.getInt()) {
-					headers.add(getJoinMessageHeader(txn, g, entry.getKey(),
-							meta, authorInfos));
-				} else {
-					headers.add(getGroupMessageHeader(txn, g, entry.getKey(),
-							meta, authorInfos));
-				}
-			}
-			return headers;
+			return getHeaders(txn, g, metadata, metadata.keySet());
 		} catch (FormatException e) {
 			throw new DbException(e);
 		}
 	}
 
+	@Override
+	public List<GroupMessageHeader> getHeaders(Transaction txn, GroupId g,
+			long minTimestamp, long maxTimestamp) throws DbException {
+		try {
+			// load the messages in the range, then any ancestors outside it
+			Map<MessageId, BdfDictionary> metadata =
+					clientHelper.getMessageMetadataAsDictionary(txn, g,
+							minTimestamp, maxTimestamp);
+			for (BdfDictionary meta : new ArrayList<>(metadata.values()))
+				addAncestors(txn, g, metadata, meta);
+			return getHeaders(txn, g, metadata, metadata.keySet());
+		} catch (FormatException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Adds the metadata of any ancestors of the given message that are
+	 * missing from the given map, stopping at a top-level message, an
+	 * ancestor that's already in the map, or an ancestor that hasn't been
+	 * delivered or belongs to another group.
+	 */
+	private void addAncestors(Transaction txn, GroupId g,
+			Map<MessageId, BdfDictionary> metadata, BdfDictionary meta)
+			throws DbException, FormatException {
+		byte[] parent = meta.getOptionalRaw(KEY_PARENT_MSG_ID);
+		while (parent != null) {
+			MessageId parentId = new MessageId(parent);
+			if (metadata.containsKey(parentId)) break;
+			BdfDictionary parentMeta;
+			try {
+				if (!db.getGroupId(txn, parentId).equals(g)) break;
+				parentMeta = clientHelper.getMessageMetadataAsDictionary(txn,
+						parentId);
+			} catch (NoSuchMessageException e) {
+				break;
+			}
+			if (parentMeta.isEmpty()) break; // not delivered
+			metadata.put(parentId, parentMeta);
+			parent = parentMeta.getOptionalRaw(KEY_PARENT_MSG_ID);
+		}
+	}
+
+	private List<GroupMessageHeader> getHeaders(Transaction txn, GroupId g,
+			Map<MessageId, BdfDictionary> metadata, Collection<MessageId> ids)
+			throws DbException, FormatException {
+		List<GroupMessageHeader> headers = new ArrayList<>(ids.size());
+		// get all authors we need to get the information for
+		Set<AuthorId> authors = new HashSet<>();
+		for (MessageId id : ids) {
+			authors.add(getAuthor(metadata.get(id)).getId());
+		}
+		// get information for all authors
+		Map<AuthorId, AuthorInfo> authorInfos = new HashMap<>();
+		for (AuthorId id : authors) {
+			authorInfos.put(id, authorManager.getAuthorInfo(txn, id));
+		}
+		// parse the metadata
+		for (MessageId id : ids) {
+			BdfDictionary meta = metadata.get(id);
+			if (meta.getLong(KEY_TYPE) == JOIN.getInt()) {
+				headers.add(getJoinMessageHeader(txn, g, id, meta,
+						authorInfos));
+			} else {
+				headers.add(getGroupMessageHeader(txn, g, id, meta,
+						authorInfos));
+			}
+		}
+		return headers;
+	}
+
 	private GroupMessageHeader getGroupMessageHeader(Transaction txn, GroupId g,
 			MessageId id, BdfDictionary meta,
 			Map<AuthorId, AuthorInfo> authorInfos)
@@ -449,10 +543,10 @@ class PrivateGroupManagerImpl extends BdfIncomingMessageHook
 		try {
 			BdfDictionary meta =
 					clientHelper.getGroupMetadataAsDictionary(txn, g);
-			BdfList list = meta.getList(GROUP_KEY_MEMBERS);
-			Map<Author, Visibility> members = new HashMap<>(list.size());
-			for (int i = 0; i < list.size(); i++) {
-				BdfDictionary d = list.getDictionary(i);
+			Map<Author, Visibility> members = new HashMap<>();
+			for (Entry<String, Object> e : meta.entrySet()) {
+				if (!e.getKey().startsWith(GROUP_KEY_MEMBER_PREFIX)) continue;
+				BdfDictionary d = meta.getDictionary(e.getKey());
 				Author member = getAuthor(d);
 				Visibility v = getVisibility(d);
 				members.put(member, v);
@@ -466,10 +560,24 @@ class PrivateGroupManagerImpl extends BdfIncomingMessageHook
 	@Override
 	public boolean isMember(Transaction txn, GroupId g, Author a)
 			throws DbException {
-		for (Author member : getMemberAuthors(txn, g).keySet()) {
-			if (member.equals(a)) return true;
+		try {
+			return getMember(txn, g, a.getId()) != null;
+		} catch (FormatException e) {
+			throw new DbException(e);
 		}
-		return false;
+	}
+
+	@Nullable
+	private BdfDictionary getMember(Transaction txn, GroupId g, AuthorId a)
+			throws DbException, FormatException {
+		String key = getMemberKey(a);
+		BdfDictionary meta = clientHelper.getGroupMetadataAsDictionary(txn, g,
+				singletonList(key));
+		return meta.getOptionalDictionary(key);
+	}
+
+	private String getMemberKey(AuthorId a) {
+		return GROUP_KEY_MEMBER_PREFIX + toHexString(a.getBytes());
 	}
 
 	@Override
@@ -493,25 +601,14 @@ class PrivateGroupManagerImpl extends BdfIncomingMessageHook
 	@Override
 	public void relationshipRevealed(Transaction txn, GroupId g, AuthorId a,
 			boolean byContact) throws FormatException, DbException {
-		BdfDictionary meta = clientHelper.getGroupMetadataAsDictionary(txn, g);
-		BdfList members = meta.getList(GROUP_KEY_MEMBERS);
-		Visibility v = INVISIBLE;
-		boolean foundMember = false, changed = false;
-		for (int i = 0; i < members.size(); i++) {
-			BdfDictionary d = members.getDictionary(i);
-			if (a.equals(getAuthor(d).getId())) {
-				foundMember = true;
-				// Don't update the visibility if the contact is already visible
-				if (getVisibility(d) == INVISIBLE) {
-					changed = true;
-					v = byContact ? REVEALED_BY_CONTACT : REVEALED_BY_US;
-					d.put(GROUP_KEY_VISIBILITY, v.getInt());
-				}
-				break;
-			}
-		}
-		if (!foundMember) throw new ProtocolStateException();
-		if (changed) {
+		BdfDictionary member = getMember(txn, g, a);
+		if (member == null) throw new ProtocolStateException();
+		// Don't update the visibility if the contact is already visible
+		if (getVisibility(member) == INVISIBLE) {
+			Visibility v = byContact ? REVEALED_BY_CONTACT : REVEALED_BY_US;
+			member.put(GROUP_KEY_VISIBILITY, v.getInt());
+			BdfDictionary meta = BdfDictionary.of(
+					new BdfEntry(getMemberKey(a), member));
 			clientHelper.mergeGroupMetadata(txn, g, meta);
 			LocalAuthor la = identityManager.getLocalAuthor(txn);
 			ContactId c = contactManager.getContact(txn, a, la.getId()).getId();
@@ -549,8 +646,9 @@ class PrivateGroupManagerImpl extends BdfIncomingMessageHook
 			BdfDictionary meta) throws FormatException, DbException {
 		// find out if contact relationship is visible and then add new member
 		Author member = getAuthor(meta);
-		BdfDictionary groupMeta = clientHelper
-				.getGroupMetadataAsDictionary(txn, m.getGroupId());
+		BdfDictionary groupMeta = clientHelper.getGroupMetadataAsDictionary(
+				txn, m.getGroupId(),
+				asList(GROUP_KEY_OUR_GROUP, GROUP_KEY_CREATOR_ID));
 		boolean ourGroup = groupMeta.getBoolean(GROUP_KEY_OUR_GROUP);
 		Visibility v = VISIBLE;
 		if (!ourGroup) {
@@ -623,12 +721,12 @@ class PrivateGroupManagerImpl extends BdfIncomingMessageHook
 	private void addMember(Transaction txn, GroupId g, Author a, Visibility v)
 			throws DbException, FormatException {
 
-		BdfDictionary meta = clientHelper.getGroupMetadataAsDictionary(txn, g);
-		BdfList members = meta.getList(GROUP_KEY_MEMBERS);
-		members.add(BdfDictionary.of(
+		BdfDictionary member = BdfDictionary.of(
 				new BdfEntry(KEY_MEMBER, clientHelper.toList(a)),
 				new BdfEntry(GROUP_KEY_VISIBILITY, v.getInt())
-		));
+		);
+		BdfDictionary meta = BdfDictionary.of(
+				new BdfEntry(getMemberKey(a.getId()), member));
 		clientHelper.mergeGroupMetadata(txn, g, meta);
 		for (PrivateGroupHook hook : hooks) {
 			hook.addingMember(txn, g, a);
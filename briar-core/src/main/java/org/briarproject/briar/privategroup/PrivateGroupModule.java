@@ -3,6 +3,7 @@ package org.briarproject.briar.privategroup;
 import org.briarproject.bramble.api.FeatureFlags;
 import org.briarproject.bramble.api.client.ClientHelper;
 import org.briarproject.bramble.api.data.MetadataEncoder;
+import org.briarproject.bramble.api.lifecycle.LifecycleManager;
 import org.briarproject.bramble.api.sync.validation.ValidationManager;
 import org.briarproject.bramble.api.system.Clock;
 import org.briarproject.briar.api.privategroup.GroupMessageFactory;
@@ -33,11 +34,13 @@ public class PrivateGroupModule {
 	@Singleton
 	PrivateGroupManager provideGroupManager(
 			PrivateGroupManagerImpl groupManager,
+			LifecycleManager lifecycleManager,
 			ValidationManager validationManager,
 			FeatureFlags featureFlags) {
 		if (!featureFlags.shouldEnablePrivateGroupsInCore()) {
 			return groupManager;
 		}
+		lifecycleManager.registerOpenDatabaseHook(groupManager);
 		validationManager.registerIncomingMessageHook(CLIENT_ID, MAJOR_VERSION,
 				groupManager);
 		return groupManager;
@@ -4,6 +4,7 @@ import org.briarproject.bramble.api.FormatException;
 import org.briarproject.bramble.api.cleanup.CleanupHook;
 import org.briarproject.bramble.api.client.ClientHelper;
 import org.briarproject.bramble.api.client.ContactGroupFactory;
+import org.briarproject.bramble.api.client.SessionIndex;
 import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.ContactManager.ContactHook;
@@ -56,6 +57,7 @@ import javax.inject.Inject;
 import static org.briarproject.bramble.api.sync.Group.Visibility.SHARED;
 import static org.briarproject.bramble.api.sync.validation.IncomingMessageHook.DeliveryAction.ACCEPT_DO_NOT_SHARE;
 import static org.briarproject.briar.api.autodelete.AutoDeleteConstants.NO_AUTO_DELETE_TIMER;
+import static org.briarproject.briar.privategroup.invitation.GroupInvitationConstants.SESSION_KEY_SESSION_ID;
 import static org.briarproject.briar.privategroup.invitation.CreatorState.START;
 import static org.briarproject.briar.privategroup.invitation.MessageType.ABORT;
 import static org.briarproject.briar.privategroup.invitation.MessageType.INVITE;
@@ -78,6 +80,7 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 	private final MessageParser messageParser;
 	private final SessionParser sessionParser;
 	private final SessionEncoder sessionEncoder;
+	private final SessionIndex sessionIndex;
 	private final ProtocolEngine<CreatorSession> creatorEngine;
 	private final ProtocolEngine<InviteeSession> inviteeEngine;
 	private final ProtocolEngine<PeerSession> peerEngine;
@@ -91,7 +94,7 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 			PrivateGroupFactory privateGroupFactory,
 			PrivateGroupManager privateGroupManager,
 			MessageParser messageParser, SessionParser sessionParser,
-			SessionEncoder sessionEncoder,
+			SessionEncoder sessionEncoder, SessionIndex sessionIndex,
 			ProtocolEngineFactory engineFactory) {
 		super(db, clientHelper, metadataParser, messageTracker);
 		this.clientVersioningManager = clientVersioningManager;
@@ -101,6 +104,7 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 		this.messageParser = messageParser;
 		this.sessionParser = sessionParser;
 		this.sessionEncoder = sessionEncoder;
+		this.sessionIndex = sessionIndex;
 		creatorEngine = engineFactory.createCreatorEngine();
 		inviteeEngine = engineFactory.createInviteeEngine();
 		peerEngine = engineFactory.createPeerEngine();
@@ -111,7 +115,13 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 		// Create a local group to indicate that we've set this client up
 		Group localGroup = contactGroupFactory.createLocalGroup(CLIENT_ID,
 				MAJOR_VERSION);
-		if (db.containsGroup(txn, localGroup.getId())) return;
+		if (db.containsGroup(txn, localGroup.getId())) {
+			// Index any sessions stored before the session index was used
+			for (Contact c : db.getContacts(txn)) {
+				indexSessions(txn, getContactGroup(c).getId());
+			}
+			return;
+		}
 		db.addGroup(txn, localGroup);
 		// Set things up for any pre-existing contacts
 		for (Contact c : db.getContacts(txn)) addingContact(txn, c);
@@ -127,6 +137,8 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 		db.setGroupVisibility(txn, c.getId(), g.getId(), client);
 		// Attach the contact ID to the group
 		clientHelper.setContactId(txn, g.getId(), c.getId());
+		// The group holds no sessions yet, so it can be indexed straight away
+		indexSessions(txn, g.getId());
 		// If the contact belongs to any private groups, create a peer session
 		// or sessions in LEFT state for creator/invitee.
 		for (Group group : db.getGroups(txn, PrivateGroupManager.CLIENT_ID,
@@ -147,7 +159,8 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 				c.getAuthor().getId().equals(pg.getCreator().getId());
 		if (isOur || isTheirs) {
 			// we are creator or invitee, create a left session for each role
-			MessageId storageId = createStorageId(txn, contactGroupId);
+			MessageId storageId = createStorageId(txn, contactGroupId,
+					getSessionId(pg.getId()));
 			Session<?> session;
 			if (isOur) {
 				session = new CreatorSession(contactGroupId, pg.getId(), null,
@@ -167,6 +180,16 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 		}
 	}
 
+	private void indexSessions(Transaction txn, GroupId contactGroupId)
+			throws DbException {
+		try {
+			sessionIndex.indexGroup(txn, contactGroupId,
+					sessionParser.getAllSessionsQuery(), SESSION_KEY_SESSION_ID);
+		} catch (FormatException e) {
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public void removingContact(Transaction txn, Contact c) throws DbException {
 		// mark private groups created by that contact as dissolved
@@ -210,7 +233,7 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 		MessageId storageId;
 		if (ss == null) {
 			session = handleFirstMessage(txn, m, body, meta);
-			storageId = createStorageId(txn, m.getGroupId());
+			storageId = createStorageId(txn, m.getGroupId(), sessionId);
 		} else {
 			session = handleMessage(txn, m, body, meta, ss.bdfSession);
 			storageId = ss.storageId;
@@ -228,12 +251,11 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 	private StoredSession getSession(Transaction txn, GroupId contactGroupId,
 			SessionId sessionId) throws DbException, FormatException {
 		BdfDictionary query = sessionParser.getSessionQuery(sessionId);
-		Map<MessageId, BdfDictionary> results = clientHelper
-				.getMessageMetadataAsDictionary(txn, contactGroupId, query);
-		if (results.size() > 1) throw new DbException();
-		if (results.isEmpty()) return null;
-		return new StoredSession(results.keySet().iterator().next(),
-				results.values().iterator().next());
+		MessageId storageId = sessionIndex.getSessionMessageId(txn,
+				contactGroupId, sessionId, query);
+		if (storageId == null) return null;
+		return new StoredSession(storageId,
+				clientHelper.getMessageMetadataAsDictionary(txn, storageId));
 	}
 
 	private Session<?> handleFirstMessage(Transaction txn, Message m,
@@ -296,10 +318,11 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 		}
 	}
 
-	private MessageId createStorageId(Transaction txn, GroupId g)
-			throws DbException {
+	private MessageId createStorageId(Transaction txn, GroupId g,
+			SessionId sessionId) throws DbException {
 		Message m = clientHelper.createMessageForStoringMetadata(g);
 		db.addLocalMessage(txn, m, new Metadata(), false, false);
+		sessionIndex.addSession(txn, g, sessionId, m.getId());
 		return m.getId();
 	}
 
@@ -326,7 +349,7 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 			if (ss == null) {
 				// This is the first invite - create a new session
 				session = new CreatorSession(contactGroupId, privateGroupId);
-				storageId = createStorageId(txn, contactGroupId);
+				storageId = createStorageId(txn, contactGroupId, sessionId);
 			} else {
 				// An earlier invite was declined, so we already have a session
 				session = sessionParser
@@ -570,7 +593,7 @@ class GroupInvitationManagerImpl extends ConversationClientImpl
 						new PeerSession(contactGroupId, privateGroupId);
 				// Handle the action
 				session = peerEngine.onMemberAddedAction(txn, peerSession);
-				storageId = createStorageId(txn, contactGroupId);
+				storageId = createStorageId(txn, contactGroupId, sessionId);
 			} else {
 				// Handle the action
 				session = handleAction(txn, LocalAction.MEMBER_ADDED,
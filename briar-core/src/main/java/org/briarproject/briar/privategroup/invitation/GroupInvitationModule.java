@@ -5,6 +5,7 @@ import org.briarproject.bramble.api.cleanup.CleanupManager;
 import org.briarproject.bramble.api.client.ClientHelper;
 import org.briarproject.bramble.api.contact.ContactManager;
 import org.briarproject.bramble.api.data.MetadataEncoder;
+import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.lifecycle.LifecycleManager;
 import org.briarproject.bramble.api.sync.validation.ValidationManager;
 import org.briarproject.bramble.api.system.Clock;
@@ -24,6 +25,7 @@ import dagger.Provides;
 import static org.briarproject.briar.api.privategroup.invitation.GroupInvitationManager.CLIENT_ID;
 import static org.briarproject.briar.api.privategroup.invitation.GroupInvitationManager.MAJOR_VERSION;
 import static org.briarproject.briar.api.privategroup.invitation.GroupInvitationManager.MINOR_VERSION;
+import static org.briarproject.briar.privategroup.invitation.GroupInvitationConstants.MSG_KEY_PRIVATE_GROUP_ID;
 
 @Module
 public class GroupInvitationModule {
@@ -44,7 +46,8 @@ public class GroupInvitationModule {
 			PrivateGroupManager privateGroupManager,
 			ConversationManager conversationManager,
 			ClientVersioningManager clientVersioningManager,
-			CleanupManager cleanupManager, FeatureFlags featureFlags) {
+			CleanupManager cleanupManager, DatabaseComponent db,
+			FeatureFlags featureFlags) {
 		if (!featureFlags.shouldEnablePrivateGroupsInCore()) {
 			return groupInvitationManager;
 		}
@@ -64,6 +67,8 @@ public class GroupInvitationModule {
 				groupInvitationManager.getPrivateGroupClientVersioningHook());
 		cleanupManager.registerCleanupHook(CLIENT_ID, MAJOR_VERSION,
 				groupInvitationManager);
+		db.registerSelectiveMetadataKey(CLIENT_ID, MAJOR_VERSION,
+				MSG_KEY_PRIVATE_GROUP_ID);
 		return groupInvitationManager;
 	}
 
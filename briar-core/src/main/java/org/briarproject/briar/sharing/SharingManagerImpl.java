@@ -4,6 +4,7 @@ import org.briarproject.bramble.api.FormatException;
 import org.briarproject.bramble.api.cleanup.CleanupHook;
 import org.briarproject.bramble.api.client.ClientHelper;
 import org.briarproject.bramble.api.client.ContactGroupFactory;
+import org.briarproject.bramble.api.client.SessionIndex;
 import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.contact.ContactManager.ContactHook;
@@ -56,6 +57,7 @@ import static org.briarproject.briar.sharing.MessageType.ACCEPT;
 import static org.briarproject.briar.sharing.MessageType.DECLINE;
 import static org.briarproject.briar.sharing.MessageType.INVITE;
 import static org.briarproject.briar.sharing.MessageType.LEAVE;
+import static org.briarproject.briar.sharing.SharingConstants.SESSION_KEY_SESSION_ID;
 import static org.briarproject.briar.sharing.State.LOCAL_INVITED;
 import static org.briarproject.briar.sharing.State.SHARING;
 
@@ -69,6 +71,7 @@ abstract class SharingManagerImpl<S extends Shareable>
 	private final MessageParser<S> messageParser;
 	private final SessionEncoder sessionEncoder;
 	private final SessionParser sessionParser;
+	private final SessionIndex sessionIndex;
 	private final ContactGroupFactory contactGroupFactory;
 	private final ProtocolEngine<S> engine;
 	private final InvitationFactory<S, ?> invitationFactory;
@@ -77,7 +80,7 @@ abstract class SharingManagerImpl<S extends Shareable>
 			ClientVersioningManager clientVersioningManager,
 			MetadataParser metadataParser, MessageParser<S> messageParser,
 			SessionEncoder sessionEncoder, SessionParser sessionParser,
-			MessageTracker messageTracker,
+			SessionIndex sessionIndex, MessageTracker messageTracker,
 			ContactGroupFactory contactGroupFactory, ProtocolEngine<S> engine,
 			InvitationFactory<S, ?> invitationFactory) {
 		super(db, clientHelper, metadataParser, messageTracker);
@@ -85,6 +88,7 @@ abstract class SharingManagerImpl<S extends Shareable>
 		this.messageParser = messageParser;
 		this.sessionEncoder = sessionEncoder;
 		this.sessionParser = sessionParser;
+		this.sessionIndex = sessionIndex;
 		this.contactGroupFactory = contactGroupFactory;
 		this.engine = engine;
 		this.invitationFactory = invitationFactory;
@@ -103,7 +107,13 @@ abstract class SharingManagerImpl<S extends Shareable>
 		// Create a local group to indicate that we've set this client up
 		Group localGroup = contactGroupFactory.createLocalGroup(getClientId(),
 				getMajorVersion());
-		if (db.containsGroup(txn, localGroup.getId())) return;
+		if (db.containsGroup(txn, localGroup.getId())) {
+			// Index any sessions stored before the session index was used
+			for (Contact c : db.getContacts(txn)) {
+				indexSessions(txn, getContactGroup(c).getId());
+			}
+			return;
+		}
 		db.addGroup(txn, localGroup);
 		// Set things up for any pre-existing contacts
 		for (Contact c : db.getContacts(txn)) addingContact(txn, c);
@@ -119,6 +129,18 @@ abstract class SharingManagerImpl<S extends Shareable>
 		db.setGroupVisibility(txn, c.getId(), g.getId(), client);
 		// Attach the contact ID to the group
 		clientHelper.setContactId(txn, g.getId(), c.getId());
+		// The group holds no sessions yet, so it can be indexed straight away
+		indexSessions(txn, g.getId());
+	}
+
+	private void indexSessions(Transaction txn, GroupId contactGroupId)
+			throws DbException {
+		try {
+			sessionIndex.indexGroup(txn, contactGroupId,
+					sessionParser.getAllSessionsQuery(), SESSION_KEY_SESSION_ID);
+		} catch (FormatException e) {
+			throw new DbException(e);
+		}
 	}
 
 	@Override
@@ -151,7 +173,7 @@ abstract class SharingManagerImpl<S extends Shareable>
 		MessageId storageId;
 		if (ss == null) {
 			session = handleFirstMessage(txn, m, body, meta);
-			storageId = createStorageId(txn, m.getGroupId());
+			storageId = createStorageId(txn, m.getGroupId(), sessionId);
 		} else {
 			session = handleMessage(txn, m, body, meta, ss.bdfSession);
 			storageId = ss.storageId;
@@ -185,7 +207,8 @@ abstract class SharingManagerImpl<S extends Shareable>
 		// Initialize session in sharing state
 		Session session = new Session(SHARING, contactGroupId, g.getId(),
 				null, null, 0, 0);
-		MessageId storageId = createStorageId(txn, contactGroupId);
+		MessageId storageId = createStorageId(txn, contactGroupId,
+				getSessionId(g.getId()));
 		storeSession(txn, storageId, session);
 	}
 
@@ -197,12 +220,11 @@ abstract class SharingManagerImpl<S extends Shareable>
 	private StoredSession getSession(Transaction txn, GroupId contactGroupId,
 			SessionId sessionId) throws DbException, FormatException {
 		BdfDictionary query = sessionParser.getSessionQuery(sessionId);
-		Map<MessageId, BdfDictionary> results = clientHelper
-				.getMessageMetadataAsDictionary(txn, contactGroupId, query);
-		if (results.size() > 1) throw new DbException();
-		if (results.isEmpty()) return null;
-		return new StoredSession(results.keySet().iterator().next(),
-				results.values().iterator().next());
+		MessageId storageId = sessionIndex.getSessionMessageId(txn,
+				contactGroupId, sessionId, query);
+		if (storageId == null) return null;
+		return new StoredSession(storageId,
+				clientHelper.getMessageMetadataAsDictionary(txn, storageId));
 	}
 
 	private Session handleFirstMessage(Transaction txn, Message m, BdfList body,
@@ -243,10 +265,11 @@ abstract class SharingManagerImpl<S extends Shareable>
 		}
 	}
 
-	private MessageId createStorageId(Transaction txn, GroupId g)
-			throws DbException {
+	private MessageId createStorageId(Transaction txn, GroupId g,
+			SessionId sessionId) throws DbException {
 		Message m = clientHelper.createMessageForStoringMetadata(g);
 		db.addLocalMessage(txn, m, new Metadata(), false, false);
+		sessionIndex.addSession(txn, g, sessionId, m.getId());
 		return m.getId();
 	}
 
@@ -275,7 +298,7 @@ abstract class SharingManagerImpl<S extends Shareable>
 			if (ss == null) {
 				// This is the first invite - create a new session
 				session = new Session(contactGroupId, shareableId);
-				storageId = createStorageId(txn, contactGroupId);
+				storageId = createStorageId(txn, contactGroupId, sessionId);
 			} else {
 				// We already have a session
 				session = sessionParser
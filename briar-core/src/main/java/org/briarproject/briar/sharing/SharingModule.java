@@ -5,6 +5,7 @@ import org.briarproject.bramble.api.cleanup.CleanupManager;
 import org.briarproject.bramble.api.client.ClientHelper;
 import org.briarproject.bramble.api.contact.ContactManager;
 import org.briarproject.bramble.api.data.MetadataEncoder;
+import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.lifecycle.LifecycleManager;
 import org.briarproject.bramble.api.sync.validation.ValidationManager;
 import org.briarproject.bramble.api.system.Clock;
@@ -27,6 +28,8 @@ import javax.inject.Singleton;
 import dagger.Module;
 import dagger.Provides;
 
+import static org.briarproject.briar.sharing.SharingConstants.MSG_KEY_SHAREABLE_ID;
+
 @Module
 public class SharingModule {
 
@@ -81,7 +84,8 @@ public class SharingModule {
 			ConversationManager conversationManager, BlogManager blogManager,
 			ClientVersioningManager clientVersioningManager,
 			BlogSharingManagerImpl blogSharingManager,
-			CleanupManager cleanupManager, FeatureFlags featureFlags) {
+			CleanupManager cleanupManager, DatabaseComponent db,
+			FeatureFlags featureFlags) {
 		if (!featureFlags.shouldEnableBlogsInCore()) {
 			return blogSharingManager;
 		}
@@ -100,6 +104,8 @@ public class SharingModule {
 		clientVersioningManager.registerClient(BlogManager.CLIENT_ID,
 				BlogManager.MAJOR_VERSION, BlogManager.MINOR_VERSION,
 				blogSharingManager.getShareableClientVersioningHook());
+		db.registerSelectiveMetadataKey(BlogSharingManager.CLIENT_ID,
+				BlogSharingManager.MAJOR_VERSION, MSG_KEY_SHAREABLE_ID);
 		cleanupManager.registerCleanupHook(BlogSharingManager.CLIENT_ID,
 				BlogSharingManager.MAJOR_VERSION,
 				blogSharingManager);
@@ -149,7 +155,8 @@ public class SharingModule {
 			ConversationManager conversationManager, ForumManager forumManager,
 			ClientVersioningManager clientVersioningManager,
 			ForumSharingManagerImpl forumSharingManager,
-			CleanupManager cleanupManager, FeatureFlags featureFlags) {
+			CleanupManager cleanupManager, DatabaseComponent db,
+			FeatureFlags featureFlags) {
 		if (!featureFlags.shouldEnableForumsInCore()) {
 			return forumSharingManager;
 		}
@@ -168,6 +175,8 @@ public class SharingModule {
 		clientVersioningManager.registerClient(ForumManager.CLIENT_ID,
 				ForumManager.MAJOR_VERSION, ForumManager.MINOR_VERSION,
 				forumSharingManager.getShareableClientVersioningHook());
+		db.registerSelectiveMetadataKey(ForumSharingManager.CLIENT_ID,
+				ForumSharingManager.MAJOR_VERSION, MSG_KEY_SHAREABLE_ID);
 		cleanupManager.registerCleanupHook(ForumSharingManager.CLIENT_ID,
 				ForumSharingManager.MAJOR_VERSION,
 				forumSharingManager);
@@ -32,6 +32,13 @@ import org.briarproject.briar.api.identity.AuthorManager;
 import org.jmock.Expectations;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static org.briarproject.bramble.api.sync.validation.IncomingMessageHook.DeliveryAction.ACCEPT_SHARE;
 import static org.briarproject.bramble.test.TestUtils.getContact;
 import static org.briarproject.bramble.test.TestUtils.getGroup;
@@ -39,6 +46,7 @@ import static org.briarproject.bramble.test.TestUtils.getLocalAuthor;
 import static org.briarproject.bramble.test.TestUtils.getMessage;
 import static org.briarproject.bramble.test.TestUtils.getRandomId;
 import static org.briarproject.bramble.util.StringUtils.getRandomString;
+import static org.briarproject.briar.api.blog.BlogConstants.GROUP_KEY_TIMELINE_ORDER;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_AUTHOR;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_COMMENT;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_ORIGINAL_MSG_ID;
@@ -46,6 +54,7 @@ import static org.briarproject.briar.api.blog.BlogConstants.KEY_ORIGINAL_PARENT_
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_PARENT_MSG_ID;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_READ;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_RSS_FEED;
+import static org.briarproject.briar.api.blog.BlogConstants.KEY_TIMELINE_ORDER;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_TIMESTAMP;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_TIME_RECEIVED;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_TYPE;
@@ -59,9 +68,11 @@ import static org.briarproject.briar.api.blog.MessageType.WRAPPED_POST;
 import static org.briarproject.briar.api.identity.AuthorInfo.Status.NONE;
 import static org.briarproject.briar.api.identity.AuthorInfo.Status.OURSELVES;
 import static org.briarproject.briar.api.identity.AuthorInfo.Status.VERIFIED;
+import static org.briarproject.briar.blog.BlogManagerImpl.getTimelineOrder;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class BlogManagerImplTest extends BrambleMockTestCase {
@@ -111,8 +122,10 @@ public class BlogManagerImplTest extends BrambleMockTestCase {
 	}
 
 	@Test
-	public void testOpenDatabaseHook() throws DbException {
+	public void testOpenDatabaseHook() throws Exception {
 		Transaction txn = new Transaction(null, false);
+		BdfDictionary groupMeta = BdfDictionary.of(
+				new BdfEntry(GROUP_KEY_TIMELINE_ORDER, true));
 
 		context.checking(new Expectations() {{
 			oneOf(identityManager).getLocalAuthor(txn);
@@ -120,6 +133,65 @@ public class BlogManagerImplTest extends BrambleMockTestCase {
 			oneOf(blogFactory).createBlog(blog1.getAuthor());
 			will(returnValue(blog1));
 			oneOf(db).addGroup(txn, blog1.getGroup());
+			oneOf(db).getGroups(txn, CLIENT_ID, MAJOR_VERSION);
+			will(returnValue(singletonList(blog1.getGroup())));
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn,
+					blog1.getId(), singletonList(GROUP_KEY_TIMELINE_ORDER));
+			will(returnValue(groupMeta));
+		}});
+
+		blogManager.onDatabaseOpened(txn);
+		context.assertIsSatisfied();
+	}
+
+	@Test
+	public void testOpenDatabaseHookAddsTimelineOrder() throws Exception {
+		Transaction txn = new Transaction(null, false);
+		// The post was stored by an older version, the comment wasn't
+		MessageId commentId = new MessageId(getRandomId());
+		BdfDictionary postMeta = BdfDictionary.of(
+				new BdfEntry(KEY_TYPE, POST.getInt()),
+				new BdfEntry(KEY_TIMESTAMP, timestamp),
+				new BdfEntry(KEY_TIME_RECEIVED, timeReceived)
+		);
+		BdfDictionary commentMeta = BdfDictionary.of(
+				new BdfEntry(KEY_TYPE, COMMENT.getInt()),
+				new BdfEntry(KEY_TIMESTAMP, timestamp),
+				new BdfEntry(KEY_TIMELINE_ORDER,
+						getTimelineOrder(timestamp, commentId))
+		);
+		BdfDictionary postQuery = BdfDictionary.of(
+				new BdfEntry(KEY_TYPE, POST.getInt()));
+		BdfDictionary commentQuery = BdfDictionary.of(
+				new BdfEntry(KEY_TYPE, COMMENT.getInt()));
+		BdfDictionary merged = BdfDictionary.of(
+				new BdfEntry(KEY_TIMELINE_ORDER,
+						getTimelineOrder(timeReceived, messageId)));
+		BdfDictionary groupMeta = BdfDictionary.of(
+				new BdfEntry(GROUP_KEY_TIMELINE_ORDER, true));
+
+		context.checking(new Expectations() {{
+			oneOf(identityManager).getLocalAuthor(txn);
+			will(returnValue(blog1.getAuthor()));
+			oneOf(blogFactory).createBlog(blog1.getAuthor());
+			will(returnValue(blog1));
+			oneOf(db).addGroup(txn, blog1.getGroup());
+			oneOf(db).getGroups(txn, CLIENT_ID, MAJOR_VERSION);
+			will(returnValue(singletonList(blog1.getGroup())));
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn,
+					blog1.getId(), singletonList(GROUP_KEY_TIMELINE_ORDER));
+			will(returnValue(new BdfDictionary()));
+			// Only the post is given a timeline order
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
+					blog1.getId(), postQuery);
+			will(returnValue(singletonMap(messageId, postMeta)));
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
+					blog1.getId(), commentQuery);
+			will(returnValue(singletonMap(commentId, commentMeta)));
+			oneOf(clientHelper).mergeMessageMetadata(txn, messageId, merged);
+			// The blog is marked as migrated
+			oneOf(clientHelper).mergeGroupMetadata(txn, blog1.getId(),
+					groupMeta);
 		}});
 
 		blogManager.onDatabaseOpened(txn);
@@ -171,6 +243,8 @@ public class BlogManagerImplTest extends BrambleMockTestCase {
 				new BdfEntry(KEY_TYPE, POST.getInt()),
 				new BdfEntry(KEY_TIMESTAMP, timestamp),
 				new BdfEntry(KEY_TIME_RECEIVED, timeReceived),
+				new BdfEntry(KEY_TIMELINE_ORDER,
+						getTimelineOrder(timeReceived, messageId)),
 				new BdfEntry(KEY_AUTHOR, authorList1),
 				new BdfEntry(KEY_READ, false),
 				new BdfEntry(KEY_RSS_FEED, false)
@@ -207,6 +281,38 @@ public class BlogManagerImplTest extends BrambleMockTestCase {
 		assertEquals(localAuthor1, h.getAuthor());
 	}
 
+	@Test
+	public void testIncomingMessageAddsMissingTimelineOrder()
+			throws DbException, FormatException {
+		Transaction txn = new Transaction(null, false);
+		BdfList body = BdfList.of("body");
+		// The post was validated by an older version but not delivered
+		// until after the blog's timeline order was migrated
+		BdfDictionary meta = BdfDictionary.of(
+				new BdfEntry(KEY_TYPE, POST.getInt()),
+				new BdfEntry(KEY_TIMESTAMP, timestamp),
+				new BdfEntry(KEY_TIME_RECEIVED, timeReceived),
+				new BdfEntry(KEY_AUTHOR, authorList1),
+				new BdfEntry(KEY_READ, false),
+				new BdfEntry(KEY_RSS_FEED, false)
+		);
+		BdfDictionary merged = BdfDictionary.of(
+				new BdfEntry(KEY_TIMELINE_ORDER,
+						getTimelineOrder(timeReceived, messageId)));
+
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).mergeMessageMetadata(txn, messageId, merged);
+			oneOf(clientHelper).parseAndValidateAuthor(authorList1);
+			will(returnValue(localAuthor1));
+			oneOf(authorManager).getAuthorInfo(txn, localAuthor1.getId());
+			will(returnValue(verifiedInfo));
+		}});
+
+		assertEquals(ACCEPT_SHARE,
+				blogManager.incomingMessage(txn, message, body, meta));
+		context.assertIsSatisfied();
+	}
+
 	@Test
 	public void testIncomingRssMessage() throws DbException, FormatException {
 		Transaction txn = new Transaction(null, false);
@@ -215,6 +321,8 @@ public class BlogManagerImplTest extends BrambleMockTestCase {
 				new BdfEntry(KEY_TYPE, POST.getInt()),
 				new BdfEntry(KEY_TIMESTAMP, timestamp),
 				new BdfEntry(KEY_TIME_RECEIVED, timeReceived),
+				new BdfEntry(KEY_TIMELINE_ORDER,
+						getTimelineOrder(timeReceived, rssMessageId)),
 				new BdfEntry(KEY_AUTHOR, rssAuthorList),
 				new BdfEntry(KEY_READ, false),
 				new BdfEntry(KEY_RSS_FEED, true)
@@ -276,7 +384,9 @@ public class BlogManagerImplTest extends BrambleMockTestCase {
 				new BdfEntry(KEY_TIMESTAMP, timestamp),
 				new BdfEntry(KEY_AUTHOR, authorList1),
 				new BdfEntry(KEY_READ, true),
-				new BdfEntry(KEY_RSS_FEED, false)
+				new BdfEntry(KEY_RSS_FEED, false),
+				new BdfEntry(KEY_TIMELINE_ORDER,
+						getTimelineOrder(timestamp, messageId))
 		);
 
 		context.checking(new Expectations() {{
@@ -330,7 +440,9 @@ public class BlogManagerImplTest extends BrambleMockTestCase {
 				new BdfEntry(KEY_TIMESTAMP, timestamp),
 				new BdfEntry(KEY_AUTHOR, rssAuthorList),
 				new BdfEntry(KEY_READ, true),
-				new BdfEntry(KEY_RSS_FEED, true)
+				new BdfEntry(KEY_RSS_FEED, true),
+				new BdfEntry(KEY_TIMELINE_ORDER,
+						getTimelineOrder(timestamp, rssMessageId))
 		);
 
 		context.checking(new Expectations() {{
@@ -396,7 +508,9 @@ public class BlogManagerImplTest extends BrambleMockTestCase {
 				new BdfEntry(KEY_ORIGINAL_MSG_ID, commentId),
 				new BdfEntry(KEY_ORIGINAL_PARENT_MSG_ID, messageId),
 				new BdfEntry(KEY_PARENT_MSG_ID, messageId),
-				new BdfEntry(KEY_AUTHOR, authorList1)
+				new BdfEntry(KEY_AUTHOR, authorList1),
+				new BdfEntry(KEY_TIMELINE_ORDER,
+						getTimelineOrder(timestamp, commentId))
 		);
 
 		context.checking(new Expectations() {{
@@ -492,7 +606,9 @@ public class BlogManagerImplTest extends BrambleMockTestCase {
 				new BdfEntry(KEY_ORIGINAL_MSG_ID, commentId),
 				new BdfEntry(KEY_ORIGINAL_PARENT_MSG_ID, messageId),
 				new BdfEntry(KEY_PARENT_MSG_ID, wrappedPostId),
-				new BdfEntry(KEY_AUTHOR, authorList2)
+				new BdfEntry(KEY_AUTHOR, authorList2),
+				new BdfEntry(KEY_TIMELINE_ORDER,
+						getTimelineOrder(timestamp, commentId))
 		);
 
 		context.checking(new Expectations() {{
@@ -603,7 +719,9 @@ public class BlogManagerImplTest extends BrambleMockTestCase {
 				new BdfEntry(KEY_ORIGINAL_MSG_ID, commentId),
 				new BdfEntry(KEY_ORIGINAL_PARENT_MSG_ID, rssMessageId),
 				new BdfEntry(KEY_PARENT_MSG_ID, wrappedPostId),
-				new BdfEntry(KEY_AUTHOR, authorList1)
+				new BdfEntry(KEY_AUTHOR, authorList1),
+				new BdfEntry(KEY_TIMELINE_ORDER,
+						getTimelineOrder(timestamp, commentId))
 		);
 
 		context.checking(new Expectations() {{
@@ -728,7 +846,9 @@ public class BlogManagerImplTest extends BrambleMockTestCase {
 				new BdfEntry(KEY_ORIGINAL_MSG_ID, localCommentId),
 				new BdfEntry(KEY_ORIGINAL_PARENT_MSG_ID, originalCommentId),
 				new BdfEntry(KEY_PARENT_MSG_ID, wrappedCommentId),
-				new BdfEntry(KEY_AUTHOR, authorList2)
+				new BdfEntry(KEY_AUTHOR, authorList2),
+				new BdfEntry(KEY_TIMELINE_ORDER,
+						getTimelineOrder(timestamp, localCommentId))
 		);
 
 		context.checking(new Expectations() {{
@@ -853,6 +973,85 @@ public class BlogManagerImplTest extends BrambleMockTestCase {
 				((BlogCommentHeader) h1).getRootPost().getId());
 	}
 
+	@Test
+	public void testGetPostHeadersLoadsSharedParentOnce() throws Exception {
+		Transaction txn = new Transaction(null, true);
+		// An RSS post was reblogged to blog 2, then commented on twice
+		MessageId wrappedPostId = new MessageId(getRandomId());
+		BdfDictionary wrappedPostMeta = BdfDictionary.of(
+				new BdfEntry(KEY_TYPE, WRAPPED_POST.getInt()),
+				new BdfEntry(KEY_RSS_FEED, true),
+				new BdfEntry(KEY_ORIGINAL_MSG_ID, rssMessageId),
+				new BdfEntry(KEY_AUTHOR, rssAuthorList),
+				new BdfEntry(KEY_TIMESTAMP, timestamp),
+				new BdfEntry(KEY_TIME_RECEIVED, timeReceived)
+		);
+		MessageId commentId1 = new MessageId(getRandomId());
+		MessageId commentId2 = new MessageId(getRandomId());
+		BdfDictionary commentMeta1 = createCommentMeta(commentId1,
+				wrappedPostId);
+		BdfDictionary commentMeta2 = createCommentMeta(commentId2,
+				wrappedPostId);
+		Map<MessageId, BdfDictionary> comments = new HashMap<>();
+		comments.put(commentId1, commentMeta1);
+		comments.put(commentId2, commentMeta2);
+		Map<MessageId, BdfDictionary> all = new HashMap<>(comments);
+		all.put(wrappedPostId, wrappedPostMeta);
+
+		context.checking(new Expectations() {{
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
+					blog2.getId(), BdfDictionary.of(
+							new BdfEntry(KEY_TYPE, POST.getInt())));
+			will(returnValue(emptyMap()));
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
+					blog2.getId(), BdfDictionary.of(
+							new BdfEntry(KEY_TYPE, COMMENT.getInt())));
+			will(returnValue(comments));
+			// Look up the author of the comments
+			exactly(4).of(clientHelper).parseAndValidateAuthor(authorList2);
+			will(returnValue(localAuthor2));
+			oneOf(authorManager).getAuthorInfo(txn, localAuthor2.getId());
+			will(returnValue(ourselvesInfo));
+			// The wrapped post wasn't returned by the queries, so the
+			// metadata of the blog is loaded once
+			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
+					blog2.getId());
+			will(returnValue(all));
+			oneOf(clientHelper).parseAndValidateAuthor(rssAuthorList);
+			will(returnValue(rssLocalAuthor));
+		}});
+
+		List<BlogPostHeader> headers =
+				blogManager.getPostHeaders(txn, blog2.getId());
+		assertEquals(2, headers.size());
+
+		BlogPostHeader parent = null;
+		for (BlogPostHeader h : headers) {
+			assertEquals(COMMENT, h.getType());
+			assertEquals(OURSELVES, h.getAuthorStatus());
+			assertEquals(wrappedPostId, h.getParentId());
+			BlogPostHeader p = ((BlogCommentHeader) h).getParent();
+			assertEquals(WRAPPED_POST, p.getType());
+			assertEquals(NONE, p.getAuthorStatus());
+			// The comments should share the parent's header
+			if (parent == null) parent = p;
+			else assertSame(parent, p);
+		}
+	}
+
+	private BdfDictionary createCommentMeta(MessageId commentId,
+			MessageId parentId) {
+		return BdfDictionary.of(
+				new BdfEntry(KEY_TYPE, COMMENT.getInt()),
+				new BdfEntry(KEY_COMMENT, comment),
+				new BdfEntry(KEY_TIMESTAMP, timestamp),
+				new BdfEntry(KEY_ORIGINAL_MSG_ID, commentId),
+				new BdfEntry(KEY_ORIGINAL_PARENT_MSG_ID, rssMessageId),
+				new BdfEntry(KEY_PARENT_MSG_ID, parentId),
+				new BdfEntry(KEY_AUTHOR, authorList2)
+		);
+	}
+
 	@Test
 	public void testBlogCanBeRemoved() throws Exception {
 		// check that own personal blogs can not be removed
@@ -1,5 +1,6 @@
 package org.briarproject.briar.blog;
 
+import org.briarproject.bramble.api.db.NoSuchMessageException;
 import org.briarproject.bramble.api.identity.LocalAuthor;
 import org.briarproject.bramble.api.sync.MessageId;
 import org.briarproject.bramble.test.TestDatabaseConfigModule;
@@ -16,11 +17,14 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import static junit.framework.Assert.assertNotNull;
 import static org.briarproject.bramble.api.identity.AuthorConstants.MAX_AUTHOR_NAME_LENGTH;
+import static org.briarproject.bramble.test.TestUtils.getRandomId;
 import static org.briarproject.briar.api.identity.AuthorInfo.Status.NONE;
 import static org.briarproject.bramble.util.StringUtils.getRandomString;
 import static org.briarproject.briar.api.blog.MessageType.COMMENT;
@@ -457,6 +461,51 @@ public class BlogManagerIntegrationTest
 		}
 	}
 
+	@Test
+	public void testTimeline() throws Exception {
+		// add three posts to blog0 and a feed post to rssBlog
+		long now = c0.getClock().currentTimeMillis();
+		List<MessageId> ids = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			BlogPost p = blogPostFactory.createBlogPost(blog0.getId(),
+					now + i, null, author0, getRandomString(42));
+			blogManager0.addLocalPost(p);
+			ids.add(p.getMessage().getId());
+		}
+		BlogPost feedPost = blogPostFactory.createBlogPost(rssBlog.getId(),
+				now + 3, null, author0, getRandomString(42));
+		blogManager0.addLocalPost(feedPost);
+		ids.add(feedPost.getMessage().getId());
+
+		// the first page should contain the newest posts from both blogs
+		List<BlogPostHeader> page1 = db0.transactionWithResult(true, txn ->
+				blogManager0.getTimeline(txn, null, 2));
+		assertEquals(2, page1.size());
+		assertEquals(ids.get(3), page1.get(0).getId());
+		assertTrue(page1.get(0).isRssFeed());
+		assertEquals(ids.get(2), page1.get(1).getId());
+
+		// the second page should start after the last post on the first page
+		MessageId cursor = page1.get(1).getId();
+		List<BlogPostHeader> page2 = db0.transactionWithResult(true, txn ->
+				blogManager0.getTimeline(txn, cursor, 2));
+		assertEquals(2, page2.size());
+		assertEquals(ids.get(1), page2.get(0).getId());
+		assertEquals(ids.get(0), page2.get(1).getId());
+
+		// there should be no more pages
+		MessageId last = page2.get(1).getId();
+		assertEquals(0, db0.transactionWithResult(true, txn ->
+				blogManager0.getTimeline(txn, last, 2)).size());
+	}
+
+	@Test(expected = NoSuchMessageException.class)
+	public void testTimelineWithUnknownCursor() throws Exception {
+		MessageId unknown = new MessageId(getRandomId());
+		db0.transaction(true, txn ->
+				blogManager0.getTimeline(txn, unknown, 2));
+	}
+
 	@Test
 	public void testRemoveContacts() throws Exception {
 		// 0 removes 1
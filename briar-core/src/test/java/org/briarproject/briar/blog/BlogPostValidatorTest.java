@@ -35,6 +35,8 @@ import static org.briarproject.briar.api.blog.BlogConstants.KEY_ORIGINAL_PARENT_
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_PARENT_MSG_ID;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_READ;
 import static org.briarproject.briar.api.blog.BlogConstants.KEY_RSS_FEED;
+import static org.briarproject.briar.api.blog.BlogConstants.KEY_TIMELINE_ORDER;
+import static org.briarproject.briar.api.blog.BlogConstants.KEY_TIME_RECEIVED;
 import static org.briarproject.briar.api.blog.BlogManager.CLIENT_ID;
 import static org.briarproject.briar.api.blog.BlogManager.MAJOR_VERSION;
 import static org.briarproject.briar.api.blog.BlogPostFactory.SIGNING_LABEL_COMMENT;
@@ -43,6 +45,7 @@ import static org.briarproject.briar.api.blog.MessageType.COMMENT;
 import static org.briarproject.briar.api.blog.MessageType.POST;
 import static org.briarproject.briar.api.blog.MessageType.WRAPPED_COMMENT;
 import static org.briarproject.briar.api.blog.MessageType.WRAPPED_POST;
+import static org.briarproject.briar.blog.BlogManagerImpl.getTimelineOrder;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
@@ -107,6 +110,8 @@ public class BlogPostValidatorTest extends BrambleMockTestCase {
 		assertEquals(authorList, result.getList(KEY_AUTHOR));
 		assertFalse(result.getBoolean(KEY_READ));
 		assertEquals(rssFeed, result.getBoolean(KEY_RSS_FEED));
+		assertEquals(getTimelineOrder(result.getLong(KEY_TIME_RECEIVED),
+				message.getId()), result.getString(KEY_TIMELINE_ORDER));
 		context.assertIsSatisfied();
 	}
 
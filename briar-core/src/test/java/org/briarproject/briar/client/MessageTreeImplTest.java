@@ -8,10 +8,13 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 
 import javax.annotation.Nullable;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 public class MessageTreeImplTest {
 
@@ -59,6 +62,62 @@ public class MessageTreeImplTest {
 		assertEquals(nodes[3], sortedNodes[4]);
 	}
 
+	@Test
+	public void testSingleNodesAreInsertedInOrder() {
+		tree = new MessageTreeImpl<>();
+		TestNode parent = new TestNode();
+		parent.setTimestamp(0);
+		tree.add(parent);
+		TestNode[] children = new TestNode[4];
+		for (int i = 0; i < children.length; i++) {
+			children[i] = new TestNode();
+			children[i].setParentId(parent.getId());
+		}
+		children[0].setTimestamp(20);
+		children[1].setTimestamp(10);
+		children[2].setTimestamp(30);
+		// same timestamp as children[0], so it goes after children[0]
+		children[3].setTimestamp(20);
+		for (TestNode child : children) tree.add(child);
+		assertEquals(Arrays.asList(parent, children[1], children[0],
+				children[3], children[2]), tree.depthFirstOrder());
+	}
+
+	@Test
+	public void testDepthFirstViewSetsLevels() {
+		tree = new MessageTreeImpl<>();
+		TestNode root = new TestNode();
+		TestNode child = new TestNode();
+		child.setParentId(root.getId());
+		child.setTimestamp(1);
+		TestNode grandchild = new TestNode();
+		grandchild.setParentId(child.getId());
+		grandchild.setTimestamp(2);
+		TestNode otherRoot = new TestNode();
+		otherRoot.setTimestamp(3);
+		tree.add(Arrays.asList(grandchild, otherRoot, child, root));
+		Iterator<TestNode> it = tree.depthFirstView().iterator();
+		assertEquals(root, it.next());
+		assertEquals(0, root.level);
+		assertEquals(child, it.next());
+		assertEquals(1, child.level);
+		assertEquals(grandchild, it.next());
+		assertEquals(2, grandchild.level);
+		assertEquals(otherRoot, it.next());
+		assertEquals(0, otherRoot.level);
+		assertFalse(it.hasNext());
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void testDepthFirstViewDetectsModification() {
+		tree = new MessageTreeImpl<>();
+		tree.add(new TestNode());
+		Iterator<TestNode> it = tree.depthFirstView().iterator();
+		it.next();
+		tree.add(new TestNode());
+		it.hasNext();
+	}
+
 	@NotNullByDefault
 	private class TestNode implements MessageTree.MessageNode {
 
@@ -66,6 +125,7 @@ public class MessageTreeImplTest {
 		@Nullable
 		private MessageId parentId;
 		private long timestamp;
+		private int level;
 
 		@Override
 		public MessageId getId() {
@@ -80,7 +140,7 @@ public class MessageTreeImplTest {
 
 		@Override
 		public void setLevel(int level) {
-
+			this.level = level;
 		}
 
 		@Override
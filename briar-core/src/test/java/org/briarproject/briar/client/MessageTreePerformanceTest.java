@@ -0,0 +1,127 @@
+package org.briarproject.briar.client;
+
+import org.briarproject.bramble.api.nullsafety.NotNullByDefault;
+import org.briarproject.bramble.api.sync.MessageId;
+import org.briarproject.bramble.test.BrambleTestCase;
+import org.briarproject.briar.api.client.MessageTree;
+import org.briarproject.briar.api.client.MessageTree.MessageNode;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+import static org.briarproject.bramble.test.TestUtils.getRandomId;
+
+/**
+ * Compares the cost of adding new posts to a large forum by rebuilding the
+ * {@link MessageTreeImpl} from all posts, as clients used to do, and by
+ * inserting each new post into the existing tree. Also compares the cost of
+ * ordering the whole tree with the cost of lazily visiting the first screen
+ * of posts.
+ */
+@Ignore
+public class MessageTreePerformanceTest extends BrambleTestCase {
+
+	private static final int POSTS = 20_000;
+	private static final int NEW_POSTS = 100;
+	private static final int SCREEN = 50;
+	private static final int ROUNDS = 5;
+
+	private final List<Node> posts = new ArrayList<>(POSTS + NEW_POSTS);
+
+	@Test
+	public void testAddNewPosts() {
+		Random random = new Random();
+		for (int i = 0; i < POSTS + NEW_POSTS; i++) {
+			// A third of the posts start new threads
+			MessageId parentId = null;
+			if (i > 0 && random.nextInt(3) != 0)
+				parentId = posts.get(random.nextInt(i)).id;
+			posts.add(new Node(parentId, i));
+		}
+		// Warm up
+		rebuild();
+		insert();
+		for (int i = 0; i < ROUNDS; i++) {
+			System.out.println("Rebuild: " + rebuild());
+			System.out.println("Insert: " + insert());
+			System.out.println(view());
+		}
+	}
+
+	private String rebuild() {
+		MessageTree<Node> tree = new MessageTreeImpl<>();
+		tree.add(posts.subList(0, POSTS));
+		long start = System.nanoTime();
+		for (int i = POSTS; i < POSTS + NEW_POSTS; i++) {
+			tree.clear();
+			tree.add(posts.subList(0, i + 1));
+		}
+		return NEW_POSTS + " posts added in "
+				+ (System.nanoTime() - start) / 1_000_000 + " ms";
+	}
+
+	private String insert() {
+		MessageTree<Node> tree = new MessageTreeImpl<>();
+		tree.add(posts.subList(0, POSTS));
+		long start = System.nanoTime();
+		for (int i = POSTS; i < POSTS + NEW_POSTS; i++) {
+			tree.add(posts.get(i));
+		}
+		return NEW_POSTS + " posts added in "
+				+ (System.nanoTime() - start) / 1_000_000 + " ms";
+	}
+
+	private String view() {
+		MessageTree<Node> tree = new MessageTreeImpl<>();
+		tree.add(posts);
+		long start = System.nanoTime();
+		tree.depthFirstOrder();
+		long ordered = System.nanoTime();
+		Iterator<Node> it = tree.depthFirstView().iterator();
+		for (int i = 0; i < SCREEN && it.hasNext(); i++) it.next();
+		long viewed = System.nanoTime();
+		return "Ordered all posts in " + (ordered - start) / 1_000 + " us, "
+				+ "visited first " + SCREEN + " in "
+				+ (viewed - ordered) / 1_000 + " us";
+	}
+
+	@NotNullByDefault
+	private static class Node implements MessageNode {
+
+		private final MessageId id = new MessageId(getRandomId());
+		@Nullable
+		private final MessageId parentId;
+		private final long timestamp;
+
+		private Node(@Nullable MessageId parentId, long timestamp) {
+			this.parentId = parentId;
+			this.timestamp = timestamp;
+		}
+
+		@Override
+		public MessageId getId() {
+			return id;
+		}
+
+		@Override
+		@Nullable
+		public MessageId getParentId() {
+			return parentId;
+		}
+
+		@Override
+		public void setLevel(int level) {
+		}
+
+		@Override
+		public long getTimestamp() {
+			return timestamp;
+		}
+	}
+}
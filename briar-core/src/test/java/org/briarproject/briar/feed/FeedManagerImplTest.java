@@ -28,25 +28,42 @@ import org.briarproject.briar.api.feed.Feed;
 import org.jmock.Expectations;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nonnull;
 import javax.net.SocketFactory;
 
 import okhttp3.Dns;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.briarproject.bramble.test.TestUtils.getGroup;
 import static org.briarproject.bramble.test.TestUtils.getLocalAuthor;
 import static org.briarproject.bramble.test.TestUtils.getMessage;
 import static org.briarproject.briar.api.feed.FeedConstants.KEY_FEEDS;
 import static org.briarproject.briar.api.feed.FeedManager.CLIENT_ID;
 import static org.briarproject.briar.api.feed.FeedManager.MAJOR_VERSION;
+import static org.briarproject.briar.feed.FeedManagerImpl.MAX_CONCURRENT_FETCHES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 
 public class FeedManagerImplTest extends BrambleMockTestCase {
 
@@ -63,7 +80,7 @@ public class FeedManagerImplTest extends BrambleMockTestCase {
 	private final Clock clock = context.mock(Clock.class);
 	private final Dns noDnsLookups = context.mock(Dns.class);
 
-	private final OkHttpClient client = new OkHttpClient.Builder()
+	private OkHttpClient client = new OkHttpClient.Builder()
 			.socketFactory(SocketFactory.getDefault())
 			.dns(noDnsLookups)
 			.connectTimeout(60_000, MILLISECONDS)
@@ -87,10 +104,7 @@ public class FeedManagerImplTest extends BrambleMockTestCase {
 			new Feed("http://example.org", blog, localAuthor, 0);
 	private final BdfDictionary feedDict = new BdfDictionary();
 
-	private final FeedManagerImpl feedManager =
-			new FeedManagerImpl(scheduler, ioExecutor, db, contactGroupFactory,
-					clientHelper, blogManager, blogPostFactory, feedFactory,
-					httpClientProvider, clock);
+	private final FeedManagerImpl feedManager = createFeedManager(ioExecutor);
 
 	@Test
 	public void testFetchFeedsReturnsEarlyIfTorIsNotActive() {
@@ -150,6 +164,120 @@ public class FeedManagerImplTest extends BrambleMockTestCase {
 		feedManager.postFeedEntries(feed, entries);
 	}
 
+	@Test
+	public void testPostFeedEntriesSkipsOldEntries() throws Exception {
+		Feed oldFeed = new Feed(feed.getUrl(), blog, localAuthor, null, null,
+				0, 0, 1000);
+		List<SyndEntry> entries = new ArrayList<>();
+		SyndEntry entry = new SyndEntryImpl();
+		entry.setPublishedDate(new Date(999));
+		entries.add(entry);
+		entry = new SyndEntryImpl();
+		entry.setUpdatedDate(new Date(1000));
+		entries.add(entry);
+
+		// No transaction should be started if there are no new entries
+		assertEquals(1000, feedManager.postFeedEntries(oldFeed, entries));
+	}
+
+	@Test
+	public void testFetchFeedsSendsConditionalRequest() throws Exception {
+		String eTag = "\"abc\"";
+		String lastModified = "Mon, 01 Jan 2024 00:00:00 GMT";
+		Feed fetchedFeed = new Feed(feed.getUrl(), blog, localAuthor, null,
+				null, 0, 0, 1000, eTag, lastModified);
+		Feed unmodifiedFeed = new Feed(feed.getUrl(), blog, localAuthor, null,
+				null, 0, 42, 1000, eTag, lastModified);
+		BdfList feedList = BdfList.of(feedDict);
+		AtomicReference<Request> captured = new AtomicReference<>();
+		interceptRequests(chain -> {
+			captured.set(chain.request());
+			return createResponse(chain.request(), HTTP_NOT_MODIFIED);
+		});
+
+		expectGetFeeds(feedList, fetchedFeed);
+		// The feed isn't parsed or posted, only its update time changes
+		context.checking(new Expectations() {{
+			oneOf(feedFactory).createFeed(fetchedFeed);
+			will(returnValue(unmodifiedFeed));
+		}});
+		expectStoreFeeds(feedList, unmodifiedFeed);
+
+		feedManager.setTorActive(true);
+		feedManager.fetchFeeds();
+
+		Request request = captured.get();
+		assertNotNull(request);
+		assertEquals(eTag, request.header("If-None-Match"));
+		assertEquals(lastModified, request.header("If-Modified-Since"));
+	}
+
+	@Test
+	public void testFetchFeedsLimitsConcurrentFetches() throws Exception {
+		int feeds = MAX_CONCURRENT_FETCHES * 2 + 1;
+		BdfList feedList = new BdfList();
+		Feed[] feedArray = new Feed[feeds];
+		for (int i = 0; i < feeds; i++) {
+			feedList.add(feedDict);
+			feedArray[i] = feed;
+		}
+		// Hold back the first fetches until the maximum number are running
+		CountDownLatch maxRunning = new CountDownLatch(MAX_CONCURRENT_FETCHES);
+		AtomicInteger running = new AtomicInteger(0);
+		AtomicInteger maxObserved = new AtomicInteger(0);
+		AtomicInteger fetched = new AtomicInteger(0);
+		interceptRequests(chain -> {
+			int r = running.incrementAndGet();
+			maxObserved.accumulateAndGet(r, Math::max);
+			fetched.incrementAndGet();
+			maxRunning.countDown();
+			try {
+				maxRunning.await(10, SECONDS);
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			} finally {
+				running.decrementAndGet();
+			}
+			// Fetching fails, so the old feeds are stored again
+			throw new IOException();
+		});
+
+		expectGetFeeds(feedList, feedArray);
+		expectStoreFeeds(feedList, feedArray);
+
+		ExecutorService executor = newCachedThreadPool();
+		try {
+			FeedManagerImpl feedManager = createFeedManager(executor);
+			feedManager.setTorActive(true);
+			feedManager.fetchFeeds();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(feeds, fetched.get());
+		assertEquals(MAX_CONCURRENT_FETCHES, maxObserved.get());
+	}
+
+	private FeedManagerImpl createFeedManager(Executor ioExecutor) {
+		return new FeedManagerImpl(scheduler, ioExecutor, db,
+				contactGroupFactory, clientHelper, blogManager,
+				blogPostFactory, feedFactory, httpClientProvider, clock);
+	}
+
+	private void interceptRequests(Interceptor interceptor) {
+		client = client.newBuilder().addInterceptor(interceptor).build();
+	}
+
+	private Response createResponse(Request request, int code) {
+		return new Response.Builder()
+				.request(request)
+				.protocol(Protocol.HTTP_1_1)
+				.code(code)
+				.message("")
+				.body(ResponseBody.create(null, ""))
+				.build();
+	}
+
 	private void expectGetLocalGroup() {
 		context.checking(new Expectations() {{
 			oneOf(contactGroupFactory).createLocalGroup(CLIENT_ID,
@@ -174,6 +302,37 @@ public class FeedManagerImplTest extends BrambleMockTestCase {
 		}});
 	}
 
+	private void expectGetFeeds(BdfList feedList, Feed... feeds)
+			throws Exception {
+		Transaction txn = new Transaction(null, true);
+		BdfDictionary feedsDict =
+				BdfDictionary.of(new BdfEntry(KEY_FEEDS, feedList));
+		expectGetLocalGroup();
+		context.checking(new DbExpectations() {{
+			oneOf(db).transactionWithResult(with(true), withDbCallable(txn));
+			oneOf(clientHelper).getGroupMetadataAsDictionary(txn, localGroupId);
+			will(returnValue(feedsDict));
+			for (int i = 0; i < feeds.length; i++) {
+				oneOf(feedFactory).createFeed(feedList.getDictionary(i));
+				will(returnValue(feeds[i]));
+			}
+		}});
+	}
+
+	private void expectStoreFeeds(BdfList feedList, Feed... feeds)
+			throws Exception {
+		BdfDictionary feedsDict =
+				BdfDictionary.of(new BdfEntry(KEY_FEEDS, feedList));
+		expectGetLocalGroup();
+		context.checking(new Expectations() {{
+			for (int i = 0; i < feeds.length; i++) {
+				oneOf(feedFactory).feedToBdfDictionary(feeds[i]);
+				will(returnValue(feedList.getDictionary(i)));
+			}
+			oneOf(clientHelper).mergeGroupMetadata(localGroupId, feedsDict);
+		}});
+	}
+
 	private void expectStoreFeed(BdfList feedList) throws Exception {
 		BdfDictionary feedDict =
 				BdfDictionary.of(new BdfEntry(KEY_FEEDS, feedList));
@@ -1,6 +1,7 @@
 package org.briarproject.briar.forum;
 
 import org.briarproject.bramble.api.sync.GroupId;
+import org.briarproject.bramble.api.sync.MessageId;
 import org.briarproject.bramble.test.TestDatabaseConfigModule;
 import org.briarproject.briar.api.forum.Forum;
 import org.briarproject.briar.api.forum.ForumManager;
@@ -14,9 +15,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
+import static java.util.Collections.emptySet;
 import static org.briarproject.briar.test.BriarTestUtils.assertGroupCount;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -207,6 +211,8 @@ public class ForumManagerTest
 		forumManager0.addLocalPost(post);
 		assertEquals(1, forumManager0.getPostHeaders(groupId0).size());
 		assertEquals(0, forumManager1.getPostHeaders(groupId0).size());
+		// The missing parent isn't returned with the post in the range
+		assertEquals(asSet(post), getPostIds(time, time + 1));
 
 		// send the child post to 1
 		sync0To1(1, false);
@@ -217,6 +223,8 @@ public class ForumManagerTest
 		forumManager0.addLocalPost(post1);
 		assertEquals(1, forumManager0.getPostHeaders(g1).size());
 		assertEquals(0, forumManager1.getPostHeaders(g1).size());
+		// the parent isn't returned with the post, as it's in another group
+		assertEquals(asSet(post), getPostIds(time, time + 1));
 
 		// send posts to 1
 		sync0To1(1, true);
@@ -227,4 +235,42 @@ public class ForumManagerTest
 		assertEquals(1, forumManager1.getPostHeaders(g1).size());
 	}
 
+	@Test
+	public void testPostHeadersInRangeIncludeAncestors() throws Exception {
+		// Add a thread of three posts and a later top-level post
+		long time = c0.getClock().currentTimeMillis();
+		ForumPost post1 = createForumPost(groupId0, null, "a", time - 3000);
+		ForumPost post2 = createForumPost(groupId0, post1, "b", time - 2000);
+		ForumPost post3 = createForumPost(groupId0, post2, "c", time - 1000);
+		ForumPost post4 = createForumPost(groupId0, null, "d", time);
+		forumManager0.addLocalPost(post1);
+		forumManager0.addLocalPost(post2);
+		forumManager0.addLocalPost(post3);
+		forumManager0.addLocalPost(post4);
+
+		// The ancestors of a reply are returned even if they're out of range
+		assertEquals(asSet(post1, post2, post3, post4),
+				getPostIds(time - 1000, time + 1));
+		assertEquals(asSet(post1, post2), getPostIds(time - 2500, time - 1500));
+		// Descendants of posts in the range are not returned
+		assertEquals(asSet(post1), getPostIds(time - 3000, time - 2500));
+		assertEquals(asSet(post4), getPostIds(time, Long.MAX_VALUE));
+		assertEquals(emptySet(), getPostIds(time - 500, time));
+	}
+
+	private Set<MessageId> getPostIds(long minTimestamp, long maxTimestamp)
+			throws Exception {
+		Collection<ForumPostHeader> headers = db0.transactionWithResult(true,
+				txn -> forumManager0.getPostHeaders(txn, groupId0,
+						minTimestamp, maxTimestamp));
+		Set<MessageId> ids = new HashSet<>();
+		for (ForumPostHeader h : headers) assertTrue(ids.add(h.getId()));
+		return ids;
+	}
+
+	private Set<MessageId> asSet(ForumPost... posts) {
+		Set<MessageId> ids = new HashSet<>();
+		for (ForumPost p : posts) ids.add(p.getMessage().getId());
+		return ids;
+	}
 }
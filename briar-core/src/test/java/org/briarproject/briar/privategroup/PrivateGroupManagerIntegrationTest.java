@@ -1,7 +1,10 @@
 package org.briarproject.briar.privategroup;
 
+import org.briarproject.bramble.api.client.ClientHelper;
 import org.briarproject.bramble.api.contact.Contact;
+import org.briarproject.bramble.api.data.BdfDictionary;
 import org.briarproject.bramble.api.data.BdfList;
+import org.briarproject.bramble.api.lifecycle.LifecycleManager.OpenDatabaseHook;
 import org.briarproject.bramble.api.sync.GroupId;
 import org.briarproject.bramble.api.sync.MessageId;
 import org.briarproject.bramble.test.TestDatabaseConfigModule;
@@ -21,6 +24,7 @@ import org.junit.Test;
 import java.util.Collection;
 
 import static org.briarproject.briar.api.identity.AuthorInfo.Status.VERIFIED;
+import static org.briarproject.bramble.api.data.BdfDictionary.NULL_VALUE;
 import static org.briarproject.bramble.api.sync.Group.Visibility.SHARED;
 import static org.briarproject.bramble.test.TestUtils.getRandomBytes;
 import static org.briarproject.bramble.test.TestUtils.getRandomId;
@@ -29,6 +33,8 @@ import static org.briarproject.briar.api.privategroup.Visibility.REVEALED_BY_CON
 import static org.briarproject.briar.api.privategroup.Visibility.REVEALED_BY_US;
 import static org.briarproject.briar.api.privategroup.Visibility.VISIBLE;
 import static org.briarproject.briar.api.privategroup.invitation.GroupInvitationFactory.SIGNING_LABEL_INVITE;
+import static org.briarproject.briar.privategroup.GroupConstants.GROUP_KEY_MEMBERS;
+import static org.briarproject.briar.privategroup.GroupConstants.GROUP_KEY_MEMBER_PREFIX;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -356,6 +362,48 @@ public class PrivateGroupManagerIntegrationTest
 		}
 	}
 
+	@Test
+	public void testMigrateMembers() throws Exception {
+		addGroup();
+
+		// move the members back to the list used by older versions
+		ClientHelper clientHelper0 = c0.getClientHelper();
+		db0.transaction(false, txn -> {
+			BdfDictionary meta =
+					clientHelper0.getGroupMetadataAsDictionary(txn, groupId0);
+			BdfList list = new BdfList();
+			BdfDictionary legacy = new BdfDictionary();
+			for (String key : meta.keySet()) {
+				if (key.startsWith(GROUP_KEY_MEMBER_PREFIX)) {
+					list.add(meta.getDictionary(key));
+					legacy.put(key, NULL_VALUE);
+				}
+			}
+			assertEquals(2, list.size());
+			legacy.put(GROUP_KEY_MEMBERS, list);
+			clientHelper0.mergeGroupMetadata(txn, groupId0, legacy);
+			assertFalse(groupManager0.isMember(txn, groupId0, author1));
+
+			// migrate the members when the database is opened
+			((OpenDatabaseHook) groupManager0).onDatabaseOpened(txn);
+
+			meta = clientHelper0.getGroupMetadataAsDictionary(txn, groupId0);
+			assertFalse(meta.containsKey(GROUP_KEY_MEMBERS));
+			assertTrue(groupManager0.isMember(txn, groupId0, author0));
+			assertTrue(groupManager0.isMember(txn, groupId0, author1));
+			assertFalse(groupManager0.isMember(txn, groupId0, author2));
+		});
+
+		Collection<GroupMember> members0 = groupManager0.getMembers(groupId0);
+		assertEquals(2, members0.size());
+		for (GroupMember m : members0) {
+			if (!m.getAuthor().equals(author0)) {
+				assertEquals(author1, m.getAuthor());
+			}
+			assertEquals(VISIBLE, m.getVisibility());
+		}
+	}
+
 	@Test
 	public void testRevealingRelationships() throws Exception {
 		addGroup();
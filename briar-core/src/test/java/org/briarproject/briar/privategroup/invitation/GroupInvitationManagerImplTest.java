@@ -3,6 +3,7 @@ package org.briarproject.briar.privategroup.invitation;
 import org.briarproject.bramble.api.FormatException;
 import org.briarproject.bramble.api.client.ClientHelper;
 import org.briarproject.bramble.api.client.ContactGroupFactory;
+import org.briarproject.bramble.api.client.SessionIndex;
 import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.data.BdfDictionary;
@@ -62,6 +63,7 @@ import static org.briarproject.briar.api.privategroup.PrivateGroupConstants.GROU
 import static org.briarproject.briar.api.privategroup.PrivateGroupConstants.MAX_GROUP_NAME_LENGTH;
 import static org.briarproject.briar.api.privategroup.invitation.GroupInvitationManager.CLIENT_ID;
 import static org.briarproject.briar.api.privategroup.invitation.GroupInvitationManager.MAJOR_VERSION;
+import static org.briarproject.briar.privategroup.invitation.GroupInvitationConstants.SESSION_KEY_SESSION_ID;
 import static org.briarproject.briar.privategroup.invitation.MessageType.ABORT;
 import static org.briarproject.briar.privategroup.invitation.MessageType.INVITE;
 import static org.briarproject.briar.privategroup.invitation.MessageType.JOIN;
@@ -88,6 +90,7 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 			context.mock(SessionParser.class);
 	private final SessionEncoder sessionEncoder =
 			context.mock(SessionEncoder.class);
+	private final SessionIndex sessionIndex = context.mock(SessionIndex.class);
 	private final ProtocolEngineFactory engineFactory =
 			context.mock(ProtocolEngineFactory.class);
 
@@ -151,7 +154,7 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 				clientHelper, clientVersioningManager, metadataParser,
 				messageTracker, contactGroupFactory, privateGroupFactory,
 				privateGroupManager, messageParser, sessionParser,
-				sessionEncoder, engineFactory);
+				sessionEncoder, sessionIndex, engineFactory);
 	}
 
 	@Test
@@ -178,7 +181,14 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 			will(returnValue(localGroup));
 			oneOf(db).containsGroup(txn, localGroup.getId());
 			will(returnValue(true));
+			// Index any sessions stored before the session index was used
+			oneOf(db).getContacts(txn);
+			will(returnValue(singletonList(contact)));
+			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
+					MAJOR_VERSION, contact);
+			will(returnValue(contactGroup));
 		}});
+		expectIndexSessions();
 		groupInvitationManager.onDatabaseOpened(txn);
 	}
 
@@ -196,12 +206,25 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 					SHARED);
 			oneOf(clientHelper)
 					.setContactId(txn, contactGroup.getId(), contactId);
+		}});
+		expectIndexSessions();
+		context.checking(new Expectations() {{
 			oneOf(db).getGroups(txn, PrivateGroupManager.CLIENT_ID,
 					PrivateGroupManager.MAJOR_VERSION);
 			will(returnValue(groups));
 		}});
 	}
 
+	private void expectIndexSessions() throws Exception {
+		BdfDictionary query = BdfDictionary.of(new BdfEntry("q", "u"));
+		context.checking(new Expectations() {{
+			oneOf(sessionParser).getAllSessionsQuery();
+			will(returnValue(query));
+			oneOf(sessionIndex).indexGroup(txn, contactGroup.getId(), query,
+					SESSION_KEY_SESSION_ID);
+		}});
+	}
+
 	private void expectAddingMember(GroupId g, Contact c) throws Exception {
 		context.checking(new Expectations() {{
 			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
@@ -227,6 +250,9 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 			will(returnValue(storageMessage));
 			oneOf(db).addLocalMessage(txn, storageMessage, new Metadata(),
 					false, false);
+			oneOf(sessionIndex).addSession(with(txn),
+					with(contactGroup.getId()), with(any(SessionId.class)),
+					with(storageMessage.getId()));
 		}});
 	}
 
@@ -245,9 +271,17 @@ public class GroupInvitationManagerImplTest extends BrambleMockTestCase {
 		context.checking(new Expectations() {{
 			oneOf(sessionParser).getSessionQuery(sessionId);
 			will(returnValue(query));
-			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
-					contactGroupId, query);
-			will(returnValue(results));
+			oneOf(sessionIndex).getSessionMessageId(txn, contactGroupId,
+					sessionId, query);
+			if (results.isEmpty()) {
+				will(returnValue(null));
+			} else {
+				MessageId storageId = results.keySet().iterator().next();
+				will(returnValue(storageId));
+				oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
+						storageId);
+				will(returnValue(results.get(storageId)));
+			}
 		}});
 	}
 
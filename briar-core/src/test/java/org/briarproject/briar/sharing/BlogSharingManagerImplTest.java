@@ -2,9 +2,11 @@ package org.briarproject.briar.sharing;
 
 import org.briarproject.bramble.api.client.ClientHelper;
 import org.briarproject.bramble.api.client.ContactGroupFactory;
+import org.briarproject.bramble.api.client.SessionIndex;
 import org.briarproject.bramble.api.contact.Contact;
 import org.briarproject.bramble.api.contact.ContactId;
 import org.briarproject.bramble.api.data.BdfDictionary;
+import org.briarproject.bramble.api.data.BdfEntry;
 import org.briarproject.bramble.api.data.MetadataParser;
 import org.briarproject.bramble.api.db.DatabaseComponent;
 import org.briarproject.bramble.api.db.DbException;
@@ -14,6 +16,7 @@ import org.briarproject.bramble.api.identity.Author;
 import org.briarproject.bramble.api.identity.IdentityManager;
 import org.briarproject.bramble.api.identity.LocalAuthor;
 import org.briarproject.bramble.api.sync.Group;
+import org.briarproject.bramble.api.sync.GroupId;
 import org.briarproject.bramble.api.sync.Message;
 import org.briarproject.bramble.api.sync.MessageId;
 import org.briarproject.bramble.api.versioning.ClientVersioningManager;
@@ -40,6 +43,7 @@ import static org.briarproject.bramble.test.TestUtils.getMessage;
 import static org.briarproject.bramble.test.TestUtils.getRandomId;
 import static org.briarproject.briar.api.blog.BlogSharingManager.CLIENT_ID;
 import static org.briarproject.briar.api.blog.BlogSharingManager.MAJOR_VERSION;
+import static org.briarproject.briar.sharing.SharingConstants.SESSION_KEY_SESSION_ID;
 
 public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 
@@ -54,6 +58,7 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 			context.mock(SessionEncoder.class);
 	private final SessionParser sessionParser =
 			context.mock(SessionParser.class);
+	private final SessionIndex sessionIndex = context.mock(SessionIndex.class);
 	private final ContactGroupFactory contactGroupFactory =
 			context.mock(ContactGroupFactory.class);
 	private final BlogManager blogManager = context.mock(BlogManager.class);
@@ -86,7 +91,7 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 				context.mock(InvitationFactory.class);
 		blogSharingManager = new BlogSharingManagerImpl(db, clientHelper,
 				clientVersioningManager, metadataParser, messageParser,
-				sessionEncoder, sessionParser, messageTracker,
+				sessionEncoder, sessionParser, sessionIndex, messageTracker,
 				contactGroupFactory, engine, invitationFactory, identityManager,
 				blogManager);
 	}
@@ -131,6 +136,10 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 			// Attach the contact ID to the group
 			oneOf(clientHelper)
 					.setContactId(txn, contactGroup.getId(), contactId);
+		}});
+		// Index the new contact group
+		expectIndexSessions(txn);
+		context.checking(new Expectations() {{
 			// Get our blog and the contact's blog
 			oneOf(identityManager).getLocalAuthor(txn);
 			will(returnValue(localAuthor));
@@ -144,6 +153,16 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 		expectPreShareShareable(txn, contact, blog, sessions);
 	}
 
+	private void expectIndexSessions(Transaction txn) throws Exception {
+		BdfDictionary query = BdfDictionary.of(new BdfEntry("q", "u"));
+		context.checking(new Expectations() {{
+			oneOf(sessionParser).getAllSessionsQuery();
+			will(returnValue(query));
+			oneOf(sessionIndex).indexGroup(txn, contactGroup.getId(), query,
+					SESSION_KEY_SESSION_ID);
+		}});
+	}
+
 	@Test
 	public void testOpenDatabaseHookSubsequentTime() throws Exception {
 		Transaction txn = new Transaction(null, false);
@@ -155,7 +174,14 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 			will(returnValue(localGroup));
 			oneOf(db).containsGroup(txn, localGroup.getId());
 			will(returnValue(true));
+			// Index any sessions stored before the session index was used
+			oneOf(db).getContacts(txn);
+			will(returnValue(contacts));
+			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
+					MAJOR_VERSION, contact);
+			will(returnValue(contactGroup));
 		}});
+		expectIndexSessions(txn);
 
 		blogSharingManager.onDatabaseOpened(txn);
 	}
@@ -196,16 +222,15 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 		Group contactGroup = getGroup(CLIENT_ID, MAJOR_VERSION);
 		BdfDictionary sessionDict = new BdfDictionary();
 		Message message = getMessage(contactGroup.getId());
+		SessionId sessionId = new SessionId(blog.getId().getBytes());
 		context.checking(new Expectations() {{
 			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
 					MAJOR_VERSION, contact);
 			will(returnValue(contactGroup));
-			oneOf(sessionParser)
-					.getSessionQuery(new SessionId(blog.getId().getBytes()));
-			will(returnValue(sessionDict));
-			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
-					contactGroup.getId(), sessionDict);
-			will(returnValue(sessions));
+		}});
+		expectGetSession(txn, contactGroup.getId(), sessionId, sessionDict,
+				sessions);
+		context.checking(new Expectations() {{
 			if (sessions.size() == 0) {
 				oneOf(db).addGroup(txn, blog.getGroup());
 				oneOf(clientVersioningManager).getClientVisibility(txn,
@@ -219,6 +244,8 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 				will(returnValue(message));
 				oneOf(db).addLocalMessage(txn, message, new Metadata(), false,
 						false);
+				oneOf(sessionIndex).addSession(txn, contactGroup.getId(),
+						sessionId, message.getId());
 				oneOf(sessionEncoder).encodeSession(with(any(Session.class)));
 				will(returnValue(sessionDict));
 				oneOf(clientHelper).mergeMessageMetadata(txn, message.getId(),
@@ -232,6 +259,7 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 		Transaction txn = new Transaction(null, false);
 		BdfDictionary sessionDict = new BdfDictionary();
 		Session session = new Session(contactGroup.getId(), blog.getId());
+		SessionId sessionId = new SessionId(blog.getId().getBytes());
 
 		context.checking(new Expectations() {{
 			oneOf(db).getContacts(txn);
@@ -239,12 +267,10 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 			oneOf(contactGroupFactory).createContactGroup(CLIENT_ID,
 					MAJOR_VERSION, contact);
 			will(returnValue(contactGroup));
-			oneOf(sessionParser)
-					.getSessionQuery(new SessionId(blog.getId().getBytes()));
-			will(returnValue(sessionDict));
-			oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
-					contactGroup.getId(), sessionDict);
-			will(returnValue(sessions));
+		}});
+		expectGetSession(txn, contactGroup.getId(), sessionId, sessionDict,
+				sessions);
+		context.checking(new Expectations() {{
 			if (sessions.size() == 1) {
 				oneOf(sessionParser)
 						.parseSession(contactGroup.getId(), sessionDict);
@@ -260,4 +286,26 @@ public class BlogSharingManagerImplTest extends BrambleMockTestCase {
 		blogSharingManager.removingBlog(txn, blog);
 	}
 
+	private void expectGetSession(Transaction txn, GroupId contactGroupId,
+			SessionId sessionId, BdfDictionary query,
+			Map<MessageId, BdfDictionary> sessions) throws Exception {
+		context.checking(new Expectations() {{
+			oneOf(sessionParser).getSessionQuery(sessionId);
+			will(returnValue(query));
+			oneOf(sessionIndex).getSessionMessageId(txn, contactGroupId,
+					sessionId, query);
+			if (sessions.size() > 1) {
+				will(throwException(new DbException()));
+			} else if (sessions.isEmpty()) {
+				will(returnValue(null));
+			} else {
+				MessageId storageId = sessions.keySet().iterator().next();
+				will(returnValue(storageId));
+				oneOf(clientHelper).getMessageMetadataAsDictionary(txn,
+						storageId);
+				will(returnValue(sessions.get(storageId)));
+			}
+		}});
+	}
+
 }
@@ -9,13 +9,33 @@ import org.briarproject.bramble.api.crypto.PasswordStrengthEstimator
 import org.briarproject.bramble.api.crypto.PasswordStrengthEstimator.QUITE_WEAK
 import org.briarproject.bramble.api.identity.AuthorConstants.MAX_AUTHOR_NAME_LENGTH
 import org.briarproject.bramble.api.lifecycle.LifecycleManager
+import org.briarproject.bramble.api.lifecycle.LifecycleManager.StartResult.SUCCESS
+import org.briarproject.bramble.util.LogUtils.now
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.logging.Logger.getLogger
 import javax.annotation.concurrent.Immutable
 import javax.inject.Inject
 import javax.inject.Singleton
+import kotlin.concurrent.thread
 import kotlin.system.exitProcess
 
 interface BriarService {
+    /**
+     * Signs in, or creates an account if none exists, and starts services.
+     * Deriving the database key and starting services may continue in the
+     * background after this method returns, so the caller can do startup
+     * work that doesn't need the key. Call [waitForStartup] before using
+     * any services.
+     */
     fun start()
+
+    /**
+     * Waits for the database key to be derived and services to start, and
+     * rethrows any exception thrown while doing so.
+     */
+    fun waitForStartup()
+
     fun stop()
 }
 
@@ -29,21 +49,46 @@ constructor(
     private val passwordStrengthEstimator: PasswordStrengthEstimator
 ) : BriarService {
 
+    private val logger = getLogger(BriarServiceImpl::javaClass.name)
+
+    private val startup = CompletableFuture<Unit>()
+
     override fun start() {
-        if (!accountManager.accountExists()) {
+        val signInTask = if (!accountManager.accountExists()) {
             createAccount()
         } else {
             val password = prompt("Password", hideInput = true)
                 ?: throw UsageError("Could not get password. Is STDIN connected?")
+            signIn(password)
+        }
+        // Deriving the database key is deliberately slow, so do it in the
+        // background while the caller gets on with other startup work
+        val start = now()
+        thread(name = "BriarServiceStartup") {
             try {
-                accountManager.signIn(password)
-            } catch (e: DecryptionException) {
-                echo("Error: Password invalid")
-                exitProcess(1)
+                signInTask()
+                val dbKey = accountManager.databaseKey ?: throw AssertionError()
+                val result = lifecycleManager.startServices(dbKey)
+                if (result != SUCCESS) {
+                    echo("Error: Could not start services: $result")
+                    exitProcess(1)
+                }
+                logger.info("Signing in and starting services took ${now() - start} ms")
+                startup.complete(Unit)
+            } catch (t: Throwable) {
+                // Hand the failure to the thread waiting for startup, which
+                // would otherwise wait forever
+                startup.completeExceptionally(t)
             }
         }
-        val dbKey = accountManager.databaseKey ?: throw AssertionError()
-        lifecycleManager.startServices(dbKey)
+    }
+
+    override fun waitForStartup() {
+        try {
+            startup.get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
         lifecycleManager.waitForStartup()
     }
 
@@ -52,7 +97,16 @@ constructor(
         lifecycleManager.waitForShutdown()
     }
 
-    private fun createAccount() {
+    private fun signIn(password: String): () -> Unit = {
+        try {
+            accountManager.signIn(password)
+        } catch (e: DecryptionException) {
+            echo("Error: Password invalid")
+            exitProcess(1)
+        }
+    }
+
+    private fun createAccount(): () -> Unit {
         echo("No account found. Let's create one!\n\n")
         val nickname = prompt("Nickname") { nickname ->
             if (nickname.length > MAX_AUTHOR_NAME_LENGTH)
@@ -67,7 +121,7 @@ constructor(
             }
         if (nickname == null || password == null)
             throw UsageError("Could not get account information. Is STDIN connected?")
-        accountManager.createAccount(nickname, password)
+        return { accountManager.createAccount(nickname, password) }
     }
 
 }
@@ -1,15 +1,21 @@
 package org.briarproject.briar.headless
 
+import org.briarproject.bramble.api.crypto.CryptoConstants.DEFAULT_KDF_TARGET_TIME_MS
 import org.briarproject.bramble.api.crypto.KeyStrengthener
 import org.briarproject.bramble.api.db.DatabaseConfig
 import java.io.File
 
-internal class HeadlessDatabaseConfig(private val dbDir: File, private val keyDir: File) :
-    DatabaseConfig {
+internal class HeadlessDatabaseConfig(
+    private val dbDir: File,
+    private val keyDir: File,
+    private val kdfTargetTime: Long = DEFAULT_KDF_TARGET_TIME_MS
+) : DatabaseConfig {
 
     override fun getDatabaseDirectory() = dbDir
 
     override fun getDatabaseKeyDirectory() = keyDir
 
     override fun getKeyStrengthener(): KeyStrengthener? = null
+
+    override fun getKdfTargetTime() = kdfTargetTime
 }
@@ -5,6 +5,7 @@ import dagger.Module
 import dagger.Provides
 import org.briarproject.bramble.account.AccountModule
 import org.briarproject.bramble.api.FeatureFlags
+import org.briarproject.bramble.api.crypto.CryptoConstants.DEFAULT_KDF_TARGET_TIME_MS
 import org.briarproject.bramble.api.db.DatabaseConfig
 import org.briarproject.bramble.api.mailbox.MailboxDirectory
 import org.briarproject.bramble.api.plugin.PluginConfig
@@ -52,7 +53,10 @@ import javax.inject.Singleton
         HeadlessMessagingModule::class
     ]
 )
-internal class HeadlessModule(private val appDir: File) {
+internal class HeadlessModule(
+    private val appDir: File,
+    private val kdfTargetTime: Long = DEFAULT_KDF_TARGET_TIME_MS
+) {
 
     @Provides
     @Singleton
@@ -63,7 +67,7 @@ internal class HeadlessModule(private val appDir: File) {
     internal fun provideDatabaseConfig(): DatabaseConfig {
         val dbDir = File(appDir, "db")
         val keyDir = File(appDir, "key")
-        return HeadlessDatabaseConfig(dbDir, keyDir)
+        return HeadlessDatabaseConfig(dbDir, keyDir, kdfTargetTime)
     }
 
     @Provides
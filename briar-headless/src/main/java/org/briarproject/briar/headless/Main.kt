@@ -6,8 +6,10 @@ import com.github.ajalt.clikt.parameters.options.default
 import com.github.ajalt.clikt.parameters.options.flag
 import com.github.ajalt.clikt.parameters.options.option
 import com.github.ajalt.clikt.parameters.types.int
+import com.github.ajalt.clikt.parameters.types.long
 import org.bouncycastle.util.encoders.Base64.toBase64String
 import org.briarproject.bramble.BrambleCoreEagerSingletons
+import org.briarproject.bramble.api.crypto.CryptoConstants.DEFAULT_KDF_TARGET_TIME_MS
 import org.briarproject.bramble.util.OsUtils.isLinux
 import org.briarproject.bramble.util.OsUtils.isMac
 import org.briarproject.briar.BriarCoreEagerSingletons
@@ -55,6 +57,13 @@ private class Main : CliktCommand(
         metavar = "PATH",
         envvar = "BRIAR_DATA_DIR"
     ).default(DEFAULT_DATA_DIR)
+    private val kdfTargetTime by option(
+        "--kdf-target-time",
+        help = "Target time in milliseconds for deriving the key that protects the database " +
+            "when creating an account or changing the password. Default: $DEFAULT_KDF_TARGET_TIME_MS",
+        metavar = "MS",
+        envvar = "BRIAR_KDF_TARGET_TIME"
+    ).long().default(DEFAULT_KDF_TARGET_TIME_MS)
 
     override fun run() {
         // logging
@@ -73,7 +82,8 @@ private class Main : CliktCommand(
 
         val dataDir = getDataDir()
         val app =
-            DaggerBriarHeadlessApp.builder().headlessModule(HeadlessModule(dataDir)).build()
+            DaggerBriarHeadlessApp.builder()
+                .headlessModule(HeadlessModule(dataDir, kdfTargetTime)).build()
         // We need to load the eager singletons directly after making the
         // dependency graphs
         BrambleCoreEagerSingletons.Helper.injectEagerSingletons(app)
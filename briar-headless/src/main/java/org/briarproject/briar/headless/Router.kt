@@ -49,7 +49,6 @@ constructor(
 
     internal fun start(authToken: String, port: Int, debug: Boolean): Javalin {
         briarService.start()
-        getRuntime().addShutdownHook(Thread(this::stop))
 
         val accessManager = AccessManager { handler, ctx, _ ->
             when {
@@ -132,6 +131,9 @@ constructor(
                 webSocketController.sessions.remove(ctx)
             }
         }
+        // Accept requests once the services they depend on have started
+        briarService.waitForStartup()
+        getRuntime().addShutdownHook(Thread(this::stop))
         return app.start(port)
     }
 
@@ -3,16 +3,23 @@ package org.briarproject.briar.headless.blogs
 import com.fasterxml.jackson.databind.ObjectMapper
 import io.javalin.http.BadRequestResponse
 import io.javalin.http.Context
+import org.bouncycastle.util.encoders.Base64
+import org.bouncycastle.util.encoders.DecoderException
 import org.briarproject.bramble.api.db.DbException
+import org.briarproject.bramble.api.db.NoSuchMessageException
+import org.briarproject.bramble.api.db.Transaction
 import org.briarproject.bramble.api.db.TransactionManager
 import org.briarproject.bramble.api.identity.IdentityManager
+import org.briarproject.bramble.api.sync.MessageId
 import org.briarproject.bramble.api.system.Clock
 import org.briarproject.bramble.util.StringUtils.utf8IsTooLong
+import org.briarproject.briar.api.blog.BlogCommentHeader
 import org.briarproject.briar.api.blog.BlogConstants.MAX_BLOG_POST_TEXT_LENGTH
 import org.briarproject.briar.api.blog.BlogManager
 import org.briarproject.briar.api.blog.BlogPostFactory
 import org.briarproject.briar.api.blog.BlogPostHeader
 import org.briarproject.briar.headless.getFromJson
+import org.briarproject.briar.headless.json.JsonDict
 import javax.annotation.concurrent.Immutable
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -31,15 +38,46 @@ constructor(
 ) : BlogController {
 
     override fun listPosts(ctx: Context): Context {
-        val posts = blogManager.blogs
-            .flatMap { blog -> blogManager.getPostHeaders(blog.id) }
-            .asSequence()
-            .sortedBy { it.timeReceived }
-            .map { header -> header.output(blogManager.getPostText(header.id)) }
-            .toList()
+        val limit = ctx.queryParam("limit")?.let { limitString ->
+            val limit = limitString.toIntOrNull()
+            if (limit == null || limit < 1) throw BadRequestResponse("Invalid limit")
+            limit
+        }
+        val after = ctx.queryParam("after")?.let { deserializeMessageId(it) }
+        val includeText = ctx.queryParam("text") != "false"
+        val posts = try {
+            db.transactionWithResult<List<JsonDict>, DbException>(true) { txn ->
+                val headers = if (limit == null) {
+                    // Without a limit, return all posts, oldest first
+                    blogManager.getTimeline(txn, after, Int.MAX_VALUE).asReversed()
+                } else {
+                    blogManager.getTimeline(txn, after, limit)
+                }
+                return@transactionWithResult headers.map { header ->
+                    header.output(if (includeText) getText(txn, header) else null)
+                }
+            }
+        } catch (e: NoSuchMessageException) {
+            throw BadRequestResponse("Unknown post: after")
+        }
         return ctx.json(posts)
     }
 
+    private fun getText(txn: Transaction, header: BlogPostHeader): String? {
+        return if (header is BlogCommentHeader) header.comment
+        else blogManager.getPostText(txn, header.id)
+    }
+
+    private fun deserializeMessageId(idString: String): MessageId {
+        val idBytes = try {
+            Base64.decode(idString)
+        } catch (e: DecoderException) {
+            throw BadRequestResponse("Invalid post ID: after")
+        }
+        if (idBytes.size != MessageId.LENGTH) throw BadRequestResponse("Invalid post ID: after")
+        return MessageId(idBytes)
+    }
+
     override fun createPost(ctx: Context): Context {
         val text = ctx.getFromJson(objectMapper, "text")
         if (utf8IsTooLong(text, MAX_BLOG_POST_TEXT_LENGTH))
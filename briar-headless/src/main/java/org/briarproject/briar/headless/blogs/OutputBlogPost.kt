@@ -5,7 +5,7 @@ import org.briarproject.briar.api.blog.BlogPostHeader
 import org.briarproject.briar.api.blog.MessageType
 import org.briarproject.briar.headless.json.JsonDict
 
-internal fun BlogPostHeader.output(text: String) = JsonDict(
+internal fun BlogPostHeader.output(text: String?) = JsonDict(
     "text" to text,
     "author" to author.output(),
     "authorStatus" to authorInfo.status.output(),
@@ -34,6 +34,10 @@ constructor(
         lifecycleManager.waitForStartup()
     }
 
+    override fun waitForStartup() {
+        lifecycleManager.waitForStartup()
+    }
+
     override fun stop() {
         lifecycleManager.stopServices()
         lifecycleManager.waitForShutdown()
@@ -7,8 +7,10 @@ import io.mockk.every
 import io.mockk.just
 import io.mockk.mockk
 import io.mockk.slot
+import org.bouncycastle.util.encoders.Base64.toBase64String
 import org.briarproject.bramble.api.db.DbCallable
 import org.briarproject.bramble.api.db.DbException
+import org.briarproject.bramble.api.db.NoSuchMessageException
 import org.briarproject.bramble.api.db.Transaction
 import org.briarproject.bramble.api.sync.MessageId
 import org.briarproject.bramble.identity.output
@@ -23,6 +25,7 @@ import org.briarproject.briar.api.blog.MessageType.POST
 import org.briarproject.briar.api.identity.AuthorInfo
 import org.briarproject.briar.api.identity.AuthorInfo.Status.OURSELVES
 import org.briarproject.briar.headless.ControllerTest
+import org.briarproject.briar.headless.json.JsonDict
 import org.junit.jupiter.api.Assertions.assertThrows
 import org.junit.jupiter.api.Test
 
@@ -105,9 +108,10 @@ internal class BlogControllerTest : ControllerTest() {
 
     @Test
     fun testList() {
-        every { blogManager.blogs } returns listOf(blog)
-        every { blogManager.getPostHeaders(group.id) } returns listOf(header)
-        every { blogManager.getPostText(message.id) } returns text
+        val txn = expectTransaction()
+        expectQueryParams(null, null, null)
+        every { blogManager.getTimeline(txn, null, Int.MAX_VALUE) } returns listOf(header)
+        every { blogManager.getPostText(txn, message.id) } returns text
         every { ctx.json(listOf(header.output(text))) } returns ctx
 
         controller.listPosts(ctx)
@@ -115,13 +119,62 @@ internal class BlogControllerTest : ControllerTest() {
 
     @Test
     fun testEmptyList() {
-        every { blogManager.blogs } returns listOf(blog)
-        every { blogManager.getPostHeaders(group.id) } returns emptyList()
+        val txn = expectTransaction()
+        expectQueryParams(null, null, null)
+        every { blogManager.getTimeline(txn, null, Int.MAX_VALUE) } returns emptyList()
         every { ctx.json(emptyList<Any>()) } returns ctx
 
         controller.listPosts(ctx)
     }
 
+    @Test
+    fun testListPageWithoutText() {
+        val txn = expectTransaction()
+        expectQueryParams("10", toBase64String(message.id.bytes), "false")
+        every { blogManager.getTimeline(txn, message.id, 10) } returns listOf(header)
+        every { ctx.json(listOf(header.output(null))) } returns ctx
+
+        controller.listPosts(ctx)
+    }
+
+    @Test
+    fun testListInvalidLimit() {
+        expectQueryParams("0", null, null)
+
+        assertThrows(BadRequestResponse::class.java) { controller.listPosts(ctx) }
+    }
+
+    @Test
+    fun testListInvalidCursor() {
+        expectQueryParams("10", "foo", null)
+
+        assertThrows(BadRequestResponse::class.java) { controller.listPosts(ctx) }
+    }
+
+    @Test
+    fun testListCursorIsNotPost() {
+        val txn = expectTransaction()
+        expectQueryParams("10", toBase64String(message.id.bytes), null)
+        every { blogManager.getTimeline(txn, message.id, 10) } throws NoSuchMessageException()
+
+        assertThrows(BadRequestResponse::class.java) { controller.listPosts(ctx) }
+    }
+
+    private fun expectTransaction(): Transaction {
+        val dbSlot = slot<DbCallable<List<JsonDict>, DbException>>()
+        val txn = Transaction(Object(), true)
+        every { db.transactionWithResult(true, capture(dbSlot)) } answers {
+            dbSlot.captured.call(txn)
+        }
+        return txn
+    }
+
+    private fun expectQueryParams(limit: String?, after: String?, text: String?) {
+        every { ctx.queryParam("limit") } returns limit
+        every { ctx.queryParam("after") } returns after
+        every { ctx.queryParam("text") } returns text
+    }
+
     @Test
     fun testOutputBlogPost() {
         val json = """